@@ -0,0 +1,132 @@
+package com.ispd.mommybook.aiscore;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.opencv.imgproc.Imgproc.INTER_CUBIC;
+import static org.opencv.imgproc.Imgproc.warpPerspective;
+
+/**
+ * 절반 영역 warp(AIScoreUtils.warpHalves)가 이전 방식(전체 크기 warp 두 번, 절반 복사, flip)과
+ * 허용 오차(MAX_PIXEL_DIFF, MAX_DIFF_RATIO) 안에서 같은 픽셀을 만드는지 확인한다.
+ * OpenCV native 라이브러리가 필요해서 기기에서 실행함.
+ * 두 방식의 시간 비교는 -Pandroid.testInstrumentationRunnerArguments.benchmark=true 일 때만 실행함.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AIScoreUtilsAlignmentTest {
+
+    @BeforeClass
+    public static void loadLibrary() {
+        System.loadLibrary("opencv_java3");
+    }
+
+    // 이전 DoImageAlignment 의 warp 부분
+    private static Mat legacyAlignment(Mat in_input, Mat in_leftMatrix, Mat in_rightMatrix) {
+        Mat inputFlipMat = in_input.clone();
+        int captureWidth = in_input.cols();
+        int captureHeight = in_input.rows();
+        Mat warpInputMatLeft = new Mat();
+        Mat warpInputMatRight = new Mat();
+        warpPerspective(inputFlipMat, warpInputMatLeft, in_rightMatrix, inputFlipMat.size(), INTER_CUBIC);
+        warpPerspective(inputFlipMat, warpInputMatRight, in_leftMatrix, inputFlipMat.size(), INTER_CUBIC);
+        Rect rect = new Rect(captureWidth/2, 0, captureWidth/2, captureHeight);
+        Mat rightRoiTargetMat = new Mat(warpInputMatLeft, rect);
+        Mat rightRoiSourceMat = new Mat(warpInputMatRight, rect);
+        rightRoiSourceMat.copyTo(rightRoiTargetMat);
+        Core.flip(warpInputMatLeft, warpInputMatLeft, 1);
+        return warpInputMatLeft;
+    }
+
+    // getAlignmentMatrix() 처럼 CV_32F 3x3
+    private static Mat matrix(float... in_values) {
+        Mat matrix = new Mat(3, 3, CvType.CV_32F);
+        matrix.put(0, 0, in_values);
+        return matrix;
+    }
+
+    private static Mat page(int in_width, int in_height) {
+        Mat image = new Mat(in_height, in_width, CvType.CV_8UC3);
+        Core.randu(image, 0, 256);
+        return image;
+    }
+
+    // 허용 오차 : 절반 영역을 warp 하면 출력 좌표의 기준이 달라져서 보간 계산의 반올림이 달라질 수 있음.
+    // 다른 값은 1 이하이고, 전체 값(픽셀 x 채널)의 0.1% 이하여야 함. (보간이 달라지는 경계 픽셀 정도)
+    private static final double MAX_PIXEL_DIFF = 1.0;
+    private static final double MAX_DIFF_RATIO = 0.001;
+
+    private static void assertSamePixels(Mat in_expected, Mat in_actual) {
+        assertEquals(in_expected.size(), in_actual.size());
+        assertEquals(in_expected.type(), in_actual.type());
+        Mat diff = new Mat();
+        Core.absdiff(in_expected, in_actual, diff);
+        Mat values = diff.reshape(1);
+        double maxDiff = Core.minMaxLoc(values).maxVal;
+        int diffCount = Core.countNonZero(values);
+        long valueCount = values.total();
+        diff.release();
+        assertTrue("max diff : " + maxDiff, maxDiff <= MAX_PIXEL_DIFF);
+        assertTrue("diff count : " + diffCount + " / " + valueCount, diffCount <= valueCount * MAX_DIFF_RATIO);
+    }
+
+    @Test
+    public void warpHalves_matchesLegacy() {
+        // 책 펴기에 쓰이는 정도의 원근 변환 (왼쪽, 오른쪽 페이지)
+        Mat leftMatrix = matrix(1.08f, 0.031f, -42.5f, -0.012f, 1.11f, 17.25f, 0.000041f, 0.000018f, 1.f);
+        Mat rightMatrix = matrix(0.94f, -0.027f, 61.75f, 0.015f, 1.06f, -9.5f, -0.000037f, 0.000022f, 1.f);
+
+        for (int[] size : new int[][]{{1280, 960}, {640, 480}, {641, 481}}) {
+            Mat input = page(size[0], size[1]);
+            Mat expected = legacyAlignment(input, leftMatrix, rightMatrix);
+            Mat actual = AIScoreUtils.warpHalves(input, leftMatrix, rightMatrix);
+            assertSamePixels(expected, actual);
+            input.release();
+            expected.release();
+            actual.release();
+        }
+    }
+
+    @Test
+    public void warpHalves_identityIsFlip() {
+        Mat identity = matrix(1.f, 0.f, 0.f, 0.f, 1.f, 0.f, 0.f, 0.f, 1.f);
+        Mat input = page(320, 240);
+        Mat flipped = new Mat();
+        Core.flip(input, flipped, 1);
+        assertSamePixels(flipped, AIScoreUtils.warpHalves(input, identity, identity));
+    }
+
+    @Test
+    public void benchmark_againstLegacy() {
+        assumeTrue("benchmark is disabled",
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmark")));
+        Mat leftMatrix = matrix(1.08f, 0.031f, -42.5f, -0.012f, 1.11f, 17.25f, 0.000041f, 0.000018f, 1.f);
+        Mat rightMatrix = matrix(0.94f, -0.027f, 61.75f, 0.015f, 1.06f, -9.5f, -0.000037f, 0.000022f, 1.f);
+        Mat input = page(1280, 960);
+        int rounds = 20;
+
+        long start = System.nanoTime();
+        for (int k = 0; k < rounds; k++) {
+            legacyAlignment(input, leftMatrix, rightMatrix).release();
+        }
+        double legacyMs = (System.nanoTime() - start) / 1000000.0 / rounds;
+
+        start = System.nanoTime();
+        for (int k = 0; k < rounds; k++) {
+            AIScoreUtils.warpHalves(input, leftMatrix, rightMatrix).release();
+        }
+        double halvesMs = (System.nanoTime() - start) / 1000000.0 / rounds;
+
+        System.out.println("AIScoreUtils alignment 1280x960 ms legacy : " + String.format("%.1f", legacyMs)
+                + ", half-frame : " + String.format("%.1f", halvesMs));
+    }
+}
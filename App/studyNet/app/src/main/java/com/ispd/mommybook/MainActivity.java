@@ -40,6 +40,7 @@ import android.widget.TextView;
 import com.ispd.mommybook.activities.ActivitiesManager;
 import com.ispd.mommybook.aiscore.AIScoreManager;
 import com.ispd.mommybook.aiscore.AIScoreMultiScoringInfo;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB;
 import com.ispd.mommybook.areacheck.AreaCheckCover;
 import com.ispd.mommybook.areacheck.AreaCheckPage;
 import com.ispd.mommybook.camera.Camera1Manager;
@@ -66,12 +67,7 @@ import com.ispd.mommybook.utils.UtilsPlaySound;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import static com.ispd.mommybook.MainHandlerMessages.*;
 import static com.ispd.mommybook.imageprocess.ImageProcessPDAlignment.*;
@@ -1136,8 +1132,9 @@ public class MainActivity extends AppCompatActivity {
 	                                            }
 
 	                                            if( mCommunicateManager != null ) {
-	                                                String path = "/sdcard/studyNet/DB/" + coverName + "/result/result.txt";
-	                                                String readData = ReadTextFile(path);
+	                                                // 채점 결과는 저널에 저장되므로 저널에서 result.txt 형식으로 만들어서 보냄.
+	                                                String readData = AIScoreReferenceDB.GetInstance(MainActivity.this)
+	                                                        .GetAIScoreResultText(coverName);
 	                                                mCommunicateManager.sendAISCoreData(coverName + "\n" + readData);
 	                                            }
                                             	break;
@@ -1200,24 +1197,4 @@ public class MainActivity extends AppCompatActivity {
 
         mAIScoreManager.StartProcess(bookCover4, bookPage4);
     }
-
-    //경로의 텍스트 파일읽기
-    private String ReadTextFile(String path){
-        StringBuffer strBuffer = new StringBuffer();
-        try{
-            InputStream is = new FileInputStream(path);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            String line="";
-            while((line=reader.readLine())!=null){
-                strBuffer.append(line+"\n");
-            }
-
-            reader.close();
-            is.close();
-        }catch (IOException e){
-            e.printStackTrace();
-            return "";
-        }
-        return strBuffer.toString();
-    }
 }
\ No newline at end of file
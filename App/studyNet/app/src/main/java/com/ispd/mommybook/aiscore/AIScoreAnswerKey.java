@@ -0,0 +1,317 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.DataBase;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.ImageSubtractLocation;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Method;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Score;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Sticker;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.TextLanguage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 정답지 인덱스
+ *
+ * 책(표지 인덱스)별 채점 항목(DataBase)을 정답지 파일(assets/aiscore/answer_key.bin)에서 한 번 읽어서,
+ * (책, 페이지) 별로 미리 나눠둔 변경 불가능한 리스트를 O(1) 로 돌려준다.
+ * 책 안의 항목 순서는 파일의 순서 그대로이고, 채점 결과 파일의 줄 순서와 같음.
+ *
+ * 정답지 파일 형식 (big endian, DataOutputStream)
+ *  int   MAGIC ('AKEY'), short VERSION
+ *  short 문자열 수, 문자열들 (modified UTF-8)
+ *  byte  책 수, 책마다 { short 책 이름, short 항목 수, 항목들 }
+ *  항목 : short 페이지, short 채점방법, short 언어, short 정답, short 이미지경로, short 동그라미위치,
+ *         short 분류정답, short 재생경로, short 스티커, short 스티커파일번호, short 채점여부, float x, y, w, h
+ * 문자열과 enum 은 문자열 테이블의 인덱스로 저장하고, 없으면 -1.
+ * enum 은 이름으로 저장하므로 enum 의 순서가 바뀌어도 파일은 그대로 사용 가능함.
+ *
+ * 생성 후 바뀌지 않음. (항목의 채점 상태는 DataBase 에 있음)
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public final class AIScoreAnswerKey {
+    public static final String ASSET_PATH = "aiscore/answer_key.bin";
+
+    private static final int MAGIC = 0x414B4559;
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+    private static final List<DataBase> EMPTY = Collections.emptyList();
+
+    private final String[] mBookNames;
+    private final List<DataBase>[] mBooks;
+    // [책][페이지] : 해당 페이지의 항목들. 항목이 없는 페이지는 EMPTY
+    private final List<DataBase>[][] mPages;
+    private final int mEntryCount;
+
+    /**
+     * @param in_bookNames 책 이름 (채점 결과 파일의 폴더 이름). 배열의 인덱스가 표지 인덱스
+     * @param in_books 책별 항목들. 순서를 그대로 유지함
+     */
+    @SuppressWarnings("unchecked")
+    public AIScoreAnswerKey(String[] in_bookNames, List<List<DataBase>> in_books) {
+        if (in_bookNames.length != in_books.size()) {
+            throw new IllegalArgumentException("book names : " + in_bookNames.length + ", books : " + in_books.size());
+        }
+        mBookNames = in_bookNames.clone();
+        mBooks = new List[mBookNames.length];
+        mPages = new List[mBookNames.length][];
+        int entryCount = 0;
+
+        for (int book = 0; book < mBookNames.length; book++) {
+            DataBase[] entries = in_books.get(book).toArray(new DataBase[0]);
+            mBooks[book] = Collections.unmodifiableList(Arrays.asList(entries));
+            entryCount += entries.length;
+
+            int maxPage = -1;
+            for (DataBase entry : entries) {
+                if (entry.mIndex < 0) {
+                    throw new IllegalArgumentException("negative page : " + entry.mIndex);
+                }
+                maxPage = Math.max(maxPage, entry.mIndex);
+            }
+
+            // 페이지별 항목 수를 세고, 같은 페이지의 항목을 원래 순서대로 모음.
+            int[] counts = new int[maxPage + 1];
+            for (DataBase entry : entries) {
+                counts[entry.mIndex]++;
+            }
+            DataBase[][] pages = new DataBase[maxPage + 1][];
+            for (int page = 0; page <= maxPage; page++) {
+                pages[page] = new DataBase[counts[page]];
+                counts[page] = 0;
+            }
+            for (DataBase entry : entries) {
+                pages[entry.mIndex][counts[entry.mIndex]++] = entry;
+            }
+
+            mPages[book] = new List[maxPage + 1];
+            for (int page = 0; page <= maxPage; page++) {
+                mPages[book][page] = pages[page].length == 0 ?
+                        EMPTY : Collections.unmodifiableList(Arrays.asList(pages[page]));
+            }
+        }
+        mEntryCount = entryCount;
+    }
+
+    /**
+     * (책, 페이지) 의 채점 항목들을 리턴한다. 매번 같은 리스트를 돌려주며 수정할 수 없음.
+     * @param in_bookIndex 표지 인덱스
+     * @param in_pageIndex 페이지 인덱스
+     * @return 항목이 없거나 범위를 벗어나면 빈 리스트
+     */
+    public List<DataBase> GetPage(int in_bookIndex, int in_pageIndex) {
+        if (in_bookIndex < 0 || in_bookIndex >= mPages.length) {
+            return EMPTY;
+        }
+        List<DataBase>[] pages = mPages[in_bookIndex];
+        if (in_pageIndex < 0 || in_pageIndex >= pages.length) {
+            return EMPTY;
+        }
+        return pages[in_pageIndex];
+    }
+
+    /**
+     * @return 책의 모든 항목 (파일 순서). 범위를 벗어나면 빈 리스트
+     */
+    public List<DataBase> GetBook(int in_bookIndex) {
+        if (in_bookIndex < 0 || in_bookIndex >= mBooks.length) {
+            return EMPTY;
+        }
+        return mBooks[in_bookIndex];
+    }
+
+    /**
+     * @return 책 이름에 해당하는 표지 인덱스. 없으면 -1
+     */
+    public int GetBookIndex(String in_bookName) {
+        for (int book = 0; book < mBookNames.length; book++) {
+            if (mBookNames[book].equals(in_bookName)) {
+                return book;
+            }
+        }
+        return NONE;
+    }
+
+    public String GetBookName(int in_bookIndex) {
+        return mBookNames[in_bookIndex];
+    }
+
+    public int GetBookCount() {
+        return mBookNames.length;
+    }
+
+    /**
+     * @return 책의 마지막 페이지 인덱스 + 1
+     */
+    public int GetPageCount(int in_bookIndex) {
+        return mPages[in_bookIndex].length;
+    }
+
+    public int GetEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * 정답지 파일을 읽는다. 스트림은 닫지 않음.
+     * @throws IOException 파일 형식이 맞지 않는 경우 포함
+     */
+    public static AIScoreAnswerKey Read(InputStream in_stream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in_stream));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("not an answer key file");
+        }
+        int version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported answer key version : " + version);
+        }
+
+        String[] strings = new String[input.readShort()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = input.readUTF();
+        }
+
+        int bookCount = input.readByte();
+        String[] bookNames = new String[bookCount];
+        List<List<DataBase>> books = new ArrayList<>(bookCount);
+        for (int book = 0; book < bookCount; book++) {
+            bookNames[book] = readString(input, strings);
+            int entryCount = input.readShort();
+            List<DataBase> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                int page = input.readShort();
+                Method method = readEnum(input, strings, Method.class);
+                TextLanguage language = readEnum(input, strings, TextLanguage.class);
+                String answer = readString(input, strings);
+                String imagePath = readString(input, strings);
+                ImageSubtractLocation location = readEnum(input, strings, ImageSubtractLocation.class);
+                String correctName = readString(input, strings);
+                String playPath = readString(input, strings);
+                Sticker sticker = readEnum(input, strings, Sticker.class);
+                int fileNumber = input.readShort();
+                Score score = readEnum(input, strings, Score.class);
+                float x = input.readFloat();
+                float y = input.readFloat();
+                float w = input.readFloat();
+                float h = input.readFloat();
+                entries.add(new DataBase(page, method, language, answer, imagePath, location, correctName, playPath,
+                        sticker, fileNumber, score, x, y, w, h));
+            }
+            books.add(entries);
+        }
+        return new AIScoreAnswerKey(bookNames, books);
+    }
+
+    /**
+     * 정답지 파일을 쓴다. 정답지를 만드는 도구와 테스트에서 사용함. 스트림은 닫지 않음.
+     */
+    public void Write(OutputStream in_stream) throws IOException {
+        // 문자열 테이블 : 처음 나온 순서대로
+        Map<String, Integer> table = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (int book = 0; book < mBookNames.length; book++) {
+            addString(table, strings, mBookNames[book]);
+            for (DataBase entry : mBooks[book]) {
+                addString(table, strings, nameOf(entry.mMethod));
+                addString(table, strings, nameOf(entry.mTextLanguage));
+                addString(table, strings, entry.mAnswerText);
+                addString(table, strings, entry.mImagePath);
+                addString(table, strings, nameOf(entry.mImageSubtractLocation));
+                addString(table, strings, entry.mCorrectName);
+                addString(table, strings, entry.mPlayPath);
+                addString(table, strings, nameOf(entry.mSticker));
+                addString(table, strings, nameOf(entry.mScore));
+            }
+        }
+        if (strings.size() > Short.MAX_VALUE || mBookNames.length > Byte.MAX_VALUE) {
+            throw new IOException("answer key is too large");
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(in_stream));
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeShort(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+
+        output.writeByte(mBookNames.length);
+        for (int book = 0; book < mBookNames.length; book++) {
+            List<DataBase> entries = mBooks[book];
+            if (entries.size() > Short.MAX_VALUE) {
+                throw new IOException("too many entries : " + mBookNames[book]);
+            }
+            output.writeShort(table.get(mBookNames[book]));
+            output.writeShort(entries.size());
+            for (DataBase entry : entries) {
+                output.writeShort(entry.mIndex);
+                output.writeShort(indexOf(table, nameOf(entry.mMethod)));
+                output.writeShort(indexOf(table, nameOf(entry.mTextLanguage)));
+                output.writeShort(indexOf(table, entry.mAnswerText));
+                output.writeShort(indexOf(table, entry.mImagePath));
+                output.writeShort(indexOf(table, nameOf(entry.mImageSubtractLocation)));
+                output.writeShort(indexOf(table, entry.mCorrectName));
+                output.writeShort(indexOf(table, entry.mPlayPath));
+                output.writeShort(indexOf(table, nameOf(entry.mSticker)));
+                output.writeShort(entry.mStickerFileNumber);
+                output.writeShort(indexOf(table, nameOf(entry.mScore)));
+                output.writeFloat(entry.mX);
+                output.writeFloat(entry.mY);
+                output.writeFloat(entry.mW);
+                output.writeFloat(entry.mH);
+            }
+        }
+        output.flush();
+    }
+
+    private static String nameOf(Enum<?> in_value) {
+        return in_value == null ? null : in_value.name();
+    }
+
+    private static void addString(Map<String, Integer> in_table, List<String> in_strings, String in_string) {
+        if (in_string != null && !in_table.containsKey(in_string)) {
+            in_table.put(in_string, in_strings.size());
+            in_strings.add(in_string);
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> in_table, String in_string) {
+        return in_string == null ? NONE : in_table.get(in_string);
+    }
+
+    private static String readString(DataInputStream in_input, String[] in_strings) throws IOException {
+        int index = in_input.readShort();
+        if (index == NONE) {
+            return null;
+        }
+        if (index < 0 || index >= in_strings.length) {
+            throw new IOException("invalid string index : " + index);
+        }
+        return in_strings[index];
+    }
+
+    private static <T extends Enum<T>> T readEnum(DataInputStream in_input, String[] in_strings,
+                                                  Class<T> in_type) throws IOException {
+        String name = readString(in_input, in_strings);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(in_type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("unknown " + in_type.getSimpleName() + " : " + name);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsLogger;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+/**
+ * 채점 영역 변화 감지
+ *
+ * 같은 페이지를 다시 채점할 때, 영역을 마지막으로 채점한 캡처(정렬된 이미지)와 현재 캡처를 DB 의 채점 영역별로 비교해서
+ * 글씨가 새로 쓰이는 등 내용이 바뀐 영역만 다시 채점하도록 한다.
+ * 영역별 점수는 1/4 로 줄인 흑백 영역의 평균 픽셀 차이를 0~1 로 정규화한 값이며,
+ * 줄이는 과정에서 정렬 오차 수준의 작은 이동은 평균되어 사라짐.
+ *
+ * 과목별 채점 클래스는 마지막 Update() 의 결과로 영역마다 NeedsGrading() 을 확인해서 채점하고,
+ * 채점이 끝나면 MarkGraded() 로 알려준다. 영역별 비교 기준은 그 영역을 실제로 채점했을 때만 현재 캡처로 바뀜.
+ * 문자인식이 진행 중이라 건너뛰는 등 채점하지 못한 영역은 채점될 때까지 계속 바뀐 영역으로 남음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreChangeDetector {
+    private static final UtilsLogger LOGGER = new UtilsLogger();
+
+    /**
+     * 기본 기준값 : 평균 픽셀 차이가 255 의 2% (약 5 gray level) 이상이면 바뀐 것으로 봄.
+     */
+    public static final float DEFAULT_THRESHOLD = 0.02f;
+
+    private static final double SCALE = 0.25;
+
+    // 영역별 비교 기준 (마지막으로 채점한 캡처의 줄인 영역). 채점한 적이 없으면 null
+    private Mat[] mBaselines = new Mat[0];
+    // 영역별 마지막 Update() 캡처의 줄인 영역. MarkGraded() 에서 비교 기준이 됨.
+    private Mat[] mCurrents = new Mat[0];
+    // 마지막 Update() 의 영역별 변화 여부. Update() 전이면 null
+    private boolean[] mChanged = null;
+    private Size mFrameSize = null;
+    private int mCoverIndex = -1;
+    private int mPageIndex = -1;
+    private float mThreshold = DEFAULT_THRESHOLD;
+
+    private long mRegionCount = 0;
+    private long mChangedCount = 0;
+
+    public void SetThreshold(float in_threshold) {
+        mThreshold = in_threshold;
+    }
+
+    /**
+     * 현재 캡처를 영역별 비교 기준과 비교한다. 비교 기준은 바꾸지 않음.
+     * 페이지가 바뀌었거나 채점한 적이 없는 영역은 바뀐 것으로 처리함.
+     * @param in_alignedMat 정렬된 현재 캡처
+     * @param in_coverIndex
+     * @param in_pageIndex
+     * @param in_dataBase AIScoreReferenceDB.GetAIScoreMethod(in_coverIndex, in_pageIndex) 의 결과
+     * @param in_previewHeight 카메라 프리뷰 높이. 영역 좌표 계산에 사용함.
+     * @return in_dataBase 와 같은 순서로 영역별 변화 여부
+     */
+    public synchronized boolean[] Update(Mat in_alignedMat, int in_coverIndex, int in_pageIndex,
+                                         List<AIScoreReferenceDB.DataBase> in_dataBase, int in_previewHeight) {
+        boolean[] changed = new boolean[in_dataBase.size()];
+        Mat gray = toGray(in_alignedMat);
+
+        boolean samePage = (in_coverIndex == mCoverIndex && in_pageIndex == mPageIndex
+                && mBaselines.length == in_dataBase.size() && gray.size().equals(mFrameSize));
+        if (!samePage) {
+            Reset();
+            mBaselines = new Mat[in_dataBase.size()];
+            mCurrents = new Mat[in_dataBase.size()];
+            mFrameSize = gray.size();
+            mCoverIndex = in_coverIndex;
+            mPageIndex = in_pageIndex;
+        }
+
+        Mat diff = new Mat();
+        for (int i = 0; i < in_dataBase.size(); i++) {
+            releaseCurrent(i);
+            Rect rect = AIScoreUtils.GetRegionRect(in_dataBase.get(i), gray.cols(), gray.rows(), in_previewHeight);
+            if (rect.width <= 0 || rect.height <= 0) {
+                changed[i] = true;
+                continue;
+            }
+            Mat roi = new Mat(gray, rect);
+            Size small = new Size(Math.max(1, rect.width * SCALE), Math.max(1, rect.height * SCALE));
+            mCurrents[i] = new Mat();
+            Imgproc.resize(roi, mCurrents[i], small, 0, 0, Imgproc.INTER_AREA);
+            roi.release();
+
+            if (mBaselines[i] == null) {
+                changed[i] = true;
+                continue;
+            }
+            Core.absdiff(mBaselines[i], mCurrents[i], diff);
+            float score = (float) (Core.mean(diff).val[0] / 255.0);
+            changed[i] = score >= mThreshold;
+            LOGGER.d("ChangeDetect index : " + i + ", score : " + score + ", changed : " + changed[i]);
+        }
+        diff.release();
+        gray.release();
+
+        for (boolean c : changed) {
+            mRegionCount++;
+            if (c) {
+                mChangedCount++;
+            }
+        }
+        LOGGER.d("ChangeDetect regions : " + mRegionCount + ", changed : " + mChangedCount);
+        mChanged = changed;
+        return changed;
+    }
+
+    /**
+     * 마지막 Update() 의 결과로 영역을 채점해야 하는지 리턴한다.
+     * 바뀐 영역과 아직 채점되지 않은 영역은 채점하고, 나머지는 DB 에 저장된 이전 결과를 사용함.
+     * @param in_index in_dataBase 에서의 영역 순서
+     * @param in_dataBase 채점할 페이지의 영역들. 마지막 Update() 의 영역 수와 다르면 모두 채점함.
+     */
+    public synchronized boolean NeedsGrading(int in_index, List<AIScoreReferenceDB.DataBase> in_dataBase) {
+        if (mChanged == null || mChanged.length != in_dataBase.size()) {
+            return true;
+        }
+        return mChanged[in_index] || in_dataBase.get(in_index).mDoGrading != 1;
+    }
+
+    /**
+     * 영역을 마지막 Update() 의 캡처로 채점했는지 알린다. 채점했으면 이 영역의 비교 기준이 그 캡처로 바뀜.
+     * 채점하지 못한 영역(문자인식 진행 중, 채점이 끝나지 않은 항목 등)은 기준을 그대로 두어서 바뀐 영역으로 남김.
+     * 문자인식처럼 결과가 나중에 나오는 경우엔 인식할 영역 이미지를 넘겨준 시점에 호출함.
+     * @param in_index Update() 에 넘긴 영역들에서의 순서
+     * @param in_graded 이번 캡처로 채점했으면 true
+     */
+    public synchronized void MarkGraded(int in_index, boolean in_graded) {
+        if (!in_graded || in_index < 0 || in_index >= mCurrents.length || mCurrents[in_index] == null) {
+            return;
+        }
+        if (mBaselines[in_index] != null) {
+            mBaselines[in_index].release();
+        }
+        mBaselines[in_index] = mCurrents[in_index];
+        mCurrents[in_index] = null;
+    }
+
+    /**
+     * 저장된 비교 기준을 지운다. 다음 Update() 에서는 모든 영역을 다시 채점하게 됨.
+     */
+    public synchronized void Reset() {
+        for (int i = 0; i < mBaselines.length; i++) {
+            if (mBaselines[i] != null) {
+                mBaselines[i].release();
+            }
+            releaseCurrent(i);
+        }
+        mBaselines = new Mat[0];
+        mCurrents = new Mat[0];
+        mChanged = null;
+        mFrameSize = null;
+        mCoverIndex = -1;
+        mPageIndex = -1;
+    }
+
+    public long GetRegionCount() {
+        return mRegionCount;
+    }
+
+    public long GetChangedCount() {
+        return mChangedCount;
+    }
+
+    private void releaseCurrent(int in_index) {
+        if (mCurrents[in_index] != null) {
+            mCurrents[in_index].release();
+            mCurrents[in_index] = null;
+        }
+    }
+
+    private static Mat toGray(Mat in_src) {
+        Mat gray = new Mat();
+        if (in_src.channels() == 4) {
+            Imgproc.cvtColor(in_src, gray, Imgproc.COLOR_RGBA2GRAY);
+        }
+        else if (in_src.channels() == 3) {
+            Imgproc.cvtColor(in_src, gray, Imgproc.COLOR_RGB2GRAY);
+        }
+        else {
+            in_src.copyTo(gray);
+        }
+        return gray;
+    }
+}
@@ -0,0 +1,405 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 책 콘텐츠 팩
+ *
+ * 책 하나에 필요한 파일들(정답지 : 페이지별 채점 영역/정답/채점 방법, 기준 이미지, 오버레이 이미지, 음원)을
+ * 파일 하나({책 이름}.pack)에 모은 것.
+ * 책을 추가할 때 앱을 다시 빌드하지 않고 팩 파일만 설치하면 됨. (AIScoreContentPackStore)
+ *
+ * 파일은 읽기 전용으로 memory-map 하고, 열 때는 헤더와 목차의 이름 위치가 파일 안에 있는지만 확인한다.
+ * 목차는 이름 순으로 정렬된 고정 크기 슬롯이라서 찾을 때 이분 탐색으로 필요한 슬롯의 이름만 비교하고,
+ * 목차 전체를 읽어서 객체로 만들지 않음. 데이터는 복사하지 않고 mapping 된 영역을 그대로 돌려줌.
+ *
+ * 팩 파일 형식 (big endian)
+ *  int MAGIC ('BPAK'), int VERSION, int 항목 수, int 0, long 목차 위치
+ *  데이터들
+ *  목차 : 항목마다 { int 이름 위치(이름 영역 기준), int 이름 길이, long 데이터 위치, int 데이터 길이 } (이름의 UTF-8 byte 순)
+ *  이름 영역 : UTF-8 이름들
+ *
+ * 항목 이름
+ *  manifest                  책 이름, 페이지 수
+ *  answer_key                이 책만 들어있는 정답지 (AIScoreAnswerKey 형식)
+ *  overlay/{페이지+1}.png     페이지 오버레이 이미지
+ *  compare/..., sticker/...  기준 이미지 (이전의 /sdcard/studyNet/DB/{책}/ 아래 경로와 같음)
+ *  sound/{재생경로}.mp3        음원
+ *
+ * 여러 쓰레드에서 동시에 읽을 수 있음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public final class AIScoreContentPack {
+    private static final UtilsLogger LOGGER = new UtilsLogger();
+
+    public static final String EXTENSION = ".pack";
+    public static final String MANIFEST = "manifest";
+    public static final String ANSWER_KEY = "answer_key";
+    public static final String OVERLAY_DIR = "overlay/";
+    public static final String SOUND_DIR = "sound/";
+
+    private static final int MAGIC = 0x4250414B;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int SLOT_SIZE = 20;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 목차의 항목 하나. 위치는 팩 파일 처음부터의 byte 위치.
+     */
+    public static final class Entry {
+        public final String mName;
+        public final long mOffset;
+        public final int mLength;
+
+        Entry(String name, long offset, int length) {
+            mName = name;
+            mOffset = offset;
+            mLength = length;
+        }
+    }
+
+    private final File mFile;
+    private final FileInputStream mInput;
+    private final ByteBuffer mBuffer;
+    private final int mEntryCount;
+    private final int mTocOffset;
+    private final int mNameOffset;
+
+    // manifest, answer_key 는 처음 사용할 때 읽음.
+    private boolean mManifestRead = false;
+    private String mBookName = null;
+    private int mPageCount = 0;
+    private AIScoreAnswerKey mAnswerKey = null;
+
+    private AIScoreContentPack(File file, FileInputStream input, ByteBuffer buffer,
+                               int entryCount, int tocOffset) {
+        mFile = file;
+        mInput = input;
+        mBuffer = buffer;
+        mEntryCount = entryCount;
+        mTocOffset = tocOffset;
+        mNameOffset = tocOffset + entryCount * SLOT_SIZE;
+    }
+
+    /**
+     * 팩 파일을 memory-map 한다. 헤더와 목차의 이름 위치만 확인하고 데이터는 사용할 때 읽음.
+     * @throws IOException 팩 파일이 아니거나, 잘렸거나, 목차의 이름이 파일 밖을 가리키는 경우
+     */
+    public static AIScoreContentPack Open(File in_file) throws IOException {
+        FileInputStream input = new FileInputStream(in_file);
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("invalid content pack size : " + in_file + " (" + size + ")");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a content pack : " + in_file);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("unsupported content pack version : " + buffer.getInt(4));
+            }
+            int entryCount = buffer.getInt(8);
+            long tocOffset = buffer.getLong(16);
+            if (entryCount < 0 || tocOffset < HEADER_SIZE
+                    || tocOffset + (long) entryCount * SLOT_SIZE > size) {
+                throw new IOException("truncated content pack : " + in_file);
+            }
+            // Find() 는 목차의 이름을 그대로 읽으므로 이름 위치를 여기서 한 번만 확인함.
+            long nameAreaOffset = tocOffset + (long) entryCount * SLOT_SIZE;
+            for (int i = 0; i < entryCount; i++) {
+                int slot = (int) tocOffset + i * SLOT_SIZE;
+                int nameOffset = buffer.getInt(slot);
+                int nameLength = buffer.getInt(slot + 4);
+                if (nameOffset < 0 || nameLength < 0
+                        || nameAreaOffset + nameOffset + nameLength > size) {
+                    throw new IOException("invalid entry name : " + in_file + " (" + i + ")");
+                }
+            }
+            return new AIScoreContentPack(in_file, input, buffer, entryCount, (int) tocOffset);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 파일을 닫는다. mapping 은 GC 될 때 해제되므로 이후에 돌려받은 ByteBuffer 를 사용하지 않아야 함.
+     */
+    public void Close() {
+        try {
+            mInput.close();
+        } catch (IOException e) {
+            LOGGER.e(e, "content pack close : " + mFile);
+        }
+    }
+
+    public File GetFile() {
+        return mFile;
+    }
+
+    /**
+     * MediaPlayer.setDataSource(fd, offset, length) 처럼 파일의 일부를 직접 읽는 곳에서 사용.
+     */
+    public FileDescriptor GetFileDescriptor() throws IOException {
+        return mInput.getFD();
+    }
+
+    public int GetEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return 이름의 항목. 없으면 null
+     */
+    public Entry Find(String in_name) {
+        byte[] key = in_name.getBytes(UTF8);
+        int low = 0;
+        int high = mEntryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int slot = mTocOffset + mid * SLOT_SIZE;
+            int compare = compareName(mBuffer.getInt(slot), mBuffer.getInt(slot + 4), key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                long offset = mBuffer.getLong(slot + 8);
+                int length = mBuffer.getInt(slot + 16);
+                if (offset < HEADER_SIZE || length < 0 || offset + length > mTocOffset) {
+                    return null;
+                }
+                return new Entry(in_name, offset, length);
+            }
+        }
+        return null;
+    }
+
+    private int compareName(int in_nameOffset, int in_nameLength, byte[] in_key) {
+        int position = mNameOffset + in_nameOffset;
+        int length = Math.min(in_nameLength, in_key.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (mBuffer.get(position + i) & 0xFF) - (in_key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return in_nameLength - in_key.length;
+    }
+
+    /**
+     * @return 항목의 데이터 (읽기 전용, 복사하지 않음). 없으면 null
+     */
+    public ByteBuffer GetData(String in_name) {
+        Entry entry = Find(in_name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer data = mBuffer.duplicate();
+        data.limit((int) entry.mOffset + entry.mLength);
+        data.position((int) entry.mOffset);
+        return data.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return 항목의 데이터를 복사한 배열. 없으면 null
+     */
+    public byte[] Read(String in_name) {
+        ByteBuffer data = GetData(in_name);
+        if (data == null) {
+            return null;
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 이전에 사용하던 책 폴더의 경로(/sdcard/studyNet/DB/{책}/compare/1-1.png)를 팩의 항목 이름(compare/1-1.png)으로 바꾼다.
+     * @return 이 책의 경로가 아니면 null
+     */
+    public String ToEntryName(String in_path) {
+        String prefix = AIScoreReferenceDB.RESULT_ROOT + GetBookName() + "/";
+        return in_path.startsWith(prefix) ? in_path.substring(prefix.length()) : null;
+    }
+
+    public synchronized String GetBookName() {
+        readManifest();
+        return mBookName;
+    }
+
+    public synchronized int GetPageCount() {
+        readManifest();
+        return mPageCount;
+    }
+
+    private void readManifest() {
+        if (mManifestRead) {
+            return;
+        }
+        mManifestRead = true;
+        mBookName = stripExtension(mFile.getName());
+        byte[] manifest = Read(MANIFEST);
+        if (manifest == null) {
+            return;
+        }
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(manifest));
+            mBookName = dis.readUTF();
+            mPageCount = dis.readInt();
+        } catch (IOException e) {
+            LOGGER.e(e, "content pack manifest : " + mFile);
+        }
+    }
+
+    /**
+     * 이 책의 정답지. 책 인덱스는 0 하나뿐임.
+     * @return 정답지 항목이 없거나 읽지 못하면 빈 정답지
+     */
+    public synchronized AIScoreAnswerKey GetAnswerKey() {
+        if (mAnswerKey == null) {
+            byte[] data = Read(ANSWER_KEY);
+            try {
+                if (data != null) {
+                    mAnswerKey = AIScoreAnswerKey.Read(new ByteArrayInputStream(data));
+                }
+            } catch (IOException e) {
+                LOGGER.e(e, "content pack answer key : " + mFile);
+            }
+            if (mAnswerKey == null) {
+                // 채점할 항목이 없는 팩이 되므로 에러로 남김.
+                LOGGER.e("content pack has no valid answer key, using an empty one : " + mFile);
+                List<List<AIScoreReferenceDB.DataBase>> books = new ArrayList<>();
+                books.add(new ArrayList<AIScoreReferenceDB.DataBase>());
+                mAnswerKey = new AIScoreAnswerKey(new String[]{GetBookName()}, books);
+            }
+        }
+        return mAnswerKey;
+    }
+
+    static String stripExtension(String in_fileName) {
+        return in_fileName.endsWith(EXTENSION)
+                ? in_fileName.substring(0, in_fileName.length() - EXTENSION.length()) : in_fileName;
+    }
+
+    /**
+     * 팩 파일을 만든다. (콘텐츠 제작 도구, 테스트에서 사용)
+     */
+    public static final class Builder {
+        private final String mBookName;
+        private int mPageCount = 0;
+        // 이름의 UTF-8 byte 순으로 정렬
+        private final TreeMap<String, byte[]> mEntries = new TreeMap<>(new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                byte[] x = a.getBytes(UTF8);
+                byte[] y = b.getBytes(UTF8);
+                int length = Math.min(x.length, y.length);
+                for (int i = 0; i < length; i++) {
+                    int diff = (x[i] & 0xFF) - (y[i] & 0xFF);
+                    if (diff != 0) {
+                        return diff;
+                    }
+                }
+                return x.length - y.length;
+            }
+        });
+
+        public Builder(String in_bookName) {
+            mBookName = in_bookName;
+        }
+
+        public Builder SetPageCount(int in_pageCount) {
+            mPageCount = in_pageCount;
+            return this;
+        }
+
+        /**
+         * @param in_answerKey 이 책만 들어있는 정답지
+         */
+        public Builder SetAnswerKey(AIScoreAnswerKey in_answerKey) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            in_answerKey.Write(bytes);
+            return Add(ANSWER_KEY, bytes.toByteArray());
+        }
+
+        public Builder Add(String in_name, byte[] in_data) {
+            mEntries.put(in_name, in_data);
+            return this;
+        }
+
+        public void Write(File in_file) throws IOException {
+            OutputStream os = new FileOutputStream(in_file);
+            try {
+                Write(os);
+            } finally {
+                os.close();
+            }
+        }
+
+        public void Write(OutputStream in_stream) throws IOException {
+            ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            DataOutputStream manifestOut = new DataOutputStream(manifest);
+            manifestOut.writeUTF(mBookName);
+            manifestOut.writeInt(mPageCount);
+            manifestOut.flush();
+            mEntries.put(MANIFEST, manifest.toByteArray());
+
+            long dataSize = 0;
+            for (byte[] data : mEntries.values()) {
+                dataSize += data.length;
+            }
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(in_stream));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(mEntries.size());
+            dos.writeInt(0);
+            dos.writeLong(HEADER_SIZE + dataSize);
+            for (byte[] data : mEntries.values()) {
+                dos.write(data);
+            }
+
+            long dataOffset = HEADER_SIZE;
+            int nameOffset = 0;
+            for (Map.Entry<String, byte[]> entry : mEntries.entrySet()) {
+                int nameLength = entry.getKey().getBytes(UTF8).length;
+                dos.writeInt(nameOffset);
+                dos.writeInt(nameLength);
+                dos.writeLong(dataOffset);
+                dos.writeInt(entry.getValue().length);
+                nameOffset += nameLength;
+                dataOffset += entry.getValue().length;
+            }
+            for (String name : mEntries.keySet()) {
+                dos.write(name.getBytes(UTF8));
+            }
+            dos.flush();
+        }
+    }
+}
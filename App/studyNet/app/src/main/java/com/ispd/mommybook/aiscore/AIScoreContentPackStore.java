@@ -0,0 +1,104 @@
+package com.ispd.mommybook.aiscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 설치된 책 콘텐츠 팩 목록
+ *
+ * 시작할 때는 팩 폴더의 파일 이름만 읽고 팩 파일은 열지 않는다. (설치된 책의 수와 관계없이 시작 시간, 메모리가 같음)
+ * 표지를 찾은 책의 팩만 Open() 으로 memory-map 하고, 다른 책의 표지를 찾으면 이전 팩은 닫음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreContentPackStore {
+
+    // 팩 파일({책 이름}.pack)을 설치하는 위치
+    public static final String PACK_ROOT = "/sdcard/studyNet/packs/";
+
+    private final File mRootDir;
+    // 책 이름 -> 팩 파일
+    private final Map<String, File> mInstalled = new HashMap<>();
+    private AIScoreContentPack mOpenPack = null;
+    private int mOpenCount = 0;
+
+    public AIScoreContentPackStore(File in_rootDir) {
+        mRootDir = in_rootDir;
+    }
+
+    /**
+     * 설치된 팩 파일의 이름을 읽는다. 팩 파일은 열지 않음.
+     * @return 설치된 책의 수
+     */
+    public synchronized int Scan() {
+        mInstalled.clear();
+        String[] names = mRootDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(AIScoreContentPack.EXTENSION)) {
+                    mInstalled.put(AIScoreContentPack.stripExtension(name), new File(mRootDir, name));
+                }
+            }
+        }
+        return mInstalled.size();
+    }
+
+    public synchronized boolean IsInstalled(String in_bookName) {
+        return mInstalled.containsKey(in_bookName);
+    }
+
+    public synchronized List<String> GetInstalledBooks() {
+        List<String> books = new ArrayList<>(mInstalled.keySet());
+        Collections.sort(books);
+        return books;
+    }
+
+    /**
+     * 책의 팩을 연다. 이미 열려있으면 그대로 돌려주고, 다른 책의 팩이 열려 있으면 닫음.
+     * @return 설치되지 않았으면 null
+     * @throws IOException 팩 파일을 열지 못하거나 잘못된 팩인 경우
+     */
+    public synchronized AIScoreContentPack Open(String in_bookName) throws IOException {
+        if (mOpenPack != null) {
+            if (mOpenPack.GetFile().equals(mInstalled.get(in_bookName))) {
+                return mOpenPack;
+            }
+            mOpenPack.Close();
+            mOpenPack = null;
+        }
+        File file = mInstalled.get(in_bookName);
+        if (file == null) {
+            return null;
+        }
+        mOpenPack = AIScoreContentPack.Open(file);
+        mOpenCount++;
+        return mOpenPack;
+    }
+
+    /**
+     * @return 열려있는 팩. 없으면 null
+     */
+    public synchronized AIScoreContentPack GetOpenPack() {
+        return mOpenPack;
+    }
+
+    /**
+     * @return 지금까지 팩 파일을 연 횟수
+     */
+    public synchronized int GetOpenCount() {
+        return mOpenCount;
+    }
+
+    public synchronized void Close() {
+        if (mOpenPack != null) {
+            mOpenPack.Close();
+            mOpenPack = null;
+        }
+    }
+}
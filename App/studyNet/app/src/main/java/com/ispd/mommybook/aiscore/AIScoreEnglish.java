@@ -12,6 +12,7 @@ import com.ispd.mommybook.imageprocess.ImageProcessKeyPointMatch;
 import com.ispd.mommybook.motion.MotionHandTrackingManager;
 import com.ispd.mommybook.ocr.OCRManager;
 import com.ispd.mommybook.ocr.OCRRecognitionMode;
+import com.ispd.mommybook.ocr.recognition.OCRRecognitionResult;
 import com.ispd.mommybook.motion.MotionMovingDetect;
 import com.ispd.mommybook.utils.UtilsLogger;
 import com.ispd.mommybook.utils.UtilsPlaySound;
@@ -23,6 +24,7 @@ import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,7 +50,6 @@ import static com.ispd.mommybook.ocr.OCRRecognitionMode.TYPO_NUM_SIGN;
 
 import static org.opencv.core.Core.flip;
 import static org.opencv.core.CvType.CV_8U;
-import static org.opencv.imgcodecs.Imgcodecs.imread;
 import static org.opencv.imgcodecs.Imgcodecs.imwrite;
 import static org.opencv.imgproc.Imgproc.COLOR_GRAY2RGB;
 import static org.opencv.imgproc.Imgproc.COLOR_RGB2GRAY;
@@ -71,17 +72,21 @@ public class AIScoreEnglish {
     private Handler mMainHandler = null;
     private AIScoreView mAIScoreView = null;
 
-    private AIScoreReferenceDB mAIScoreReferenceDB = new AIScoreReferenceDB();
+    private AIScoreReferenceDB mAIScoreReferenceDB = null;
     private List<AIScoreReferenceDB.DataBase> mDataBase;
 
     private int mPreviewWidth = MainActivity.gCameraPreviewWidth;
     private int mPreviewHeight = MainActivity.gCameraPreviewHeight;
 
+    // 채점 영역 변화 감지 (과목 공용). 바뀐 영역과 아직 채점되지 않은 영역만 채점함.
+    private final AIScoreChangeDetector mChangeDetector;
+
     private int mPreviewRenderWidth = MainActivity.gPreviewRenderWidth;
     private int mPreviewRenderHeight = MainActivity.gPreviewRenderHeight;
 
     private ImageProcessKeyPointMatch mImageProcessKeyPointMatch = null;
     private ImageClassifierManager mImageClassifierManager = null;
+    private AIScoreReferenceImageCache<Mat> mReferenceImages = null;
     private float mCropDatas[];
 
     private boolean mTouchPressed[] = new boolean[] {false, false, false, false, false, false, false, false, false, false};
@@ -120,13 +125,19 @@ public class AIScoreEnglish {
      *
      * @param handler
      * @param scoreView
+     * @param referenceImages 이미지 매칭 기준 이미지 캐시 (과목 공용)
+     * @param changeDetector 채점 영역 변화 감지 (과목 공용)
      *
      * 문자인식, 이미지 매칭, 이미지 비교, 음원 재생 등 선언
      */
-    public AIScoreEnglish(Context context, Handler handler, AIScoreView scoreView) {
+    public AIScoreEnglish(Context context, Handler handler, AIScoreView scoreView,
+                          AIScoreReferenceImageCache<Mat> referenceImages, AIScoreChangeDetector changeDetector) {
         mContext = context;
         mMainHandler = handler;
         mAIScoreView = scoreView;
+        mReferenceImages = referenceImages;
+        mChangeDetector = changeDetector;
+        mAIScoreReferenceDB = AIScoreReferenceDB.GetInstance(context);
 
         mImageProcessKeyPointMatch = new ImageProcessKeyPointMatch();
 
@@ -268,6 +279,8 @@ public class AIScoreEnglish {
 
 	
     public void DoImageProcess(Mat alignedMat, int coverIndex, int pageIndex, int aiScoreResultOn, int processCount) {
+        // 페이지가 바뀌면 이전 페이지의 인식 결과 캐시를 비움.
+        mOCRManager.SetPage(coverIndex, pageIndex);
         //mIsDoProcessDone = false;  //SetDoProcessFlagOn() 함수에서 셋팅함.
         mPageIndex = pageIndex;
 
@@ -285,6 +298,15 @@ public class AIScoreEnglish {
         //할일 순서대로 진행
         //왼쪽 페이지부터 좌, 우, 아래 순서대로 진행
         for(int i = 0; i < mDataBase.size(); i++) {
+            if(!mChangeDetector.NeedsGrading(i, mDataBase)) {
+                LOGGER.d("index : " + i + " - region is not changed. reuse previous result.");
+                if(mDataBase.get(i).mMethod == IMAGE_CLASSIFICATION) {
+                    // mClassCount 는 항목별 누적 배열의 인덱스이므로 건너뛰는 항목도 세어야 함.
+                    mClassCount++;
+                }
+                continue;
+            }
+            int ocrDataSize = mOCRManager.GetOCRDataSize();
             if(mDataBase.get(i).mMethod == TEXT_RECOGNITION_WORD ||
                     mDataBase.get(i).mMethod == TEXT_RECOGNITION_SENTENCE) {
                 if(mOCRManager.IsRecognitonDone() == true && (mRecognitionDoneCnt == 0)) {
@@ -320,6 +342,7 @@ public class AIScoreEnglish {
                             addTextRecognitionData(alignedMat, cropRect, i, TYPO_NUM_SIGN);
                         }
                     }
+                    mChangeDetector.MarkGraded(i, mOCRManager.GetOCRDataSize() > ocrDataSize);
                 } //end of if (mOCRManager.IsRecognitonDone() == true)
                 else {
                     LOGGER.d("SallyRecog skip RecogData Add ++++++++++++++++++++++++++");
@@ -345,6 +368,7 @@ public class AIScoreEnglish {
                 Rect cropRect = new Rect(cropX, cropY, cropW, cropH);
 
                 doImageClassification(alignedMat, cropRect, i, aiScoreResultOn, processCount);
+                mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
                 mClassCount++;
             }
             else if(mDataBase.get(i).mMethod == IMAGE_MATCHING) { //Image Classification
@@ -369,7 +393,7 @@ public class AIScoreEnglish {
 //            mRecognitionDoneCnt = 0;
         }
 
-        mAIScoreReferenceDB.WriteAIScoreResult("english");
+        writeAIScoreResult();
 
         mIsDoProcessDone = true;
     }
@@ -405,7 +429,20 @@ public class AIScoreEnglish {
                         String fileName = "english/" + mDataBase.get(i).mPlayPath;
                         boolean isRunning[] = {false};
                         if(mUtilsPlaySound.isSoundPlaying() == false) { //added by sally 테스트 해야함.
-                            mUtilsPlaySound.DoPlaySound(fileName, isRunning);
+                            //콘텐츠 팩에 음원이 있으면 팩 파일에서 바로 재생
+                            AIScoreContentPack pack = mAIScoreReferenceDB.GetContentPack(coverIndex);
+                            AIScoreContentPack.Entry sound = pack != null ?
+                                    pack.Find(AIScoreContentPack.SOUND_DIR + mDataBase.get(i).mPlayPath + ".mp3") : null;
+                            try {
+                                if (sound != null) {
+                                    mUtilsPlaySound.DoPlaySound(pack.GetFileDescriptor(), sound.mOffset, sound.mLength, isRunning);
+                                }
+                                else {
+                                    mUtilsPlaySound.DoPlaySound(fileName, isRunning);
+                                }
+                            } catch (IOException e) {
+                                LOGGER.e("content pack sound : " + e);
+                            }
                         }
                     }
                 }
@@ -423,6 +460,15 @@ public class AIScoreEnglish {
         }
     }
 
+    /**
+     * 현재 페이지의 기준 이미지들을 캐시에 읽어둔다. (AIScoreManager 에서 BeginPage() 후 호출)
+     * 영어는 IMAGE_MATCHING 채점(doImageKeyPointMatching)을 사용하지 않으므로 현재 읽을 것이 없음.
+     * @param coverIndex
+     * @param pageIndex
+     */
+    public void PreloadReferences(int coverIndex, int pageIndex) {
+    }
+
     /**
      * doImageKeyPointMatching
      *
@@ -435,19 +481,18 @@ public class AIScoreEnglish {
      */
     private void doImageKeyPointMatching(Mat alignedMat, Rect rect, String targetFilePath, int index) {
         LOGGER.d("doImageKeyPointMatching : "+targetFilePath);
-        //원본 이미지 가져오기
-        Mat targetMat = imread(targetFilePath);
+        //원본 이미지 가져오기 (500x500, Gray Scale 로 미리 변환되어 있음. DoImageKeyPointMatch 는 target 을 복사해서 사용함)
+        Mat targetMat = mReferenceImages.Get(targetFilePath, AIScoreReferenceImageCache.Variant.KEYPOINT_GRAY_500);
+        if( targetMat == null ) {
+            return;
+        }
 
-        //입력 영상의 처리할 영상 Crop하여 원본이미지 사이지로 변경
+        //입력 영상의 처리할 영상 Crop하여 target 과 같은 크기로 변경
         Mat cropInputMat = new Mat(alignedMat, rect).clone();
-        resize(cropInputMat, cropInputMat, targetMat.size());
-
         resize(cropInputMat, cropInputMat, new Size(500, 500));
-        resize(targetMat, targetMat, new Size(500, 500));
 
-        //각각 Gray Scale로 변경
+        //Gray Scale로 변경
         cvtColor(cropInputMat, cropInputMat, COLOR_RGBA2GRAY);
-        cvtColor(targetMat, targetMat, COLOR_RGB2GRAY);
 
         mImageProcessKeyPointMatch.DoImageKeyPointMatch(cropInputMat, targetMat, index);
     }
@@ -772,17 +817,17 @@ public class AIScoreEnglish {
         cropInputMat.release();
     }
 
-    private void doTextScoring(int in_serialNumber, int in_isMultiRecognition, String in_recognizedText) {
+    private void doTextScoring(int in_serialNumber, OCRRecognitionResult in_result) {
         AIScoreReferenceDB.DataBase db = mDataBase.get(in_serialNumber);
-        mAIScoreFunc.DoTextScoring(db, in_isMultiRecognition, in_recognizedText);
-        LOGGER.d("SallyRecog doTextScoring() savedAnswer = " + mDataBase.get(in_serialNumber).mSaveAnswer);
+        mAIScoreFunc.DoTextScoring(db, in_result);
+        LOGGER.d("SallyRecog doTextScoring() isCorrect = " + db.mIsCorrect);
         // 화면에 채점 표시 : 버튼 클릭시 표시 하도록 바꿨기 때문에 아래 코드 주석처리함. 210915
         // DrawStickerAndGradingForText(in_serialNumber);
 
         // DoTextScoring() 에서 저장한 결과대로 파일에 기록한다.
         // DoProcess 루틴이 끝난 후일 수 있으므로 한 번 더 저장하는 것임.
         // 집단채점 결과를 그대로 적으면 공백때문에 다음에 앱을 열었을때 result.txt 파싱하다 죽으므로 공백 없이 답 저장.
-        mAIScoreReferenceDB.WriteAIScoreResult("english");
+        writeAIScoreResult();
 
     }
 
@@ -817,14 +862,13 @@ public class AIScoreEnglish {
         @Override
         public void onRecogResultListener(Message msg) {
             if(msg.what == MSG_REQUEST_TEXT_SCORING) {
-                String resultString = msg.obj.toString();
+                OCRRecognitionResult result = (OCRRecognitionResult) msg.obj;
                 int serialNumber = msg.arg1 % 100;
-                int isMultiRecognition = msg.arg2;
 
-                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", ResultString : " + resultString);
+                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", Result : " + result);
                 // 어떤 페이지의 어느 위치의 텍스트 인식인지는 serialNumber로 알 수 있음. db의 인덱스와 일치함.
 
-                doTextScoring(serialNumber, isMultiRecognition, resultString);
+                doTextScoring(serialNumber, result);
 
                 // 인식된 개수를 카운팅.
                 mRecognitionDoneCnt++;
@@ -852,4 +896,15 @@ public class AIScoreEnglish {
             return false;
         }
     }
+
+    /**
+     * 채점 결과를 저널에 기록한다. 기록하지 못하면 로그만 남기고 채점은 계속함.
+     */
+    private void writeAIScoreResult() {
+        try {
+            mAIScoreReferenceDB.WriteAIScoreResult("english");
+        } catch (IOException e) {
+            LOGGER.e(e, "english result journal");
+        }
+    }
 }
@@ -13,6 +13,8 @@ import com.ispd.mommybook.imageprocess.ImageProcessSubtraction;
 import com.ispd.mommybook.motion.MotionHandTrackingManager;
 import com.ispd.mommybook.ocr.OCRManager;
 import com.ispd.mommybook.ocr.OCRRecognitionMode;
+import com.ispd.mommybook.ocr.recognition.OCRRecognitionResult;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 import com.ispd.mommybook.utils.UtilsPlaySound;
 
@@ -21,6 +23,7 @@ import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 import org.opencv.core.Size;
 
+import java.io.IOException;
 import java.util.List;
 
 import static com.ispd.mommybook.MainHandlerMessages.DRAW_AISCORE;
@@ -50,17 +53,21 @@ public class AIScoreKorean {
     private Handler mMainHandler = null;
     private AIScoreView mAIScoreView = null;
 
-    private AIScoreReferenceDB mAIScoreReferenceDB = new AIScoreReferenceDB();
+    private AIScoreReferenceDB mAIScoreReferenceDB = null;
     private List<AIScoreReferenceDB.DataBase> mDataBase;
 
     private int mPreviewWidth = MainActivity.gCameraPreviewWidth;
     private int mPreviewHeight = MainActivity.gCameraPreviewHeight;
 
+    // 채점 영역 변화 감지 (과목 공용). 바뀐 영역과 아직 채점되지 않은 영역만 채점함.
+    private final AIScoreChangeDetector mChangeDetector;
+
     private int mPreviewRenderWidth = MainActivity.gPreviewRenderWidth;
     private int mPreviewRenderHeight = MainActivity.gPreviewRenderHeight;
 
     private ImageProcessSubtraction mImageProcessSubtraction = null;
     private ImageProcessKeyPointMatch mImageProcessKeyPointMatch = null;
+    private AIScoreReferenceImageCache<Mat> mReferenceImages = null;
 
     private boolean mTouchPressed = false;
 
@@ -88,13 +95,19 @@ public class AIScoreKorean {
      *
      * @param handler
      * @param scoreView
+     * @param referenceImages 이미지 비교 기준 이미지 캐시 (과목 공용)
+     * @param changeDetector 채점 영역 변화 감지 (과목 공용)
      *
      * 문자인식, 이미지 매칭, 이미지 비교 등 선언
      */
-    public AIScoreKorean(Context context, Handler handler, AIScoreView scoreView) {
+    public AIScoreKorean(Context context, Handler handler, AIScoreView scoreView,
+                         AIScoreReferenceImageCache<Mat> referenceImages, AIScoreChangeDetector changeDetector) {
         mContext = context;
         mMainHandler = handler;
         mAIScoreView = scoreView;
+        mReferenceImages = referenceImages;
+        mChangeDetector = changeDetector;
+        mAIScoreReferenceDB = AIScoreReferenceDB.GetInstance(context);
 
         mImageProcessSubtraction = new ImageProcessSubtraction();
         mImageProcessKeyPointMatch = new ImageProcessKeyPointMatch();
@@ -217,6 +230,8 @@ public class AIScoreKorean {
      * 현재 책과 페이지 정보로 DB에서 할일 가져와서 진행
      */
     public void DoProcess(Mat saveAlignedMat, Mat alignedMat, int coverIndex, int pageIndex, int aiScoreResultOn, int processCount) {
+        // 페이지가 바뀌면 이전 페이지의 인식 결과 캐시를 비움.
+        mOCRManager.SetPage(coverIndex, pageIndex);
 //        mIsDoProcessDone = false;  //SetDoProcessFlagOn() 함수에서 셋팅함.
         mPageIndex  = pageIndex;
 
@@ -232,6 +247,11 @@ public class AIScoreKorean {
         //할일 순서대로 진행
         //왼쪽 페이지부터 좌, 우, 아래 순서대로 진행
         for(int i = 0; i < mDataBase.size(); i++) {
+            if(!mChangeDetector.NeedsGrading(i, mDataBase)) {
+                LOGGER.d("index : " + i + " - region is not changed. reuse previous result.");
+                continue;
+            }
+            int ocrDataSize = mOCRManager.GetOCRDataSize();
 
             LOGGER.d("[processCount] mDataBase.get(i).mMethod : "+mDataBase.get(i).mMethod);
 
@@ -274,6 +294,7 @@ public class AIScoreKorean {
                             addTextRecognitionData(alignedMat, cropRect, i, TYPO_NUM_SIGN);
                         }
                     }
+                    mChangeDetector.MarkGraded(i, mOCRManager.GetOCRDataSize() > ocrDataSize);
                 } //end of if (mOCRManager.IsRecognitonDone() == true)
                 else {
                     LOGGER.d("SallyRecog skip RecogData Add ++++++++++++++++++++++++++");
@@ -297,6 +318,7 @@ public class AIScoreKorean {
                     //doImageKeyPointMatching(alignedMat, new Rect(x, y, w, h), targetPath, i);
                     //문자 동그라미 페이지-수학의 시계 동그라미 알아내는 방식으로 시도-2
                     doImageSubtractWithFirstFrame(saveAlignedMat, alignedMat, new Rect(x, y, w, h), pageIndex, i, aiScoreResultOn, processCount);
+                    mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
                 }
             }
             else if(mDataBase.get(i).mMethod == IMAGE_SUBTRACT) {
@@ -315,6 +337,7 @@ public class AIScoreKorean {
 
                 //문자 동그라미 페이지-키포인트 매칭해서 빼기인데, 키포인트가 불안하면 안좋음. 시도-1
                 doImageKeyPointMatchingNSubtract(alignedMat, new Rect(x, y, w, h), targetPath, i);
+                mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
             }
             else if(mDataBase.get(i).mMethod == IMAGE_BUTTON) {
                 //do button activity
@@ -327,6 +350,7 @@ public class AIScoreKorean {
                 int h = (int)(mDataBase.get(i).mH * (float)(alignedMat.rows()-10*4*alignedMat.rows()/mPreviewHeight));//책의 아래 40픽셀이 떠 있음
 
                 askTeacherToGrade(alignedMat, new Rect(x, y, w, h), i);
+                mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
             }
         }
         // 문자인식 채점 데이터가 있다면 문자인식 시작하라고 요청하기
@@ -336,7 +360,7 @@ public class AIScoreKorean {
             mIsOCRDone = false;
             mOCRManager.StartRecognitonDetection();
         }
-        mAIScoreReferenceDB.WriteAIScoreResult("korean");
+        writeAIScoreResult();
         mIsDoProcessDone = true;
     }
 
@@ -378,6 +402,20 @@ public class AIScoreKorean {
         return mTouchPressed;
     }
 
+    /**
+     * 현재 페이지의 이미지 비교 기준 이미지들을 캐시에 읽어둔다. (AIScoreManager 에서 BeginPage() 후 호출)
+     * @param coverIndex
+     * @param pageIndex
+     */
+    public void PreloadReferences(int coverIndex, int pageIndex) {
+        List<AIScoreReferenceDB.DataBase> dataBase = mAIScoreReferenceDB.GetAIScoreMethod(coverIndex, pageIndex);
+        for(int i = 0; i < dataBase.size(); i++) {
+            if( dataBase.get(i).mMethod == IMAGE_SUBTRACT && dataBase.get(i).mImagePath != null ) {
+                mReferenceImages.Preload(dataBase.get(i).mImagePath, AIScoreReferenceImageCache.Variant.KEYPOINT_GRAY_X4);
+            }
+        }
+    }
+
     /**
      * doImageSubtract
      *
@@ -390,18 +428,21 @@ public class AIScoreKorean {
      */
     private void doImageSubtract(Mat alignedMat, Rect rect, String targetFilePath, int index) {
         LOGGER.d("doImageSubtract : "+targetFilePath);
-        //원본 이미지 가져오기
-        Mat targetMat = imread(targetFilePath);
+        //원본 이미지 Gray Scale로 가져오기 (DoImageSubtractCircle 이 target 을 바꾸므로 복사)
+        Mat grayTargetMat = mReferenceImages.Get(targetFilePath, AIScoreReferenceImageCache.Variant.GRAY);
+        if( grayTargetMat == null ) {
+            return;
+        }
+        Mat targetMat = grayTargetMat.clone();
 
         //입력 영상의 처리할 영상 Crop하여 원본이미지 사이지로 변경
         Mat cropInputMat = new Mat(alignedMat, rect).clone();
         resize(cropInputMat, cropInputMat, targetMat.size());
 
-        //각각 Gray Scale로 변경
+        //Gray Scale로 변경
         cvtColor(cropInputMat, cropInputMat, COLOR_RGBA2GRAY);
-        cvtColor(targetMat, targetMat, COLOR_RGB2GRAY);
 
-        imwrite("/sdcard/studyNet/DEBUG/cropInputMat-"+index+".jpg", cropInputMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/cropInputMat-"+index+".jpg", cropInputMat);
 
         mImageProcessSubtraction.DoImageSubtractCircle(cropInputMat, targetMat, index);
     }
@@ -436,8 +477,8 @@ public class AIScoreKorean {
             Mat cropInputMat2 = new Mat(cropInputMat, new Rect(0 + cropInputMat.cols() * i / 2, 0, cropInputMat.cols() / 2, cropInputMat.rows())).clone();
             Mat targetMat2 = new Mat(targetMat, new Rect(0 + targetMat.cols() * i / 2, 0, targetMat.cols() / 2, targetMat.rows())).clone();
 
-            imwrite("/sdcard/studyNet/DEBUG/korean/"+itemIndex+"-cropInputMat2-"+i+".jpg", cropInputMat2);
-            imwrite("/sdcard/studyNet/DEBUG/korean/"+itemIndex+"-targetMat2-"+i+".jpg", targetMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/korean/"+itemIndex+"-cropInputMat2-"+i+".jpg", cropInputMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/korean/"+itemIndex+"-targetMat2-"+i+".jpg", targetMat2);
 
             changeRate[i] = JniController.findCircle(cropInputMat2.getNativeObjAddr(), targetMat2.getNativeObjAddr(), i, itemIndex, 0);
 
@@ -498,9 +539,11 @@ public class AIScoreKorean {
             return;
         }
 
-        //원본 이미지 가져오기
-        Mat targetMat = new Mat();
-        targetMat = imread(targetFilePath);
+        //원본 이미지 가져오기 (4배 확대, Gray Scale 로 미리 변환되어 있음. DoImageKeyPointMatch 는 target 을 복사해서 사용함)
+        Mat targetMat = mReferenceImages.Get(targetFilePath, AIScoreReferenceImageCache.Variant.KEYPOINT_GRAY_X4);
+        if( targetMat == null ) {
+            return;
+        }
 
         //입력 영상의 처리할 영상 Crop하여 원본이미지 사이지로 변경
         Mat cropInputMat = new Mat();
@@ -509,11 +552,9 @@ public class AIScoreKorean {
         LOGGER.d("cropInputMat : "+cropInputMat.size()+", targetMat : "+targetMat.size());
 
         resize(cropInputMat, cropInputMat, new Size(cropInputMat.cols()*4, cropInputMat.rows()*4), INTER_CUBIC);
-        resize(targetMat, targetMat, new Size(targetMat.cols()*4, targetMat.rows()*4), INTER_CUBIC);
 
-        //각각 Gray Scale로 변경
+        //Gray Scale로 변경
         cvtColor(cropInputMat, cropInputMat, COLOR_RGB2GRAY);
-        cvtColor(targetMat, targetMat, COLOR_RGB2GRAY);
 
         int correctLocation = mDataBase.get(index).mImageSubtractLocation.value();
         int detectedLocation = mImageProcessKeyPointMatch.DoImageKeyPointMatch(cropInputMat, targetMat, index);
@@ -564,7 +605,12 @@ public class AIScoreKorean {
         //원본 이미지 Gray Scale로 가져오기
         String fileName = "/sdcard/studyNet/DB/korean/sticker/"+pageIndex+"-"+(itemIndex+1)+".png";
         LOGGER.d("[checkStickerOn] fileName : "+fileName);
-        Mat targetMat = imread(fileName, IMREAD_GRAYSCALE);
+        Mat stickerMat = mReferenceImages.Get(fileName, AIScoreReferenceImageCache.Variant.STICKER_GRAY);
+        if( stickerMat == null ) {
+            return false;
+        }
+        //DoImageSubtract 가 target 을 바꾸므로 복사
+        Mat targetMat = stickerMat.clone();
         LOGGER.d("[checkStickerOn] targetMat : "+targetMat.size());
 
         //입력 영상의 처리할 영상 Crop하여 원본이미지 사이지로 변경
@@ -683,17 +729,17 @@ public class AIScoreKorean {
         cropInputMat.release();
     }
 
-    private void doTextScoring(int in_serialNumber, int in_isMultiRecognition, String in_recognizedText) {
+    private void doTextScoring(int in_serialNumber, OCRRecognitionResult in_result) {
         AIScoreReferenceDB.DataBase db = mDataBase.get(in_serialNumber);
-        mAIScoreFunc.DoTextScoring(db, in_isMultiRecognition, in_recognizedText);
-        LOGGER.d("SallyRecog doTextScoring() savedAnswer = " + mDataBase.get(in_serialNumber).mSaveAnswer);
+        mAIScoreFunc.DoTextScoring(db, in_result);
+        LOGGER.d("SallyRecog doTextScoring() isCorrect = " + db.mIsCorrect);
 
         // 화면에 채점 표시 : 버튼 클릭시 표시 하도록 바꿨기 때문에 아래 코드 주석처리함. 210915
         // DrawStickerAndGradingForText(in_serialNumber);
 
         // DoTextScoring() 에서 저장한 결과대로 파일에 기록한다.
         // DoProcess 루틴이 끝난 후일 수 있으므로 한 번 더 저장하는 것임.
-        mAIScoreReferenceDB.WriteAIScoreResult("korean");
+        writeAIScoreResult();
     }
 
     public List<AIScoreReferenceDB.DataBase> GetDB(int coverIndex, int pageIndex) {
@@ -734,14 +780,13 @@ public class AIScoreKorean {
         @Override
         public void onRecogResultListener(Message msg) {
             if(msg.what == MSG_REQUEST_TEXT_SCORING) {
-                String resultString = msg.obj.toString();
+                OCRRecognitionResult result = (OCRRecognitionResult) msg.obj;
                 int serialNumber = msg.arg1 % 100;
-                int isMultiRecognition = msg.arg2;
 
-                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", ResultString : " + resultString);
+                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", Result : " + result);
                 // 어떤 페이지의 어느 위치의 텍스트 인식인지는 serialNumber로 알 수 있음. db의 인덱스와 일치함.
 
-                doTextScoring(serialNumber, isMultiRecognition, resultString);
+                doTextScoring(serialNumber, result);
 
                 // 인식된 개수를 카운팅.
                 mRecognitionDoneCnt++;
@@ -784,4 +829,15 @@ public class AIScoreKorean {
             return false;
         }
     }
+
+    /**
+     * 채점 결과를 저널에 기록한다. 기록하지 못하면 로그만 남기고 채점은 계속함.
+     */
+    private void writeAIScoreResult() {
+        try {
+            mAIScoreReferenceDB.WriteAIScoreResult("korean");
+        } catch (IOException e) {
+            LOGGER.e(e, "korean result journal");
+        }
+    }
 }
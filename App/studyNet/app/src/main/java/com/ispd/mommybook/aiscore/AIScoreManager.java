@@ -20,7 +20,7 @@ import com.ispd.mommybook.R;
 import com.ispd.mommybook.activities.ActivitiesManager;
 import com.ispd.mommybook.motion.MotionHandTrackingManager;
 import com.ispd.mommybook.motion.MotionMovingDetect;
-import com.ispd.mommybook.ocr.recognition.OCRRecognition;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 import com.ispd.mommybook.utils.UtilsPlaySound;
 
@@ -28,6 +28,8 @@ import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import pl.droidsonroids.gif.GifImageView;
@@ -85,7 +87,14 @@ public class AIScoreManager {
     private Mat mAlignedMat = new Mat();
     private Mat mSaveAlignedMat = new Mat();
 
-    private AIScoreReferenceDB mAIScoreReferenceDB = new AIScoreReferenceDB();
+    private AIScoreReferenceDB mAIScoreReferenceDB = null;
+    // 국어, 수학, 영어가 같이 사용하는 채점 기준 이미지 캐시
+    private AIScoreReferenceImageLoader mReferenceImageLoader = new AIScoreReferenceImageLoader();
+    private AIScoreReferenceImageCache<Mat> mReferenceImages =
+            new AIScoreReferenceImageCache<>(mReferenceImageLoader, AIScoreReferenceImageCache.DEFAULT_MAX_BYTES);
+    // 설치된 책 콘텐츠 팩. 표지를 찾은 책의 팩만 열어서 사용함.
+    private AIScoreContentPackStore mContentPacks = new AIScoreContentPackStore(new File(AIScoreContentPackStore.PACK_ROOT));
+    private AIScoreChangeDetector mChangeDetector = new AIScoreChangeDetector();
     private List<AIScoreReferenceDB.DataBase> mDataBase;
 
     private Thread mAIScoreThread = null;
@@ -127,6 +136,10 @@ public class AIScoreManager {
 
         mContext = context;
         mMainHandler = handler;
+        // 국어, 수학, 영어와 같은 정답지(채점 상태)를 사용함.
+        mAIScoreReferenceDB = AIScoreReferenceDB.GetInstance(context);
+        // 팩 파일 이름만 읽음. 팩은 표지를 찾았을 때 엶.
+        LOGGER.d("installed content packs : " + mContentPacks.Scan());
 
         mHandlerThread = new HandlerThread("AIScoreManager");
         mHandlerThread.start();
@@ -143,9 +156,9 @@ public class AIScoreManager {
                 return false;
             }
         });
-        mAIScoreKorean = new AIScoreKorean(mContext, mMainHandler, mAIScoreView);
-        mAIScoreMath = new AIScoreMath(mContext, mMainHandler, mAIScoreView);
-        mAIScoreEnglish = new AIScoreEnglish(mContext, mMainHandler, mAIScoreView);
+        mAIScoreKorean = new AIScoreKorean(mContext, mMainHandler, mAIScoreView, mReferenceImages, mChangeDetector);
+        mAIScoreMath = new AIScoreMath(mContext, mMainHandler, mAIScoreView, mReferenceImages, mChangeDetector);
+        mAIScoreEnglish = new AIScoreEnglish(mContext, mMainHandler, mAIScoreView, mReferenceImages, mChangeDetector);
 
         mAIScoreUtils1 = new AIScoreUtils();
         mAIScoreUtils2 = new AIScoreUtils();
@@ -273,7 +286,20 @@ public class AIScoreManager {
             }
         }
 
+        useContentPack(coverIndex);
         mDataBase = mAIScoreReferenceDB.GetAIScoreMethod(coverIndex, pageIndex);
+
+        // 페이지가 정해지면 채점에 사용할 기준 이미지를 미리 읽어둠. 채점 중에는 기준 이미지 파일을 읽지 않음.
+        mReferenceImages.BeginPage(coverIndex, pageIndex);
+        if (coverIndex == 0) {
+            mAIScoreKorean.PreloadReferences(coverIndex, pageIndex);
+        } else if (coverIndex == 1) {
+            mAIScoreMath.PreloadReferences(coverIndex, pageIndex);
+        } else if (coverIndex == 2) {
+            mAIScoreEnglish.PreloadReferences(coverIndex, pageIndex);
+        }
+        LOGGER.d("reference images : " + mReferenceImages.GetReport());
+
         for(int i = 0; i < mDataBase.size(); i++) {
             if(mDataBase.get(i).mMethod == TEXT_RECOGNITION_WORD ||
                mDataBase.get(i).mMethod == TEXT_RECOGNITION_SENTENCE ||
@@ -489,15 +515,20 @@ public class AIScoreManager {
         LOGGER.d("DoAiScoreByCaptureMat");
 
         mAlignedMat = mAIScoreUtils2.DoImageAlignment(capturedInputMat);
-        imwrite("/sdcard/studyNet/DEBUG/mAlignedMat.jpg", mAlignedMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.ALIGNMENT, "/sdcard/studyNet/DEBUG/mAlignedMat.jpg", mAlignedMat);
 
         if( aiScoreSaveFrame == 1 ) {
             mSaveAlignedMat = mAlignedMat.clone();
-            imwrite("/sdcard/studyNet/DEBUG/math/mSaveAlignedMat.jpg", mSaveAlignedMat);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.ALIGNMENT, "/sdcard/studyNet/DEBUG/math/mSaveAlignedMat.jpg", mSaveAlignedMat);
             mSaveFirstFrameStarted = false;
             return;
         }
 
+        // 마지막으로 채점한 캡처와 비교해서 내용이 바뀐 영역을 찾음. 각 과목은 바뀐 영역만 다시 채점하고,
+        // 바뀌지 않은 영역은 DB 에 저장된 이전 채점 결과를 그대로 사용함.
+        mChangeDetector.Update(mAlignedMat, coverIndex, pageIndex,
+                mAIScoreReferenceDB.GetAIScoreMethod(coverIndex, pageIndex), mPreviewHeight);
+
         Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
@@ -632,36 +663,11 @@ public class AIScoreManager {
                             (touchY >= y) && (touchY < (y + h))) {
                         //터치 입력이 채점 영역 내부이면 채점 결과 가져오기
                         //채점 결과를 AIScoreMultiScoringInfo 에 저장
-                        String result[] = db.get(i).mSaveAnswer.split(OCRRecognition.TEXT_SEPARATOR);
-                        for(int ii=0; ii < result.length; ii++) {
-                            LOGGER.d("SallyRecog DisplayMultiScoringResult() ["+ii+"] = " + result[ii]);
-                        }
-                        if(result[0].contains("MULTI")) { //손글씨 모드이지만 집단채점을 안하는 경우도 있으므로 MULTI인지를 확인해야함.
-                            int score[] = {0,0,0};
-                            String answer[] = {"","",""};
-                            boolean isCorrect = false;
-
-                            answer[0] = result[1];
-                            answer[1] = result[3];
-                            answer[2] = result[5];
-                            score[0] = Integer.parseInt(result[2]);
-                            score[1] = Integer.parseInt(result[4]);
-                            score[2] = Integer.parseInt(result[6]);
-
-                            // 집단채점 중 100점인 결과는 실제 정답(대소문자 구분되고 띄어쓰기 있는 답)을 화면에 표시하도록 함.
-                            for(int j = 0; j < 3; j++) {
-                                if(score[j] == 100) {
-                                    answer[j] = db.get(i).mAnswerText;
-                                }
-                                else{ //틀린 답의 경우엔 어떻게 하지..TODO
-
-                                }
-                            }
-
-                            AIScoreMultiScoringInfo scoringData =
-                                    new AIScoreMultiScoringInfo(answer, score, isCorrect, (int)x, (int)y, (int)w, (int)h);
-                            LOGGER.d("SallyRecog DisplayMultiScoringResult() answer : " + answer[0] + " " + answer[1] + " " +answer[2]);
-                            LOGGER.d("SallyRecog DisplayMultiScoringResult() score : " + score[0] + " " + score[1] + " " +score[2]);
+                        AIScoreMultiScoringInfo scoringData =
+                                makeMultiScoringInfo(db.get(i), (int)x, (int)y, (int)w, (int)h);
+                        if(scoringData != null) { //손글씨 모드이지만 집단채점을 안하는 경우도 있으므로 집단채점 결과인지를 확인해야함.
+                            LOGGER.d("SallyRecog DisplayMultiScoringResult() answer : " + scoringData.GetRecogResult(0) + " " + scoringData.GetRecogResult(1) + " " + scoringData.GetRecogResult(2));
+                            LOGGER.d("SallyRecog DisplayMultiScoringResult() score : " + scoringData.GetScore(0) + " " + scoringData.GetScore(1) + " " + scoringData.GetScore(2));
                             LOGGER.d("SallyRecog DisplayMultiScoringResult() x, y, w, h : " + x + ", "
                                     + y + ", " + w + ", " + h);
 
@@ -713,42 +719,17 @@ public class AIScoreManager {
 
 
                         //채점 결과를 AIScoreMultiScoringInfo 에 저장
-                        String result[] = db.get(i).mSaveAnswer.split(OCRRecognition.TEXT_SEPARATOR);
-                        for(int ii=0; ii < result.length; ii++) {
-                            LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() ["+ii+"] = " + result[ii]);
-                        }
-                        if(result[0].contains("MULTI")) { //손글씨 모드이지만 집단채점을 안하는 경우도 있으므로 MULTI인지를 확인해야함.
-                            int score[] = {0,0,0};
-                            String answer[] = {"","",""};
-                            boolean isCorrect = false;
-
-                            answer[0] = result[1];
-                            answer[1] = result[3];
-                            answer[2] = result[5];
-                            score[0] = Integer.parseInt(result[2]);
-                            score[1] = Integer.parseInt(result[4]);
-                            score[2] = Integer.parseInt(result[6]);
-
-                            // 집단채점 중 100점인 결과는 실제 정답(대소문자 구분되고 띄어쓰기 있는 답)을 화면에 표시하도록 함.
-                            for(int j = 0; j < 3; j++) {
-                                if(score[j] == 100) {
-                                    answer[j] = db.get(i).mAnswerText;
-                                }
-                                else{ //틀린 답의 경우엔 어떻게 하지..TODO
-
-                                }
-                            }
-
-                            // 손 좌표를 그대로 이용하면 안되고 Preview Render 사이즈 기준으로 변경 후 그리는 루틴에 전달해야함.
-                            float xx = (db.get(i).mX * (float) gPreviewRenderWidth);
-                            float yy = (db.get(i).mY * (float) gPreviewRenderHeight);
-                            float ww = (db.get(i).mW * (float) gPreviewRenderWidth);
-                            float hh = (db.get(i).mH * (float) gPreviewRenderHeight);
-
-                            AIScoreMultiScoringInfo scoringData =
-                                    new AIScoreMultiScoringInfo(answer, score, isCorrect, (int)xx, (int)yy, (int)ww, (int)hh);
-                            LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() answer : " + answer[0] + " " + answer[1] + " " +answer[2]);
-                            LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() score : " + score[0] + " " + score[1] + " " +score[2]);
+                        // 손 좌표를 그대로 이용하면 안되고 Preview Render 사이즈 기준으로 변경 후 그리는 루틴에 전달해야함.
+                        float xx = (db.get(i).mX * (float) gPreviewRenderWidth);
+                        float yy = (db.get(i).mY * (float) gPreviewRenderHeight);
+                        float ww = (db.get(i).mW * (float) gPreviewRenderWidth);
+                        float hh = (db.get(i).mH * (float) gPreviewRenderHeight);
+
+                        AIScoreMultiScoringInfo scoringData =
+                                makeMultiScoringInfo(db.get(i), (int)xx, (int)yy, (int)ww, (int)hh);
+                        if(scoringData != null) { //손글씨 모드이지만 집단채점을 안하는 경우도 있으므로 집단채점 결과인지를 확인해야함.
+                            LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() answer : " + scoringData.GetRecogResult(0) + " " + scoringData.GetRecogResult(1) + " " + scoringData.GetRecogResult(2));
+                            LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() score : " + scoringData.GetScore(0) + " " + scoringData.GetScore(1) + " " + scoringData.GetScore(2));
                             LOGGER.d("SallyRecog DisplayMultiScoringResultByHand() x, y, w, h : " + xx + ", "
                                     + yy + ", " + ww + ", " + hh);
 
@@ -767,6 +748,28 @@ public class AIScoreManager {
         }
     }
 
+    /**
+     * 집단채점 결과를 화면에 표시할 정보로 만든다. DB 에 저장된 채점 결과를 그대로 사용함.
+     * @return 집단채점 결과가 없으면 null
+     */
+    private AIScoreMultiScoringInfo makeMultiScoringInfo(AIScoreReferenceDB.DataBase in_db, int x, int y, int w, int h) {
+        AIScoreTextScoringResult scoring = in_db.mTextScoring;
+        if(scoring == null || !scoring.IsMultiModel()) {
+            return null;
+        }
+        // 조기 종료된 결과는 실행한 모델의 결과만 표시함.
+        int modelCount = Math.min(3, scoring.GetModelCount());
+        int score[] = new int[modelCount];
+        String answer[] = new String[modelCount];
+        boolean isCorrect = false;
+        for(int j = 0; j < modelCount; j++) {
+            score[j] = scoring.GetScore(j);
+            // 집단채점 중 100점인 결과는 실제 정답(대소문자 구분되고 띄어쓰기 있는 답)을 화면에 표시하도록 함.
+            answer[j] = score[j] == 100 ? in_db.mAnswerText : scoring.GetText(j);
+        }
+        return new AIScoreMultiScoringInfo(answer, score, isCorrect, x, y, w, h);
+    }
+
     public void ClearSticker() {
         mAIScoreView.ResetBitmap();
 
@@ -846,6 +849,33 @@ public class AIScoreManager {
         return mIsGradingAllDone;
     }
 
+    /**
+     * 표지의 책에 설치된 콘텐츠 팩이 있으면 열어서 정답지와 기준 이미지를 팩에서 가져오게 한다.
+     * 다른 책의 팩이 열려 있으면 닫음. 같은 책이면 아무것도 하지 않음.
+     */
+    private void useContentPack(int coverIndex) {
+        AIScoreAnswerKey answerKey = mAIScoreReferenceDB.GetAnswerKey();
+        AIScoreContentPack pack = null;
+        if (coverIndex >= 0 && coverIndex < answerKey.GetBookCount()) {
+            try {
+                pack = mContentPacks.Open(answerKey.GetBookName(coverIndex));
+            } catch (IOException e) {
+                LOGGER.e(e, "failed to open content pack : " + answerKey.GetBookName(coverIndex));
+            }
+        }
+        if (pack != mReferenceImageLoader.GetContentPack()) {
+            LOGGER.d("content pack : " + (pack != null ? pack.GetFile() + ", entries : " + pack.GetEntryCount() : "none"));
+            // 같은 경로의 이미지가 팩과 파일에서 다를 수 있으므로 캐시를 비움.
+            mReferenceImages.Clear();
+            mReferenceImageLoader.SetContentPack(pack);
+        }
+        try {
+            mAIScoreReferenceDB.UseContentPack(coverIndex, pack);
+        } catch (IOException e) {
+            LOGGER.e(e, "content pack result journal");
+        }
+    }
+
     public void SetCurrentCoverAndPage(int coverIdx, int pageIdx) {
         mCoverIndex = coverIdx;
         mPageIndex = pageIdx;
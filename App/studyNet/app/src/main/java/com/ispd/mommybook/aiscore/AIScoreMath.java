@@ -12,6 +12,8 @@ import com.ispd.mommybook.imageprocess.ImageProcessKeyPointMatch;
 import com.ispd.mommybook.imageprocess.ImageProcessSubtraction;
 import com.ispd.mommybook.ocr.OCRManager;
 import com.ispd.mommybook.ocr.OCRRecognitionMode;
+import com.ispd.mommybook.ocr.recognition.OCRRecognitionResult;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.core.Mat;
@@ -23,6 +25,7 @@ import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.videoio.VideoCapture;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -61,18 +64,22 @@ public class AIScoreMath {
     private Handler mMainHandler = null;
     private AIScoreView mAIScoreView = null;
 
-    private AIScoreReferenceDB mAIScoreReferenceDB = new AIScoreReferenceDB();
+    private AIScoreReferenceDB mAIScoreReferenceDB = null;
     private List<AIScoreReferenceDB.DataBase> mDataBase;
 
     private int mPreviewWidth = MainActivity.gCameraPreviewWidth;
     private int mPreviewHeight = MainActivity.gCameraPreviewHeight;
 
+    // 채점 영역 변화 감지 (과목 공용). 바뀐 영역과 아직 채점되지 않은 영역만 채점함.
+    private final AIScoreChangeDetector mChangeDetector;
+
     private int mPreviewRenderWidth = MainActivity.gPreviewRenderWidth;
     private int mPreviewRenderHeight = MainActivity.gPreviewRenderHeight;
 
     private ImageProcessSubtraction mImageProcessSubtraction = null;
     private ImageProcessKeyPointMatch mImageProcessKeyPointMatch = null;
     private ImageClassifierManager mImageClassifierManager = null;
+    private AIScoreReferenceImageCache<Mat> mReferenceImages = null;
     private float mCropDatas[];
 
     private int mPageIndex = -1;
@@ -107,13 +114,19 @@ public class AIScoreMath {
      *
      * @param handler
      * @param scoreView
+     * @param referenceImages 이미지 비교 기준 이미지 캐시 (과목 공용)
+     * @param changeDetector 채점 영역 변화 감지 (과목 공용)
      *
      * 문자인식, 이미지 매칭, 이미지 비교 등 선언
      */
-    public AIScoreMath(Context context, Handler handler, AIScoreView scoreView) {
+    public AIScoreMath(Context context, Handler handler, AIScoreView scoreView,
+                       AIScoreReferenceImageCache<Mat> referenceImages, AIScoreChangeDetector changeDetector) {
         mContext = context;
         mMainHandler = handler;
         mAIScoreView = scoreView;
+        mReferenceImages = referenceImages;
+        mChangeDetector = changeDetector;
+        mAIScoreReferenceDB = AIScoreReferenceDB.GetInstance(context);
 
         mImageProcessSubtraction = new ImageProcessSubtraction();
         mImageProcessKeyPointMatch = new ImageProcessKeyPointMatch();
@@ -248,6 +261,8 @@ public class AIScoreMath {
      * 현재 책과 페이지 정보로 DB에서 할일 가져와서 진행
      */
     public void DoProcess(Mat saveAlignedMat, Mat alignedMat, int coverIndex, int pageIndex, int aiScoreResultOn, int processCount) {
+        // 페이지가 바뀌면 이전 페이지의 인식 결과 캐시를 비움.
+        mOCRManager.SetPage(coverIndex, pageIndex);
         //        mIsDoProcessDone = false;  //SetDoProcessFlagOn() 함수에서 셋팅함.
         mPageIndex  = pageIndex;
 
@@ -265,6 +280,15 @@ public class AIScoreMath {
         //할일 순서대로 진행
         //왼쪽 페이지부터 좌, 우, 아래 순서대로 진행
         for(int i = 0; i < mDataBase.size(); i++) {
+            if(!mChangeDetector.NeedsGrading(i, mDataBase)) {
+                LOGGER.d("index : " + i + " - region is not changed. reuse previous result.");
+                if(mDataBase.get(i).mMethod == IMAGE_SUBTRACT) {
+                    // mClassCount 는 항목별 누적 배열의 인덱스이므로 건너뛰는 항목도 세어야 함.
+                    mClassCount++;
+                }
+                continue;
+            }
+            int ocrDataSize = mOCRManager.GetOCRDataSize();
             if(mDataBase.get(i).mMethod == TEXT_RECOGNITION_WORD) {
                 if (mOCRManager.IsRecognitonDone() == true && (mRecognitionDoneCnt == 0)) {
                 //do ocr
@@ -300,6 +324,7 @@ public class AIScoreMath {
                             addTextRecognitionData(alignedMat, cropRect, i, TYPO_NUM_SIGN);
                         }
                     }
+                    mChangeDetector.MarkGraded(i, mOCRManager.GetOCRDataSize() > ocrDataSize);
                 } //end of if (mOCRManager.IsRecognitonDone() == true)
                 else {
                     LOGGER.d("SallyRecog skip RecogData Add ++++++++++++++++++++++++++");
@@ -313,6 +338,7 @@ public class AIScoreMath {
 
                 //시계 페이지
                 doImageSubtractWithFirstFrame(saveAlignedMat, alignedMat, new Rect(x, y, w, h), pageIndex, i, aiScoreResultOn, processCount);
+                mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
             }
             else if(mDataBase.get(i).mMethod == IMAGE_SUBTRACT) {
 
@@ -324,6 +350,7 @@ public class AIScoreMath {
 
                 //나비 페이지
                 doImageSubtract(alignedMat, cropRect, pageIndex, i, aiScoreResultOn, processCount);
+                mChangeDetector.MarkGraded(i, mDataBase.get(i).mDoGrading == 1);
                 mClassCount++;
             }
             else if(mDataBase.get(i).mMethod == IMAGE_BUTTON) {
@@ -338,10 +365,28 @@ public class AIScoreMath {
             mOCRManager.StartRecognitonDetection();
         }
 
-        mAIScoreReferenceDB.WriteAIScoreResult("math");
+        writeAIScoreResult();
         mIsDoProcessDone = true;
     }
 
+    /**
+     * 현재 페이지의 이미지 비교 기준 이미지들을 캐시에 읽어둔다. (AIScoreManager 에서 BeginPage() 후 호출)
+     * @param coverIndex
+     * @param pageIndex
+     */
+    public void PreloadReferences(int coverIndex, int pageIndex) {
+        List<AIScoreReferenceDB.DataBase> dataBase = mAIScoreReferenceDB.GetAIScoreMethod(coverIndex, pageIndex);
+        for(int i = 0; i < dataBase.size(); i++) {
+            if( dataBase.get(i).mMethod == IMAGE_SUBTRACT ) {
+                mReferenceImages.Preload(getComparePath(pageIndex, i), AIScoreReferenceImageCache.Variant.CENTER_CROP);
+            }
+        }
+    }
+
+    private static String getComparePath(int pageIndex, int itemIndex) {
+        return "/sdcard/studyNet/DB/math/compare/" + pageIndex + "-" + (itemIndex + 1) + ".png";
+    }
+
     /**
      * doImageSubtract
      *
@@ -358,6 +403,13 @@ public class AIScoreMath {
             return;
         }
 
+        //기준 이미지의 가운데 영역 (페이지가 정해질 때 미리 읽어둠)
+        Mat refCenterMat = mReferenceImages.Get(getComparePath(pageIndex, itemIndex), AIScoreReferenceImageCache.Variant.CENTER_CROP);
+        if( refCenterMat == null ) {
+            return;
+        }
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/refMat" + itemIndex + ".jpg", refCenterMat);
+
         for(int count = 0; count < 2; count++) {
 
             int gapX = rect.width / 5;
@@ -365,10 +417,6 @@ public class AIScoreMath {
 
             Rect newRect = new Rect(rect.x + gapX, rect.y + gapY, rect.width - gapX * 2, rect.height - gapY * 2);
 
-            String fileName = "/sdcard/studyNet/DB/math/compare/" + pageIndex + "-" + (itemIndex + 1) + ".png";
-            Mat refMat = imread(fileName);
-            imwrite("/sdcard/studyNet/DEBUG/math/refMat" + itemIndex + ".jpg", refMat);
-
             Mat cropInputMat = null;
             if( count == 0 ) {
                 cropInputMat = new Mat(alignedMat, newRect).clone();
@@ -377,14 +425,12 @@ public class AIScoreMath {
                 cropInputMat = new Mat(mAlignedMatScndFrame, newRect).clone();
             }
 
-            int gapX2 = refMat.cols() / 5;
-            int gapY2 = refMat.rows() / 5;
-
-            Mat refMat2 = new Mat(refMat, new Rect(0 + gapX2, 0 + gapY2, refMat.cols() - gapX2 * 2, refMat.rows() - gapY2 * 2)).clone();
-            resize(refMat2, refMat2, cropInputMat.size());
+            //캐시의 이미지는 바꾸지 않고 새 Mat 으로 크기 변경
+            Mat refMat2 = new Mat();
+            resize(refCenterMat, refMat2, cropInputMat.size());
 
-            imwrite("/sdcard/studyNet/DEBUG/math/refMat2" + itemIndex + ".jpg", refMat2);
-            imwrite("/sdcard/studyNet/DEBUG/math/cropInputMat" + itemIndex + ".jpg", cropInputMat);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/refMat2" + itemIndex + ".jpg", refMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/cropInputMat" + itemIndex + ".jpg", cropInputMat);
 
             cvtColor(refMat2, refMat2, COLOR_BGR2GRAY);
             cvtColor(cropInputMat, cropInputMat, COLOR_BGR2GRAY);
@@ -419,14 +465,14 @@ public class AIScoreMath {
 
             LOGGER.d(itemIndex + "[doImageSubtract-sum] scalar3 : " + scalar3.val[0]);
 
-            imwrite("/sdcard/studyNet/DEBUG/math/refMatA" + itemIndex + ".jpg", refMat2);
-            imwrite("/sdcard/studyNet/DEBUG/math/cropInputMatA" + itemIndex + ".jpg", cropInputMat);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/refMatA" + itemIndex + ".jpg", refMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/cropInputMatA" + itemIndex + ".jpg", cropInputMat);
 
-            imwrite("/sdcard/studyNet/DEBUG/math/subtractB" + itemIndex + ".jpg", diffMatGo);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/subtractB" + itemIndex + ".jpg", diffMatGo);
             threshold(diffMatGo, diffMatGo, meanValue3, 255, THRESH_BINARY);
             //erode(diffMatGo, diffMatGo, new Mat(), new Point(-1, -1), 3);
             //dilate(diffMatGo, diffMatGo, new Mat(), new Point(-1, -1), 3);
-            imwrite("/sdcard/studyNet/DEBUG/math/subtract" + itemIndex + ".jpg", diffMatGo);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/subtract" + itemIndex + ".jpg", diffMatGo);
 
             List<MatOfPoint> contours = new ArrayList<>();
             Mat hierarchy = new Mat();
@@ -506,7 +552,7 @@ public class AIScoreMath {
 //            mFillRate[mClassCount][processCount] = maxFillRate;
 //            mFillArea[mClassCount][processCount] = maxFillArea;
 
-            imwrite("/sdcard/studyNet/DEBUG/math/drawing" + count + itemIndex + ".jpg", drawing);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/drawing" + count + itemIndex + ".jpg", drawing);
 
             mFillRate[mClassCount][count] = maxFillRate;
             mFillArea[mClassCount][count] = maxFillArea;
@@ -568,8 +614,8 @@ public class AIScoreMath {
             Mat targetMat2 = new Mat(targetMat, new Rect(0 + targetMat.cols() * i / 3, 0, targetMat.cols() / 3, targetMat.rows())).clone();
             //resize(cropInputMat, cropInputMat, new Size(cropInputMat.cols()*4, cropInputMat.rows()*4));
 
-            imwrite("/sdcard/studyNet/DEBUG/math/cropInputMat2-"+i+".jpg", cropInputMat2);
-            imwrite("/sdcard/studyNet/DEBUG/math/targetMat2-"+i+".jpg", targetMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/cropInputMat2-"+i+".jpg", cropInputMat2);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/math/targetMat2-"+i+".jpg", targetMat2);
 
             //각각 Gray Scale로 변경
             //cvtColor(cropInputMat, grayMat1, COLOR_RGB2GRAY);
@@ -607,7 +653,7 @@ public class AIScoreMath {
                         };
                     }
 
-                    imwrite("/sdcard/studyNet/DEBUG/cropInputMat-"+index+".jpg", cropInputMat);
+                    UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SCORING, "/sdcard/studyNet/DEBUG/cropInputMat-"+index+".jpg", cropInputMat);
 
                     mImageClassifierManager.RunInference(cropInputMat, mCropDatas, true, true);
                     String stickerName = mImageClassifierManager.GetName();
@@ -814,15 +860,15 @@ public class AIScoreMath {
         cropInputMat.release();
     }
 
-    private void doTextScoring(int in_serialNumber, int in_isMultiRecognition, String in_recognizedText) {
+    private void doTextScoring(int in_serialNumber, OCRRecognitionResult in_result) {
         AIScoreReferenceDB.DataBase db = mDataBase.get(in_serialNumber);
-        mAIScoreFunc.DoTextScoring(db, in_isMultiRecognition, in_recognizedText);
-        LOGGER.d("SallyRecog doTextScoring() savedAnswer = " + mDataBase.get(in_serialNumber).mSaveAnswer);
+        mAIScoreFunc.DoTextScoring(db, in_result);
+        LOGGER.d("SallyRecog doTextScoring() isCorrect = " + db.mIsCorrect);
         //화면에 채점 표시
         //DrawStickerAndGradingForText(in_serialNumber);
 
         //DoTextScoring() 에서 저장한 결과대로 파일에 기록한다.
-        mAIScoreReferenceDB.WriteAIScoreResult("math");
+        writeAIScoreResult();
     }
 
     public List<AIScoreReferenceDB.DataBase> GetDB(int coverIndex, int pageIndex) {
@@ -850,14 +896,13 @@ public class AIScoreMath {
         @Override
         public void onRecogResultListener(Message msg) {
             if(msg.what == MSG_REQUEST_TEXT_SCORING) {
-                String resultString = msg.obj.toString();
+                OCRRecognitionResult result = (OCRRecognitionResult) msg.obj;
                 int serialNumber = msg.arg1 % 100;
-                int isMultiRecognition = msg.arg2;
 
-                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", ResultString : " + resultString);
+                LOGGER.d("SallyRecog serialNumber : " + serialNumber + ", Result : " + result);
                 // 어떤 페이지의 어느 위치의 텍스트 인식인지는 serialNumber로 알 수 있음. db의 인덱스와 일치함.
 
-                doTextScoring(serialNumber, isMultiRecognition, resultString);
+                doTextScoring(serialNumber, result);
 
                 // 인식된 개수를 카운팅.
                 mRecognitionDoneCnt++;
@@ -941,4 +986,15 @@ public class AIScoreMath {
             return false;
         }
     }
+
+    /**
+     * 채점 결과를 저널에 기록한다. 기록하지 못하면 로그만 남기고 채점은 계속함.
+     */
+    private void writeAIScoreResult() {
+        try {
+            mAIScoreReferenceDB.WriteAIScoreResult("math");
+        } catch (IOException e) {
+            LOGGER.e(e, "math result journal");
+        }
+    }
 }
@@ -1,16 +1,25 @@
 package com.ispd.mommybook.aiscore;
 
 public class AIScoreMultiScoringInfo {
+    // 실행하지 않은 모델(조기 종료)의 자리에 표시하는 문자열
+    public static final String NOT_RUN = "-";
+
     private String mResultString[] = {"", "", ""}; // 다중 모델 인식 결과
-    private String mScore[] = {"", "", ""}; // 다중 모델 채점 결과
+    private int mScore[] = {0, 0, 0}; // 다중 모델 채점 결과
+    private int mModelCount; // 실제로 실행한 모델 수
     public int mX, mY, mW, mH; // 채점 영역 (MainActivity.gPreviewRenderWidth, gPreviewRenderHeight기준)
     private boolean mIsCorrect; // 정답인지의 여부. 정답=true, 오답=false
 
+    /**
+     * @param result 실행한 모델의 인식 결과 (최대 3개)
+     * @param score 실행한 모델의 채점 결과
+     */
     public AIScoreMultiScoringInfo(String[] result, int[] score, boolean isCorrect,
                                    int x, int y, int w, int h) {
-        for (int i = 0; i < 3; i++) {
+        mModelCount = Math.min(3, Math.min(result.length, score.length));
+        for (int i = 0; i < mModelCount; i++) {
             mResultString[i] = result[i];
-            mScore[i] = Integer.toString(score[i]);
+            mScore[i] = score[i];
         }
         mIsCorrect = isCorrect;
         mX = x;
@@ -19,17 +28,27 @@ public class AIScoreMultiScoringInfo {
         mH = h;
     }
 
+    public int GetModelCount() {
+        return mModelCount;
+    }
+
     public String GetScore(int idx) {
+        if(idx < mModelCount) {
+            return Integer.toString(mScore[idx]);
+        }
         if(idx < 3) {
-            return mScore[idx];
+            return NOT_RUN;
         }
         return "";
     }
 
     public String GetRecogResult(int idx) {
-        if(idx < 3) {
+        if(idx < mModelCount) {
             return mResultString[idx];
         }
+        if(idx < 3) {
+            return NOT_RUN;
+        }
         return "";
     }
 
@@ -0,0 +1,261 @@
+package com.ispd.mommybook.aiscore;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 채점 기준 이미지 캐시
+ *
+ * 이미지 비교/매칭/스티커 확인에 사용하는 기준 이미지(/sdcard/studyNet/DB/{책}/compare, sticker)를
+ * 채점 방법이 필요로 하는 색공간과 크기로 변환한 상태로 저장한다. (변환 종류는 Variant)
+ * 페이지가 정해지면 BeginPage() 후 그 페이지의 기준 이미지들을 Preload() 로 미리 읽어두고,
+ * 채점 중에는 Get() 으로 메모리에 있는 이미지를 사용하므로 파일을 읽지 않는다.
+ * 미리 읽지 않은 이미지를 Get() 하면 그때 읽고 miss 로 기록함.
+ *
+ * 전체 크기(byte)를 제한하고, 넘으면 현재 페이지가 아닌 이미지 중 가장 오래 사용하지 않은 것부터 지운다.
+ * 페이지를 오가는 경우 이전 페이지의 이미지는 크기 제한 안에서 남아 있음.
+ *
+ * 돌려주는 이미지는 캐시가 계속 사용하므로 호출하는 쪽에서 바꾸면 안 됨. (in-place 처리가 필요하면 복사해서 사용)
+ * 여러 쓰레드에서 동시에 사용할 수 있음.
+ *
+ * @param <T> 이미지 타입 (앱에서는 OpenCV Mat)
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreReferenceImageCache<T> {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * 채점 방법별 기준 이미지 변환
+     */
+    public enum Variant {
+        // 국어 이미지 비교(동그라미) : 원본 크기, gray
+        GRAY,
+        // 국어 키포인트 매칭 후 비교 : 4배 확대(INTER_CUBIC) 후 gray
+        KEYPOINT_GRAY_X4,
+        // 영어 키포인트 매칭 : 500x500 으로 변경 후 gray
+        KEYPOINT_GRAY_500,
+        // 수학 이미지 비교 : 가장자리 1/5 씩 잘라낸 가운데 영역, 원본 색공간 (입력 영역 크기로 바꾼 후 gray)
+        CENTER_CROP,
+        // 스티커 확인 : gray 로 읽음
+        STICKER_GRAY,
+    }
+
+    /**
+     * 기준 이미지를 파일에서 읽어서 변환한다.
+     */
+    public interface Loader<T> {
+        /**
+         * @return 읽지 못하면 null
+         */
+        T Load(String in_path, Variant in_variant);
+
+        long GetBytes(T in_image);
+
+        void Release(T in_image);
+    }
+
+    private static class Entry<T> {
+        final T mImage;
+        final long mBytes;
+        // 마지막으로 사용한 페이지 (책 인덱스, 페이지 인덱스)
+        long mPageKey;
+
+        Entry(T image, long bytes, long pageKey) {
+            mImage = image;
+            mBytes = bytes;
+            mPageKey = pageKey;
+        }
+    }
+
+    private final Loader<T> mLoader;
+    private long mMaxBytes;
+
+    /**
+     * access-order LinkedHashMap : 맨 앞의 항목이 가장 오래 사용하지 않은 항목임.
+     */
+    private final LinkedHashMap<String, Entry<T>> mEntries = new LinkedHashMap<>(32, 0.75f, true);
+    private long mBytes = 0;
+    private long mPageKey = -1;
+
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private long mPreloadCount = 0;
+    private long mLoadFailCount = 0;
+    private long mEvictCount = 0;
+    private long mLoadTimeNs = 0;
+    private long mLastPageLoadTimeNs = 0;
+
+    /**
+     * @param in_loader 기준 이미지를 읽는 loader
+     * @param in_maxBytes 저장할 이미지 크기의 합의 최대값
+     */
+    public AIScoreReferenceImageCache(Loader<T> in_loader, long in_maxBytes) {
+        mLoader = in_loader;
+        mMaxBytes = in_maxBytes;
+    }
+
+    public synchronized void SetMaxBytes(long in_maxBytes) {
+        mMaxBytes = in_maxBytes;
+        evict();
+    }
+
+    /**
+     * 페이지가 정해졌을 때 호출한다. 이후 Preload()/Get() 한 이미지는 이 페이지의 이미지로 보고 지우지 않음.
+     */
+    public synchronized void BeginPage(int in_bookIndex, int in_pageIndex) {
+        mPageKey = ((long) in_bookIndex << 32) | (in_pageIndex & 0xFFFFFFFFL);
+        mLastPageLoadTimeNs = 0;
+    }
+
+    /**
+     * 현재 페이지에서 사용할 기준 이미지를 읽어둔다. 이미 있으면 읽지 않음. hit/miss 에 포함하지 않음.
+     * @return 읽지 못하면 false
+     */
+    public synchronized boolean Preload(String in_path, Variant in_variant) {
+        String key = keyOf(in_path, in_variant);
+        Entry<T> entry = mEntries.get(key);
+        if (entry != null) {
+            entry.mPageKey = mPageKey;
+            return true;
+        }
+        mPreloadCount++;
+        return load(key, in_path, in_variant) != null;
+    }
+
+    /**
+     * 기준 이미지를 리턴한다. 없으면 읽어서 저장함. (miss)
+     * @return 읽지 못하면 null. 돌려받은 이미지는 바꾸면 안 됨.
+     */
+    public synchronized T Get(String in_path, Variant in_variant) {
+        String key = keyOf(in_path, in_variant);
+        Entry<T> entry = mEntries.get(key);
+        if (entry != null) {
+            mHitCount++;
+            entry.mPageKey = mPageKey;
+            return entry.mImage;
+        }
+        mMissCount++;
+        entry = load(key, in_path, in_variant);
+        return entry != null ? entry.mImage : null;
+    }
+
+    private Entry<T> load(String in_key, String in_path, Variant in_variant) {
+        long startNs = System.nanoTime();
+        T image = mLoader.Load(in_path, in_variant);
+        long elapsedNs = System.nanoTime() - startNs;
+        mLoadTimeNs += elapsedNs;
+        mLastPageLoadTimeNs += elapsedNs;
+        if (image == null) {
+            mLoadFailCount++;
+            return null;
+        }
+        Entry<T> entry = new Entry<>(image, mLoader.GetBytes(image), mPageKey);
+        mEntries.put(in_key, entry);
+        mBytes += entry.mBytes;
+        evict();
+        return entry;
+    }
+
+    /**
+     * 크기 제한을 넘으면 현재 페이지가 아닌 이미지를 오래 사용하지 않은 순서로 지운다.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry<T>>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            Entry<T> entry = iterator.next().getValue();
+            if (entry.mPageKey == mPageKey) {
+                continue;
+            }
+            iterator.remove();
+            mBytes -= entry.mBytes;
+            mEvictCount++;
+            mLoader.Release(entry.mImage);
+        }
+    }
+
+    public synchronized boolean Contains(String in_path, Variant in_variant) {
+        return mEntries.containsKey(keyOf(in_path, in_variant));
+    }
+
+    public synchronized void Clear() {
+        for (Entry<T> entry : mEntries.values()) {
+            mLoader.Release(entry.mImage);
+        }
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    public synchronized int GetSize() {
+        return mEntries.size();
+    }
+
+    public synchronized long GetBytes() {
+        return mBytes;
+    }
+
+    public synchronized long GetHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return 채점 중에 파일에서 읽은 횟수
+     */
+    public synchronized long GetMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long GetPreloadCount() {
+        return mPreloadCount;
+    }
+
+    public synchronized long GetLoadFailCount() {
+        return mLoadFailCount;
+    }
+
+    public synchronized long GetEvictCount() {
+        return mEvictCount;
+    }
+
+    /**
+     * @return 파일을 읽고 변환하는데 걸린 전체 시간 (ms)
+     */
+    public synchronized float GetLoadTimeMs() {
+        return mLoadTimeNs / 1000000.f;
+    }
+
+    /**
+     * @return 마지막 BeginPage() 이후 파일을 읽고 변환하는데 걸린 시간 (ms)
+     */
+    public synchronized float GetPageLoadTimeMs() {
+        return mLastPageLoadTimeNs / 1000000.f;
+    }
+
+    public synchronized void ResetStats() {
+        mHitCount = 0;
+        mMissCount = 0;
+        mPreloadCount = 0;
+        mLoadFailCount = 0;
+        mEvictCount = 0;
+        mLoadTimeNs = 0;
+        mLastPageLoadTimeNs = 0;
+    }
+
+    /**
+     * 로그용 통계 문자열.
+     */
+    public synchronized String GetReport() {
+        return "images= " + mEntries.size() + " (" + (mBytes / 1024) + "KB)"
+                + ", hit= " + mHitCount + ", miss= " + mMissCount
+                + ", preload= " + mPreloadCount + ", fail= " + mLoadFailCount
+                + ", evict= " + mEvictCount
+                + ", load time= " + Math.round(GetLoadTimeMs()) + "ms"
+                + " (page " + Math.round(GetPageLoadTimeMs()) + "ms)";
+    }
+
+    private static String keyOf(String in_path, Variant in_variant) {
+        return in_variant.name() + ':' + in_path;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsLogger;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+import static org.opencv.imgcodecs.Imgcodecs.*;
+import static org.opencv.imgproc.Imgproc.*;
+
+/**
+ * 채점 기준 이미지를 읽어서 AIScoreReferenceImageCache.Variant 에 맞게 변환한다.
+ * 변환 순서는 각 채점 함수에서 하던 순서와 같음.
+ * 콘텐츠 팩을 사용중이고 팩에 같은 경로의 이미지가 있으면 팩에서 읽음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreReferenceImageLoader implements AIScoreReferenceImageCache.Loader<Mat> {
+
+    private static final UtilsLogger LOGGER = new UtilsLogger();
+
+    private volatile AIScoreContentPack mContentPack = null;
+
+    /**
+     * @param in_pack 기준 이미지를 먼저 찾을 콘텐츠 팩. null 이면 파일에서만 읽음.
+     */
+    public void SetContentPack(AIScoreContentPack in_pack) {
+        mContentPack = in_pack;
+    }
+
+    public AIScoreContentPack GetContentPack() {
+        return mContentPack;
+    }
+
+    @Override
+    public Mat Load(String in_path, AIScoreReferenceImageCache.Variant in_variant) {
+        int flags = in_variant == AIScoreReferenceImageCache.Variant.STICKER_GRAY ? IMREAD_GRAYSCALE : IMREAD_COLOR;
+        Mat image;
+        AIScoreContentPack pack = mContentPack;
+        String entryName = pack != null ? pack.ToEntryName(in_path) : null;
+        byte[] data = entryName != null ? pack.Read(entryName) : null;
+        if (data != null) {
+            MatOfByte encoded = new MatOfByte(data);
+            image = imdecode(encoded, flags);
+            encoded.release();
+        } else {
+            image = imread(in_path, flags);
+        }
+        if (image.empty()) {
+            LOGGER.e("failed to read reference image : " + in_path);
+            image.release();
+            return null;
+        }
+
+        switch (in_variant) {
+            case GRAY:
+                cvtColor(image, image, COLOR_RGB2GRAY);
+                break;
+            case KEYPOINT_GRAY_X4:
+                resize(image, image, new Size(image.cols() * 4, image.rows() * 4), INTER_CUBIC);
+                cvtColor(image, image, COLOR_RGB2GRAY);
+                break;
+            case KEYPOINT_GRAY_500:
+                resize(image, image, new Size(500, 500));
+                cvtColor(image, image, COLOR_RGB2GRAY);
+                break;
+            case CENTER_CROP: {
+                int gapX = image.cols() / 5;
+                int gapY = image.rows() / 5;
+                Mat center = new Mat(image, new Rect(gapX, gapY, image.cols() - gapX * 2, image.rows() - gapY * 2)).clone();
+                image.release();
+                image = center;
+                break;
+            }
+            case STICKER_GRAY:
+            default:
+                break;
+        }
+        return image;
+    }
+
+    @Override
+    public long GetBytes(Mat in_image) {
+        return in_image.total() * in_image.elemSize();
+    }
+
+    @Override
+    public void Release(Mat in_image) {
+        in_image.release();
+    }
+}
@@ -0,0 +1,430 @@
+package com.ispd.mommybook.aiscore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 채점 결과 저널
+ *
+ * 책 하나의 채점 결과를 고정 크기(32 byte) 레코드로 파일 끝에 추가한다.
+ * 항목 하나를 저장하는 비용은 책의 항목 수와 관계없이 레코드 하나(+ 인식 문자열 조각)를 쓰는 것뿐이고,
+ * 추가한 레코드들은 Flush() 에서 한 번에 쓰고 한 번만 fsync 함.
+ * 시작할 때 Open() 에서 파일을 처음부터 읽어서 항목별 마지막 결과를 복원한다.
+ *
+ * 레코드 (big endian)
+ *  HEADER : type(0), version, magic(4), 항목 수(2), 생성 시각(8), 예약, crc(4)
+ *  TEXT   : type(2), 사용 길이, 문자열 조각(26), crc(4)
+ *           인식 문자열(채점 결과 파일에 기록하던 문자열)이 있는 항목은 ITEM 레코드 앞에 조각으로 나누어 씀.
+ *  ITEM   : type(1), 채점여부, 항목 id(2), 정답여부, 조각 수, 점수(2), 시각(8), 문자열 길이(4), 예약, crc(4)
+ *           crc 는 ITEM 레코드 앞 28 byte 와 앞선 문자열 조각들의 내용을 포함함.
+ * 쓰는 도중 앱이 죽어서 마지막 레코드가 잘리거나 crc 가 맞지 않으면, 마지막으로 완전한 ITEM 레코드까지만 사용하고
+ * 나머지는 잘라냄. (ITEM 레코드가 조각들의 commit 역할)
+ *
+ * 레코드 수가 항목 수에 비해 많아지면 Compact() 로 항목별 마지막 결과만 새 파일에 쓰고 rename 으로 교체한다.
+ *
+ * 모든 메소드는 동기화되어 있음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreResultJournal {
+    public static final int RECORD_SIZE = 32;
+    // 레코드 수가 (항목 수 * COMPACT_FACTOR) 와 COMPACT_MIN_RECORDS 보다 많아지면 압축함.
+    public static final int COMPACT_FACTOR = 4;
+    public static final int COMPACT_MIN_RECORDS = 256;
+
+    private static final int MAGIC = 0x41524A4C; // 'ARJL'
+    private static final int VERSION = 1;
+    private static final byte TYPE_HEADER = 0;
+    private static final byte TYPE_ITEM = 1;
+    private static final byte TYPE_TEXT = 2;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int TEXT_OFFSET = 2;
+    private static final int TEXT_CHUNK_SIZE = CRC_OFFSET - TEXT_OFFSET;
+    private static final int MAX_TEXT_CHUNKS = 255;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 항목 하나의 채점 결과
+     */
+    public static final class Record {
+        public final int mItemId;
+        public final int mDoGrading;
+        public final int mIsCorrect;
+        // 문자 인식 점수 (0~100). 없으면 -1
+        public final int mScore;
+        public final long mTimestamp;
+        // 채점 결과 파일에 기록하던 문자열. 없으면 null
+        public final String mSaveAnswer;
+
+        public Record(int in_itemId, int in_doGrading, int in_isCorrect, int in_score,
+                      long in_timestamp, String in_saveAnswer) {
+            mItemId = in_itemId;
+            mDoGrading = in_doGrading;
+            mIsCorrect = in_isCorrect;
+            mScore = in_score;
+            mTimestamp = in_timestamp;
+            mSaveAnswer = in_saveAnswer;
+        }
+
+        /**
+         * @return 시각을 제외한 채점 결과가 같으면 true
+         */
+        public boolean SameResult(int in_doGrading, int in_isCorrect, int in_score, String in_saveAnswer) {
+            return mDoGrading == in_doGrading && mIsCorrect == in_isCorrect && mScore == in_score
+                    && (mSaveAnswer == null ? in_saveAnswer == null : mSaveAnswer.equals(in_saveAnswer));
+        }
+    }
+
+    private final File mFile;
+    private final int mItemCount;
+    // 항목별 마지막 결과. 저장된 적 없는 항목은 null
+    private final Record[] mRecords;
+
+    private FileOutputStream mOutput = null;
+    private final ByteArrayOutputStream mPending = new ByteArrayOutputStream();
+    private final CRC32 mCrc = new CRC32();
+
+    private long mRecordCount = 0;
+    private long mAppendCount = 0;
+    private long mSyncCount = 0;
+    private long mCompactCount = 0;
+    private long mDiscardedBytes = 0;
+
+    /**
+     * @param in_file 저널 파일
+     * @param in_itemCount 책의 항목 수 (항목 id 는 0 ~ 항목 수 - 1)
+     */
+    public AIScoreResultJournal(File in_file, int in_itemCount) {
+        mFile = in_file;
+        mItemCount = in_itemCount;
+        mRecords = new Record[in_itemCount];
+    }
+
+    public File GetFile() {
+        return mFile;
+    }
+
+    public int GetItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * 저널 파일을 읽어서 항목별 마지막 결과를 복원한다. 파일이 없거나 헤더의 항목 수가 다르면 새로 만듦.
+     * 잘리거나 손상된 끝부분은 잘라내고, 이후의 레코드는 그 뒤에 추가함. (잘라낸 크기는 GetDiscardedBytes())
+     */
+    public synchronized void Open() throws IOException {
+        closeOutput();
+        for (int i = 0; i < mItemCount; i++) {
+            mRecords[i] = null;
+        }
+        mRecordCount = 0;
+        mPending.reset();
+
+        File temp = getTempFile();
+        if (temp.exists()) {
+            // 압축 도중에 죽은 경우 : 원래 파일이 그대로 있으므로 임시 파일은 버림.
+            temp.delete();
+        }
+        if (!mFile.exists() || mFile.length() < RECORD_SIZE) {
+            mRecordCount = writeNewFile(mFile, new Record[0]);
+            return;
+        }
+
+        long fileLength = mFile.length();
+        long validLength;
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            validLength = replay(file, fileLength);
+            if (validLength < fileLength) {
+                mDiscardedBytes += fileLength - validLength;
+                file.setLength(validLength);
+                file.getFD().sync();
+            }
+        } finally {
+            file.close();
+        }
+        if (validLength == 0) {
+            // 저널 파일이 아님
+            mRecordCount = writeNewFile(mFile, new Record[0]);
+        }
+    }
+
+    /**
+     * 파일을 처음부터 읽어서 적용하고, 마지막으로 완전한 레코드의 끝 위치를 리턴한다.
+     */
+    private long replay(RandomAccessFile in_file, long in_fileLength) throws IOException {
+        byte[] record = new byte[RECORD_SIZE];
+        in_file.seek(0);
+        in_file.readFully(record);
+        if (record[0] != TYPE_HEADER || !checkCrc(record, null) || ByteBuffer.wrap(record).getInt(2) != MAGIC) {
+            return 0;
+        }
+        // 항목 수가 다르면 정답지가 바뀐 것이므로 항목 id 가 다른 항목을 가리킴. 저널을 새로 만듦.
+        if ((ByteBuffer.wrap(record).getShort(6) & 0xFFFF) != mItemCount) {
+            return 0;
+        }
+        long validLength = RECORD_SIZE;
+        long recordCount = 1;
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int chunkCount = 0;
+        long offset = RECORD_SIZE;
+        while (offset + RECORD_SIZE <= in_fileLength) {
+            in_file.readFully(record);
+            offset += RECORD_SIZE;
+            if (record[0] == TYPE_TEXT) {
+                int length = record[1] & 0xFF;
+                if (length > TEXT_CHUNK_SIZE || !checkCrc(record, null)) {
+                    break;
+                }
+                text.write(record, TEXT_OFFSET, length);
+                chunkCount++;
+                continue;
+            }
+            if (record[0] != TYPE_ITEM) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            byte[] textBytes = text.toByteArray();
+            if ((record[5] & 0xFF) != chunkCount || buffer.getInt(16) != textBytes.length
+                    || !checkCrc(record, textBytes)) {
+                break;
+            }
+            int itemId = buffer.getShort(2) & 0xFFFF;
+            if (itemId < mItemCount) {
+                mRecords[itemId] = new Record(itemId, record[1], record[4], buffer.getShort(6), buffer.getLong(8),
+                        textBytes.length > 0 ? new String(textBytes, UTF8) : null);
+            }
+            recordCount += chunkCount + 1;
+            validLength = offset;
+            text.reset();
+            chunkCount = 0;
+        }
+        mRecordCount = recordCount;
+        return validLength;
+    }
+
+    /**
+     * @return 항목의 마지막 결과. 저장된 적 없으면 null
+     */
+    public synchronized Record Get(int in_itemId) {
+        return mRecords[in_itemId];
+    }
+
+    /**
+     * 항목의 결과를 추가한다. 파일에는 Flush() 에서 씀.
+     * @param in_saveAnswer 채점 결과 파일에 기록하던 문자열. 없으면 null
+     * @return 마지막 결과와 같아서 추가하지 않았으면 false
+     */
+    public synchronized boolean Append(int in_itemId, int in_doGrading, int in_isCorrect, int in_score,
+                                       String in_saveAnswer) throws IOException {
+        if (in_itemId < 0 || in_itemId >= mItemCount) {
+            throw new IllegalArgumentException("item id : " + in_itemId + ", item count : " + mItemCount);
+        }
+        Record last = mRecords[in_itemId];
+        if (last != null && last.SameResult(in_doGrading, in_isCorrect, in_score, in_saveAnswer)) {
+            return false;
+        }
+        Record record = new Record(in_itemId, in_doGrading, in_isCorrect, in_score,
+                System.currentTimeMillis(), in_saveAnswer);
+        mRecordCount += encode(record, mPending);
+        mRecords[in_itemId] = record;
+        mAppendCount++;
+        return true;
+    }
+
+    /**
+     * 추가한 레코드들을 한 번에 쓰고 fsync 한다. 레코드가 많아졌으면 압축함.
+     */
+    public synchronized void Flush() throws IOException {
+        writePending();
+        if (mRecordCount > Math.max(COMPACT_MIN_RECORDS, (long) mItemCount * COMPACT_FACTOR)) {
+            Compact();
+        }
+    }
+
+    /**
+     * 항목별 마지막 결과만 새 파일에 쓰고 원래 파일과 교체한다.
+     * 새 파일을 fsync 한 후 rename 하므로 도중에 죽어도 원래 파일이나 새 파일 중 하나가 남음.
+     */
+    public synchronized void Compact() throws IOException {
+        writePending();
+        closeOutput();
+        File temp = getTempFile();
+        mRecordCount = writeNewFile(temp, mRecords);
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            throw new IOException("failed to replace " + mFile);
+        }
+        mCompactCount++;
+    }
+
+    public synchronized void Close() throws IOException {
+        writePending();
+        closeOutput();
+    }
+
+    /**
+     * @return 파일에 있는 레코드 수 (문자열 조각 포함, 쓰기 전의 레코드 포함)
+     */
+    public synchronized long GetRecordCount() {
+        return mRecordCount;
+    }
+
+    public synchronized long GetAppendCount() {
+        return mAppendCount;
+    }
+
+    public synchronized long GetSyncCount() {
+        return mSyncCount;
+    }
+
+    public synchronized long GetCompactCount() {
+        return mCompactCount;
+    }
+
+    /**
+     * @return Open() 에서 잘라낸 손상된 끝부분의 크기
+     */
+    public synchronized long GetDiscardedBytes() {
+        return mDiscardedBytes;
+    }
+
+    /**
+     * 추가한 레코드들을 쓰고 fsync 한다.
+     * 쓰다가 실패하면 파일을 쓰기 전 길이로 되돌리고 레코드들을 남겨두어서, 다음에 같은 위치부터 다시 씀.
+     * (잘린 레코드 뒤에 다시 쓰면 Open() 에서 잘린 레코드 뒤의 정상 레코드까지 모두 잘라내게 됨)
+     */
+    private void writePending() throws IOException {
+        if (mPending.size() == 0) {
+            return;
+        }
+        if (mOutput == null) {
+            mOutput = new FileOutputStream(mFile, true);
+        }
+        long lengthBeforeWrite = mOutput.getChannel().size();
+        try {
+            mPending.writeTo(mOutput);
+            mOutput.flush();
+            mOutput.getFD().sync();
+        } catch (IOException e) {
+            try {
+                mOutput.getChannel().truncate(lengthBeforeWrite);
+                mOutput.getFD().sync();
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+            // 다음에는 파일을 다시 열어서 파일 끝(되돌린 길이)부터 씀.
+            try {
+                closeOutput();
+            } catch (IOException closeError) {
+                mOutput = null;
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+        mPending.reset();
+        mSyncCount++;
+    }
+
+    private File getTempFile() {
+        return new File(mFile.getPath() + ".tmp");
+    }
+
+    private void closeOutput() throws IOException {
+        if (mOutput != null) {
+            mOutput.close();
+            mOutput = null;
+        }
+    }
+
+    /**
+     * 헤더와 레코드들을 새 파일에 쓰고 fsync 한다.
+     * @return 쓴 레코드 수 (헤더 포함)
+     */
+    private long writeNewFile(File in_file, Record[] in_records) throws IOException {
+        File parent = in_file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_SIZE * (in_records.length + 1));
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        header.put(TYPE_HEADER).put((byte) VERSION).putInt(MAGIC).putShort((short) mItemCount)
+                .putLong(System.currentTimeMillis());
+        putCrc(header.array(), null);
+        bytes.write(header.array(), 0, RECORD_SIZE);
+        long recordCount = 1;
+        for (Record record : in_records) {
+            if (record != null) {
+                recordCount += encode(record, bytes);
+            }
+        }
+
+        FileOutputStream output = new FileOutputStream(in_file);
+        try {
+            bytes.writeTo(output);
+            output.flush();
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        return recordCount;
+    }
+
+    /**
+     * 레코드를 문자열 조각들과 ITEM 레코드로 변환한다.
+     * @return 변환한 레코드 수
+     */
+    private int encode(Record in_record, ByteArrayOutputStream in_output) throws IOException {
+        byte[] text = in_record.mSaveAnswer != null ? in_record.mSaveAnswer.getBytes(UTF8) : new byte[0];
+        int chunkCount = (text.length + TEXT_CHUNK_SIZE - 1) / TEXT_CHUNK_SIZE;
+        if (chunkCount > MAX_TEXT_CHUNKS) {
+            throw new IOException("save answer is too long : " + text.length);
+        }
+
+        byte[] record = new byte[RECORD_SIZE];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int start = chunk * TEXT_CHUNK_SIZE;
+            int length = Math.min(TEXT_CHUNK_SIZE, text.length - start);
+            Arrays.fill(record, (byte) 0);
+            record[0] = TYPE_TEXT;
+            record[1] = (byte) length;
+            System.arraycopy(text, start, record, TEXT_OFFSET, length);
+            putCrc(record, null);
+            in_output.write(record, 0, RECORD_SIZE);
+        }
+
+        ByteBuffer item = ByteBuffer.allocate(RECORD_SIZE);
+        item.put(TYPE_ITEM).put((byte) in_record.mDoGrading).putShort((short) in_record.mItemId)
+                .put((byte) in_record.mIsCorrect).put((byte) chunkCount).putShort((short) in_record.mScore)
+                .putLong(in_record.mTimestamp).putInt(text.length);
+        putCrc(item.array(), text);
+        in_output.write(item.array(), 0, RECORD_SIZE);
+        return chunkCount + 1;
+    }
+
+    private int crcOf(byte[] in_record, byte[] in_text) {
+        mCrc.reset();
+        mCrc.update(in_record, 0, CRC_OFFSET);
+        if (in_text != null) {
+            mCrc.update(in_text, 0, in_text.length);
+        }
+        return (int) mCrc.getValue();
+    }
+
+    private void putCrc(byte[] in_record, byte[] in_text) {
+        ByteBuffer.wrap(in_record).putInt(CRC_OFFSET, crcOf(in_record, in_text));
+    }
+
+    private boolean checkCrc(byte[] in_record, byte[] in_text) {
+        return ByteBuffer.wrap(in_record).getInt(CRC_OFFSET) == crcOf(in_record, in_text);
+    }
+}
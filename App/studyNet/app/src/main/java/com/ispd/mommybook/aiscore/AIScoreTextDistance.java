@@ -0,0 +1,226 @@
+package com.ispd.mommybook.aiscore;
+
+import java.util.Arrays;
+
+/**
+ * 정답 문자열과 인식 문자열의 편집 거리(Levenshtein) 계산
+ *
+ * 짧은 쪽 문자열이 64 글자 이하이면 Myers 의 bit-parallel 알고리즘으로 글자마다 long 연산 몇 번에 계산하고,
+ * 더 긴 경우는 한 줄짜리 DP 로 계산한다.
+ * 글자별 bit mask 표와 작업 배열을 미리 할당해서 다시 사용하므로 계산 중에 객체를 만들지 않음.
+ *
+ * 자모 모드에서는 한글 음절을 초성/중성/종성으로 분해해서 비교하므로
+ * "갔" 과 "갓" 처럼 받침 하나만 다른 경우 한 글자가 아닌 자모 하나만큼 틀린 것으로 계산됨.
+ *
+ * 한 쓰레드에서만 사용해야 함. (작업 배열을 공유함)
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreTextDistance {
+    private static final int HANGUL_BASE = 0xAC00;
+    private static final int HANGUL_LAST = 0xD7A3;
+    private static final int JUNG_COUNT = 21;
+    private static final int JONG_COUNT = 28;
+    private static final char CHO_BASE = 0x1100;
+    private static final char JUNG_BASE = 0x1161;
+    private static final char JONG_BASE = 0x11A7;
+
+    private static final int WORD_SIZE = 64;
+    // 글자별 bit mask 표 (open addressing). 패턴은 최대 64 글자이므로 128 칸이면 충분함.
+    private static final int TABLE_SIZE = 128;
+
+    private boolean mJamoMode = false;
+
+    private final char[] mKeys = new char[TABLE_SIZE];
+    private final long[] mMasks = new long[TABLE_SIZE];
+    private final int[] mStamps = new int[TABLE_SIZE];
+    private int mStamp = 0;
+
+    private char[] mBufferA = new char[64];
+    private char[] mBufferB = new char[64];
+    private int[] mRow = new int[65];
+    private int mLengthA = 0;
+    private int mLengthB = 0;
+
+    /**
+     * @param in_jamoMode true 면 한글 음절을 자모로 분해해서 비교함.
+     */
+    public void SetJamoMode(boolean in_jamoMode) {
+        mJamoMode = in_jamoMode;
+    }
+
+    public boolean IsJamoMode() {
+        return mJamoMode;
+    }
+
+    /**
+     * 편집 거리 (삽입, 삭제, 치환 각각 1). 자모 모드에서는 자모 단위.
+     */
+    public int Distance(CharSequence in_a, CharSequence in_b) {
+        mLengthA = load(in_a, true);
+        mLengthB = load(in_b, false);
+        return distance();
+    }
+
+    /**
+     * 기존 calcTextScore() 와 같은 0~100 점수. 정답 길이 대비 맞은 비율이며 정답과 같을 때만 100.
+     * 정답이 비어 있으면 0.
+     * @param in_reference 정답
+     * @param in_answer 인식 결과
+     */
+    public int Similarity(CharSequence in_reference, CharSequence in_answer) {
+        int distance = Distance(in_reference, in_answer);
+        int referLen = mLengthA;
+        if (referLen == 0) {
+            return 0;
+        }
+        int correct = Math.max(0, referLen - distance);
+        return (int) ((float) correct / referLen * 100.f);
+    }
+
+    /**
+     * 문자열을 작업 배열에 옮긴다. 자모 모드이면 한글 음절을 분해함.
+     * @return 옮긴 글자 수
+     */
+    private int load(CharSequence in_text, boolean in_first) {
+        int length = in_text.length();
+        int capacity = mJamoMode ? length * 3 : length;
+        char[] buffer = in_first ? mBufferA : mBufferB;
+        if (buffer.length < capacity) {
+            buffer = new char[Math.max(capacity, buffer.length * 2)];
+            if (in_first) {
+                mBufferA = buffer;
+            }
+            else {
+                mBufferB = buffer;
+            }
+        }
+
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = in_text.charAt(i);
+            if (mJamoMode && c >= HANGUL_BASE && c <= HANGUL_LAST) {
+                int index = c - HANGUL_BASE;
+                int jong = index % JONG_COUNT;
+                buffer[n++] = (char) (CHO_BASE + index / (JUNG_COUNT * JONG_COUNT));
+                buffer[n++] = (char) (JUNG_BASE + (index % (JUNG_COUNT * JONG_COUNT)) / JONG_COUNT);
+                if (jong != 0) {
+                    buffer[n++] = (char) (JONG_BASE + jong);
+                }
+            }
+            else {
+                buffer[n++] = c;
+            }
+        }
+        return n;
+    }
+
+    private int distance() {
+        // 짧은 쪽을 패턴(bit vector)으로 사용함. 편집 거리는 대칭이므로 결과는 같음.
+        char[] pattern = mBufferA;
+        int m = mLengthA;
+        char[] text = mBufferB;
+        int n = mLengthB;
+        if (m > n) {
+            pattern = mBufferB;
+            m = mLengthB;
+            text = mBufferA;
+            n = mLengthA;
+        }
+        if (m == 0) {
+            return n;
+        }
+        if (m <= WORD_SIZE) {
+            return myers(pattern, m, text, n);
+        }
+        return dynamicProgramming(pattern, m, text, n);
+    }
+
+    /**
+     * Myers(1999) / Hyyrö(2001) 의 bit-parallel 편집 거리. 패턴은 64 글자 이하.
+     * DP 표의 한 열을 세로 방향 증감(+1/-1) bit vector 두 개로 표현하고 글자마다 한 열씩 갱신함.
+     */
+    private int myers(char[] in_pattern, int in_m, char[] in_text, int in_n) {
+        buildMasks(in_pattern, in_m);
+
+        long pv = in_m == WORD_SIZE ? -1L : (1L << in_m) - 1;
+        long mv = 0;
+        long last = 1L << (in_m - 1);
+        int score = in_m;
+        for (int j = 0; j < in_n; j++) {
+            long eq = lookup(in_text[j]);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            }
+            else if ((mh & last) != 0) {
+                score--;
+            }
+            // 첫 행은 D[0][j] = j 이므로 가로 방향 증가(+1)를 넣음.
+            ph = (ph << 1) | 1L;
+            mh = mh << 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        return score;
+    }
+
+    private int dynamicProgramming(char[] in_pattern, int in_m, char[] in_text, int in_n) {
+        if (mRow.length < in_m + 1) {
+            mRow = new int[in_m + 1];
+        }
+        int[] row = mRow;
+        for (int i = 0; i <= in_m; i++) {
+            row[i] = i;
+        }
+        for (int j = 1; j <= in_n; j++) {
+            int diagonal = row[0];
+            row[0] = j;
+            char c = in_text[j - 1];
+            for (int i = 1; i <= in_m; i++) {
+                int up = row[i];
+                int cost = in_pattern[i - 1] == c ? 0 : 1;
+                row[i] = Math.min(Math.min(row[i - 1], up) + 1, diagonal + cost);
+                diagonal = up;
+            }
+        }
+        return row[in_m];
+    }
+
+    private void buildMasks(char[] in_pattern, int in_m) {
+        mStamp++;
+        if (mStamp == 0) {
+            // stamp 가 한 바퀴 돌면 표를 비움.
+            Arrays.fill(mStamps, 0);
+            mStamp = 1;
+        }
+        for (int i = 0; i < in_m; i++) {
+            char c = in_pattern[i];
+            int slot = c & (TABLE_SIZE - 1);
+            while (mStamps[slot] == mStamp && mKeys[slot] != c) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            if (mStamps[slot] != mStamp) {
+                mStamps[slot] = mStamp;
+                mKeys[slot] = c;
+                mMasks[slot] = 0;
+            }
+            mMasks[slot] |= 1L << i;
+        }
+    }
+
+    private long lookup(char in_c) {
+        int slot = in_c & (TABLE_SIZE - 1);
+        while (mStamps[slot] == mStamp) {
+            if (mKeys[slot] == in_c) {
+                return mMasks[slot];
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.ispd.mommybook.aiscore;
+
+/**
+ * 채점 전 정답/인식 문자열 정규화
+ *
+ * AIScoreFunctions.DoTextScoring() 의 언어별 변환 규칙을 언어마다 한 번 만든 글자 표(ASCII)로 옮긴 것이다.
+ * 문자열을 한 번만 훑으면서 글자마다 표의 동작(유지/삭제/소문자)을 적용하고 다시 사용하는 StringBuilder 에 모은다.
+ * 바뀐 글자가 없으면 입력 문자열을 그대로 돌려주므로 새 문자열을 만들지 않음.
+ *
+ * 기존 코드는 지울 글자마다 replaceAll() 을 호출해서
+ * - 지운 글자 바로 뒤의 글자를 건너뛰었고 (예: "12귀여워서" -> "2귀여워서")
+ * - '.' 은 정규식으로 해석되어 문자열 전체를 지우고, '(' ')' '*' '+' '?' 는 예외가 발생했음.
+ * 이 클래스는 해당 글자를 모두 지움. 그 외의 입력에서는 기존 결과와 같다.
+ *
+ * 한 쓰레드에서만 사용해야 함. (StringBuilder 를 공유함)
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class AIScoreTextNormalizer {
+    private static final byte KEEP = 0;
+    private static final byte DROP = 1;
+    private static final byte LOWER = 2;
+
+    private static final int TABLE_SIZE = 128;
+
+    private final AIScoreReferenceDB.TextLanguage mLanguage;
+    // 정답 문자열 변환 표
+    private final byte[] mAnswerKeyTable;
+    private final boolean mLowerNonAscii;
+    // 인식 결과 변환 표 (스티커 / 손글씨)
+    private final byte[] mStickerTable;
+    private final byte[] mHandwritingTable;
+
+    private final StringBuilder mBuilder = new StringBuilder(32);
+
+    private AIScoreTextNormalizer(AIScoreReferenceDB.TextLanguage in_language) {
+        mLanguage = in_language;
+        mAnswerKeyTable = new byte[TABLE_SIZE];
+        mStickerTable = new byte[TABLE_SIZE];
+        mHandwritingTable = new byte[TABLE_SIZE];
+
+        if (in_language == AIScoreReferenceDB.TextLanguage.ENGLISH) {
+            // 영어 정답은 대문자->소문자, 띄어쓰기와 ' 를 없앤 형태로 비교함.
+            for (int c = 'A'; c <= 'Z'; c++) {
+                mAnswerKeyTable[c] = LOWER;
+            }
+            mAnswerKeyTable[' '] = DROP;
+            mAnswerKeyTable['\''] = DROP;
+            mLowerNonAscii = true;
+        }
+        else {
+            mLowerNonAscii = false;
+        }
+
+        if (in_language == AIScoreReferenceDB.TextLanguage.KOREAN) {
+            // typo 한글 인식은 한영 통합 모델이어서 알파벳, 숫자가 섞여 나오는 경우가 있어서 제거함.
+            // 예) i우리는 -> 우리는, 1볼거리가 -> 볼거리가, 재미있어s -> 재미있어
+            fill(mStickerTable, '0', '9', DROP);
+            fill(mStickerTable, 'A', 'Z', DROP);
+            fill(mStickerTable, 'a', 'z', DROP);
+            // 손글씨 한글 인식은 숫자, 문장부호가 섞여 나오는 경우가 있어서 제거함.
+            // 예) "우리는 -> 우리는, 1귀여워서 -> 귀여워서
+            fill(mHandwritingTable, 33, 46, DROP);
+            fill(mHandwritingTable, 48, 64, DROP);
+        }
+    }
+
+    /**
+     * 언어별 변환 규칙으로 normalizer 를 만든다. 보통 AIScoreFunctions 에서 언어마다 한 번 만들어 사용함.
+     */
+    public static AIScoreTextNormalizer Create(AIScoreReferenceDB.TextLanguage in_language) {
+        return new AIScoreTextNormalizer(in_language);
+    }
+
+    public AIScoreReferenceDB.TextLanguage GetLanguage() {
+        return mLanguage;
+    }
+
+    /**
+     * 정답 문자열을 인식 결과와 비교할 형태로 바꾼다.
+     */
+    public String NormalizeAnswerKey(String in_answerKey) {
+        return apply(in_answerKey, mAnswerKeyTable, mLowerNonAscii);
+    }
+
+    /**
+     * 인식 결과에서 채점에 사용하지 않는 글자를 지운다. 집단 채점의 경우 모델별 인식 결과마다 적용함.
+     * @param in_recognizedText 인식 결과
+     * @param in_sticker 스티커 여부. 한글은 스티커(typo)와 손글씨의 규칙이 다름.
+     */
+    public String NormalizeRecognized(String in_recognizedText, AIScoreReferenceDB.Sticker in_sticker) {
+        if (mLanguage != AIScoreReferenceDB.TextLanguage.KOREAN) {
+            return in_recognizedText;
+        }
+        if (in_sticker == AIScoreReferenceDB.Sticker.STICKER) {
+            // 숫자+한글 정답을 위해 인식 결과에 숫자나 부호가 있으면(HasNumbers) 지우지 않음.
+            if (HasNumbers(in_recognizedText)) {
+                return in_recognizedText;
+            }
+            return apply(in_recognizedText, mStickerTable, false);
+        }
+        if (in_sticker == AIScoreReferenceDB.Sticker.NONE) {
+            return apply(in_recognizedText, mHandwritingTable, false);
+        }
+        return in_recognizedText;
+    }
+
+    /**
+     * @return 숫자나 부호(ASCII 33~64)가 포함되어 있으면 true
+     */
+    public static boolean HasNumbers(String in_string) {
+        for (int i = 0; i < in_string.length(); i++) {
+            char c = in_string.charAt(i);
+            if (33 <= c && c <= 64) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String apply(String in_text, byte[] in_table, boolean in_lowerNonAscii) {
+        StringBuilder builder = mBuilder;
+        builder.setLength(0);
+        boolean changed = false;
+        int length = in_text.length();
+        for (int i = 0; i < length; i++) {
+            char c = in_text.charAt(i);
+            byte action;
+            if (c < TABLE_SIZE) {
+                action = in_table[c];
+            }
+            else {
+                action = in_lowerNonAscii && Character.isUpperCase(c) ? LOWER : KEEP;
+            }
+            if (action == DROP) {
+                changed = true;
+            }
+            else if (action == LOWER) {
+                builder.append(Character.toLowerCase(c));
+                changed = true;
+            }
+            else {
+                builder.append(c);
+            }
+        }
+        return changed ? builder.toString() : in_text;
+    }
+
+    private static void fill(byte[] in_table, int in_from, int in_to, byte in_action) {
+        for (int c = in_from; c <= in_to; c++) {
+            in_table[c] = in_action;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.ocr.recognition.OCRRecognitionResult;
+
+/**
+ * 문자 인식 채점 결과
+ *
+ * AIScoreFunctions.DoTextScoring() 에서 모델별로 정규화한 인식 문자열과 점수를 그대로 보관한다.
+ * 화면 표시(AIScoreManager)는 이 값을 바로 사용하고,
+ * 채점 결과 파일에 기록하는 문자열("MULTI//결과1//점수1//...")은 파일에 쓸 때 ToSaveAnswer() 로 한 번만 만든다.
+ * 파일에서 읽어온 결과는 Parse() 로 읽어올 때 한 번만 변환함.
+ *
+ * 생성 후 바뀌지 않음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public final class AIScoreTextScoringResult {
+    // 채점 결과 파일에서 각 항목 사이에 들어가는 구분자
+    public static final String SEPARATOR = "//";
+    private static final String SINGLE = "SINGLE";
+    private static final String MULTI = "MULTI";
+    private static final int MULTI_MODEL_COUNT = 3;
+
+    private final boolean mMultiModel;
+    private final String[] mTexts;
+    private final int[] mScores;
+    private final int mAverageScore;
+    private final OCRRecognitionResult mRecognition;
+
+    /**
+     * @param in_recognition 채점에 사용한 인식 결과. 파일에서 읽어온 경우 null
+     * @param in_multiModel 집단채점 결과인지의 여부
+     * @param in_texts 모델별 정규화된 인식 문자열
+     * @param in_scores 모델별 점수 (0~100)
+     */
+    public AIScoreTextScoringResult(OCRRecognitionResult in_recognition, boolean in_multiModel,
+                                    String[] in_texts, int[] in_scores) {
+        mRecognition = in_recognition;
+        mMultiModel = in_multiModel;
+        mTexts = in_texts.clone();
+        mScores = in_scores.clone();
+        int sum = 0;
+        for (int score : mScores) {
+            sum += score;
+        }
+        mAverageScore = mScores.length > 0 ? sum / mScores.length : 0;
+    }
+
+    public boolean IsMultiModel() {
+        return mMultiModel;
+    }
+
+    public int GetModelCount() {
+        return mTexts.length;
+    }
+
+    public String GetText(int in_index) {
+        return mTexts[in_index];
+    }
+
+    public int GetScore(int in_index) {
+        return mScores[in_index];
+    }
+
+    /**
+     * @return 모델별 점수의 평균 (소수점 버림). 단일채점은 해당 모델의 점수.
+     */
+    public int GetAverageScore() {
+        return mAverageScore;
+    }
+
+    /**
+     * @return 채점에 사용한 인식 결과(신뢰도 포함). 파일에서 읽어온 결과는 null
+     */
+    public OCRRecognitionResult GetRecognition() {
+        return mRecognition;
+    }
+
+    /**
+     * 채점 결과 파일에 기록하는 형태로 변환한다.
+     * 단일채점 : "SINGLE//결과스트링"
+     * 집단채점 : "MULTI//결과1//점수1//결과2//점수2//결과3//점수3//평균점수"
+     * 조기 종료된 집단채점은 실행한 모델의 결과만 기록함. (예 : "MULTI//결과1//점수1//평균점수")
+     */
+    public String ToSaveAnswer() {
+        StringBuilder builder = new StringBuilder(64);
+        if (!mMultiModel) {
+            builder.append(SINGLE).append(SEPARATOR).append(mTexts.length > 0 ? mTexts[0] : "");
+            return builder.toString();
+        }
+        builder.append(MULTI);
+        for (int i = 0; i < mTexts.length; i++) {
+            builder.append(SEPARATOR).append(mTexts[i]).append(SEPARATOR).append(mScores[i]);
+        }
+        builder.append(SEPARATOR).append(mAverageScore);
+        return builder.toString();
+    }
+
+    /**
+     * 채점 결과 파일에서 읽은 집단채점 결과를 변환한다. 인식 결과(신뢰도)는 없음.
+     * 모델 수는 기록된 결과의 수(1~3)로 정해짐.
+     * @return 집단채점 결과가 아니거나 형식이 맞지 않으면 null
+     */
+    public static AIScoreTextScoringResult Parse(String in_saveAnswer) {
+        if (in_saveAnswer == null || !in_saveAnswer.startsWith(MULTI + SEPARATOR)) {
+            return null;
+        }
+        String[] fields = in_saveAnswer.split(SEPARATOR, -1);
+        // MULTI, (결과, 점수) x 모델 수, 평균점수
+        int modelCount = Math.min(MULTI_MODEL_COUNT, (fields.length - 2) / 2);
+        if (modelCount < 1) {
+            return null;
+        }
+        String[] texts = new String[modelCount];
+        int[] scores = new int[modelCount];
+        try {
+            for (int i = 0; i < modelCount; i++) {
+                texts[i] = fields[1 + 2 * i];
+                scores[i] = Integer.parseInt(fields[2 + 2 * i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new AIScoreTextScoringResult(null, true, texts, scores);
+    }
+}
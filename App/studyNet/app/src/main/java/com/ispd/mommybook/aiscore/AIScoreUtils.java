@@ -7,11 +7,16 @@ import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.opencv.core.Core.flip;
 import static org.opencv.core.CvType.CV_32F;
+import static org.opencv.core.CvType.CV_64F;
 import static org.opencv.imgproc.Imgproc.INTER_CUBIC;
 import static org.opencv.imgproc.Imgproc.INTER_LINEAR;
 import static org.opencv.imgproc.Imgproc.INTER_NEAREST;
+import static org.opencv.imgproc.Imgproc.WARP_INVERSE_MAP;
 import static org.opencv.imgproc.Imgproc.warpPerspective;
 
 public class AIScoreUtils {
@@ -34,11 +39,7 @@ public class AIScoreUtils {
      */
     public Mat DoImageAlignment(Mat inputImageMat) {
         //얼라인먼트 Matrix가 좌우 반전 돼있음. 이유는 Shader에서 Input이 반전 돼 있기 때문에 그렇게 만듬.
-        //Mat inputFlipMat = new Mat();
-        //flip(inputImageMat, inputFlipMat, 1);//0: vertical, 1 : horizontal
-
         //이미지 캡처의 경우 이미 좌우 반전 되어 있음
-        Mat inputFlipMat = inputImageMat.clone();
 
         int captureWidth = inputImageMat.cols();
         int captureHeight = inputImageMat.rows();
@@ -47,25 +48,58 @@ public class AIScoreUtils {
 
         //얼라인먼트 Matrix 가져오기
         getAlignmentMatrix(captureWidth, captureHeight);
-        Mat warpInputMatLeft = new Mat();
-        Mat warpInputMatRight = new Mat();
-
-        //좌, 우 각각 펴주기. 좌우가 반전 되서 Matrix입력도 반대임.
-//        warpPerspective(inputFlipMat, warpInputMatLeft, mAlignmentRightMatrix, inputFlipMat.size(), INTER_LINEAR);
-//        warpPerspective(inputFlipMat, warpInputMatRight, mAlignmentLeftMatrix, inputFlipMat.size(), INTER_LINEAR);
-        warpPerspective(inputFlipMat, warpInputMatLeft, mAlignmentRightMatrix, inputFlipMat.size(), INTER_CUBIC);
-        warpPerspective(inputFlipMat, warpInputMatRight, mAlignmentLeftMatrix, inputFlipMat.size(), INTER_CUBIC);
 
-        //하나로 합치기
-        Rect rect = new Rect(captureWidth/2, 0, captureWidth/2, captureHeight);
-        Mat rightRoiTargetMat = new Mat(warpInputMatLeft, rect);
-        Mat rightRoiSourceMat = new Mat(warpInputMatRight, rect);
+        //좌, 우 각각 결과의 절반 영역에 바로 펴주기. 좌우 반전도 같이 함.
+        return warpHalves(inputImageMat, mAlignmentLeftMatrix, mAlignmentRightMatrix);
+    }
 
-        rightRoiSourceMat.copyTo(rightRoiTargetMat);
+    /**
+     * 입력 영상을 왼쪽 페이지는 leftMatrix, 오른쪽 페이지는 rightMatrix 로 펴고 좌우 반전한 영상을 만든다.
+     * 이전 방식(전체 크기로 두 번 warpPerspective 하고 한쪽 절반을 복사한 후 flip)과 같은 결과이고,
+     * 각 Matrix 로 결과의 절반 영역만 warp 하므로 INTER_CUBIC 보간은 절반, 중간 Mat 과 복사는 없음.
+     *
+     * 이전 방식의 flip 전 [half, half*2) 열이 leftMatrix, 나머지 열이 rightMatrix 였으므로
+     * flip 후에는 [width - half*2, width - half) 열이 leftMatrix 임. (폭이 홀수이면 0번 열도 rightMatrix)
+     */
+    static Mat warpHalves(Mat in_input, Mat in_leftMatrix, Mat in_rightMatrix) {
+        int width = in_input.cols();
+        int half = width / 2;
+        int oddColumn = width - half * 2;
+
+        Mat alignedMat = new Mat(in_input.rows(), width, in_input.type());
+        warpRegion(in_input, alignedMat, in_leftMatrix, oddColumn, half);
+        warpRegion(in_input, alignedMat, in_rightMatrix, width - half, half);
+        if (oddColumn > 0) {
+            warpRegion(in_input, alignedMat, in_rightMatrix, 0, oddColumn);
+        }
+        return alignedMat;
+    }
 
-        //다시 원래 대로 좌우 반전 시켜주기.
-        flip(warpInputMatLeft, warpInputMatLeft, 1);
-        return warpInputMatLeft;
+    /**
+     * 결과의 [x, x + regionWidth) 열에 flip(warpPerspective(input, matrix), 1) 의 같은 열을 바로 만든다.
+     * 영역의 u 열은 flip 전 전체 영상의 (width - 1 - x - u) 열이므로,
+     * 역변환 Matrix 에 F = [-1 0 width-1-x; 0 1 0; 0 0 1] 을 곱해서 WARP_INVERSE_MAP 으로 warp 함.
+     * 역변환은 warpPerspective 내부와 같은 방식(double, LU)으로 구해서 보간 위치가 이전 방식과 같음.
+     */
+    private static void warpRegion(Mat in_input, Mat out_alignedMat, Mat in_matrix, int in_x, int in_regionWidth) {
+        Mat inverseMat = new Mat();
+        in_matrix.convertTo(inverseMat, CV_64F);
+        Core.invert(inverseMat, inverseMat);
+
+        double[] m = new double[9];
+        inverseMat.get(0, 0, m);
+        double shift = out_alignedMat.cols() - 1 - in_x;
+        inverseMat.put(0, 0,
+                -m[0], m[1], m[0] * shift + m[2],
+                -m[3], m[4], m[3] * shift + m[5],
+                -m[6], m[7], m[6] * shift + m[8]);
+
+        //결과 Mat 의 영역에 바로 씀. (크기, 타입이 같으므로 새로 할당하지 않음)
+        Mat regionMat = out_alignedMat.submat(new Rect(in_x, 0, in_regionWidth, out_alignedMat.rows()));
+        warpPerspective(in_input, regionMat, inverseMat, regionMat.size(), INTER_CUBIC | WARP_INVERSE_MAP);
+
+        regionMat.release();
+        inverseMat.release();
     }
 
     /**
@@ -219,4 +253,48 @@ public class AIScoreUtils {
 
         return newImageMat;
     }
+
+    /**
+     * 각 과목 클래스의 채점 영역 계산과 같은 방식으로 DB 영역의 픽셀 좌표를 계산한다. 책의 아래 40픽셀이 떠 있음.
+     * @param db 채점 영역
+     * @param cols 정렬된 이미지 가로
+     * @param rows 정렬된 이미지 세로
+     * @param previewHeight 카메라 프리뷰 높이
+     */
+    public static Rect GetRegionRect(AIScoreReferenceDB.DataBase db, int cols, int rows, int previewHeight) {
+        int x = (int)(db.mX * (float)cols);
+        int y = (int)(db.mY * (float)(rows-10*4*rows/previewHeight));
+        int w = (int)(db.mW * (float)cols);
+        int h = (int)(db.mH * (float)(rows-10*4*rows/previewHeight));
+
+        x = Math.max(0, Math.min(x, cols));
+        y = Math.max(0, Math.min(y, rows));
+        w = Math.min(w, cols - x);
+        h = Math.min(h, rows - y);
+        return new Rect(x, y, w, h);
+    }
+
+    /**
+     * 페이지의 문자 인식 채점 영역(TEXT_RECOGNITION_WORD, TEXT_RECOGNITION_SENTENCE)을 GetRegionRect() 로
+     * 픽셀 좌표로 바꾼다. 크기가 0 인 영역은 뺌. OCRDetection.StartRegionDetection() 의 입력으로 씀.
+     * @param in_dataBase 페이지의 채점 영역 (AIScoreReferenceDB.GetAIScoreMethod())
+     * @param in_cols 정렬된 이미지 가로
+     * @param in_rows 정렬된 이미지 세로
+     * @param in_previewHeight 카메라 프리뷰 높이
+     */
+    public static List<Rect> GetTextRegionRects(List<AIScoreReferenceDB.DataBase> in_dataBase,
+                                                int in_cols, int in_rows, int in_previewHeight) {
+        List<Rect> regions = new ArrayList<>(in_dataBase.size());
+        for (AIScoreReferenceDB.DataBase db : in_dataBase) {
+            if (db.mMethod != AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD
+                    && db.mMethod != AIScoreReferenceDB.Method.TEXT_RECOGNITION_SENTENCE) {
+                continue;
+            }
+            Rect rect = GetRegionRect(db, in_cols, in_rows, in_previewHeight);
+            if (rect.width > 0 && rect.height > 0) {
+                regions.add(rect);
+            }
+        }
+        return regions;
+    }
 }
@@ -8,6 +8,7 @@ import android.os.HandlerThread;
 import android.os.SystemClock;
 
 import com.ispd.mommybook.camera.CameraDataManager;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.android.Utils;
@@ -207,12 +208,12 @@ public class ImageClassifierManager {
             Imgproc.warpPerspective(inputMat, dstMat, perspectiveTransform, inputMat.size());
 
             if( testOn == true ) {
-                imwrite("/sdcard/tensorflow/dstMat.jpg", dstMat);
+                UtilsDebugSink.SaveMat(UtilsDebugSink.Category.CLASSIFIER, "/sdcard/tensorflow/dstMat.jpg", dstMat);
             }
         }
         else {
             dstMat = inputMat.clone();
-            imwrite("/sdcard/tensorflow/dstMat.jpg", dstMat);
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.CLASSIFIER, "/sdcard/tensorflow/dstMat.jpg", dstMat);
         }
 
         Utils.matToBitmap(dstMat, resultBitmap);
@@ -5,6 +5,7 @@ import android.os.Handler;
 import android.os.Message;
 import android.widget.ImageView;
 
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.android.Utils;
@@ -151,8 +152,8 @@ public class ImageProcessSubtraction {
 
 //        LOGGER.d("DoImageSubtract : "+index+", leftNoZero : "+leftNoZero+", rightNoZero : "+rightNoZero);
 
-        imwrite("/sdcard/studyNet/DEBUG/leftMat-"+index+".jpg", leftMat);
-        imwrite("/sdcard/studyNet/DEBUG/leftTargetMat-"+index+".jpg", leftTargetMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SUBTRACTION, "/sdcard/studyNet/DEBUG/leftMat-"+index+".jpg", leftMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SUBTRACTION, "/sdcard/studyNet/DEBUG/leftTargetMat-"+index+".jpg", leftTargetMat);
     }
 
     //구현중
@@ -199,9 +200,9 @@ public class ImageProcessSubtraction {
         Mat roiMat2 = new Mat(subtractMat, rect);
         LOGGER.d("[processCount]"+(inputImageMat.cols()*inputImageMat.rows())+", nonZero2 : "+countNonZero(roiMat2)+", sindexR : "+index);
 
-        imwrite("/sdcard/studyNet/DEBUG/inpuImageMat-"+index+".jpg", inputImageMat);
-        imwrite("/sdcard/studyNet/DEBUG/targetImageMat-"+index+".jpg", targetImageMat);
-        imwrite("/sdcard/studyNet/DEBUG/subtractMat-"+index+".jpg", subtractMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SUBTRACTION, "/sdcard/studyNet/DEBUG/inpuImageMat-"+index+".jpg", inputImageMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SUBTRACTION, "/sdcard/studyNet/DEBUG/targetImageMat-"+index+".jpg", targetImageMat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.SUBTRACTION, "/sdcard/studyNet/DEBUG/subtractMat-"+index+".jpg", subtractMat);
     }
 
     private Handler mHandler = new Handler(new Handler.Callback() {
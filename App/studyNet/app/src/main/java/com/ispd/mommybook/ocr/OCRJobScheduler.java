@@ -0,0 +1,212 @@
+package com.ispd.mommybook.ocr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 문자인식 작업 스케줄러
+ *
+ * 페이지 단위의 인식 작업을 큐에 넣으면 작업 쓰레드가 깨어나서 처리한다.
+ * 작업이 없을 때는 큐에서 대기만 하므로 주기적으로 깨어나지 않는다.
+ * 작업마다 Future 를 돌려주고, 완료시 호출할 콜백을 지정할 수 있다.
+ *
+ * Android 의존성이 없으므로 JVM 단위 테스트에서 그대로 사용할 수 있음.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRJobScheduler {
+
+    /**
+     * 작업 완료 콜백. 작업 쓰레드에서 호출됨.
+     * 작업이 취소된 경우엔 호출되지 않음.
+     */
+    public interface JobCallback<R> {
+        void onJobDone(R result, Throwable error);
+    }
+
+    // Stop() 에서 작업 쓰레드마다 하나씩 넣어서 대기중인 쓰레드를 종료시킴.
+    private static final JobTask<Void> STOP_TASK = new JobTask<>(new Callable<Void>() {
+        @Override
+        public Void call() {
+            return null;
+        }
+    }, null, new AtomicLong(0));
+
+    private final LinkedBlockingQueue<JobTask<?>> mQueue = new LinkedBlockingQueue<>();
+    private final Thread[] mWorkers;
+    private volatile boolean mStopped = false;
+
+    // 튜닝용 측정값
+    private final AtomicLong mWakeUpCount = new AtomicLong(0);
+    private final AtomicLong mDoneCount = new AtomicLong(0);
+    private final AtomicLong mTotalDispatchLatencyNs = new AtomicLong(0);
+    private final AtomicLong mMaxDispatchLatencyNs = new AtomicLong(0);
+
+    private static class JobTask<R> extends FutureTask<R> {
+        private final long mSubmitTimeNs;
+        private final JobCallback<R> mCallback;
+
+        JobTask(final Callable<R> job, JobCallback<R> callback, final AtomicLong doneCount) {
+            // 완료 수는 Future 가 완료되기 전에 증가시킴. (get() 이 리턴된 후에는 항상 반영되어 있음)
+            super(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    try {
+                        return job.call();
+                    } finally {
+                        doneCount.incrementAndGet();
+                    }
+                }
+            });
+            mSubmitTimeNs = System.nanoTime();
+            mCallback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled()) {
+                return;
+            }
+            try {
+                mCallback.onJobDone(get(), null);
+            } catch (Exception e) {
+                mCallback.onJobDone(null, e.getCause() != null ? e.getCause() : e);
+            }
+        }
+    }
+
+    public OCRJobScheduler(String in_name, int in_workerCount) {
+        mWorkers = new Thread[Math.max(1, in_workerCount)];
+        for (int i = 0; i < mWorkers.length; i++) {
+            mWorkers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    workerLoop();
+                }
+            }, in_name + "-" + i);
+            mWorkers[i].start();
+        }
+    }
+
+    /**
+     * 작업을 등록한다. 작업 쓰레드는 등록 즉시 깨어나서 처리함.
+     * @param in_job 인식 작업
+     * @param in_callback 완료 콜백 (null 가능)
+     * @return 작업 결과를 받을 수 있는 Future
+     */
+    public <R> Future<R> Submit(Callable<R> in_job, JobCallback<R> in_callback) {
+        if (mStopped) {
+            throw new RejectedExecutionException("OCRJobScheduler is stopped");
+        }
+        JobTask<R> task = new JobTask<>(in_job, in_callback, mDoneCount);
+        mQueue.add(task);
+        return task;
+    }
+
+    /**
+     * 아직 시작하지 않은 작업을 모두 취소한다.
+     * @return 취소된 작업 수
+     */
+    public int CancelPending() {
+        List<JobTask<?>> pending = new ArrayList<>();
+        mQueue.drainTo(pending);
+        int cancelled = 0;
+        for (JobTask<?> task : pending) {
+            if (task == STOP_TASK) {
+                // 종료 중인 작업 쓰레드가 받아야 하므로 다시 넣음.
+                mQueue.add(task);
+            } else {
+                task.cancel(false);
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * 대기중인 작업을 취소하고 작업 쓰레드를 종료한다.
+     * 실행중인 작업은 interrupt 하지 않고 끝날 때까지 기다림.
+     */
+    public void Stop() {
+        mStopped = true;
+        CancelPending();
+        for (int i = 0; i < mWorkers.length; i++) {
+            mQueue.add(STOP_TASK);
+        }
+        for (Thread worker : mWorkers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Stop() 과 동시에 등록된 작업
+        CancelPending();
+    }
+
+    public boolean IsStopped() {
+        return mStopped;
+    }
+
+    public int GetPendingCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * 작업 쓰레드가 깨어난 횟수. 작업이 없을 때는 증가하지 않아야 함.
+     */
+    public long GetWakeUpCount() {
+        return mWakeUpCount.get();
+    }
+
+    /**
+     * 실행이 끝난 작업 수. 취소되어 실행되지 않은 작업은 포함하지 않음.
+     */
+    public long GetDoneCount() {
+        return mDoneCount.get();
+    }
+
+    /**
+     * 작업 등록부터 실행 시작까지 걸린 시간의 평균 (nsec)
+     */
+    public long GetAverageDispatchLatencyNs() {
+        long done = mWakeUpCount.get();
+        return done == 0 ? 0 : mTotalDispatchLatencyNs.get() / done;
+    }
+
+    public long GetMaxDispatchLatencyNs() {
+        return mMaxDispatchLatencyNs.get();
+    }
+
+    private void workerLoop() {
+        while (!mStopped) {
+            JobTask<?> task;
+            try {
+                task = mQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (task == STOP_TASK) {
+                break;
+            }
+            mWakeUpCount.incrementAndGet();
+
+            long latency = System.nanoTime() - task.mSubmitTimeNs;
+            mTotalDispatchLatencyNs.addAndGet(latency);
+            long max = mMaxDispatchLatencyNs.get();
+            while (latency > max && !mMaxDispatchLatencyNs.compareAndSet(max, latency)) {
+                max = mMaxDispatchLatencyNs.get();
+            }
+
+            task.run();
+        }
+    }
+}
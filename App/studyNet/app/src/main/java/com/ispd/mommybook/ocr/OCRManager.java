@@ -6,12 +6,16 @@ import android.os.HandlerThread;
 import android.os.Message;
 
 import com.ispd.mommybook.ocr.recognition.OCRRecognition;
+import com.ispd.mommybook.ocr.recognition.OCRRecognitionResult;
 
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.core.Mat;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.ispd.mommybook.aiscore.AIScoreFunctions.MSG_REQUEST_TEXT_SCORING;
 import static com.ispd.mommybook.ocr.OCRRecognitionMode.*;
@@ -26,8 +30,8 @@ public class OCRManager {
     private Handler mHandler = null;
 
     public static final int THREAD_NUM = 1;
-    private OCRRecognition[] mRecognizer;
-    private boolean mStopProcess = false;
+    private OCRRecognition mRecognizer;
+    private OCRJobScheduler mJobScheduler;
 
     /**
      * 인식할 데이터의 수 (BBox 개수와 같음)
@@ -42,9 +46,13 @@ public class OCRManager {
     /**
      * 현재 페이지의 모든 인식이 끝났는지의 여부.
      */
-    private boolean mRecognitonDone = true;
+    private volatile boolean mRecognitonDone = true;
 
-    private String mResultString = "";
+    /**
+     * 인식 결과 캐시를 사용중인 페이지. 바뀌면 캐시를 비움.
+     */
+    private int mCoverIndex = -1;
+    private int mPageIndex = -1;
 
     /**
      * 인식할 데이터의 구조 : 시리얼넘버, 정답 텍스트, 입력이미지, 인식할 모드, 인식결과 텍스트
@@ -104,12 +112,9 @@ public class OCRManager {
             }
         };
 
-        // 인식기 생성
-        mRecognizer = new OCRRecognition[THREAD_NUM];
-        for(int i = 0; i < THREAD_NUM; i++) {
-            mRecognizer[i] = new OCRRecognition(mContext, mHandler);
-        }
-        runProcess();
+        // 인식기 생성. 인식 작업은 스케줄러의 작업 쓰레드에서 실행됨.
+        mRecognizer = new OCRRecognition(mContext, mHandler);
+        mJobScheduler = new OCRJobScheduler("OCRRecognition", THREAD_NUM);
     }
 
     public Handler GetHandler() {
@@ -169,88 +174,69 @@ public class OCRManager {
 
     }
 
+    /**
+     * 채점할 페이지를 알려준다. 페이지가 바뀐 경우 이전 페이지의 인식 결과 캐시를 비움.
+     * @param coverIndex
+     * @param pageIndex
+     */
+    public void SetPage(int coverIndex, int pageIndex) {
+        if(coverIndex != mCoverIndex || pageIndex != mPageIndex) {
+            LOGGER.d("SallyRecog page changed : " + mCoverIndex + "-" + mPageIndex + " -> " + coverIndex + "-" + pageIndex
+                    + ", cache hit= " + mRecognizer.GetCache().GetHitCount() + ", miss= " + mRecognizer.GetCache().GetMissCount());
+            mRecognizer.ClearCache();
+            mCoverIndex = coverIndex;
+            mPageIndex = pageIndex;
+        }
+    }
+
     public void StartRecognitonDetection() {
         if(mRecognitonDone == true && mOCRDataList.isEmpty() == false) {
             LOGGER.d("SallyRecog StartRecognitionDetection !!!! OCRData size = " + mOCRDataList.size());
             mRecognitonDone = false;
-            ResumeProcess();
+            SubmitPageJob(null);
         }
     }
 
-    private void runProcess() {
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if( mStopProcess == true ) {
-                    LOGGER.d("SallyRecog Paused()~~");
-                    return;
-                }
-
-                // 인식이 시작됨.
-                if(mRecognitonDone == false ) {
-                    //전체 쓰레드가 각각 인식할 데이터 개수. but 집단채점을 반영한 개수가 아님.
-                    int dataLength = mOCRDataList.size();
-                    mDataLength = dataLength;
-                    mRecognitionDoneCnt = 0;
-                    LOGGER.d("SallyRecog  RecogDataLength = " + mDataLength);
-                    if(dataLength <= THREAD_NUM) { //인식할 데이터수 <= THREAD_NUM
-                        for(int i = 0; i < dataLength; i++) {
-                            //각 Thread 바로 실행
-                            mRecognizer[i].SetRecogData(mOCRDataList, i, i);
-                            mRecognizer[i].StartRecognition();
-                        }
-                    } else {
-                        // 인식할 데이터수 > THREAD_NUM  일 때 각 쓰레드에 인식할 데이터 개수를 분배함.
-                        int[] cnt = new int[THREAD_NUM];
-
-                        int sum = 0;
-                        for(int i = dataLength; i > 0; i -= THREAD_NUM) {
-                            for(int j = 0; j < THREAD_NUM; j++) {
-                                cnt[j] = cnt[j] + 1;
-                                LOGGER.d("SallyRecog  cnt["+j+"] = " + cnt[j]);
-                                sum += 1;
-                                if (sum == dataLength) break;
-                            }
-                        }
+    /**
+     * 현재 페이지의 인식데이터 전체를 하나의 인식 작업으로 등록한다.
+     * 단어별 결과는 기존처럼 RecogResultListener 로 전달되고, 작업이 끝나면 인식한 개수가 Future/콜백으로 전달됨.
+     * @param callback 페이지 인식 완료 콜백 (null 가능)
+     * @return 페이지 인식 작업의 Future. 스케줄러가 종료된 경우 null.
+     */
+    public Future<Integer> SubmitPageJob(OCRJobScheduler.JobCallback<Integer> callback) {
+        final int dataLength = mOCRDataList.size();
+        mDataLength = dataLength;
+        mRecognitionDoneCnt = 0;
+        LOGGER.d("SallyRecog  RecogDataLength = " + mDataLength);
 
-                        int index = 0;
-                        for(int i = 0; i < THREAD_NUM; i++) {
-                            mRecognizer[i].SetRecogData(mOCRDataList, index, index + cnt[i] - 1);
-                            // 갯수가 제대로 분배됐는지 확인용 코드
-                            LOGGER.d("SallyRecog Recog Thread["+i+"] Start : " + index + " ~ " + (index + cnt[i] - 1));
-                            index = index + cnt[i];
-                            // 인식 시작
-                            mRecognizer[i].StartRecognition();
-                            try {
-                                Thread.sleep(33);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
+        try {
+            return mJobScheduler.Submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    boolean recognized = false;
+                    try {
+                        mRecognizer.RecognizePage(mOCRDataList, 0, dataLength - 1);
+                        recognized = true;
+                        return dataLength;
+                    } finally {
+                        if(!recognized) {
+                            // 인식 중 예외가 나면 결과가 모두 오지 않으므로 여기서 다음 인식 요청을 받을 수 있게 함.
+                            LOGGER.e("SallyRecog RecognizePage failed");
+                            mRecognitonDone = true;
                         }
                     }
-                    PauseProcess(); //인식쓰레드들이 모두 끝날때까지 pause loop
                 }
-
-                mHandler.postDelayed(this, 33);
-            }
-        });
-    }
-
-    public void PauseProcess() {
-        mStopProcess = true;
-    }
-
-    public void ResumeProcess() {
-        if( mStopProcess == true ) {
-            mStopProcess = false;
-            runProcess();
+            }, callback);
+        } catch (RejectedExecutionException e) {
+            LOGGER.e(e, "SallyRecog OCRManager is already stopped");
+            mRecognitonDone = true;
+            return null;
         }
     }
 
     public void Stop() {
-        for(int i = 0; i < THREAD_NUM; i++) {
-            mRecognizer[i].Stop();
-        }
+        mJobScheduler.Stop();
+        mRecognizer.Stop();
 
         mHandlerThread.quitSafely();
         try {
@@ -278,16 +264,15 @@ public class OCRManager {
             case MSG_WORD_RECOGNITION_DONE:
                 int serialNumber = msg.arg1; //serialNo
                 int isMultiRecognition = msg.arg2; //멀티 모델 인식인지 아닌지 여부
-                mResultString = msg.obj.toString();
-                LOGGER.d("SallyRecog OCRManager Handler : Predicted Result(" + serialNumber + ") String : " +
-                        mResultString);
+                OCRRecognitionResult result = (OCRRecognitionResult) msg.obj;
+                LOGGER.d("SallyRecog OCRManager Handler : Predicted Result(" + serialNumber + ") : " + result);
 
-                // 정답을 요청한 각 과목 클래스에게 결과 스트링을 전달해서 채점하도록 함.
+                // 정답을 요청한 각 과목 클래스에게 인식 결과를 그대로 전달해서 채점하도록 함.
                 Message retmsg = new Message();
                 retmsg.what = MSG_REQUEST_TEXT_SCORING;
                 retmsg.arg1 = serialNumber;
                 retmsg.arg2 = isMultiRecognition;
-                retmsg.obj = mResultString;
+                retmsg.obj = result;
 
                 mRecogResultListener.onRecogResultListener(retmsg);
 
@@ -3,6 +3,8 @@ package com.ispd.mommybook.ocr.detection;
 import android.graphics.Bitmap;
 import android.graphics.RectF;
 
+import org.opencv.core.Mat;
+
 import java.util.List;
 
 /** Generic interface for interacting with different recognition engines. */
@@ -10,6 +12,27 @@ public interface Classifier {
 //    List<Recognition> RecognizeImage(Bitmap in_bitmap);
     void RecognizeImage(Bitmap in_bitmap, int in_coverOrScoring);
 
+    /**
+     * Mat 을 letterbox 로 모델 입력 버퍼에 넣는다. RecognizePreparedInput() 전에 호출함.
+     */
+    OCRDetectionLetterbox PrepareInput(Mat in_mat);
+
+    /**
+     * PrepareInput() 으로 채운 입력으로 detection 을 실행한다.
+     */
+    void RecognizePreparedInput(int in_coverOrScoring);
+
+    /**
+     * PrepareInput() 또는 PrepareTile() 로 채운 입력으로 detection 을 실행하고 NMS 후의 박스를 돌려준다.
+     * 박스는 모델 입력 좌표이며, 돌려준 객체는 다음 호출에서 다시 사용됨.
+     */
+    OCRDetectionNMS DetectPreparedInput();
+
+    /**
+     * 영역 배치 계획의 tile 하나를 모델 입력 버퍼에 넣는다.
+     */
+    void PrepareTile(Mat in_mat, OCRDetectionTilePlan in_plan, int in_tile);
+
     void EnableStatLogging(final boolean in_debug);
 
     String GetStatString();
@@ -3,26 +3,29 @@ package com.ispd.mommybook.ocr.detection;
 import android.content.Context;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.RectF;
 import android.os.SystemClock;
 
-import com.ispd.mommybook.utils.UtilsFile;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB;
+import com.ispd.mommybook.aiscore.AIScoreUtils;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 import com.ispd.mommybook.utils.UtilsMatrix;
 
-import org.opencv.android.Utils;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfInt;
+import org.opencv.core.Point;
 import org.opencv.core.Rect;
-import org.opencv.core.Scalar;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -50,11 +53,21 @@ public class OCRDetection {
     private Classifier mDetector;
 
     private long mLastProcessingTimeMs;
-    private Bitmap mBitmapRGBFrame = null;
-    private Bitmap mBitmapResized = null;
     private Bitmap mBitmapCropCopy = null;
 
-    private boolean mIsComputingDetection = false;
+    // 마지막 입력의 letterbox 정보 (모델 입력 좌표 -> 채점영역 좌표 변환용)
+    private volatile OCRDetectionLetterbox mLetterbox = null;
+
+    // 영역 제한 detection : tile 최대 수와 최대 배율(원본보다 키우지 않음)
+    // 모델은 tile 마다 입력 크기 전체로 실행되므로 tile 하나로 제한해서 페이지 전체 detection 보다 모델 작업이 늘지 않도록 함.
+    private static final int REGION_MAX_TILES = 1;
+    private static final float REGION_MAX_SCALE = 1.f;
+    private volatile List<RotatedRect> mRegionBoxes = new ArrayList<>();
+
+    // detection 작업 쓰레드. 대기중인 요청은 최신 프레임 하나만 유지함.
+    private final OCRDetectionService mDetectionService = new OCRDetectionService("OCRDetection");
+    private int mCoverIndex = -1;
+    private int mPageIndex = -1;
 
     private long mTimestamp = 0;
 
@@ -98,18 +111,9 @@ public class OCRDetection {
         mInputImgHeight = in_height;
 
         int resizedSize = TF_OD_API_INPUT_SIZE;
-        int baseLength;
-        // 채점 영역을 가져다 붙일 정사각형 빈 bitmap을 생성. 정사각형인 이유는,
+        // 채점 영역은 정사각형 입력에 붙임. 정사각형인 이유는,
         // detection 입력이 정사각형이고 맞춰서 같은 비율로 resize하기 위함임.
-        if (mInputImgWidth >= mInputImgHeight) {
-            baseLength = mInputImgWidth;
-            mBitmapRGBFrame = Bitmap.createBitmap(mInputImgWidth, mInputImgWidth, Bitmap.Config.ARGB_8888);
-        } else {
-            baseLength = mInputImgHeight;
-            mBitmapRGBFrame = Bitmap.createBitmap(mInputImgHeight, mInputImgHeight, Bitmap.Config.ARGB_8888);
-        }
-
-        mBitmapResized = Bitmap.createBitmap(resizedSize, resizedSize, Bitmap.Config.ARGB_8888);
+        int baseLength = Math.max(mInputImgWidth, mInputImgHeight);
 
         mMatrixFrameToCropTransform =
                 UtilsMatrix.GetTransformationMatrix(
@@ -155,112 +159,207 @@ public class OCRDetection {
         ++mTimestamp;
         final long currTimestamp = mTimestamp;
 
-        // No mutex needed as this method is not reentrant.
-        if (mIsComputingDetection) {
-            return;
-        }
-
-        mIsComputingDetection = true;
+        // 처리중이면 대기중인 요청을 이 프레임으로 바꿈. (latest-frame-wins)
+        // 작업 쓰레드에서 사용하므로 입력의 사본을 넘기고, 실행되지 않으면 Discard() 에서 해제함.
+        final Mat frame = in_inputImg.clone();
 
         LOGGER.i("Preparing image " + currTimestamp + " for detection in bg thread.");
 
+        mDetectionService.Submit(mCoverIndex, mPageIndex, new OCRDetectionService.Job() {
+            @Override
+            public void Run(OCRDetectionService.CancelToken in_token) {
+                try {
+                    runDetection(frame, in_coverOrScoring, currTimestamp, in_token);
+                } catch (RuntimeException e) {
+                    LOGGER.e(e, "SallyDetect detection job " + currTimestamp + " failed");
+                    throw e;
+                } finally {
+                    frame.release();
+                }
+            }
+
+            @Override
+            public void Discard() {
+                frame.release();
+            }
+        });
+    }
+
+    private void runDetection(Mat in_frame, int in_coverOrScoring, long in_timestamp,
+                              OCRDetectionService.CancelToken in_token) {
+        if (in_token.IsCancelled()) {
+            return;
+        }
+
         //Start
         long startTimeForReference = SystemClock.uptimeMillis();
 
-        // 정사각형 mBitmapRGBFrame 에 채점영역을 우상기준으로 갖다 붙임.
-        Mat dst = new Mat(mBitmapRGBFrame.getWidth(), mBitmapRGBFrame.getHeight(),in_inputImg.type());
-        dst.setTo(new Scalar(255,255,255)); //흰색으로 칠함.
-        Mat dstroi = dst.submat(new Rect(0,0,inputWidth,inputHeight)); // Get the reference of the sub-image in the specified area of dst
-        in_inputImg.copyTo(dstroi); //dst의 우상부분에 inputImg를 카피함.
-        Imgcodecs.imwrite("/sdcard/studyNet/DEBUG/1_dstImg"+ Long.toString(startTimeForReference)+".jpg", dst);//for debug
-//        Imgcodecs.imwrite("/sdcard/studyNet/DEBUG/0_inputImg"+ Long.toString(startTimeForReference)+".jpg", in_inputImg);//for debug
-
-        //Bitmap으로 변환
-//        mBitmapRGBFrame.setPixels(in_rgbBytes, 0, mInputImgWidth, 0, 0,
-        Utils.matToBitmap(dst, mBitmapRGBFrame);
-        UtilsFile.SaveBitmap(mBitmapRGBFrame, "mBitmapRGBFrame"+ Long.toString(startTimeForReference)+".jpg");  //for debug
-
-        //TODO : crop을 하지 않고, 채점영역의 width로 정사각형 빈 이미지를 만들고 채점영역을 우상에 복사한 후,
-        //       TF_OD_API_INPUT_SIZE 사이즈로 리사이즈하기.
-//crop 해서 원본 사이즈로 resize 하는 부분은 패스
-//        Bitmap resizedBmp = Bitmap.createBitmap(mBitmapRGBFrame
-//                , mBitmapRGBFrame.getWidth() / 4 //X 시작위치 (원본의 4/1지점)
-//                , mBitmapRGBFrame.getHeight() / 5 //Y 시작위치 (원본의 4/1지점)
-//                , mBitmapRGBFrame.getWidth() / 4 * 2 // 넓이 (원본의 절반 크기)
-//                , mBitmapRGBFrame.getHeight() / 5 * 3); // 높이 (원본의 절반 크기)
-
-//        resizedBmp = Bitmap.createScaledBitmap(resizedBmp,
-//                                               mBitmapRGBFrame.getWidth(),
-//                                               mBitmapRGBFrame.getHeight(),
-//                                          true);
-//        LOGGER.i("Resized Bmp %d %d", resizedBmp.getWidth(), resizedBmp.getHeight());
-
-//        TODO : 아래 소스중 resizeBmp를 mBitmapRGBFrame으로 치환하면 될듯.
-        final Canvas canvas = new Canvas(mBitmapResized);
-        //canvas.drawBitmap(resizedBmp, mMatrixFrameToCropTransform, null);
-        canvas.drawBitmap(mBitmapRGBFrame, mMatrixFrameToCropTransform, null);
-
-        Matrix sideInversion = new Matrix();
-        //sideInversion.setScale(1, -1);  // 상하반전
-        //sideInversion.setScale(-1, 1);  // 좌우반전
-        mBitmapResized = Bitmap.createBitmap(mBitmapResized, 0, 0,
-                mBitmapResized.getWidth(), mBitmapResized.getHeight(), sideInversion, false);
+        // 채점영역을 우상기준으로 흰색 정사각형 입력에 비율을 유지해서 바로 resize 하고 입력 버퍼를 채움.
+        // (Bitmap 변환, Canvas 그리기 없이 Mat 에서 입력 버퍼로 바로 씀)
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.DETECTION, "/sdcard/studyNet/DEBUG/0_inputImg"+ Long.toString(startTimeForReference)+".jpg", in_frame);//for debug
+        mLetterbox = mDetector.PrepareInput(in_frame);
 
         long endTimeForReference = SystemClock.uptimeMillis();
-        LOGGER.d("SallyDetect Elapsed Time(Crop Bitmap) : " + (endTimeForReference - startTimeForReference));
-
-//        ImageUtils.saveBitmap(mCroppedBitmap, "mCroppedBitmap.png");
-        UtilsFile.SaveBitmap(mBitmapResized, "mBitmapResized"+ Long.toString(startTimeForReference)+".jpg");
-
-        // sally : 현재 VGA사이즈의 카메라 이미지(bmp)를 detector를 통해 TextBoxView 클래스에 전달한다.
-        // TextBoxView 클래스에서는 detector의 recognizeImage() 의 setTextLocation()함수 호출 후
-        // drawTextLines() 호출 및 decode() 루틴 적용 후 나온 결과(bbox들)를 인식루틴에 전달하기 위해
-        // 이 rgbFrameBitmap을 이용한다.
-        //mDetector.setRecogBmp(resizedBmp); //sally : OCRManager에서 할일임. 옮기기 TODO
-
-        new Thread(() -> {
-            //                LOGGER.i("Running detection on image " + currTimestamp);
-            final long startTime = SystemClock.uptimeMillis();
-//            final List<Classifier.Recognition> results = mDetector.RecognizeImage(mBitmapResized);
-            mDetector.RecognizeImage(mBitmapResized, in_coverOrScoring);
-            mLastProcessingTimeMs = SystemClock.uptimeMillis() - startTime;
-            LOGGER.i("SallyDetect lastProcessingTimeMs : " + mLastProcessingTimeMs);
-
-
-            //LOGGER.d("CroppedBMP : " + croppedBitmap.getWidth() + ", " + croppedBitmap.getHeight()); //sally 320x320
-
-//            //TODO : 아래 결과 그리는 부분 옮기든가 수정하든가 하기
-//            mBitmapCropCopy = Bitmap.createBitmap(mBitmapResized);
-//            final Canvas canvas2 = new Canvas(mBitmapCropCopy);
-//            final Paint paint = new Paint();
-//            paint.setColor(Color.RED);
-//            paint.setStyle(Paint.Style.STROKE);
-//            paint.setStrokeWidth(2.0f);
+        LOGGER.d("SallyDetect Elapsed Time(Prepare Input) : " + (endTimeForReference - startTimeForReference));
+
+        // 전처리 중에 페이지가 바뀌었으면 모델을 실행하지 않음.
+        if (in_token.IsCancelled()) {
+            LOGGER.d("SallyDetect detection " + in_timestamp + " cancelled");
+            return;
+        }
+
+        //                LOGGER.i("Running detection on image " + currTimestamp);
+        final long startTime = SystemClock.uptimeMillis();
+//        final List<Classifier.Recognition> results = mDetector.RecognizeImage(mBitmapResized);
+        mDetector.RecognizePreparedInput(in_coverOrScoring);
+        mLastProcessingTimeMs = SystemClock.uptimeMillis() - startTime;
+        LOGGER.i("SallyDetect lastProcessingTimeMs : " + mLastProcessingTimeMs);
+
+
+        //LOGGER.d("CroppedBMP : " + croppedBitmap.getWidth() + ", " + croppedBitmap.getHeight()); //sally 320x320
+
+//        //TODO : 아래 결과 그리는 부분 옮기든가 수정하든가 하기
+//        mBitmapCropCopy = Bitmap.createBitmap(mBitmapResized);
+//        final Canvas canvas2 = new Canvas(mBitmapCropCopy);
+//        final Paint paint = new Paint();
+//        paint.setColor(Color.RED);
+//        paint.setStyle(Paint.Style.STROKE);
+//        paint.setStrokeWidth(2.0f);
 //
-//            float minimumConfidence = MINIMUM_CONFIDENCE_TF_OD_API;
-//            switch (MODE) {
-//                case TF_OD_API:
-//                    minimumConfidence = MINIMUM_CONFIDENCE_TF_OD_API;
-//                    break;
-//            }
+//        float minimumConfidence = MINIMUM_CONFIDENCE_TF_OD_API;
+//        switch (MODE) {
+//            case TF_OD_API:
+//                minimumConfidence = MINIMUM_CONFIDENCE_TF_OD_API;
+//                break;
+//        }
 //
-//            final List<Classifier.Recognition> mappedRecognitions =
-//                    new LinkedList<Classifier.Recognition>();
+//        final List<Classifier.Recognition> mappedRecognitions =
+//                new LinkedList<Classifier.Recognition>();
 //
-//            for (final Classifier.Recognition result : results) {
-//                final RectF location = result.getLocation();
-//                if (location != null && result.getConfidence() >= minimumConfidence) {
-//                    canvas2.drawRect(location, paint);
+//        for (final Classifier.Recognition result : results) {
+//            final RectF location = result.getLocation();
+//            if (location != null && result.getConfidence() >= minimumConfidence) {
+//                canvas2.drawRect(location, paint);
 //
-//                    mMatrixCropToFrameTransform.mapRect(location);
+//                mMatrixCropToFrameTransform.mapRect(location);
 //
-//                    result.setLocation(location);
-//                    mappedRecognitions.add(result);
-//                }
+//                result.setLocation(location);
+//                mappedRecognitions.add(result);
 //            }
-//            mBoxTracker.trackResults(mappedRecognitions, currTimestamp);
-            mIsComputingDetection = false;
-        }).start();
+//        }
+//        mBoxTracker.trackResults(mappedRecognitions, currTimestamp);
+    }
+
+    /**
+     * 페이지의 문자 인식 채점 영역만 detection 한다. 영역은 AIScoreUtils.GetTextRegionRects() 로
+     * in_inputImg 의 픽셀 좌표로 바꿔서 StartRegionDetection(Mat, List<Rect>) 에 넘김.
+     *
+     * @param in_inputImg 정렬된 페이지 이미지
+     * @param in_dataBase 페이지의 채점 영역 (AIScoreReferenceDB.GetAIScoreMethod())
+     * @param in_previewHeight 카메라 프리뷰 높이
+     */
+    public void StartRegionDetection(Mat in_inputImg, List<AIScoreReferenceDB.DataBase> in_dataBase,
+                                     int in_previewHeight) {
+        StartRegionDetection(in_inputImg, AIScoreUtils.GetTextRegionRects(in_dataBase,
+                in_inputImg.cols(), in_inputImg.rows(), in_previewHeight));
+    }
+
+    /**
+     * 채점모드에서 답이 쓰일 영역만 detection 한다. 영역(여백 포함)을 입력 크기의 tile 몇 장에 모아서
+     * 실행하고, 박스는 입력 이미지 좌표로 되돌려서 GetRegionBoxes() 로 가져갈 수 있음.
+     * 영역은 AIScoreUtils.GetTextRegionRects() 로 AIScoreReferenceDB 의 영역에서 계산함.
+     *
+     * @param in_inputImg 정렬된 페이지 이미지
+     * @param in_regions 영역 (in_inputImg 의 픽셀 좌표)
+     */
+    public void StartRegionDetection(Mat in_inputImg, List<Rect> in_regions) {
+        int[] rects = new int[in_regions.size() * 4];
+        for (int i = 0; i < in_regions.size(); i++) {
+            Rect rect = in_regions.get(i);
+            rects[i * 4] = rect.x;
+            rects[i * 4 + 1] = rect.y;
+            rects[i * 4 + 2] = rect.width;
+            rects[i * 4 + 3] = rect.height;
+        }
+        final OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(in_inputImg.cols(), in_inputImg.rows(), rects,
+                TF_OD_API_INPUT_SIZE, REGION_MAX_TILES, REGION_MAX_SCALE, OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        if (plan.GetPlacementCount() == 0) {
+            mRegionBoxes = new ArrayList<>();
+            return;
+        }
+        LOGGER.d("SallyDetect region detection regions : " + plan.GetPlacementCount()
+                + ", tiles : " + plan.GetTileCount() + ", scale : " + plan.GetScale()
+                + ", pixels : " + plan.GetSourcePixels() + " / " + plan.GetFramePixels()
+                + ", model pixels : " + plan.GetModelPixels());
+
+        ++mTimestamp;
+        final long currTimestamp = mTimestamp;
+        final Mat frame = in_inputImg.clone();
+
+        mDetectionService.Submit(mCoverIndex, mPageIndex, new OCRDetectionService.Job() {
+            @Override
+            public void Run(OCRDetectionService.CancelToken in_token) {
+                try {
+                    runRegionDetection(frame, plan, currTimestamp, in_token);
+                } catch (RuntimeException e) {
+                    LOGGER.e(e, "SallyDetect detection job " + currTimestamp + " failed");
+                    throw e;
+                } finally {
+                    frame.release();
+                }
+            }
+
+            @Override
+            public void Discard() {
+                frame.release();
+            }
+        });
+    }
+
+    private void runRegionDetection(Mat in_frame, OCRDetectionTilePlan in_plan, long in_timestamp,
+                                    OCRDetectionService.CancelToken in_token) {
+        final long startTime = SystemClock.uptimeMillis();
+        List<RotatedRect> boxes = new ArrayList<>();
+        for (int tile = 0; tile < in_plan.GetTileCount(); tile++) {
+            if (in_token.IsCancelled()) {
+                LOGGER.d("SallyDetect region detection " + in_timestamp + " cancelled");
+                return;
+            }
+            mDetector.PrepareTile(in_frame, in_plan, tile);
+            OCRDetectionNMS nms = mDetector.DetectPreparedInput();
+
+            // tile 좌표의 박스를 박스 중심이 속한 영역을 기준으로 입력 이미지 좌표로 되돌림.
+            for (int k = 0; k < nms.GetCount(); k++) {
+                double cx = nms.GetCenterX()[k];
+                double cy = nms.GetCenterY()[k];
+                int placement = in_plan.FindPlacement(tile, cx, cy);
+                if (placement < 0) {
+                    continue;
+                }
+                double ratioX = in_plan.GetSourceWidth(placement) / (double) in_plan.GetTileWidth(placement);
+                double ratioY = in_plan.GetSourceHeight(placement) / (double) in_plan.GetTileHeight(placement);
+                boxes.add(new RotatedRect(
+                        new Point(in_plan.ToSourceX(placement, cx), in_plan.ToSourceY(placement, cy)),
+                        new Size(nms.GetWidth()[k] * ratioX, nms.GetHeight()[k] * ratioY),
+                        nms.GetAngle()[k]));
+            }
+        }
+        // 마지막 tile 을 실행하는 동안 페이지가 바뀌었으면 이전 페이지의 박스를 남기지 않음.
+        if (in_token.IsCancelled()) {
+            LOGGER.d("SallyDetect region detection " + in_timestamp + " cancelled");
+            return;
+        }
+        mRegionBoxes = boxes;
+        mLastProcessingTimeMs = SystemClock.uptimeMillis() - startTime;
+        LOGGER.i("SallyDetect region detection boxes : " + boxes.size()
+                + ", lastProcessingTimeMs : " + mLastProcessingTimeMs);
+    }
+
+    /**
+     * @return 마지막 StartRegionDetection() 의 박스 (입력 이미지 좌표). 아직 없으면 빈 리스트.
+     */
+    public List<RotatedRect> GetRegionBoxes() {
+        return mRegionBoxes;
     }
 
     // Which detection model to use: by default uses Tensorflow Object Detection API frozen
@@ -269,6 +368,39 @@ public class OCRDetection {
         TF_OD_API;
     }
 
+    /**
+     * 현재 표지/페이지를 지정한다. 바뀌면 이전 페이지의 detection 요청은 취소됨.
+     */
+    public void SetPage(int in_coverIndex, int in_pageIndex) {
+        mCoverIndex = in_coverIndex;
+        mPageIndex = in_pageIndex;
+        mDetectionService.SetPage(in_coverIndex, in_pageIndex);
+    }
+
+    /**
+     * 대기중인 요청을 취소하고 detection 쓰레드를 종료한다.
+     */
+    public void Close() {
+        mDetectionService.Stop();
+    }
+
+    /**
+     * @return detection 요청 처리 현황 (등록/교체/취소/완료 수)
+     */
+    public String GetServiceStatString() {
+        return "accepted : " + mDetectionService.GetAcceptedCount()
+                + ", replaced : " + mDetectionService.GetReplacedCount()
+                + ", cancelled : " + mDetectionService.GetCancelledCount()
+                + ", done : " + mDetectionService.GetDoneCount();
+    }
+
+    /**
+     * @return 마지막으로 detection 한 입력의 letterbox 정보. 박스를 입력 이미지 좌표로 바꿀 때 사용함.
+     */
+    public OCRDetectionLetterbox GetLetterbox() {
+        return mLetterbox;
+    }
+
     public void SetUseNNAPI(boolean in_isChecked) {
         mDetector.SetUseNNAPI(in_isChecked);
     }
@@ -5,14 +5,9 @@ import android.annotation.SuppressLint;
 import com.ispd.mommybook.ocr.recognition.OCRRecognition;
 import com.ispd.mommybook.utils.UtilsLogger;
 
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfFloat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.MatOfRotatedRect;
 import org.opencv.core.Point;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Size;
-import org.opencv.utils.Converters;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -26,39 +21,48 @@ import static java.lang.Math.sqrt;
 public class OCRDetectionDecodeResult {
     private static final UtilsLogger LOGGER = new UtilsLogger();
 
+    public static final float SCORE_THRESH = 0.6f;//0.5f;
+    public static final float NMS_THRESH = 0.1f;//0.4f;
+
     public OCRDetectionDecodeResult() {
 
     }
 
     //    static public boolean drawTextLines(int in_outputSize, Mat in_scoresMat, Mat in_geometryMat)
+    /**
+     * @param in_decoder 후보를 담을 decoder. 호출하는 쪽에서 만들어서 재사용함.
+     * @param in_nms 후보를 줄일 NMS. 호출하는 쪽에서 만들어서 재사용함.
+     * @param in_scores score map (in_outputSize x in_outputSize)
+     * @param in_geometry geometry map (in_outputSize x in_outputSize x 5, 모델 출력 순서)
+     */
     @SuppressLint("NewApi")
-    public static Point[][] decodeDetectionResult(Mat in_scoresMat, Mat in_geometryMat,
+    public static Point[][] decodeDetectionResult(OCRDetectionGeometryDecoder in_decoder,
+                                                  OCRDetectionNMS in_nms,
+                                                  float[] in_scores, float[] in_geometry,
                                                   int in_outputSize, int coverOrScoring)
     {
-        float scoreThresh = 0.6f;//0.5f;
-        float nmsThresh = 0.1f;//0.4f;
+        float scoreThresh = SCORE_THRESH;
+        float nmsThresh = NMS_THRESH;
 
         Size siz = new Size(in_outputSize*4, in_outputSize*4);
 
         LOGGER.i("SallyDetect outputSize : "+siz);
 
-        List<Float> confidencesList = new ArrayList<>();
-        List<RotatedRect> boxesList = decode(in_scoresMat, in_geometryMat, confidencesList, scoreThresh);
+        int numOfCandidates = in_decoder.DecodeInterleaved(in_scores, in_geometry,
+                                                            in_outputSize, in_outputSize, scoreThresh);
 
-        LOGGER.i("SallyDetect confidences : "+confidencesList.size());
+        LOGGER.i("SallyDetect confidences : "+numOfCandidates);
 
-        if( confidencesList.size() == 0 )
+        if( numOfCandidates == 0 )
         {
             return null;
         }
 
         // Apply non-maximum suppression procedure.
-        MatOfFloat confidences = new MatOfFloat(Converters.vector_float_to_Mat(confidencesList));
-        RotatedRect[] boxesArray = boxesList.toArray(new RotatedRect[0]);
-        MatOfRotatedRect boxes = new MatOfRotatedRect(boxesArray);
-        MatOfInt indices = new MatOfInt();
-        //Opencv에 Dnn 모듈 빌드 필요
-//        Dnn.NMSBoxesRotated(boxes, confidences, scoreThresh, nmsThresh, indices);
+        //Opencv에 Dnn 모듈이 없어서 Dnn.NMSBoxesRotated() 대신 Java 로 구현한 locality-aware NMS 를 사용함.
+        int numOfKept = in_nms.Run(in_decoder.GetCenterX(), in_decoder.GetCenterY(),
+                in_decoder.GetWidth(), in_decoder.GetHeight(), in_decoder.GetAngle(),
+                in_decoder.GetScores(), numOfCandidates, nmsThresh);
 
         // Render detections
 //        Point ratio = new Point(1080.f/siz.width, 1440.f/siz.height);
@@ -66,19 +70,17 @@ public class OCRDetectionDecodeResult {
 
 //        아래 코드가 굳이 함수 안에 있을 필요는 없음. 고정값임.
         Point ratioRecog = new Point(1280.f/siz.width, 960.f/siz.height); //for recognition (sally)
-        int[] indexes = indices.toArray();
-
         // detect된 bbox의 개수임.
-        int numOfDetectedBBox = indexes.length;//for recognition (sally)
+        int numOfDetectedBBox = numOfKept;//for recognition (sally)
         LOGGER.d("SallyDetect num of BBOX = " + numOfDetectedBBox);
 
         // mRotRectList 는 정렬함수를 이용하기 위해 Comparable 클래스를 상속한 DetectedRects를 담은 리스트임.
         // mRotRectList 는 빈번하게 사용되므로 글로벌로 선언해서 사용함.
         List<DetectedRects> rotRectList = new ArrayList<>(); //for recognition (sally)
         rotRectList.clear();
-        for(int i = 0; i < indexes.length; ++i) {
-            RotatedRect rot = boxesArray[indexes[i]];
-            rotRectList.add(new DetectedRects(indexes[i], rot));
+        for(int i = 0; i < numOfKept; ++i) {
+            RotatedRect rot = toRotatedRect(in_nms, i);
+            rotRectList.add(new DetectedRects(i, rot));
         }
 
         float expandRatioX, expandRatioY;
@@ -164,49 +166,11 @@ public class OCRDetectionDecodeResult {
         return recogBoxPoint;
     }
 
-    private static List<RotatedRect> decode(Mat scores, Mat geometry, List<Float> confidences, float scoreThresh) {
-        int W = geometry.cols();
-        int H = geometry.rows() / 5;
-
-        List<RotatedRect> detections = new ArrayList<>();
-        for (int y = 0; y < H; ++y) {
-            Mat scoresData = scores.row(y);
-            Mat x0Data = geometry.submat(0, H, 0, W).row(y);
-            Mat x1Data = geometry.submat(H, 2 * H, 0, W).row(y);
-            Mat x2Data = geometry.submat(2 * H, 3 * H, 0, W).row(y);
-            Mat x3Data = geometry.submat(3 * H, 4 * H, 0, W).row(y);
-            Mat anglesData = geometry.submat(4 * H, 5 * H, 0, W).row(y);
-
-            for (int x = 0; x < W; ++x) {
-                double score = scoresData.get(0, x)[0];
-//                LOGGER.d("score : "+(int)score+", y : "+y+", x : "+x);
-
-                if (score >= scoreThresh) {
-                    //LOGGER.d("index : "+x+", score : "+score);
-
-                    double offsetX = x * 4.0;
-                    double offsetY = y * 4.0;
-                    double angle = anglesData.get(0, x)[0];
-                    double cosA = cos(angle);
-                    double sinA = sin(angle);
-                    double x0 = x0Data.get(0, x)[0];
-                    double x1 = x1Data.get(0, x)[0];
-                    double x2 = x2Data.get(0, x)[0];
-                    double x3 = x3Data.get(0, x)[0];
-
-                    double h = x0 + x2;
-                    double w = x1 + x3;
-                    Point offset = new Point(offsetX + cosA * x1 + sinA * x2, offsetY - sinA * x1 + cosA * x2);
-                    Point p1 = new Point(-1 * sinA * h + offset.x, -1 * cosA * h + offset.y);
-                    Point p3 = new Point(-1 * cosA * w + offset.x,      sinA * w + offset.y); // original trouble here !
-                    RotatedRect r = new RotatedRect(new Point(0.5 * (p1.x + p3.x), 0.5 * (p1.y + p3.y)), new Size(w, h), -1 * angle * 180 / Math.PI);
-
-                    detections.add(r);
-                    confidences.add((float) score);
-                }
-            }
-        }
-        return detections;
+    // NMS 후 남은 박스만 RotatedRect 로 만듦.
+    private static RotatedRect toRotatedRect(OCRDetectionNMS in_nms, int in_index) {
+        return new RotatedRect(new Point(in_nms.GetCenterX()[in_index], in_nms.GetCenterY()[in_index]),
+                new Size(in_nms.GetWidth()[in_index], in_nms.GetHeight()[in_index]),
+                in_nms.GetAngle()[in_index]);
     }
 
     //sally : 4점을 rotate하는 함수
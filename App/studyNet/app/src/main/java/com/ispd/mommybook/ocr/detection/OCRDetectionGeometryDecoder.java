@@ -0,0 +1,153 @@
+package com.ispd.mommybook.ocr.detection;
+
+/**
+ * EAST 출력(score map, geometry map) decoder
+ *
+ * 기존 decode() 는 Mat.row()/submat() 과 get(0, x)[0] 으로 픽셀마다 JNI 를 호출하고,
+ * 후보마다 Point, RotatedRect 를 만들었다.
+ * 이 클래스는 OCRDetectionInference 의 flat float[] 을 직접 읽어서
+ * 미리 할당한 배열(중심 x, y, 가로, 세로, 각도, score)에 후보를 채운다.
+ * 계산 순서와 자료형은 기존 decode() 와 같으므로 결과도 같다.
+ *
+ * 한 쓰레드에서만 사용해야 함. (결과 배열을 다음 Decode() 에서 다시 사용함)
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionGeometryDecoder {
+    // score map 한 칸이 입력 이미지의 4 픽셀에 해당함.
+    public static final double STRIDE = 4.0;
+
+    private int mCount = 0;
+    private double[] mCenterX;
+    private double[] mCenterY;
+    private double[] mWidth;
+    private double[] mHeight;
+    private double[] mAngle;
+    private float[] mScore;
+
+    /**
+     * @param in_capacity 예상 최대 후보 수. 보통 score map 크기(outSize * outSize). 모자라면 늘어남.
+     */
+    public OCRDetectionGeometryDecoder(int in_capacity) {
+        allocate(Math.max(1, in_capacity));
+    }
+
+    /**
+     * score 가 기준 이상인 위치마다 회전된 박스를 만든다.
+     * @param in_scores score map, row-major (in_height x in_width)
+     * @param in_geometry geometry map, channel 별로 이어진 5 x (in_height x in_width).
+     *                    channel 0~3 은 위/오른쪽/아래/왼쪽 까지의 거리, 4 는 각도(radian)
+     * @param in_width map 가로 크기
+     * @param in_height map 세로 크기
+     * @param in_scoreThresh score 기준값
+     * @return 후보 수
+     */
+    public int Decode(float[] in_scores, float[] in_geometry, int in_width, int in_height, float in_scoreThresh) {
+        int plane = in_width * in_height;
+        return decode(in_scores, in_geometry, in_width, in_height, in_scoreThresh, 1, plane);
+    }
+
+    /**
+     * Decode() 와 같지만 geometry 가 모델 출력 그대로(NHWC, 픽셀마다 5 channel 이 이어짐)인 경우에 사용한다.
+     * @param in_geometry geometry map, (in_height x in_width) x 5
+     */
+    public int DecodeInterleaved(float[] in_scores, float[] in_geometry, int in_width, int in_height,
+                                 float in_scoreThresh) {
+        return decode(in_scores, in_geometry, in_width, in_height, in_scoreThresh, 5, 1);
+    }
+
+    /**
+     * @param in_pixelStride geometry 에서 이웃 픽셀 사이의 간격
+     * @param in_channelStride geometry 에서 이웃 channel 사이의 간격
+     */
+    private int decode(float[] in_scores, float[] in_geometry, int in_width, int in_height, float in_scoreThresh,
+                       int in_pixelStride, int in_channelStride) {
+        int plane = in_width * in_height;
+        if (mScore.length < plane) {
+            allocate(plane);
+        }
+
+        int count = 0;
+        for (int y = 0; y < in_height; ++y) {
+            int row = y * in_width;
+            double offsetY = y * STRIDE;
+            for (int x = 0; x < in_width; ++x) {
+                int i = row + x;
+                float score = in_scores[i];
+                if (score < in_scoreThresh) {
+                    continue;
+                }
+
+                int g = i * in_pixelStride;
+                double offsetX = x * STRIDE;
+                double angle = in_geometry[g + 4 * in_channelStride];
+                double cosA = Math.cos(angle);
+                double sinA = Math.sin(angle);
+                double x0 = in_geometry[g];
+                double x1 = in_geometry[g + in_channelStride];
+                double x2 = in_geometry[g + 2 * in_channelStride];
+                double x3 = in_geometry[g + 3 * in_channelStride];
+
+                double h = x0 + x2;
+                double w = x1 + x3;
+                double ox = offsetX + cosA * x1 + sinA * x2;
+                double oy = offsetY - sinA * x1 + cosA * x2;
+                double p1x = -1 * sinA * h + ox;
+                double p1y = -1 * cosA * h + oy;
+                double p3x = -1 * cosA * w + ox;
+                double p3y = sinA * w + oy;
+
+                mCenterX[count] = 0.5 * (p1x + p3x);
+                mCenterY[count] = 0.5 * (p1y + p3y);
+                mWidth[count] = w;
+                mHeight[count] = h;
+                mAngle[count] = -1 * angle * 180 / Math.PI;
+                mScore[count] = score;
+                count++;
+            }
+        }
+        mCount = count;
+        return count;
+    }
+
+    public int GetCount() {
+        return mCount;
+    }
+
+    public double[] GetCenterX() {
+        return mCenterX;
+    }
+
+    public double[] GetCenterY() {
+        return mCenterY;
+    }
+
+    public double[] GetWidth() {
+        return mWidth;
+    }
+
+    public double[] GetHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return 각도 (degree, RotatedRect.angle 과 같은 방향)
+     */
+    public double[] GetAngle() {
+        return mAngle;
+    }
+
+    public float[] GetScores() {
+        return mScore;
+    }
+
+    private void allocate(int in_capacity) {
+        mCenterX = new double[in_capacity];
+        mCenterY = new double[in_capacity];
+        mWidth = new double[in_capacity];
+        mHeight = new double[in_capacity];
+        mAngle = new double[in_capacity];
+        mScore = new float[in_capacity];
+    }
+}
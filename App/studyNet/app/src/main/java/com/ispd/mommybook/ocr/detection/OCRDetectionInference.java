@@ -7,7 +7,7 @@ import android.graphics.RectF;
 import android.os.SystemClock;
 import android.os.Trace;
 
-import com.ispd.mommybook.utils.UtilsFile;
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.core.CvType;
@@ -27,14 +27,11 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
-import static org.opencv.core.CvType.CV_32FC1;
 
 /**
  * Text Detection Inference
@@ -75,12 +72,12 @@ public class OCRDetectionInference implements Classifier {
 
     private float[][][][] outputImage;
 
-    private float[][][][] outputScore;
-    private float[][][][] outputGeometry;
-    private float mScoreFloat[];
-    private float mGeoFloat[];
-    private Mat mScoreMat;
-    private Mat mGeomertyMat;
+    // 출력 버퍼. 처음 실행할 때 만들고 계속 재사용함.
+    private OCRDetectionOutputBuffers mOutputBuffers;
+    private Object[] mInputArray;
+    private OCRDetectionGeometryDecoder mDecoder;
+    private OCRDetectionNMS mNMS;
+    private OCRDetectionPreprocess mPreprocess;
 
     private ByteBuffer mInputImgByteData;
 
@@ -181,7 +178,7 @@ public class OCRDetectionInference implements Classifier {
         // on the provided parameters.
         in_bitmap.getPixels(mInputImgIntData, 0, in_bitmap.getWidth(), 0, 0,
                             in_bitmap.getWidth(), in_bitmap.getHeight());
-        UtilsFile.SaveBitmap(in_bitmap, "mBitmapRecognizeInput.png"); //for debug
+        UtilsDebugSink.SaveBitmap(UtilsDebugSink.Category.DETECTION, "mBitmapRecognizeInput.png", in_bitmap); //for debug
 
         mInputImgByteData.rewind();
 
@@ -202,58 +199,77 @@ public class OCRDetectionInference implements Classifier {
         }
         Trace.endSection(); // preprocessBitmap
 
-        int outSize = mInputSize / 4;
+        RecognizePreparedInput(in_coverOrScoring);
+    }
 
-        outputScore = new float[1][outSize][outSize][1];
-        outputGeometry = new float[1][outSize][outSize][5];
+    @Override
+    public OCRDetectionLetterbox PrepareInput(final Mat in_mat) {
+        if( mPreprocess == null ) {
+            mPreprocess = new OCRDetectionPreprocess(mInputSize, mIsModelQuantized);
+        }
+        OCRDetectionLetterbox letterbox = mPreprocess.Prepare(in_mat, mInputImgByteData);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.DETECTION,
+                               "/sdcard/studyNet/DEBUG/mMatRecognizeInput.png", mPreprocess.GetInputMat()); //for debug
+        return letterbox;
+    }
 
-        if( mScoreFloat == null ) {
+    @Override
+    public void PrepareTile(final Mat in_mat, OCRDetectionTilePlan in_plan, int in_tile) {
+        if( mPreprocess == null ) {
+            mPreprocess = new OCRDetectionPreprocess(mInputSize, mIsModelQuantized);
+        }
+        mPreprocess.PrepareTile(in_mat, in_plan, in_tile, mInputImgByteData);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.DETECTION,
+                               "/sdcard/studyNet/DEBUG/mMatTileInput" + in_tile + ".png", mPreprocess.GetInputMat()); //for debug
+    }
 
-            mScoreFloat = new float[outSize * outSize];
-            mGeoFloat = new float[outSize * outSize * 5];
+    @Override
+    public OCRDetectionNMS DetectPreparedInput() {
+        int outSize = runModel();
+        int numOfCandidates = mDecoder.DecodeInterleaved(mOutputBuffers.GetScores(), mOutputBuffers.GetGeometry(),
+                                                         outSize, outSize, OCRDetectionDecodeResult.SCORE_THRESH);
+        mNMS.Run(mDecoder.GetCenterX(), mDecoder.GetCenterY(), mDecoder.GetWidth(), mDecoder.GetHeight(),
+                 mDecoder.GetAngle(), mDecoder.GetScores(), numOfCandidates, OCRDetectionDecodeResult.NMS_THRESH);
+        return mNMS;
+    }
 
-            mScoreMat = new Mat(outSize, outSize, CV_32FC1);
-            mGeomertyMat = new Mat(outSize * 5, outSize, CV_32FC1);
-        }
+    /**
+     * 입력 버퍼로 모델을 실행하고 출력을 읽는다.
+     * @return 출력 한 변의 크기
+     */
+    private int runModel() {
+        int outSize = mInputSize / 4;
 
-        Object[] inputArray = {mInputImgByteData};
-        Map<Integer, Object> outputMap = new HashMap<>();
-        outputMap.put(0, outputScore);
-        outputMap.put(1, outputGeometry);
+        if( mOutputBuffers == null ) {
+            mOutputBuffers = new OCRDetectionOutputBuffers(outSize);
+            mInputArray = new Object[]{mInputImgByteData};
+            mDecoder = new OCRDetectionGeometryDecoder(outSize * outSize);
+            mNMS = new OCRDetectionNMS();
+        }
+        mOutputBuffers.Rewind();
+        mInputImgByteData.rewind();
 
         // Run the inference call.
         double startTextTime = SystemClock.uptimeMillis();
-        mTfLite.runForMultipleInputsOutputs(inputArray, outputMap);
+        mTfLite.runForMultipleInputsOutputs(mInputArray, mOutputBuffers.GetOutputMap());
         LOGGER.d("SallyDetect DetectBoxTime : "+(SystemClock.uptimeMillis()-startTextTime));
 
-        int indexCount = 0;
-        for(int i = 0; i < outSize; i++)
-        {
-            for(int j = 0; j < outSize; j++)
-            {
-                mScoreFloat[indexCount] = outputScore[0][i][j][0];
-                indexCount++;
-            }
-        }
-
-        indexCount = 0;
-        for( int k = 0; k < 5; k++ ) {
-            for (int i = 0; i < outSize; i++) {
-                for (int j = 0; j < outSize; j++) {
-                    mGeoFloat[indexCount] = outputGeometry[0][i][j][k];
-                    indexCount++;
-                }
-            }
-        }
+        mOutputBuffers.ReadOutputs();
+        return outSize;
+    }
 
-        mScoreMat.put(0, 0, mScoreFloat);
-        mGeomertyMat.put(0, 0, mGeoFloat);
+    @Override
+    public void RecognizePreparedInput(int in_coverOrScoring) {
+        int outSize = runModel();
 
         double startTime = SystemClock.uptimeMillis();
 
         //TODO : decode 코드 넣기.
         //TextBoxView.setTextLocation(mScoreMat, mGeomertyMat, outSize); TODO 지우기.
-        Point[][] result = OCRDetectionDecodeResult.decodeDetectionResult(mScoreMat, mGeomertyMat, outSize, in_coverOrScoring);
+        Point[][] result = OCRDetectionDecodeResult.decodeDetectionResult(mDecoder, mNMS,
+                                                                              mOutputBuffers.GetScores(),
+                                                                              mOutputBuffers.GetGeometry(),
+                                                                              outSize, in_coverOrScoring);
 
         if(result != null) {
             LOGGER.d("SallyDetect decodeDetectionResult() SUCCESS !!");
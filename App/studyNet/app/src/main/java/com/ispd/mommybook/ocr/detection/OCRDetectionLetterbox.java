@@ -0,0 +1,90 @@
+package com.ispd.mommybook.ocr.detection;
+
+/**
+ * detection 입력(정사각형)에 원본 이미지를 비율을 유지해서 넣을 때의 배치 정보
+ *
+ * 기존 방식과 같이 원본의 긴 변을 입력 크기에 맞추고, 입력의 좌상단(0, 0)에 붙인다. 나머지는 흰색.
+ * 모델 입력 좌표 <-> 원본 좌표 변환에 사용함.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionLetterbox {
+    private final float mScale;
+    private final int mOffsetX;
+    private final int mOffsetY;
+    private final int mWidth;
+    private final int mHeight;
+
+    private OCRDetectionLetterbox(float in_scale, int in_offsetX, int in_offsetY, int in_width, int in_height) {
+        mScale = in_scale;
+        mOffsetX = in_offsetX;
+        mOffsetY = in_offsetY;
+        mWidth = in_width;
+        mHeight = in_height;
+    }
+
+    /**
+     * @param in_srcWidth 원본 가로
+     * @param in_srcHeight 원본 세로
+     * @param in_inputSize 모델 입력 한 변의 크기
+     */
+    public static OCRDetectionLetterbox Compute(int in_srcWidth, int in_srcHeight, int in_inputSize) {
+        int baseLength = Math.max(in_srcWidth, in_srcHeight);
+        float scale = in_inputSize / (float) baseLength;
+        int width = Math.max(1, Math.min(in_inputSize, Math.round(in_srcWidth * scale)));
+        int height = Math.max(1, Math.min(in_inputSize, Math.round(in_srcHeight * scale)));
+        return new OCRDetectionLetterbox(scale, 0, 0, width, height);
+    }
+
+    /**
+     * @return 원본 -> 모델 입력 배율
+     */
+    public float GetScale() {
+        return mScale;
+    }
+
+    public int GetOffsetX() {
+        return mOffsetX;
+    }
+
+    public int GetOffsetY() {
+        return mOffsetY;
+    }
+
+    /**
+     * @return 모델 입력 안에서 원본이 차지하는 가로 크기
+     */
+    public int GetWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return 모델 입력 안에서 원본이 차지하는 세로 크기
+     */
+    public int GetHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 모델 입력 좌표를 원본 좌표로 바꾼다.
+     */
+    public double ToSourceX(double in_x) {
+        return (in_x - mOffsetX) / mScale;
+    }
+
+    public double ToSourceY(double in_y) {
+        return (in_y - mOffsetY) / mScale;
+    }
+
+    /**
+     * 원본 좌표를 모델 입력 좌표로 바꾼다.
+     */
+    public double ToInputX(double in_x) {
+        return in_x * mScale + mOffsetX;
+    }
+
+    public double ToInputY(double in_y) {
+        return in_y * mScale + mOffsetY;
+    }
+}
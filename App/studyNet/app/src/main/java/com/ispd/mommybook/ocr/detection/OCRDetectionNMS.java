@@ -0,0 +1,454 @@
+package com.ispd.mommybook.ocr.detection;
+
+import java.util.Arrays;
+
+/**
+ * 회전된 박스의 NMS (non-maximum suppression)
+ *
+ * OpenCV 에 dnn 모듈이 없어서 Dnn.NMSBoxesRotated() 를 사용할 수 없으므로 Java 로 구현함.
+ * EAST 논문의 locality-aware NMS 를 따른다.
+ *
+ * 1. 병합 : OCRDetectionGeometryDecoder 의 후보는 행 순서(위->아래, 왼쪽->오른쪽)로 나오므로
+ *    바로 앞에서 병합 중인 박스와 겹치면(IoU > 병합 기준값) score 로 가중평균해서 하나로 합친다.
+ *    score 는 더해짐. (같은 글자줄의 이웃 픽셀 후보들이 하나로 모임)
+ * 2. NMS : 병합된 박스를 score 순으로 보면서, 이미 선택된 박스와 IoU 가 기준값을 넘으면 버린다.
+ *    선택된 박스는 uniform grid 에 넣어 두고 주변 칸의 박스하고만 비교하므로 후보가 많아도 빠름.
+ *
+ * IoU 는 두 회전된 사각형의 실제 교집합(볼록 다각형 clipping)으로 계산함.
+ * 결과는 score 가 큰 순서로 내부 배열에 담기며, 다음 Run() 에서 다시 사용함. 한 쓰레드에서만 사용해야 함.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionNMS {
+    public static final float DEFAULT_MERGE_THRESHOLD = 0.3f;
+
+    // grid 한 변의 최대 칸 수
+    private static final int MAX_GRID_CELLS = 128;
+
+    private float mMergeThreshold = DEFAULT_MERGE_THRESHOLD;
+
+    // 병합된 박스
+    private int mMergedCount = 0;
+    private double[] mCenterX = new double[0];
+    private double[] mCenterY = new double[0];
+    private double[] mWidth = new double[0];
+    private double[] mHeight = new double[0];
+    private double[] mAngle = new double[0];
+    private float[] mScore = new float[0];
+
+    // 병합된 박스의 꼭지점 4점과 bounding box
+    private double[] mVertices = new double[0];
+    private double[] mMinX = new double[0];
+    private double[] mMinY = new double[0];
+    private double[] mMaxX = new double[0];
+    private double[] mMaxY = new double[0];
+    private double[] mArea = new double[0];
+
+    // 결과 (score 순)
+    private int mKeptCount = 0;
+    private int[] mKept = new int[0];
+    private double[] mOutCenterX = new double[0];
+    private double[] mOutCenterY = new double[0];
+    private double[] mOutWidth = new double[0];
+    private double[] mOutHeight = new double[0];
+    private double[] mOutAngle = new double[0];
+    private float[] mOutScore = new float[0];
+
+    // score 정렬용
+    private long[] mOrder = new long[0];
+
+    // grid : 칸마다 선택된 박스의 연결 리스트
+    private int[] mCellHead = new int[0];
+    private int[] mEntryNext = new int[0];
+    private int[] mEntryBox = new int[0];
+    private int mEntryCount = 0;
+    private int[] mVisited = new int[0];
+
+    // polygon clipping 용
+    private final double[] mClipA = new double[32];
+    private final double[] mClipB = new double[32];
+
+    private long mMergeCount = 0;
+
+    /**
+     * 병합 단계의 IoU 기준값. 0 이하이면 병합하지 않음.
+     */
+    public void SetMergeThreshold(float in_threshold) {
+        mMergeThreshold = in_threshold;
+    }
+
+    /**
+     * locality-aware NMS 를 실행한다. 입력 배열은 수정하지 않음.
+     * @param in_centerX 박스 중심 x
+     * @param in_centerY 박스 중심 y
+     * @param in_width 박스 가로
+     * @param in_height 박스 세로
+     * @param in_angle 박스 각도 (degree, RotatedRect.angle 과 같음)
+     * @param in_score score (0 이상)
+     * @param in_count 후보 수
+     * @param in_nmsThresh NMS IoU 기준값. 이보다 크게 겹치면 score 가 작은 박스를 버림.
+     * @return 남은 박스 수
+     */
+    public int Run(double[] in_centerX, double[] in_centerY, double[] in_width, double[] in_height,
+                   double[] in_angle, float[] in_score, int in_count, float in_nmsThresh) {
+        ensureCapacity(in_count);
+        merge(in_centerX, in_centerY, in_width, in_height, in_angle, in_score, in_count);
+        suppress(in_nmsThresh);
+
+        for (int k = 0; k < mKeptCount; k++) {
+            int i = mKept[k];
+            mOutCenterX[k] = mCenterX[i];
+            mOutCenterY[k] = mCenterY[i];
+            mOutWidth[k] = mWidth[i];
+            mOutHeight[k] = mHeight[i];
+            mOutAngle[k] = mAngle[i];
+            mOutScore[k] = mScore[i];
+        }
+        return mKeptCount;
+    }
+
+    public int GetCount() {
+        return mKeptCount;
+    }
+
+    public double[] GetCenterX() {
+        return mOutCenterX;
+    }
+
+    public double[] GetCenterY() {
+        return mOutCenterY;
+    }
+
+    public double[] GetWidth() {
+        return mOutWidth;
+    }
+
+    public double[] GetHeight() {
+        return mOutHeight;
+    }
+
+    public double[] GetAngle() {
+        return mOutAngle;
+    }
+
+    /**
+     * @return 병합된 score (병합된 후보들의 score 합)
+     */
+    public float[] GetScores() {
+        return mOutScore;
+    }
+
+    /**
+     * @return 마지막 Run() 에서 병합 후 남은 박스 수 (NMS 전)
+     */
+    public int GetMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * @return 지금까지 병합 단계에서 합쳐진 후보 수
+     */
+    public long GetTotalMergeCount() {
+        return mMergeCount;
+    }
+
+    /**
+     * 두 회전된 사각형의 IoU 를 계산한다.
+     */
+    public static double IoU(double cx1, double cy1, double w1, double h1, double angle1,
+                             double cx2, double cy2, double w2, double h2, double angle2) {
+        double[] v1 = new double[8];
+        double[] v2 = new double[8];
+        toVertices(cx1, cy1, w1, h1, angle1, v1, 0);
+        toVertices(cx2, cy2, w2, h2, angle2, v2, 0);
+        double inter = intersectionArea(v1, 0, v2, 0, new double[32], new double[32]);
+        double union = w1 * h1 + w2 * h2 - inter;
+        return union > 0 ? inter / union : 0;
+    }
+
+    private void merge(double[] in_centerX, double[] in_centerY, double[] in_width, double[] in_height,
+                       double[] in_angle, float[] in_score, int in_count) {
+        int m = -1;
+        // 병합 중인 박스의 가중합
+        double sumX = 0, sumY = 0, sumW = 0, sumH = 0, sumA = 0, sumS = 0;
+        for (int i = 0; i < in_count; i++) {
+            double s = in_score[i];
+            if (m >= 0 && mMergeThreshold > 0) {
+                toVertices(in_centerX[i], in_centerY[i], in_width[i], in_height[i], in_angle[i], mClipA, 16);
+                double area = in_width[i] * in_height[i];
+                // 병합 중인 박스는 setMerged() 로 꼭지점이 갱신되어 있음.
+                double inter = intersectionArea(mVertices, m * 8, mClipA, 16, mClipA, mClipB);
+                double union = mArea[m] + area - inter;
+                if (union > 0 && inter / union > mMergeThreshold && sumS + s > 0) {
+                    sumX += in_centerX[i] * s;
+                    sumY += in_centerY[i] * s;
+                    sumW += in_width[i] * s;
+                    sumH += in_height[i] * s;
+                    sumA += in_angle[i] * s;
+                    sumS += s;
+                    setMerged(m, sumX, sumY, sumW, sumH, sumA, sumS);
+                    mMergeCount++;
+                    continue;
+                }
+            }
+            m++;
+            sumX = in_centerX[i] * s;
+            sumY = in_centerY[i] * s;
+            sumW = in_width[i] * s;
+            sumH = in_height[i] * s;
+            sumA = in_angle[i] * s;
+            sumS = s;
+            setBox(m, in_centerX[i], in_centerY[i], in_width[i], in_height[i], in_angle[i], in_score[i]);
+        }
+        mMergedCount = m + 1;
+    }
+
+    private void setMerged(int m, double sumX, double sumY, double sumW, double sumH, double sumA, double sumS) {
+        setBox(m, sumX / sumS, sumY / sumS, sumW / sumS, sumH / sumS, sumA / sumS, (float) sumS);
+    }
+
+    private void setBox(int m, double cx, double cy, double w, double h, double angle, float score) {
+        mCenterX[m] = cx;
+        mCenterY[m] = cy;
+        mWidth[m] = w;
+        mHeight[m] = h;
+        mAngle[m] = angle;
+        mScore[m] = score;
+        mArea[m] = w * h;
+        int base = m * 8;
+        toVertices(cx, cy, w, h, angle, mVertices, base);
+        double minX = mVertices[base], maxX = minX, minY = mVertices[base + 1], maxY = minY;
+        for (int k = 1; k < 4; k++) {
+            double x = mVertices[base + 2 * k];
+            double y = mVertices[base + 2 * k + 1];
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        mMinX[m] = minX;
+        mMinY[m] = minY;
+        mMaxX[m] = maxX;
+        mMaxY[m] = maxY;
+    }
+
+    private void suppress(float in_nmsThresh) {
+        int n = mMergedCount;
+        mKeptCount = 0;
+        if (n == 0) {
+            return;
+        }
+
+        // score 가 0 이상이므로 float bit 순서가 크기 순서와 같음. 같은 score 는 index 가 큰 쪽이 먼저.
+        for (int i = 0; i < n; i++) {
+            mOrder[i] = ((long) Float.floatToIntBits(mScore[i]) << 32) | i;
+        }
+        Arrays.sort(mOrder, 0, n);
+
+        // grid 크기 : bounding box 평균 크기를 칸 크기로 사용함.
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double sumSize = 0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, mMinX[i]);
+            minY = Math.min(minY, mMinY[i]);
+            maxX = Math.max(maxX, mMaxX[i]);
+            maxY = Math.max(maxY, mMaxY[i]);
+            sumSize += Math.max(mMaxX[i] - mMinX[i], mMaxY[i] - mMinY[i]);
+        }
+        double cell = Math.max(1e-6, sumSize / n);
+        cell = Math.max(cell, (maxX - minX) / MAX_GRID_CELLS);
+        cell = Math.max(cell, (maxY - minY) / MAX_GRID_CELLS);
+        int gridW = Math.min(MAX_GRID_CELLS, (int) ((maxX - minX) / cell) + 1);
+        int gridH = Math.min(MAX_GRID_CELLS, (int) ((maxY - minY) / cell) + 1);
+        if (mCellHead.length < gridW * gridH) {
+            mCellHead = new int[gridW * gridH];
+        }
+        Arrays.fill(mCellHead, 0, gridW * gridH, -1);
+        mEntryCount = 0;
+        Arrays.fill(mVisited, 0, n, -1);
+
+        for (int k = n - 1; k >= 0; k--) {
+            int i = (int) mOrder[k];
+            int cx0 = cellIndex(mMinX[i], minX, cell, gridW);
+            int cx1 = cellIndex(mMaxX[i], minX, cell, gridW);
+            int cy0 = cellIndex(mMinY[i], minY, cell, gridH);
+            int cy1 = cellIndex(mMaxY[i], minY, cell, gridH);
+
+            boolean suppressed = false;
+            for (int gy = cy0; gy <= cy1 && !suppressed; gy++) {
+                for (int gx = cx0; gx <= cx1 && !suppressed; gx++) {
+                    for (int e = mCellHead[gy * gridW + gx]; e >= 0; e = mEntryNext[e]) {
+                        int j = mEntryBox[e];
+                        if (mVisited[j] == i) {
+                            continue;
+                        }
+                        mVisited[j] = i;
+                        if (overlaps(i, j, in_nmsThresh)) {
+                            suppressed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (suppressed) {
+                continue;
+            }
+
+            mKept[mKeptCount++] = i;
+            for (int gy = cy0; gy <= cy1; gy++) {
+                for (int gx = cx0; gx <= cx1; gx++) {
+                    addEntry(gy * gridW + gx, i);
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(int i, int j, float in_nmsThresh) {
+        if (mMaxX[i] < mMinX[j] || mMaxX[j] < mMinX[i] || mMaxY[i] < mMinY[j] || mMaxY[j] < mMinY[i]) {
+            return false;
+        }
+        double inter = intersectionArea(mVertices, i * 8, mVertices, j * 8, mClipA, mClipB);
+        double union = mArea[i] + mArea[j] - inter;
+        return union > 0 && inter / union > in_nmsThresh;
+    }
+
+    private static int cellIndex(double v, double min, double cell, int cells) {
+        int c = (int) ((v - min) / cell);
+        return Math.max(0, Math.min(cells - 1, c));
+    }
+
+    private void addEntry(int in_cell, int in_box) {
+        if (mEntryCount == mEntryNext.length) {
+            int size = Math.max(64, mEntryCount * 2);
+            mEntryNext = Arrays.copyOf(mEntryNext, size);
+            mEntryBox = Arrays.copyOf(mEntryBox, size);
+        }
+        mEntryBox[mEntryCount] = in_box;
+        mEntryNext[mEntryCount] = mCellHead[in_cell];
+        mCellHead[in_cell] = mEntryCount;
+        mEntryCount++;
+    }
+
+    /**
+     * RotatedRect.points() 와 같은 꼭지점을 같은 순서로 out 에 저장한다.
+     */
+    private static void toVertices(double cx, double cy, double w, double h, double angle,
+                                   double[] out, int offset) {
+        double rad = angle * Math.PI / 180.0;
+        double b = Math.cos(rad) * 0.5;
+        double a = Math.sin(rad) * 0.5;
+        double p0x = cx - a * h - b * w;
+        double p0y = cy + b * h - a * w;
+        double p1x = cx + a * h - b * w;
+        double p1y = cy - b * h - a * w;
+        out[offset] = p0x;
+        out[offset + 1] = p0y;
+        out[offset + 2] = p1x;
+        out[offset + 3] = p1y;
+        out[offset + 4] = 2 * cx - p0x;
+        out[offset + 5] = 2 * cy - p0y;
+        out[offset + 6] = 2 * cx - p1x;
+        out[offset + 7] = 2 * cy - p1y;
+    }
+
+    private static double signedArea(double[] poly, int offset, int n) {
+        double area = 0;
+        for (int k = 0; k < n; k++) {
+            int a = offset + 2 * k;
+            int b = offset + 2 * ((k + 1) % n);
+            area += poly[a] * poly[b + 1] - poly[b] * poly[a + 1];
+        }
+        return area * 0.5;
+    }
+
+    /**
+     * 두 볼록 사각형의 교집합 넓이. 사각형 a 를 사각형 b 의 각 변으로 잘라낸다. (Sutherland-Hodgman)
+     * bufA, bufB 는 32 개 이상의 작업 버퍼이며 bufA 의 16 이후는 사용하지 않음.
+     */
+    private static double intersectionArea(double[] a, int aOffset, double[] b, int bOffset,
+                                           double[] bufA, double[] bufB) {
+        // b 의 방향. 꼭지점 순서가 반대인 경우에도 안쪽을 바르게 판단하기 위함.
+        double orient = signedArea(b, bOffset, 4) >= 0 ? 1 : -1;
+
+        double[] src = bufA;
+        double[] dst = bufB;
+        System.arraycopy(a, aOffset, src, 0, 8);
+        int n = 4;
+        for (int e = 0; e < 4 && n > 0; e++) {
+            double ex0 = b[bOffset + 2 * e];
+            double ey0 = b[bOffset + 2 * e + 1];
+            double ex1 = b[bOffset + 2 * ((e + 1) % 4)];
+            double ey1 = b[bOffset + 2 * ((e + 1) % 4) + 1];
+            double dx = ex1 - ex0;
+            double dy = ey1 - ey0;
+
+            int m = 0;
+            double px = src[2 * (n - 1)];
+            double py = src[2 * (n - 1) + 1];
+            double pSide = orient * (dx * (py - ey0) - dy * (px - ex0));
+            for (int k = 0; k < n; k++) {
+                double qx = src[2 * k];
+                double qy = src[2 * k + 1];
+                double qSide = orient * (dx * (qy - ey0) - dy * (qx - ex0));
+                if (qSide >= 0) {
+                    if (pSide < 0) {
+                        double t = pSide / (pSide - qSide);
+                        dst[2 * m] = px + t * (qx - px);
+                        dst[2 * m + 1] = py + t * (qy - py);
+                        m++;
+                    }
+                    dst[2 * m] = qx;
+                    dst[2 * m + 1] = qy;
+                    m++;
+                }
+                else if (pSide >= 0) {
+                    double t = pSide / (pSide - qSide);
+                    dst[2 * m] = px + t * (qx - px);
+                    dst[2 * m + 1] = py + t * (qy - py);
+                    m++;
+                }
+                px = qx;
+                py = qy;
+                pSide = qSide;
+            }
+            double[] tmp = src;
+            src = dst;
+            dst = tmp;
+            n = m;
+        }
+        if (n < 3) {
+            return 0;
+        }
+        return Math.abs(signedArea(src, 0, n));
+    }
+
+    private void ensureCapacity(int in_count) {
+        if (mCenterX.length >= in_count) {
+            return;
+        }
+        int size = Math.max(in_count, 16);
+        mCenterX = new double[size];
+        mCenterY = new double[size];
+        mWidth = new double[size];
+        mHeight = new double[size];
+        mAngle = new double[size];
+        mScore = new float[size];
+        mVertices = new double[size * 8];
+        mMinX = new double[size];
+        mMinY = new double[size];
+        mMaxX = new double[size];
+        mMaxY = new double[size];
+        mArea = new double[size];
+        mKept = new int[size];
+        mOutCenterX = new double[size];
+        mOutCenterY = new double[size];
+        mOutWidth = new double[size];
+        mOutHeight = new double[size];
+        mOutAngle = new double[size];
+        mOutScore = new float[size];
+        mOrder = new long[size];
+        mVisited = new int[size];
+    }
+}
@@ -0,0 +1,111 @@
+package com.ispd.mommybook.ocr.detection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EAST TFLite 모델의 출력 버퍼
+ *
+ * 기존에는 호출마다 outputScore[1][104][104][1], outputGeometry[1][104][104][5] 중첩 배열을 새로 만들고
+ * 원소 단위로 flat float[] 에 복사했다.
+ * 이 클래스는 direct ByteBuffer 를 한 번만 만들어서 runForMultipleInputsOutputs() 의 출력으로 넘기고,
+ * 실행 후에는 FloatBuffer view 에서 재사용하는 float[] 로 한 번에 복사한다.
+ * geometry 는 모델 출력 순서(NHWC, 픽셀마다 5 channel)를 그대로 두고
+ * OCRDetectionGeometryDecoder.DecodeInterleaved() 로 읽는다.
+ *
+ * 호출마다 새로 할당하는 메모리가 없음.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionOutputBuffers {
+    public static final int GEOMETRY_CHANNELS = 5;
+
+    private final int mOutputSize;
+    private final ByteBuffer mScoreBuffer;
+    private final ByteBuffer mGeometryBuffer;
+    private final FloatBuffer mScoreView;
+    private final FloatBuffer mGeometryView;
+    private final float[] mScores;
+    private final float[] mGeometry;
+    private final Map<Integer, Object> mOutputMap = new HashMap<>();
+
+    /**
+     * @param in_outputSize score map 한 변의 크기 (입력 크기 / 4)
+     */
+    public OCRDetectionOutputBuffers(int in_outputSize) {
+        mOutputSize = in_outputSize;
+        int plane = in_outputSize * in_outputSize;
+
+        mScoreBuffer = ByteBuffer.allocateDirect(plane * 4);
+        mScoreBuffer.order(ByteOrder.nativeOrder());
+        mGeometryBuffer = ByteBuffer.allocateDirect(plane * GEOMETRY_CHANNELS * 4);
+        mGeometryBuffer.order(ByteOrder.nativeOrder());
+        mScoreView = mScoreBuffer.asFloatBuffer();
+        mGeometryView = mGeometryBuffer.asFloatBuffer();
+
+        mScores = new float[plane];
+        mGeometry = new float[plane * GEOMETRY_CHANNELS];
+
+        mOutputMap.put(0, mScoreBuffer);
+        mOutputMap.put(1, mGeometryBuffer);
+    }
+
+    public int GetOutputSize() {
+        return mOutputSize;
+    }
+
+    /**
+     * runForMultipleInputsOutputs() 에 넘길 출력 map. 매번 같은 객체를 돌려줌.
+     * 실행 전에 Rewind() 를 호출해야 함.
+     */
+    public Map<Integer, Object> GetOutputMap() {
+        return mOutputMap;
+    }
+
+    /**
+     * 모델 실행 전에 출력 버퍼의 위치를 처음으로 돌린다.
+     */
+    public void Rewind() {
+        mScoreBuffer.rewind();
+        mGeometryBuffer.rewind();
+    }
+
+    /**
+     * 모델 실행 후 출력을 float[] 로 복사한다.
+     */
+    public void ReadOutputs() {
+        mScoreView.rewind();
+        mScoreView.get(mScores);
+        mGeometryView.rewind();
+        mGeometryView.get(mGeometry);
+    }
+
+    /**
+     * @return score map (outputSize x outputSize). ReadOutputs() 후에 유효함.
+     */
+    public float[] GetScores() {
+        return mScores;
+    }
+
+    /**
+     * @return geometry map (outputSize x outputSize x 5, NHWC). ReadOutputs() 후에 유효함.
+     */
+    public float[] GetGeometry() {
+        return mGeometry;
+    }
+
+    /**
+     * 모델 출력이 쓰여지는 버퍼. 시험용.
+     */
+    ByteBuffer getScoreBuffer() {
+        return mScoreBuffer;
+    }
+
+    ByteBuffer getGeometryBuffer() {
+        return mGeometryBuffer;
+    }
+}
@@ -0,0 +1,145 @@
+package com.ispd.mommybook.ocr.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * detection 입력 전처리
+ *
+ * 기존에는 흰 정사각형 Mat 에 원본을 붙이고 -> Bitmap 변환 -> Canvas 로 416 크기로 그림 -> createBitmap 복사
+ * -> getPixels() 와 픽셀마다 putFloat() 로 입력 버퍼를 채웠다.
+ * 여기서는 원본 Mat 을 미리 만들어 둔 416x416 입력 Mat 의 ROI 에 바로 resize 하고(나머지는 흰색),
+ * float 로 바꾼 후 입력 버퍼에 한 번에 복사한다. Bitmap, Canvas, 픽셀 단위 Java 연산이 없음.
+ *
+ * 입력값은 기존과 같이 RGB 순서의 0~255 값임. (정규화 없음)
+ * 한 쓰레드에서만 사용해야 함.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionPreprocess {
+    private static final Scalar WHITE = new Scalar(255, 255, 255);
+
+    private final int mInputSize;
+    private final boolean mIsQuantized;
+
+    private final Mat mRgbMat = new Mat();
+    private final Mat mCanvas;
+    private final Mat mCanvasFloat;
+    private final float[] mFloatData;
+    private final byte[] mByteData;
+
+    // 입력 ByteBuffer 의 float view. 같은 버퍼가 들어오면 재사용함.
+    private ByteBuffer mViewSource = null;
+    private FloatBuffer mFloatView = null;
+
+    public OCRDetectionPreprocess(int in_inputSize, boolean in_isQuantized) {
+        mInputSize = in_inputSize;
+        mIsQuantized = in_isQuantized;
+        mCanvas = new Mat(in_inputSize, in_inputSize, CvType.CV_8UC3);
+        if (in_isQuantized) {
+            mCanvasFloat = null;
+            mFloatData = null;
+            mByteData = new byte[in_inputSize * in_inputSize * 3];
+        }
+        else {
+            mCanvasFloat = new Mat(in_inputSize, in_inputSize, CvType.CV_32FC3);
+            mFloatData = new float[in_inputSize * in_inputSize * 3];
+            mByteData = null;
+        }
+    }
+
+    /**
+     * 원본을 입력 크기에 letterbox 로 넣고 입력 버퍼를 채운다.
+     * @param in_src 원본 (RGBA, RGB 또는 GRAY 8bit)
+     * @param out_input 모델 입력 버퍼 (1 x size x size x 3, float 또는 quantized byte)
+     * @return 모델 입력 좌표와 원본 좌표 사이의 변환 정보
+     */
+    public OCRDetectionLetterbox Prepare(Mat in_src, ByteBuffer out_input) {
+        OCRDetectionLetterbox letterbox =
+                OCRDetectionLetterbox.Compute(in_src.cols(), in_src.rows(), mInputSize);
+
+        Mat rgb = toRgb(in_src);
+        mCanvas.setTo(WHITE);
+        Mat roi = mCanvas.submat(letterbox.GetOffsetY(), letterbox.GetOffsetY() + letterbox.GetHeight(),
+                                 letterbox.GetOffsetX(), letterbox.GetOffsetX() + letterbox.GetWidth());
+        // roi 의 크기와 type 이 맞으므로 새로 할당하지 않고 mCanvas 에 바로 씀.
+        Imgproc.resize(rgb, roi, new Size(letterbox.GetWidth(), letterbox.GetHeight()), 0, 0,
+                       Imgproc.INTER_AREA);
+        roi.release();
+
+        fillInput(out_input);
+        return letterbox;
+    }
+
+    /**
+     * 영역 배치 계획의 tile 하나를 만들고 입력 버퍼를 채운다.
+     * tile 에 들어가는 영역만 원본에서 잘라서 각 위치에 resize 함. 나머지는 흰색.
+     * @param in_src 원본 (RGBA, RGB 또는 GRAY 8bit)
+     * @param in_plan 영역 배치 계획. in_src 크기로 만든 것이어야 함.
+     * @param in_tile tile index
+     * @param out_input 모델 입력 버퍼
+     */
+    public void PrepareTile(Mat in_src, OCRDetectionTilePlan in_plan, int in_tile, ByteBuffer out_input) {
+        mCanvas.setTo(WHITE);
+        for (int i : in_plan.GetPlacementsOfTile(in_tile)) {
+            Mat srcRoi = in_src.submat(in_plan.GetSourceY(i), in_plan.GetSourceY(i) + in_plan.GetSourceHeight(i),
+                                       in_plan.GetSourceX(i), in_plan.GetSourceX(i) + in_plan.GetSourceWidth(i));
+            Mat dstRoi = mCanvas.submat(in_plan.GetTileY(i), in_plan.GetTileY(i) + in_plan.GetTileHeight(i),
+                                        in_plan.GetTileX(i), in_plan.GetTileX(i) + in_plan.GetTileWidth(i));
+            Imgproc.resize(toRgb(srcRoi), dstRoi, new Size(in_plan.GetTileWidth(i), in_plan.GetTileHeight(i)), 0, 0,
+                           Imgproc.INTER_AREA);
+            srcRoi.release();
+            dstRoi.release();
+        }
+        fillInput(out_input);
+    }
+
+    private void fillInput(ByteBuffer out_input) {
+        out_input.rewind();
+        if (mIsQuantized) {
+            mCanvas.get(0, 0, mByteData);
+            out_input.put(mByteData);
+        }
+        else {
+            mCanvas.convertTo(mCanvasFloat, CvType.CV_32FC3);
+            mCanvasFloat.get(0, 0, mFloatData);
+            floatView(out_input).put(mFloatData);
+        }
+        out_input.rewind();
+    }
+
+    /**
+     * @return 마지막으로 만든 입력 이미지 (8bit RGB). 디버그용.
+     */
+    public Mat GetInputMat() {
+        return mCanvas;
+    }
+
+    private Mat toRgb(Mat in_src) {
+        if (in_src.channels() == 4) {
+            Imgproc.cvtColor(in_src, mRgbMat, Imgproc.COLOR_RGBA2RGB);
+            return mRgbMat;
+        }
+        if (in_src.channels() == 1) {
+            Imgproc.cvtColor(in_src, mRgbMat, Imgproc.COLOR_GRAY2RGB);
+            return mRgbMat;
+        }
+        return in_src;
+    }
+
+    private FloatBuffer floatView(ByteBuffer in_buffer) {
+        if (mViewSource != in_buffer) {
+            mViewSource = in_buffer;
+            mFloatView = in_buffer.asFloatBuffer();
+        }
+        mFloatView.rewind();
+        return mFloatView;
+    }
+}
@@ -0,0 +1,279 @@
+package com.ispd.mommybook.ocr.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 문자 detection 서비스
+ *
+ * 쓰레드 하나가 detection 요청을 차례로 처리한다. 대기중인 요청은 한 개만 두며(one-slot mailbox)
+ * 처리중에 새 프레임이 오면 대기중인 요청을 새 요청으로 바꾼다. (latest-frame-wins)
+ * 요청마다 CancelToken 을 주고, 표지/페이지가 바뀌면 이전 페이지의 요청은 모두 취소된 것으로 본다.
+ * 작업은 단계 사이에 token 을 확인해서 스스로 중단함.
+ *
+ * Android 의존성이 없으므로 JVM 단위 테스트에서 그대로 사용할 수 있음. 실패한 작업의 로그는 작업(Job)을 만든 쪽에서 남김.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionService {
+    /**
+     * detection 작업. 작업 쓰레드에서 호출됨.
+     */
+    public interface Job {
+        /**
+         * 실행된 작업은 Discard() 가 호출되지 않으므로 끝나기 전에 자원을 직접 해제해야 함.
+         * @param in_token 취소 여부 확인용. 단계 사이에 IsCancelled() 를 확인해서 중단해야 함.
+         */
+        void Run(CancelToken in_token);
+
+        /**
+         * 실행되지 않고 버려질 때 호출됨. 작업이 가진 자원(Mat 사본 등)을 해제함.
+         */
+        void Discard();
+    }
+
+    /**
+     * 요청의 취소 여부. 요청한 표지/페이지가 현재 페이지가 아니거나 Cancel() 된 경우 취소됨.
+     */
+    public static class CancelToken {
+        private final OCRDetectionService mService;
+        private final long mGeneration;
+        private volatile boolean mCancelled = false;
+
+        private CancelToken(OCRDetectionService service, long generation) {
+            mService = service;
+            mGeneration = generation;
+        }
+
+        public boolean IsCancelled() {
+            return mCancelled || mGeneration != mService.mGeneration;
+        }
+
+        public void Cancel() {
+            mCancelled = true;
+        }
+    }
+
+    private static class Request {
+        final Job mJob;
+        final CancelToken mToken;
+
+        Request(Job job, CancelToken token) {
+            mJob = job;
+            mToken = token;
+        }
+    }
+
+    private final Object mLock = new Object();
+    private final Thread mWorker;
+    private Request mPending = null;
+    private volatile boolean mStopped = false;
+
+    // 현재 표지/페이지. 바뀔 때마다 generation 이 증가함.
+    private int mCoverIndex = -1;
+    private int mPageIndex = -1;
+    private volatile long mGeneration = 0;
+
+    private final AtomicLong mAcceptedCount = new AtomicLong(0);
+    private final AtomicLong mReplacedCount = new AtomicLong(0);
+    private final AtomicLong mCancelledCount = new AtomicLong(0);
+    private final AtomicLong mDoneCount = new AtomicLong(0);
+    private final AtomicLong mFailedCount = new AtomicLong(0);
+    private volatile RuntimeException mLastFailure = null;
+
+    public OCRDetectionService(String in_name) {
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                workerLoop();
+            }
+        }, in_name);
+        mWorker.start();
+    }
+
+    /**
+     * 현재 표지/페이지를 지정한다. 바뀌면 이전 페이지의 대기중인 요청과 실행중인 요청이 취소됨.
+     */
+    public void SetPage(int in_coverIndex, int in_pageIndex) {
+        Request discarded = null;
+        synchronized (mLock) {
+            if (in_coverIndex == mCoverIndex && in_pageIndex == mPageIndex) {
+                return;
+            }
+            mCoverIndex = in_coverIndex;
+            mPageIndex = in_pageIndex;
+            mGeneration++;
+            if (mPending != null) {
+                discarded = mPending;
+                mPending = null;
+            }
+        }
+        if (discarded != null) {
+            discarded.mJob.Discard();
+            mCancelledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 요청을 등록한다. 대기중인 요청이 있으면 버리고 이 요청으로 바꿈.
+     * @param in_coverIndex 요청한 프레임의 표지
+     * @param in_pageIndex 요청한 프레임의 페이지. 현재 페이지와 다르면 현재 페이지를 바꿈.
+     * @param in_job 작업
+     * @return 요청의 취소 token. 중지된 경우 null (작업은 Discard() 됨)
+     */
+    public CancelToken Submit(int in_coverIndex, int in_pageIndex, Job in_job) {
+        if (mStopped) {
+            in_job.Discard();
+            return null;
+        }
+        SetPage(in_coverIndex, in_pageIndex);
+
+        Request replaced;
+        CancelToken token;
+        synchronized (mLock) {
+            if (mStopped) {
+                replaced = null;
+                token = null;
+            }
+            else {
+                token = new CancelToken(this, mGeneration);
+                replaced = mPending;
+                mPending = new Request(in_job, token);
+                mLock.notifyAll();
+            }
+        }
+        if (token == null) {
+            in_job.Discard();
+            return null;
+        }
+        mAcceptedCount.incrementAndGet();
+        if (replaced != null) {
+            replaced.mJob.Discard();
+            mReplacedCount.incrementAndGet();
+        }
+        return token;
+    }
+
+    /**
+     * 대기중인 요청과 실행중인 요청을 모두 취소한다.
+     */
+    public void CancelAll() {
+        Request discarded;
+        synchronized (mLock) {
+            mGeneration++;
+            discarded = mPending;
+            mPending = null;
+        }
+        if (discarded != null) {
+            discarded.mJob.Discard();
+            mCancelledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 요청을 모두 취소하고 작업 쓰레드를 종료한다. 실행중인 작업은 끝날 때까지 기다림.
+     */
+    public void Stop() {
+        mStopped = true;
+        CancelAll();
+        mWorker.interrupt();
+        try {
+            mWorker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean IsStopped() {
+        return mStopped;
+    }
+
+    public boolean HasPending() {
+        synchronized (mLock) {
+            return mPending != null;
+        }
+    }
+
+    /**
+     * 등록된 요청 수
+     */
+    public long GetAcceptedCount() {
+        return mAcceptedCount.get();
+    }
+
+    /**
+     * 실행되기 전에 새 요청으로 바뀐 요청 수
+     */
+    public long GetReplacedCount() {
+        return mReplacedCount.get();
+    }
+
+    /**
+     * 페이지 변경이나 CancelAll() 로 취소된 요청 수 (실행 전 또는 실행 중)
+     */
+    public long GetCancelledCount() {
+        return mCancelledCount.get();
+    }
+
+    /**
+     * 취소되지 않고 끝난 요청 수
+     */
+    public long GetDoneCount() {
+        return mDoneCount.get();
+    }
+
+    /**
+     * 실행 중 예외가 발생한 요청 수
+     */
+    public long GetFailedCount() {
+        return mFailedCount.get();
+    }
+
+    /**
+     * @return 마지막으로 실패한 요청의 예외. 없으면 null
+     */
+    public RuntimeException GetLastFailure() {
+        return mLastFailure;
+    }
+
+    private void workerLoop() {
+        while (!mStopped) {
+            Request request;
+            synchronized (mLock) {
+                while (mPending == null && !mStopped) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        // Stop() 에서 interrupt 함.
+                        return;
+                    }
+                }
+                if (mStopped) {
+                    return;
+                }
+                request = mPending;
+                mPending = null;
+            }
+
+            if (request.mToken.IsCancelled()) {
+                request.mJob.Discard();
+                mCancelledCount.incrementAndGet();
+                continue;
+            }
+            try {
+                request.mJob.Run(request.mToken);
+            } catch (RuntimeException e) {
+                // 작업 하나가 실패해도 다음 요청은 처리함.
+                mLastFailure = e;
+                mFailedCount.incrementAndGet();
+                continue;
+            }
+            if (request.mToken.IsCancelled()) {
+                mCancelledCount.incrementAndGet();
+            }
+            else {
+                mDoneCount.incrementAndGet();
+            }
+        }
+    }
+}
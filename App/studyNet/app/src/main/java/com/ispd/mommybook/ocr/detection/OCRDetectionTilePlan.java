@@ -0,0 +1,326 @@
+package com.ispd.mommybook.ocr.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 영역 제한 detection 의 배치 계획
+ *
+ * 채점모드에서는 답이 쓰일 영역(AIScoreReferenceDB 의 영역)이 정해져 있으므로 페이지 전체 대신
+ * 그 영역들만(여백 포함) 잘라서 detection 입력 크기의 tile 몇 장에 모아 넣는다.
+ * 겹치는 영역은 하나로 합치고, 모든 영역에 같은 배율을 적용해서 선반(shelf) 방식으로 채운다.
+ * 배율은 최대 tile 수 안에 들어가는 가장 큰 값을 사용하므로 전체 페이지를 넣을 때보다 글씨가 크게 들어감.
+ * 모델은 tile 마다 입력 크기 전체로 실행되므로 모델 작업량은 원본 픽셀이 아니라 tile 수로 정해짐. (GetModelPixels())
+ * tile 의 박스 좌표는 FindPlacement(), ToSourceX(), ToSourceY() 로 원본 좌표로 되돌린다.
+ *
+ * @author ispd_sally
+ * @version 1.0
+ */
+public class OCRDetectionTilePlan {
+    public static final float DEFAULT_MARGIN_RATIO = 0.1f;
+    // 영역 주변에 최소한 붙이는 여백 (원본 픽셀)
+    public static final int MIN_MARGIN = 8;
+    // tile 안에서 영역 사이의 간격. EAST 출력 한 칸(4 픽셀)보다 넓게 두어서 이웃 영역의 글씨와 섞이지 않도록 함.
+    public static final int GAP = 8;
+
+    private final int mInputSize;
+    private final int mFrameWidth;
+    private final int mFrameHeight;
+    private float mScale;
+    private int mTileCount;
+
+    // 영역 (원본 좌표, 여백 포함)
+    private final int mCount;
+    private final int[] mSrcX;
+    private final int[] mSrcY;
+    private final int[] mSrcW;
+    private final int[] mSrcH;
+
+    // tile 안에서의 위치
+    private final int[] mTile;
+    private final int[] mTileX;
+    private final int[] mTileY;
+    private final int[] mTileW;
+    private final int[] mTileH;
+
+    private OCRDetectionTilePlan(int in_inputSize, int in_frameWidth, int in_frameHeight, List<int[]> in_rects) {
+        mInputSize = in_inputSize;
+        mFrameWidth = in_frameWidth;
+        mFrameHeight = in_frameHeight;
+        mCount = in_rects.size();
+        mSrcX = new int[mCount];
+        mSrcY = new int[mCount];
+        mSrcW = new int[mCount];
+        mSrcH = new int[mCount];
+        for (int i = 0; i < mCount; i++) {
+            int[] r = in_rects.get(i);
+            mSrcX[i] = r[0];
+            mSrcY[i] = r[1];
+            mSrcW[i] = r[2] - r[0];
+            mSrcH[i] = r[3] - r[1];
+        }
+        mTile = new int[mCount];
+        mTileX = new int[mCount];
+        mTileY = new int[mCount];
+        mTileW = new int[mCount];
+        mTileH = new int[mCount];
+    }
+
+    /**
+     * @param in_frameWidth 원본 가로
+     * @param in_frameHeight 원본 세로
+     * @param in_rects 영역 (원본 픽셀 좌표) x, y, w, h 순서로 이어진 배열
+     * @param in_inputSize detection 입력 한 변의 크기
+     * @param in_maxTiles 최대 tile 수. 가장 작은 배율(페이지 전체 배율)에서도 넘치면 필요한 만큼 사용함.
+     * @param in_maxScale 최대 배율. 보통 1 (원본보다 키우지 않음)
+     * @param in_marginRatio 영역 크기 대비 여백 비율
+     */
+    public static OCRDetectionTilePlan Create(int in_frameWidth, int in_frameHeight, int[] in_rects,
+                                              int in_inputSize, int in_maxTiles, float in_maxScale,
+                                              float in_marginRatio) {
+        List<int[]> rects = new ArrayList<>();
+        for (int i = 0; i + 3 < in_rects.length; i += 4) {
+            int w = in_rects[i + 2];
+            int h = in_rects[i + 3];
+            int margin = Math.max(MIN_MARGIN, (int) (Math.max(w, h) * in_marginRatio));
+            int x0 = Math.max(0, in_rects[i] - margin);
+            int y0 = Math.max(0, in_rects[i + 1] - margin);
+            int x1 = Math.min(in_frameWidth, in_rects[i] + w + margin);
+            int y1 = Math.min(in_frameHeight, in_rects[i + 1] + h + margin);
+            if (x1 > x0 && y1 > y0) {
+                rects.add(new int[]{x0, y0, x1, y1});
+            }
+        }
+        mergeOverlaps(rects);
+
+        OCRDetectionTilePlan plan = new OCRDetectionTilePlan(in_inputSize, in_frameWidth, in_frameHeight, rects);
+        if (plan.mCount == 0) {
+            plan.mScale = in_maxScale;
+            plan.mTileCount = 0;
+            return plan;
+        }
+
+        // 영역 하나가 tile 하나를 넘지 않는 가장 큰 배율
+        float hi = in_maxScale;
+        for (int i = 0; i < plan.mCount; i++) {
+            hi = Math.min(hi, in_inputSize / (float) Math.max(plan.mSrcW[i], plan.mSrcH[i]));
+        }
+        // 페이지 전체를 입력 하나에 넣는 배율
+        float lo = Math.min(hi, in_inputSize / (float) Math.max(in_frameWidth, in_frameHeight));
+
+        int maxTiles = Math.max(1, in_maxTiles);
+        if (plan.pack(hi) <= maxTiles) {
+            return plan;
+        }
+        if (plan.pack(lo) > maxTiles) {
+            return plan;
+        }
+        for (int iter = 0; iter < 20 && hi - lo > 1e-4f; iter++) {
+            float mid = 0.5f * (lo + hi);
+            if (plan.pack(mid) <= maxTiles) {
+                lo = mid;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        plan.pack(lo);
+        return plan;
+    }
+
+    /**
+     * 겹치는 영역을 합집합 하나로 합친다.
+     */
+    private static void mergeOverlaps(List<int[]> rects) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < rects.size() && !merged; i++) {
+                for (int j = i + 1; j < rects.size(); j++) {
+                    int[] a = rects.get(i);
+                    int[] b = rects.get(j);
+                    if (a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3]) {
+                        a[0] = Math.min(a[0], b[0]);
+                        a[1] = Math.min(a[1], b[1]);
+                        a[2] = Math.max(a[2], b[2]);
+                        a[3] = Math.max(a[3], b[3]);
+                        rects.remove(j);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 주어진 배율로 영역을 tile 에 선반 방식으로 배치한다. 높은 영역부터 넣음.
+     * @return 필요한 tile 수
+     */
+    private int pack(float in_scale) {
+        mScale = in_scale;
+        Integer[] order = new Integer[mCount];
+        for (int i = 0; i < mCount; i++) {
+            order[i] = i;
+            mTileW[i] = Math.max(1, Math.min(mInputSize, Math.round(mSrcW[i] * in_scale)));
+            mTileH[i] = Math.max(1, Math.min(mInputSize, Math.round(mSrcH[i] * in_scale)));
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return mTileH[b] != mTileH[a] ? mTileH[b] - mTileH[a] : a - b;
+            }
+        });
+
+        int tile = 0;
+        int cursorX = 0;
+        int shelfY = 0;
+        int shelfH = 0;
+        for (int i : order) {
+            if (cursorX > 0 && cursorX + mTileW[i] > mInputSize) {
+                shelfY += shelfH + GAP;
+                cursorX = 0;
+                shelfH = 0;
+            }
+            if (shelfY > 0 && shelfY + mTileH[i] > mInputSize) {
+                tile++;
+                shelfY = 0;
+                cursorX = 0;
+                shelfH = 0;
+            }
+            mTile[i] = tile;
+            mTileX[i] = cursorX;
+            mTileY[i] = shelfY;
+            cursorX += mTileW[i] + GAP;
+            shelfH = Math.max(shelfH, mTileH[i]);
+        }
+        mTileCount = tile + 1;
+        return mTileCount;
+    }
+
+    public int GetInputSize() {
+        return mInputSize;
+    }
+
+    public int GetTileCount() {
+        return mTileCount;
+    }
+
+    /**
+     * @return 원본 -> tile 배율 (모든 영역 공통)
+     */
+    public float GetScale() {
+        return mScale;
+    }
+
+    /**
+     * @return 여백을 붙이고 겹치는 영역을 합친 후의 영역 수
+     */
+    public int GetPlacementCount() {
+        return mCount;
+    }
+
+    public int GetSourceX(int in_index) {
+        return mSrcX[in_index];
+    }
+
+    public int GetSourceY(int in_index) {
+        return mSrcY[in_index];
+    }
+
+    public int GetSourceWidth(int in_index) {
+        return mSrcW[in_index];
+    }
+
+    public int GetSourceHeight(int in_index) {
+        return mSrcH[in_index];
+    }
+
+    public int GetTile(int in_index) {
+        return mTile[in_index];
+    }
+
+    public int GetTileX(int in_index) {
+        return mTileX[in_index];
+    }
+
+    public int GetTileY(int in_index) {
+        return mTileY[in_index];
+    }
+
+    public int GetTileWidth(int in_index) {
+        return mTileW[in_index];
+    }
+
+    public int GetTileHeight(int in_index) {
+        return mTileH[in_index];
+    }
+
+    /**
+     * tile 좌표의 점이 속한 영역을 찾는다.
+     * @return 영역 index. 어느 영역에도 속하지 않으면(빈 공간) -1
+     */
+    public int FindPlacement(int in_tile, double in_x, double in_y) {
+        for (int i = 0; i < mCount; i++) {
+            if (mTile[i] == in_tile
+                    && in_x >= mTileX[i] && in_x < mTileX[i] + mTileW[i]
+                    && in_y >= mTileY[i] && in_y < mTileY[i] + mTileH[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * tile 좌표를 원본 좌표로 바꾼다.
+     */
+    public double ToSourceX(int in_index, double in_x) {
+        return mSrcX[in_index] + (in_x - mTileX[in_index]) * mSrcW[in_index] / (double) mTileW[in_index];
+    }
+
+    public double ToSourceY(int in_index, double in_y) {
+        return mSrcY[in_index] + (in_y - mTileY[in_index]) * mSrcH[in_index] / (double) mTileH[in_index];
+    }
+
+    /**
+     * @return detection 에 사용하는 원본 픽셀 수 (영역 넓이의 합)
+     */
+    public long GetSourcePixels() {
+        long pixels = 0;
+        for (int i = 0; i < mCount; i++) {
+            pixels += (long) mSrcW[i] * mSrcH[i];
+        }
+        return pixels;
+    }
+
+    /**
+     * @return 모델 입력 픽셀 수 (tile 수 x 입력 크기). 페이지 전체 detection 은 입력 한 장(입력 크기의 제곱)
+     */
+    public long GetModelPixels() {
+        return (long) mTileCount * mInputSize * mInputSize;
+    }
+
+    /**
+     * @return 페이지 전체 픽셀 수
+     */
+    public long GetFramePixels() {
+        return (long) mFrameWidth * mFrameHeight;
+    }
+
+    /**
+     * @param in_tile tile index (0 ~ GetTileCount()-1)
+     * @return tile 에 들어간 영역의 index 목록
+     */
+    public List<Integer> GetPlacementsOfTile(int in_tile) {
+        List<Integer> placements = new ArrayList<>();
+        for (int i = 0; i < mCount; i++) {
+            if (mTile[i] == in_tile) {
+                placements.add(i);
+            }
+        }
+        return Collections.unmodifiableList(placements);
+    }
+}
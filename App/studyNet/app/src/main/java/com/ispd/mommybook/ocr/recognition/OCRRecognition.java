@@ -2,9 +2,10 @@ package com.ispd.mommybook.ocr.recognition;
 
 import android.content.Context;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Message;
 
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB;
+import com.ispd.mommybook.aiscore.AIScoreTextNormalizer;
 import com.ispd.mommybook.ocr.OCRManager;
 import com.ispd.mommybook.ocr.OCRRecognitionMode;
 
@@ -18,49 +19,58 @@ import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTI
 
 import com.ispd.mommybook.utils.UtilsLogger;
 
+import org.opencv.core.Mat;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 
 public class OCRRecognition {
     private static final UtilsLogger LOGGER = new UtilsLogger();
     public final static int RECOG_BOX_MAX = 3;
-    public final static String TEXT_SEPARATOR = "//"; //집단채점시 각 인식결과 텍스트 사이에 들어가는 구분자
+    private final static int MULTI_MODEL_COUNT = 3;
 
     private Context mContext;
     private Handler mOCRManagerHandler;
-    private HandlerThread mHandlerThread = null;
-    private Handler mHandler = null;
-    private boolean mStopProcess = false;
-
-    private ArrayList<OCRManager.OCRData> mOCRDataList;
-    private int mRecogStartIndex = -1; //인식할 데이터 리스트 중 첫번째 데이터 인덱스
-    private int mRecogEndIndex = -1; //인식할 데이터 리스트 중 마지막 데이터 인덱스
-    private boolean mStartFlag = false;
+    private OCRRecognitionEnsemble mEnsemble;
+    private OCRRecognitionCache mCache;
+    private OCRRecognitionEarlyExit mEarlyExit;
+    // 정답 후보 변환용. 인식 쓰레드에서만 사용함.
+    private AIScoreTextNormalizer mEnglishNormalizer;
 
     public OCRRecognition(Context context, Handler handler) {
         mContext = context;
         mOCRManagerHandler = handler;
-        mHandlerThread = new HandlerThread("OCRRecognition");
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper()){
-            @Override
-            public void handleMessage(Message msg) {
-                handleMessages(msg);
-            }
-        };
+        mEnsemble = new OCRRecognitionEnsemble(3);
+        LOGGER.d("SallyRecog OCRRecognitionEnsemble threads = " + mEnsemble.GetThreadCount());
+        mCache = new OCRRecognitionCache();
+        mEarlyExit = new OCRRecognitionEarlyExit(MULTI_MODEL_COUNT);
+        mEnglishNormalizer = AIScoreTextNormalizer.Create(AIScoreReferenceDB.TextLanguage.ENGLISH);
+    }
 
-        runProcess();
+    /**
+     * 집단채점 조기 종료 정책. 기준 변경이나 조기 종료 비율 확인용.
+     */
+    public OCRRecognitionEarlyExit GetEarlyExit() {
+        return mEarlyExit;
     }
 
-    public void SetRecogData(ArrayList<OCRManager.OCRData> list, int start, int end) {
-        LOGGER.d("SallyRecog startIdx = " + start + " , endIdx = " + end);
-        mRecogStartIndex = start;
-        mRecogEndIndex = end;
-        mOCRDataList = list;
+    /**
+     * 인식 결과 캐시. 크기 제한이나 hit/miss 확인용.
+     */
+    public OCRRecognitionCache GetCache() {
+        return mCache;
     }
 
-    public void StartRecognition() {
-        mStartFlag = true;
+    /**
+     * 인식 결과 캐시를 비운다. 페이지가 바뀌는 경우 호출됨.
+     */
+    public void ClearCache() {
+        mCache.Clear();
     }
 
     /**
@@ -100,155 +110,266 @@ public class OCRRecognition {
     }
 
     /**
-     * 모델에 맞는 char dictionary index 을 리턴한다.
+     * 모델 이름 -> char dictionary index 테이블
      */
+    private static final HashMap<String, Integer> MODEL_DICTIONARY = new HashMap<>();
+    static {
+        MODEL_DICTIONARY.put("typo0623retr-none-vgg-none-ctc-kor_eng_mix_math.pt", CHAR_DICTIONARY_2445); //char_dict2445[]
+        MODEL_DICTIONARY.put("hw0409-none-vgg-bilstm-ctc-eng_hw_543ms.pt", CHAR_DICTIONARY_2450); //char_dict2450
+        MODEL_DICTIONARY.put("hw0630_none-vgg-bilstm-ctc-kor_hw.pt", CHAR_DICTIONARY_2497); //char_dict2497
+        MODEL_DICTIONARY.put("hw0708-none-vgg-none-ctc-kor-hw-199ms.pt", CHAR_DICTIONARY_2497);
+        MODEL_DICTIONARY.put("hw0715-none-vgg-none-ctc-eng_hw_199ms.pt", CHAR_DICTIONARY_2497);
+        MODEL_DICTIONARY.put("hw0723retr_none-vgg-bilstm-ctc-kor_hw_num.pt", CHAR_DICTIONARY_2497);
+    }
 
+    /**
+     * 모델에 맞는 char dictionary index 을 리턴한다.
+     */
     private int getDictionaryIndex(String modelName) {
-        int dictIdx = -1;
-        if(modelName == "typo0623retr-none-vgg-none-ctc-kor_eng_mix_math.pt") {
-            dictIdx = CHAR_DICTIONARY_2445; //char_dict2445[]
-        }
-        else if(modelName == "hw0409-none-vgg-bilstm-ctc-eng_hw_543ms.pt") {
-            dictIdx = CHAR_DICTIONARY_2450; //char_dict2450
+        Integer dictIdx = MODEL_DICTIONARY.get(modelName);
+        return dictIdx != null ? dictIdx : -1;
+    }
+
+    /**
+     * 인식할 데이터를 인식 모드별로 묶어서 모델마다 한 번의 forward 로 인식한다.
+     * 집단채점인 경우엔 세 모델 각각에 첫번째, 두번째, 세번째 프레임 이미지를 묶어서 넣음.
+     * 호출한 쓰레드(OCRManager 의 인식 작업 쓰레드)에서 인식이 끝날 때까지 실행되고,
+     * 단어별 결과는 OCRManager 핸들러에 메시지로 전달됨.
+     * @param list 인식할 데이터 리스트
+     * @param start 인식할 데이터 리스트 중 첫번째 데이터 인덱스
+     * @param end 인식할 데이터 리스트 중 마지막 데이터 인덱스
+     */
+    public void RecognizePage(ArrayList<OCRManager.OCRData> list, int start, int end) {
+        LOGGER.d("SallyRecog startIdx = " + start + " , endIdx = " + end);
+        // 인식 모드별로 데이터를 분류. 입력 순서를 유지하기 위해 LinkedHashMap 사용.
+        LinkedHashMap<OCRRecognitionMode, ArrayList<OCRManager.OCRData>> groups = new LinkedHashMap<>();
+        for(int i = start; i < (end + 1); i++) {
+            LOGGER.d("SallyRecog i ======> " + i + ", OCRDataList size : " + list.size());
+            OCRManager.OCRData data = list.get(i);
+            ArrayList<OCRManager.OCRData> group = groups.get(data.mRecogMode);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(data.mRecogMode, group);
+            }
+            group.add(data);
         }
-        else if( (modelName == "hw0630_none-vgg-bilstm-ctc-kor_hw.pt") ||
-                (modelName == "hw0708-none-vgg-none-ctc-kor-hw-199ms.pt") ||
-                (modelName == "hw0715-none-vgg-none-ctc-eng_hw_199ms.pt") ||
-                (modelName == "hw0723retr_none-vgg-bilstm-ctc-kor_hw_num.pt") ){
-            dictIdx = CHAR_DICTIONARY_2497; //char_dict2497
+
+        for(Map.Entry<OCRRecognitionMode, ArrayList<OCRManager.OCRData>> entry : groups.entrySet()) {
+            OCRRecognitionMode recogMode = entry.getKey();
+            ArrayList<OCRManager.OCRData> group = entry.getValue();
+            String[] modelName = getModelName(recogMode);
+
+            int[] serials = new int[group.size()];
+            for(int k = 0; k < group.size(); k++) {
+                serials[k] = group.get(k).mSerialNumber;
+            }
+            final String[][] answers = makeAnswerCandidates(recogMode, group);
+            // 정답 기반 CTC 채점을 사용하는 경우에만 인식에 정답 후보를 넘겨줌.
+            final String[][] candidates = OCRRecognitionPredict.IsAnswerScoring() ? answers : null;
+
+            if(recogMode == HW_KOR_MULTI || recogMode == HW_ENG_MULTI) {
+                recognizeMulti(group, modelName, serials, answers, candidates);
+            }
+            else {
+                // 단일채점
+                LOGGER.d("SallyRecog Single SCORING !!!!!!!!!!!!!!!!!!");
+                ArrayList<Mat> images = new ArrayList<>(group.size());
+                for(OCRManager.OCRData data : group) {
+                    images.add(data.mMatWordImg);
+                }
+                OCRRecognitionResult.ModelResult[] results = predictWords(modelName[0], images, serials, candidates);
+                LOGGER.d("SallyRecog                  ModelName= " + modelName[0]);
+
+                for(int k = 0; k < group.size(); k++) {
+                    LOGGER.d("SallyRecog Single Scoring : Predicted= " + results[k] + "(serial= " + serials[k] + ", refer= " + group.get(k).mAnswer + ")");
+                    sendResult(SINGLE_MODEL_SCORING, new OCRRecognitionResult(serials[k], false, results[k]));
+                }
+            }
         }
-        return dictIdx;
     }
 
-    private String resultAll = "";
-    private int modelIndex = 0;
-    private void runProcess() {
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if( mStopProcess == true ) {
-                    return;
+    /**
+     * 집단채점 : 세 모델이 각각 첫번째, 두번째, 세번째 프레임 이미지를 인식한다.
+     * 조기 종료를 사용하면 모델을 하나씩 실행하고, 정답으로 결정된 단어는 다음 모델에 넣지 않음.
+     * 사용하지 않으면 세 모델을 동시에 실행함. 같은 모델을 쓰는 프레임들은 묶어서 그 모델의 한 번의 실행으로 인식함.
+     * 결과는 모델 순서대로 단어마다 OCRManager 에 전달됨.
+     */
+    private void recognizeMulti(ArrayList<OCRManager.OCRData> group, String[] modelName, int[] serials,
+                                String[][] answers, String[][] candidates) {
+        int wordCount = group.size();
+        OCRRecognitionResult.ModelResult[][] models = new OCRRecognitionResult.ModelResult[wordCount][MULTI_MODEL_COUNT];
+        int[] agreeCount = new int[wordCount];
+        boolean[] settled = new boolean[wordCount];
+
+        // 조기 종료할 수 없으면(합의 수 = 모델 수) 모델을 하나씩 실행할 이유가 없으므로 동시에 실행함.
+        int stageSize = mEarlyExit.CanExitEarly() ? 1 : MULTI_MODEL_COUNT;
+        for(int first = 0; first < MULTI_MODEL_COUNT; first += stageSize) {
+            // 아직 결정되지 않은 단어만 인식함.
+            ArrayList<Integer> pending = new ArrayList<>(wordCount);
+            for(int k = 0; k < wordCount; k++) {
+                if(!settled[k]) {
+                    pending.add(k);
                 }
-                if(mStartFlag == true && mOCRDataList != null) {
-
-                    for(int i = mRecogStartIndex; i < (mRecogEndIndex + 1); i++) {
-                        LOGGER.d("SallyRecog i ======> " + i + ", OCRDataList size : " + mOCRDataList.size());
-                        OCRManager.OCRData data = mOCRDataList.get(i);
-
-                        String[] modelName = getModelName(data.mRecogMode);
-
-//                        String resultAll = "";
-                        int scoringType = -1;
-                        if(data.mRecogMode == HW_KOR_MULTI || data.mRecogMode == HW_ENG_MULTI) {
-                            // 집단채점
-//                            Thread[] thread = new Thread[3];
-                            //for(int modelIndex = 0; modelIndex < 3; modelIndex++) {
-                            resultAll = "";
-                            for(modelIndex = 0; modelIndex < 3; modelIndex++) {
-                                LOGGER.d("SallyRecog MULTI SCORING [" + modelIndex + "]~~~~~~~~~~~~~");
-                                OCRRecognitionPredict predictClass =
-                                        new OCRRecognitionPredict(mContext,
-                                                                  data.mSerialNumber,
-                                                                  modelName[modelIndex],
-                                                                  getDictionaryIndex(modelName[modelIndex]));
-                                String result = "";
-                                if(modelIndex == 0) {
-                                    result = predictClass.PredictWord(data.mMatWordImg);
-                                }
-                                else if(modelIndex == 1) {
-                                    result = predictClass.PredictWord(data.mMatWordImgScnd);
-                                }
-                                else {
-                                    result = predictClass.PredictWord(data.mMatWordImgThrd);
-                                }
-                                LOGGER.d("SallyRecog MULTI SCORING Predicted [" + modelIndex + "] :" + result);
-                                LOGGER.d("SallyRecog               ModelName= " + modelName[modelIndex]);
-                                resultAll = resultAll + result + TEXT_SEPARATOR;
-
-                            }
-                            LOGGER.d("SallyRecog MULTI SCORING Predicted : " + resultAll);
-                            scoringType = MULTI_MODEL_SCORING;
-                            // OCRManager 에 결과 스트링 전달.
-                            Message retmsg = new Message();
-                            retmsg.what = MSG_WORD_RECOGNITION_DONE;
-                            retmsg.arg1 = data.mSerialNumber;
-                            retmsg.arg2 = scoringType;  //멀티모델 인식인지의 여부
-                            retmsg.obj = resultAll; // 인식 결과 스트링 (집단채점인 경우 세 모델의 데이터 모음)
-
-                            mOCRManagerHandler.sendMessage(retmsg);
-                        }
-                        else {
-                            // 단일채점
-
-                            Thread thread = new Thread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    LOGGER.d("SallyRecog Single SCORING !!!!!!!!!!!!!!!!!!");
-                                    OCRRecognitionPredict predictClass =
-                                            new OCRRecognitionPredict(mContext,
-                                                                      data.mSerialNumber,
-                                                                      modelName[0],
-                                                                      getDictionaryIndex(modelName[0]));
-                                    String result = predictClass.PredictWord(data.mMatWordImg);
-                                    LOGGER.d("SallyRecog Single Scoring : Predicted= " + result + "(serial= " + data.mSerialNumber + ", refer= " + data.mAnswer + ")");
-                                    LOGGER.d("SallyRecog                  ModelName= " + modelName[0]);
-                                    resultAll = result;
-                                }
-                            });
-                            thread.start();
-                            try {
-                                thread.join();
-                            }catch (InterruptedException e) {
-                                e.printStackTrace();
-                            } finally {
-                                thread =  null;
-                            }
-                            scoringType = SINGLE_MODEL_SCORING;
-                            // OCRManager 에 결과 스트링 전달.
-                            Message retmsg = new Message();
-                            retmsg.what = MSG_WORD_RECOGNITION_DONE;
-                            retmsg.arg1 = data.mSerialNumber;
-                            retmsg.arg2 = scoringType;  //멀티모델 인식인지의 여부
-                            retmsg.obj = resultAll; // 인식 결과 스트링 (집단채점인 경우 세 모델의 데이터 모음)
-
-                            mOCRManagerHandler.sendMessage(retmsg);
-                        }
+            }
+            if(pending.isEmpty()) {
+                break;
+            }
+            final int[] pendingSerials = new int[pending.size()];
+            final String[][] pendingCandidates = candidates != null ? new String[pending.size()][] : null;
+            for(int p = 0; p < pending.size(); p++) {
+                pendingSerials[p] = serials[pending.get(p)];
+                if(pendingCandidates != null) {
+                    pendingCandidates[p] = candidates[pending.get(p)];
+                }
+            }
 
+            // 같은 모델을 쓰는 순서(HW_ENG_MULTI 의 세 프레임 등)는 이미지를 묶어서 모델마다 한 번만 실행함.
+            // 모델 하나의 forward 는 직렬화되므로 같은 모델을 작업 여러 개로 나누면 동시에 실행되지 않음.
+            LinkedHashMap<String, ArrayList<Integer>> stageModels = new LinkedHashMap<>();
+            for(int modelIndex = first; modelIndex < first + stageSize; modelIndex++) {
+                ArrayList<Integer> indices = stageModels.get(modelName[modelIndex]);
+                if(indices == null) {
+                    indices = new ArrayList<>();
+                    stageModels.put(modelName[modelIndex], indices);
+                }
+                indices.add(modelIndex);
+            }
 
+            final int pendingCount = pending.size();
+            ArrayList<Callable<OCRRecognitionResult.ModelResult[]>> tasks = new ArrayList<>(stageModels.size());
+            for(Map.Entry<String, ArrayList<Integer>> stageModel : stageModels.entrySet()) {
+                final String name = stageModel.getKey();
+                final int slotCount = stageModel.getValue().size();
+                LOGGER.d("SallyRecog MULTI SCORING " + stageModel.getValue() + "~~~~~~~~~~~~~ words= " + pendingCount);
+                LOGGER.d("SallyRecog               ModelName= " + name);
+                final ArrayList<Mat> images = new ArrayList<>(pendingCount * slotCount);
+                final int[] taskSerials = new int[pendingCount * slotCount];
+                final String[][] taskCandidates = pendingCandidates != null ? new String[pendingCount * slotCount][] : null;
+                for(int s = 0; s < slotCount; s++) {
+                    int modelIndex = stageModel.getValue().get(s);
+                    for(int p = 0; p < pendingCount; p++) {
+                        images.add(getFrameImage(group.get(pending.get(p)), modelIndex));
+                        taskSerials[s * pendingCount + p] = pendingSerials[p];
+                        if(taskCandidates != null) {
+                            taskCandidates[s * pendingCount + p] = pendingCandidates[p];
+                        }
                     }
+                }
+                tasks.add(new Callable<OCRRecognitionResult.ModelResult[]>() {
+                    @Override
+                    public OCRRecognitionResult.ModelResult[] call() {
+                        return predictWords(name, images, taskSerials, taskCandidates);
+                    }
+                });
+            }
+            List<OCRRecognitionResult.ModelResult[]> results = mEnsemble.Run(tasks);
+            if(results.contains(null)) {
+                LOGGER.w("SallyRecog ensemble has no result : rejected " + mEnsemble.GetRejectedCount()
+                        + ", timeout " + mEnsemble.GetTimeoutCount() + ", failed " + mEnsemble.GetFailedCount()
+                        + ", last failure " + mEnsemble.GetLastFailure());
+            }
 
-                    mStartFlag = false;
+            int t = 0;
+            for(ArrayList<Integer> indices : stageModels.values()) {
+                // 제한시간을 넘긴 모델은 인식 결과가 없는 것으로 처리함.
+                OCRRecognitionResult.ModelResult[] result = results.get(t++);
+                for(int s = 0; s < indices.size(); s++) {
+                    int modelIndex = indices.get(s);
+                    for(int p = 0; p < pendingCount; p++) {
+                        int k = pending.get(p);
+                        models[k][modelIndex] = result != null ?
+                                result[s * pendingCount + p] : OCRRecognitionResult.ModelResult.Empty(modelName[modelIndex]);
+                        if(mEarlyExit.Accepts(models[k][modelIndex], answers[k])) {
+                            agreeCount[k]++;
+                        }
+                    }
                 }
-                mHandler.postDelayed(this, 33);
             }
-        });
-    }
+            for(int k : pending) {
+                settled[k] = mEarlyExit.IsSettled(agreeCount[k]);
+            }
+        }
 
-    public void PauseProcess() {
-        mStopProcess = true;
+        for(int k = 0; k < wordCount; k++) {
+            // 실행하지 않은 모델은 결과에 넣지 않음. (채점과 화면 표시는 실행한 모델만 사용)
+            ArrayList<OCRRecognitionResult.ModelResult> ran = new ArrayList<>(MULTI_MODEL_COUNT);
+            for(int modelIndex = 0; modelIndex < MULTI_MODEL_COUNT; modelIndex++) {
+                if(models[k][modelIndex] != null) {
+                    ran.add(models[k][modelIndex]);
+                }
+            }
+            int runCount = ran.size();
+            mEarlyExit.Record(runCount);
+            OCRRecognitionResult recognized = new OCRRecognitionResult(serials[k], true, MULTI_MODEL_COUNT,
+                    ran.toArray(new OCRRecognitionResult.ModelResult[runCount]));
+            LOGGER.d("SallyRecog MULTI SCORING Predicted : " + recognized + " (models= " + runCount + ")");
+            // OCRManager 에 인식 결과 전달. (집단채점인 경우 세 모델의 결과)
+            sendResult(MULTI_MODEL_SCORING, recognized);
+        }
+        LOGGER.d("SallyRecog MULTI SCORING early exit : " + mEarlyExit.GetReport());
     }
 
-    public void ResumeProcess() {
-        if( mStopProcess == true ) {
-            mStopProcess = false;
-            runProcess();
+    /**
+     * 집단채점에서 모델 순서에 해당하는 프레임의 단어 이미지.
+     */
+    private static Mat getFrameImage(OCRManager.OCRData data, int modelIndex) {
+        if(modelIndex == 0) {
+            return data.mMatWordImg;
+        }
+        else if(modelIndex == 1) {
+            return data.mMatWordImgScnd;
         }
+        return data.mMatWordImgThrd;
     }
 
-    public void Stop() {
-        mHandlerThread.quitSafely();
-        try {
-            mHandlerThread.join();
-            mHandlerThread = null;
-            mHandler = null;
-        } catch (final InterruptedException e) {
-            LOGGER.e(e, "Exception!");
-        }
+    private OCRRecognitionResult.ModelResult[] predictWords(String modelName, ArrayList<Mat> images, int[] serials,
+                                                            String[][] candidates) {
+        OCRRecognitionPredict predictClass =
+                new OCRRecognitionPredict(mContext,
+                                          serials[0],
+                                          modelName,
+                                          getDictionaryIndex(modelName));
+        predictClass.SetCache(mCache);
+        return predictClass.PredictWords(images, serials, candidates);
     }
-    private void handleMessages(Message msg) {
-        switch (msg.what) {
-            default:
-                break;
+
+    /**
+     * 정답 기반 CTC 채점과 집단채점 조기 종료에 사용할 단어별 정답 후보를 만든다.
+     * 후보는 AIScoreFunctions.DoTextScoring() 에서 정답과 비교하는 형태로 만들어야
+     * 정답으로 판단된 경우 그대로 100점이 나옴.
+     * @return 단어별 정답 후보. 정답이 없는 단어는 null
+     */
+    private String[][] makeAnswerCandidates(OCRRecognitionMode recogMode, ArrayList<OCRManager.OCRData> group) {
+        boolean english = (recogMode == TYPO_ENG || recogMode == TYPO_ENG_NUM || recogMode == HW_ENG_SINGLE
+                || recogMode == HW_ENG_MULTI || recogMode == HW_ENG_NUM);
+        String[][] candidates = new String[group.size()][];
+        for(int k = 0; k < group.size(); k++) {
+            String answer = group.get(k).mAnswer;
+            if(answer == null || answer.isEmpty()) {
+                continue;
+            }
+            if(english) {
+                // 영어는 채점(AIScoreFunctions.DoTextScoring)과 같은 규칙으로 변환한 정답과 비교함.
+                candidates[k] = new String[]{mEnglishNormalizer.NormalizeAnswerKey(answer)};
+            }
+            else {
+                candidates[k] = new String[]{answer};
+            }
         }
+        return candidates;
+    }
+
+    private void sendResult(int scoringType, OCRRecognitionResult result) {
+        Message retmsg = new Message();
+        retmsg.what = MSG_WORD_RECOGNITION_DONE;
+        retmsg.arg1 = result.GetSerialNumber();
+        retmsg.arg2 = scoringType;  //멀티모델 인식인지의 여부
+        retmsg.obj = result; // 인식 결과 (집단채점인 경우 세 모델의 결과)
+
+        mOCRManagerHandler.sendMessage(retmsg);
+    }
+
+    public void Stop() {
+        mEnsemble.Shutdown();
     }
 }
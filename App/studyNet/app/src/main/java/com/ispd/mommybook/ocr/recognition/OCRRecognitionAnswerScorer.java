@@ -0,0 +1,261 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import java.util.HashMap;
+
+/**
+ * 정답 기반 CTC 채점기
+ *
+ * 정답을 이미 알고 있는 문제는 자유 디코딩 결과를 문자열 비교하는 대신,
+ * 모델 출력(logits)에서 정답 문자열의 CTC forward 확률 P(정답|이미지)를 직접 계산해서 판단한다.
+ * 기준은 greedy 최적 경로의 확률로, log P(정답) - log P(최적경로) 가 threshold 이상이면 정답으로 본다.
+ * (P(정답)은 모든 alignment 의 합이므로 greedy 결과가 정답과 같으면 항상 0 이상임.)
+ *
+ * 모든 계산은 log 공간에서 하고, 내부 버퍼를 재사용하므로 한 인스턴스를 여러 쓰레드에서 동시에 사용하면 안됨.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionAnswerScorer {
+    private static final int BLANK = 0;
+
+    /**
+     * 기본 판단 기준 : 정답 확률이 최적 경로 확률의 1/10 이상이면 정답.
+     */
+    public static final double DEFAULT_LOG_RATIO_THRESHOLD = Math.log(0.1);
+
+    private final HashMap<Character, Integer> mLabels;
+    private double mThreshold = DEFAULT_LOG_RATIO_THRESHOLD;
+
+    // 재사용 버퍼
+    private double[] mLogNorm = new double[32];
+    private double[] mAlpha = new double[64];
+    private double[] mAlphaNext = new double[64];
+
+    // 마지막 Match() 결과
+    private double mLastLogProbability = Double.NEGATIVE_INFINITY;
+    private double mLastLogRatio = Double.NEGATIVE_INFINITY;
+
+    public OCRRecognitionAnswerScorer(char[] in_dictionary) {
+        mLabels = new HashMap<>(in_dictionary.length * 2);
+        for (int i = 0; i < in_dictionary.length; i++) {
+            // 모델 출력의 0번은 blank 이므로 dictionary 의 i 번째 글자는 i+1 번 class 임.
+            mLabels.put(in_dictionary[i], i + 1);
+        }
+    }
+
+    /**
+     * OCRRecognitionCharDB 의 dictionary index 에 해당하는 채점기를 생성한다.
+     * 없는 index 이면 어떤 후보도 정답으로 판단하지 않는 채점기를 리턴함. (자유 디코딩 결과를 사용)
+     */
+    public static OCRRecognitionAnswerScorer Create(int in_dictIndex) {
+        char[] dictionary = OCRRecognitionCharDB.GetDictionary(in_dictIndex);
+        return new OCRRecognitionAnswerScorer(dictionary != null ? dictionary : new char[0]);
+    }
+
+    /**
+     * 판단 기준을 지정한다.
+     * @param in_logRatio log P(정답) - log P(최적경로) 의 최소값. 0 이면 greedy 결과와 같은 수준을 요구함.
+     */
+    public void SetThreshold(double in_logRatio) {
+        mThreshold = in_logRatio;
+    }
+
+    /**
+     * 문자열을 모델 class index 배열로 바꾼다. 공백은 모델이 출력하지 않으므로 제외함.
+     * @return dictionary 에 없는 글자가 있으면 null
+     */
+    public int[] Encode(String in_text) {
+        int[] labels = new int[in_text.length()];
+        int length = 0;
+        for (int i = 0; i < in_text.length(); i++) {
+            char c = in_text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            Integer label = mLabels.get(c);
+            if (label == null) {
+                return null;
+            }
+            labels[length++] = label;
+        }
+        if (length == labels.length) {
+            return labels;
+        }
+        int[] trimmed = new int[length];
+        System.arraycopy(labels, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    /**
+     * 한 단어의 CTC 출력(rows x columns)에서 label 열의 log 확률을 계산한다.
+     * @param in_scores 모델 출력 (softmax 이전의 값)
+     * @param in_offset 해당 단어 출력의 시작 위치
+     * @param in_labels Encode() 결과
+     * @return log P(labels | 이미지). 불가능한 경우 NEGATIVE_INFINITY
+     */
+    public double LogProbability(float[] in_scores, int in_offset, int in_rows, int in_columns, int[] in_labels) {
+        computeLogNorm(in_scores, in_offset, in_rows, in_columns);
+        return forward(in_scores, in_offset, in_rows, in_columns, in_labels);
+    }
+
+    /**
+     * greedy 최적 경로(각 time step 의 argmax)의 log 확률을 계산한다.
+     */
+    public double BestPathLogProbability(float[] in_scores, int in_offset, int in_rows, int in_columns) {
+        computeLogNorm(in_scores, in_offset, in_rows, in_columns);
+        return bestPath(in_scores, in_offset, in_rows, in_columns);
+    }
+
+    /**
+     * 정답 후보들 중 기준을 넘는 가장 확률이 높은 후보를 찾는다.
+     * @param in_candidates 정답 및 허용되는 변형들
+     * @return 기준을 넘는 후보의 index. 없으면 -1
+     */
+    public int Match(float[] in_scores, int in_offset, int in_rows, int in_columns, String[] in_candidates) {
+        computeLogNorm(in_scores, in_offset, in_rows, in_columns);
+        double best = bestPath(in_scores, in_offset, in_rows, in_columns);
+
+        int matched = -1;
+        mLastLogProbability = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < in_candidates.length; i++) {
+            if (in_candidates[i] == null) {
+                continue;
+            }
+            int[] labels = Encode(in_candidates[i]);
+            if (labels == null || labels.length == 0) {
+                continue;
+            }
+            double logP = forward(in_scores, in_offset, in_rows, in_columns, labels);
+            if (logP > mLastLogProbability) {
+                mLastLogProbability = logP;
+                matched = i;
+            }
+        }
+        mLastLogRatio = mLastLogProbability - best;
+        if (matched != -1 && mLastLogRatio < mThreshold) {
+            matched = -1;
+        }
+        return matched;
+    }
+
+    /**
+     * 마지막 Match() 에서 가장 확률이 높았던 후보의 log 확률
+     */
+    public double GetLastLogProbability() {
+        return mLastLogProbability;
+    }
+
+    /**
+     * 마지막 Match() 의 log P(정답) - log P(최적경로)
+     */
+    public double GetLastLogRatio() {
+        return mLastLogRatio;
+    }
+
+    private void computeLogNorm(float[] in_scores, int in_offset, int in_rows, int in_columns) {
+        if (mLogNorm.length < in_rows) {
+            mLogNorm = new double[in_rows];
+        }
+        for (int row = 0; row < in_rows; row++) {
+            int base = in_offset + row * in_columns;
+            float max = -Float.MAX_VALUE;
+            for (int col = 0; col < in_columns; col++) {
+                if (in_scores[base + col] > max) {
+                    max = in_scores[base + col];
+                }
+            }
+            double sum = 0.0;
+            for (int col = 0; col < in_columns; col++) {
+                sum += Math.exp(in_scores[base + col] - max);
+            }
+            mLogNorm[row] = max + Math.log(sum);
+        }
+    }
+
+    private double bestPath(float[] in_scores, int in_offset, int in_rows, int in_columns) {
+        double logP = 0.0;
+        for (int row = 0; row < in_rows; row++) {
+            int base = in_offset + row * in_columns;
+            float max = -Float.MAX_VALUE;
+            for (int col = 0; col < in_columns; col++) {
+                if (in_scores[base + col] > max) {
+                    max = in_scores[base + col];
+                }
+            }
+            logP += max - mLogNorm[row];
+        }
+        return logP;
+    }
+
+    /**
+     * CTC forward 알고리즘. blank 를 끼운 확장 label 열(길이 2L+1)에 대해 alpha 를 time step 마다 갱신함.
+     * computeLogNorm() 이 먼저 호출되어 있어야 함.
+     */
+    private double forward(float[] in_scores, int in_offset, int in_rows, int in_columns, int[] in_labels) {
+        int states = 2 * in_labels.length + 1;
+        if (in_rows <= 0) {
+            return in_labels.length == 0 ? 0.0 : Double.NEGATIVE_INFINITY;
+        }
+        if (mAlpha.length < states) {
+            mAlpha = new double[states];
+            mAlphaNext = new double[states];
+        }
+        double[] alpha = mAlpha;
+        double[] next = mAlphaNext;
+
+        for (int s = 0; s < states; s++) {
+            alpha[s] = Double.NEGATIVE_INFINITY;
+        }
+        alpha[0] = logProb(in_scores, in_offset, in_columns, 0, BLANK);
+        if (states > 1) {
+            alpha[1] = logProb(in_scores, in_offset, in_columns, 0, in_labels[0]);
+        }
+
+        for (int row = 1; row < in_rows; row++) {
+            // 남은 time step 으로 끝까지 갈 수 없는 state 는 계산하지 않음.
+            int first = Math.max(0, states - 2 * (in_rows - row));
+            for (int s = 0; s < first; s++) {
+                next[s] = Double.NEGATIVE_INFINITY;
+            }
+            for (int s = first; s < states; s++) {
+                int label = (s % 2 == 0) ? BLANK : in_labels[s / 2];
+                double sum = alpha[s];
+                if (s >= 1) {
+                    sum = logAdd(sum, alpha[s - 1]);
+                }
+                // 서로 다른 글자 사이에서는 blank 를 건너뛸 수 있음.
+                if (s >= 2 && label != BLANK && label != in_labels[s / 2 - 1]) {
+                    sum = logAdd(sum, alpha[s - 2]);
+                }
+                next[s] = sum == Double.NEGATIVE_INFINITY ?
+                        sum : sum + logProb(in_scores, in_offset, in_columns, row, label);
+            }
+            double[] tmp = alpha;
+            alpha = next;
+            next = tmp;
+        }
+
+        double result = alpha[states - 1];
+        if (states > 1) {
+            result = logAdd(result, alpha[states - 2]);
+        }
+        return result;
+    }
+
+    private double logProb(float[] in_scores, int in_offset, int in_columns, int in_row, int in_label) {
+        return in_scores[in_offset + in_row * in_columns + in_label] - mLogNorm[in_row];
+    }
+
+    private static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        if (a > b) {
+            return a + Math.log1p(Math.exp(b - a));
+        }
+        return b + Math.log1p(Math.exp(a - b));
+    }
+}
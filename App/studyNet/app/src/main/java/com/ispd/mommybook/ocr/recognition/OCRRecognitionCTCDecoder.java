@@ -0,0 +1,172 @@
+package com.ispd.mommybook.ocr.recognition;
+
+/**
+ * CTC greedy decoder
+ *
+ * 생성시에 char dictionary 하나에 묶이고, 모델 출력 float[] 에서 바로 argmax 를 구한 후
+ * 반복 글자와 blank(0) 를 제거해서 재사용하는 char[] 버퍼에 결과를 쓴다.
+ * 글자별 신뢰도는 해당 글자가 나온 구간에서의 softmax 확률 최대값임.
+ * softmax 는 exp 를 클래스 수만큼 계산해야 하므로 신뢰도를 요청할 때만 계산한다.
+ *
+ * Decode() 는 힙 할당을 하지 않음. 신뢰도 계산을 위해 마지막 입력 배열을 참조하므로
+ * GetConfidences() 호출 전에 입력 배열을 덮어쓰면 안됨. 한 인스턴스를 여러 쓰레드에서 동시에 사용하면 안됨.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionCTCDecoder {
+    private static final int BLANK = 0;
+
+    private final char[] mDictionary;
+    private char[] mChars = new char[32];
+    private float[] mConfidences = new float[32];
+    // 글자별 time step 구간 [start, end)
+    private int[] mRunStart = new int[32];
+    private int[] mRunEnd = new int[32];
+    private int mLength = 0;
+
+    // 마지막 Decode() 입력
+    private float[] mScores = null;
+    private int mOffset = 0;
+    private int mColumns = 0;
+    private boolean mConfidenceReady = false;
+
+    public OCRRecognitionCTCDecoder(char[] in_dictionary) {
+        mDictionary = in_dictionary;
+    }
+
+    /**
+     * OCRRecognitionCharDB 의 dictionary index 에 해당하는 decoder 를 생성한다.
+     * 없는 index 이면 (모델 이름이 dictionary 테이블에 없는 경우) 항상 빈 결과를 내는 decoder 를 리턴함.
+     */
+    public static OCRRecognitionCTCDecoder Create(int in_dictIndex) {
+        char[] dictionary = OCRRecognitionCharDB.GetDictionary(in_dictIndex);
+        return new OCRRecognitionCTCDecoder(dictionary != null ? dictionary : new char[0]);
+    }
+
+    /**
+     * 한 단어의 CTC 출력(rows x columns)을 디코딩한다.
+     * @param in_scores 모델 출력
+     * @param in_offset 해당 단어 출력의 시작 위치
+     * @param in_rows time step 수
+     * @param in_columns 클래스 수 (blank 포함)
+     * @return 디코딩된 글자 수
+     */
+    public int Decode(float[] in_scores, int in_offset, int in_rows, int in_columns) {
+        if (mDictionary.length == 0) {
+            mLength = 0;
+            mConfidenceReady = true;
+            return 0;
+        }
+        if (mChars.length < in_rows) {
+            mChars = new char[in_rows];
+            mConfidences = new float[in_rows];
+            mRunStart = new int[in_rows];
+            mRunEnd = new int[in_rows];
+        }
+
+        int length = 0;
+        int prevIdx = -1;
+        for (int row = 0; row < in_rows; row++) {
+            int base = in_offset + row * in_columns;
+            float maxValue = -Float.MAX_VALUE;
+            int maxIdx = -1;
+            for (int col = 0; col < in_columns; col++) {
+                float value = in_scores[base + col];
+                if (value > maxValue) {
+                    maxValue = value;
+                    maxIdx = col;
+                }
+            }
+
+            if (maxIdx != BLANK && maxIdx != -1) {
+                if (maxIdx != prevIdx) {
+                    // 아래 코드에서 ArrayIndexOutOfBoundsException 에러가 뜬다면
+                    // char_dict의 정의가 제대로 되어 있는지 봐야함.
+                    mChars[length] = mDictionary[maxIdx - 1];
+                    mRunStart[length] = row;
+                    length++;
+                }
+                mRunEnd[length - 1] = row + 1;
+            }
+            prevIdx = maxIdx;
+        }
+        mLength = length;
+        mScores = in_scores;
+        mOffset = in_offset;
+        mColumns = in_columns;
+        mConfidenceReady = false;
+        return length;
+    }
+
+    public int GetLength() {
+        return mLength;
+    }
+
+    /**
+     * 마지막 Decode() 결과 버퍼. 앞에서부터 GetLength() 개만 유효함.
+     */
+    public char[] GetChars() {
+        return mChars;
+    }
+
+    /**
+     * 마지막 Decode() 결과의 글자별 신뢰도 버퍼. 앞에서부터 GetLength() 개만 유효함.
+     */
+    public float[] GetConfidences() {
+        if (!mConfidenceReady) {
+            computeConfidences();
+        }
+        return mConfidences;
+    }
+
+    public String GetText() {
+        return new String(mChars, 0, mLength);
+    }
+
+    /**
+     * 마지막 Decode() 결과의 최소 글자 신뢰도. 글자가 없으면 0.
+     */
+    public float GetMinConfidence() {
+        if (mLength == 0) {
+            return 0.f;
+        }
+        float[] confidences = GetConfidences();
+        float min = 1.f;
+        for (int i = 0; i < mLength; i++) {
+            if (confidences[i] < min) {
+                min = confidences[i];
+            }
+        }
+        return min;
+    }
+
+    private void computeConfidences() {
+        for (int i = 0; i < mLength; i++) {
+            float best = 0.f;
+            // 같은 글자가 이어지는 구간은 한 글자이므로 가장 높은 확률을 사용함.
+            for (int row = mRunStart[i]; row < mRunEnd[i]; row++) {
+                float prob = softmaxOfMax(mScores, mOffset + row * mColumns, mColumns);
+                if (prob > best) {
+                    best = prob;
+                }
+            }
+            mConfidences[i] = best;
+        }
+        mConfidenceReady = true;
+    }
+
+    private static float softmaxOfMax(float[] in_scores, int in_base, int in_columns) {
+        float max = -Float.MAX_VALUE;
+        for (int col = 0; col < in_columns; col++) {
+            if (in_scores[in_base + col] > max) {
+                max = in_scores[in_base + col];
+            }
+        }
+        double sum = 0.0;
+        for (int col = 0; col < in_columns; col++) {
+            sum += Math.exp(in_scores[in_base + col] - max);
+        }
+        return (float) (1.0 / sum);
+    }
+}
@@ -0,0 +1,212 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 문자인식 결과 캐시
+ *
+ * 같은 페이지를 다시 채점하는 경우 바뀌지 않은 답안 영역을 다시 인식하지 않도록,
+ * (모델 이름, 32x100 단어 이미지의 perceptual hash) 를 키로 인식 결과를 저장한다.
+ * 캐시에 있으면 forward 를 하지 않음.
+ *
+ * hash 는 4x4 블럭 평균으로 줄인 이미지(25x8)에서 가로로 이웃한 블럭의 밝기 비교(dHash)를 사용한다.
+ * 배경처럼 밝기가 비슷한 블럭끼리는 노이즈에 따라 결과가 바뀌지 않도록 일정 차이 이상일 때만 bit 를 켜므로
+ * 카메라 노이즈 수준의 차이에는 같은 값이 나오고, 글씨가 바뀌면 다른 값이 나온다.
+ *
+ * 항목 수와 저장 시간으로 제한하고, 페이지가 바뀌면 Clear() 로 비운다.
+ * 여러 인식 쓰레드에서 동시에 사용할 수 있음.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionCache {
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+    public static final long DEFAULT_MAX_AGE_MS = 10 * 60 * 1000;
+
+    private static final int BLOCK = 4;
+    // 이웃 블럭의 평균 밝기가 이 값 이상 차이날 때만 bit 를 켬.
+    private static final int DIFF_THRESHOLD = 10 * BLOCK * BLOCK;
+
+    private static class Key {
+        final String mModelName;
+        final long[] mFingerprint;
+        final String mExtra;
+        final int mHash;
+
+        Key(String modelName, long[] fingerprint, String extra) {
+            mModelName = modelName;
+            mFingerprint = fingerprint;
+            mExtra = extra;
+            int hash = modelName.hashCode();
+            hash = 31 * hash + Arrays.hashCode(fingerprint);
+            hash = 31 * hash + (extra != null ? extra.hashCode() : 0);
+            mHash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mHash == other.mHash
+                    && mModelName.equals(other.mModelName)
+                    && Arrays.equals(mFingerprint, other.mFingerprint)
+                    && (mExtra == null ? other.mExtra == null : mExtra.equals(other.mExtra));
+        }
+    }
+
+    private static class Entry {
+        final OCRRecognitionResult.ModelResult mResult;
+        final long mTimeNs;
+
+        Entry(OCRRecognitionResult.ModelResult result, long timeNs) {
+            mResult = result;
+            mTimeNs = timeNs;
+        }
+    }
+
+    /**
+     * access-order LinkedHashMap : 맨 앞의 항목이 가장 오래 사용하지 않은 항목임.
+     */
+    private final LinkedHashMap<Key, Entry> mEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private int mMaxEntries = DEFAULT_MAX_ENTRIES;
+    private long mMaxAgeNs = DEFAULT_MAX_AGE_MS * 1000000L;
+
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+
+    /**
+     * 흑백 단어 이미지의 perceptual hash 를 계산한다.
+     * @param in_pixels 8bit 흑백 픽셀 (row-major)
+     * @param in_width 이미지 가로 크기
+     * @param in_height 이미지 세로 크기
+     * @return 2 x (가로 블럭수 - 1) x 세로 블럭수 bit 의 hash. 이웃 블럭마다 어두워지는지, 밝아지는지 1 bit 씩.
+     */
+    public static long[] Fingerprint(byte[] in_pixels, int in_width, int in_height) {
+        int cols = in_width / BLOCK;
+        int rows = in_height / BLOCK;
+        int[] means = new int[cols * rows];
+        for (int by = 0; by < rows; by++) {
+            for (int bx = 0; bx < cols; bx++) {
+                int sum = 0;
+                for (int y = by * BLOCK; y < (by + 1) * BLOCK; y++) {
+                    int base = y * in_width + bx * BLOCK;
+                    for (int x = 0; x < BLOCK; x++) {
+                        sum += in_pixels[base + x] & 0xff;
+                    }
+                }
+                means[by * cols + bx] = sum;
+            }
+        }
+
+        int bits = 2 * Math.max(0, cols - 1) * rows;
+        long[] fingerprint = new long[(bits + 63) / 64];
+        int bit = 0;
+        for (int by = 0; by < rows; by++) {
+            for (int bx = 0; bx < cols - 1; bx++) {
+                int diff = means[by * cols + bx] - means[by * cols + bx + 1];
+                if (diff >= DIFF_THRESHOLD) {
+                    fingerprint[bit >> 6] |= 1L << (bit & 63);
+                }
+                bit++;
+                if (-diff >= DIFF_THRESHOLD) {
+                    fingerprint[bit >> 6] |= 1L << (bit & 63);
+                }
+                bit++;
+            }
+        }
+        return fingerprint;
+    }
+
+    public synchronized void SetMaxEntries(int in_maxEntries) {
+        mMaxEntries = Math.max(1, in_maxEntries);
+        trim();
+    }
+
+    public synchronized void SetMaxAge(long in_maxAgeMs) {
+        mMaxAgeNs = in_maxAgeMs * 1000000L;
+    }
+
+    /**
+     * 저장된 인식 결과 문자열을 찾는다.
+     * @param in_modelName 모델 이름
+     * @param in_fingerprint Fingerprint() 결과
+     * @param in_extra 결과에 영향을 주는 추가 조건 (예: 정답 후보). 없으면 null
+     * @return 없거나 오래된 경우 null
+     */
+    public synchronized String Get(String in_modelName, long[] in_fingerprint, String in_extra) {
+        OCRRecognitionResult.ModelResult result = GetResult(in_modelName, in_fingerprint, in_extra);
+        return result != null ? result.GetText() : null;
+    }
+
+    /**
+     * 저장된 인식 결과를 찾는다. 글자별 신뢰도도 저장할 때의 값을 그대로 가지며 IsFromCache() 는 true.
+     * @return 없거나 오래된 경우 null
+     */
+    public synchronized OCRRecognitionResult.ModelResult GetResult(String in_modelName, long[] in_fingerprint,
+                                                                   String in_extra) {
+        Key key = new Key(in_modelName, in_fingerprint, in_extra);
+        Entry entry = mEntries.get(key);
+        if (entry != null && System.nanoTime() - entry.mTimeNs > mMaxAgeNs) {
+            mEntries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.mResult;
+    }
+
+    /**
+     * 인식 결과 문자열만 저장한다. (글자별 신뢰도 없음)
+     */
+    public synchronized void Put(String in_modelName, long[] in_fingerprint, String in_extra, String in_result) {
+        PutResult(in_modelName, in_fingerprint, in_extra,
+                new OCRRecognitionResult.ModelResult(in_modelName, in_result, null, 0, true));
+    }
+
+    public synchronized void PutResult(String in_modelName, long[] in_fingerprint, String in_extra,
+                                       OCRRecognitionResult.ModelResult in_result) {
+        OCRRecognitionResult.ModelResult cached = in_result.IsFromCache() ? in_result : in_result.FromCache();
+        mEntries.put(new Key(in_modelName, in_fingerprint, in_extra), new Entry(cached, System.nanoTime()));
+        trim();
+    }
+
+    /**
+     * 모든 항목을 지운다. 페이지가 바뀌는 경우 호출함.
+     */
+    public synchronized void Clear() {
+        mEntries.clear();
+    }
+
+    public synchronized int GetSize() {
+        return mEntries.size();
+    }
+
+    public synchronized long GetHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long GetMissCount() {
+        return mMissCount;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Key, Entry>> it = mEntries.entrySet().iterator();
+        while (mEntries.size() > mMaxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
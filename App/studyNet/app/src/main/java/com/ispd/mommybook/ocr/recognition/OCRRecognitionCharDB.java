@@ -505,4 +505,22 @@ public class OCRRecognitionCharDB {
 
 
 };
+
+    /**
+     * dictionary index 에 해당하는 char dictionary 를 리턴한다.
+     * @param dictIndex CHAR_DICTIONARY_2497, CHAR_DICTIONARY_2445, CHAR_DICTIONARY_2450
+     * @return 없는 index 인 경우 null
+     */
+    public static char[] GetDictionary(int dictIndex) {
+        switch (dictIndex) {
+            case CHAR_DICTIONARY_2497:
+                return char_dict2497;
+            case CHAR_DICTIONARY_2445:
+                return char_dict2445;
+            case CHAR_DICTIONARY_2450:
+                return char_dict2450;
+            default:
+                return null;
+        }
+    }
 }
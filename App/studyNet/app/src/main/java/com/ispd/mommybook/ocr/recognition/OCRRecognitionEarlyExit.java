@@ -0,0 +1,197 @@
+package com.ispd.mommybook.ocr.recognition;
+
+/**
+ * 집단채점 조기 종료 정책
+ *
+ * 집단채점은 세 모델이 세 프레임을 각각 인식하고 세 결과가 모두 정답이어야 정답으로 판단한다.
+ * 모델을 하나씩 실행하면서, 인식 결과가 정답 후보와 같고 최소 글자 신뢰도가 기준 이상인 모델이
+ * 정해진 수(agreement) 이상 나오면 그 단어는 나머지 모델을 실행하지 않는다.
+ * 기본값은 모델 수(모든 모델의 합의)이므로 조기 종료하지 않고 모든 모델을 실행함. (기존 판단 기준과 같음)
+ * 합의 수를 낮추면 판단 기준이 "실행한 모델의 결과가 모두 정답" 으로 바뀌므로 신뢰도 기준과 함께 조정해야 함.
+ * 실행하지 않은 모델은 결과에 넣지 않고, 채점과 화면 표시는 실행한 모델의 결과만 사용함.
+ *
+ * 조기 종료된 단어 수와 실행하지 않은 모델 수를 누적해서 비율로 보여준다.
+ * 설정은 어느 쓰레드에서나 바꿀 수 있고, 통계는 여러 쓰레드에서 읽을 수 있음.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionEarlyExit {
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.9f;
+
+    private final int mModelCount;
+    private volatile boolean mEnabled = true;
+    private volatile float mMinConfidence = DEFAULT_MIN_CONFIDENCE;
+    private volatile int mRequiredAgreement;
+
+    private long mWordCount = 0;
+    private long mEarlyExitCount = 0;
+    private long mModelRuns = 0;
+    private long mSavedRuns = 0;
+    // [n] : 모델 n+1 개를 실행하고 결정된 단어 수
+    private final long[] mSettledAfter;
+
+    /**
+     * @param in_modelCount 집단채점에 사용하는 모델 수
+     */
+    public OCRRecognitionEarlyExit(int in_modelCount) {
+        mModelCount = in_modelCount;
+        mRequiredAgreement = in_modelCount;
+        mSettledAfter = new long[in_modelCount];
+    }
+
+    public int GetModelCount() {
+        return mModelCount;
+    }
+
+    /**
+     * @param in_enabled false 면 항상 모든 모델을 실행함. (모델을 동시에 실행)
+     */
+    public void SetEnabled(boolean in_enabled) {
+        mEnabled = in_enabled;
+    }
+
+    public boolean IsEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @param in_minConfidence 정답으로 인정할 최소 글자 신뢰도 (0~1)
+     */
+    public void SetMinConfidence(float in_minConfidence) {
+        mMinConfidence = in_minConfidence;
+    }
+
+    public float GetMinConfidence() {
+        return mMinConfidence;
+    }
+
+    /**
+     * @param in_agreement 조기 종료에 필요한 정답 모델 수 (1 ~ 모델 수)
+     */
+    public void SetRequiredAgreement(int in_agreement) {
+        mRequiredAgreement = Math.max(1, Math.min(in_agreement, mModelCount));
+    }
+
+    public int GetRequiredAgreement() {
+        return mRequiredAgreement;
+    }
+
+    /**
+     * @return 모든 모델을 실행하기 전에 단어가 결정될 수 있으면 true. false 면 모델을 동시에 실행함.
+     */
+    public boolean CanExitEarly() {
+        return mEnabled && mRequiredAgreement < mModelCount;
+    }
+
+    /**
+     * 모델 하나의 결과가 정답으로 인정되는지 판단한다.
+     * 인식 문자열이 정답 후보 중 하나와 같고, 모든 글자의 신뢰도가 기준 이상이어야 함.
+     * 신뢰도가 없는 결과는 인정하지 않음.
+     * @param in_result 모델 결과
+     * @param in_answers 채점에서 비교하는 형태의 정답 후보들. null 이면 false
+     */
+    public boolean Accepts(OCRRecognitionResult.ModelResult in_result, String[] in_answers) {
+        if (in_answers == null || in_result == null || !in_result.HasConfidences()) {
+            return false;
+        }
+        String text = in_result.GetText();
+        if (text.isEmpty()) {
+            return false;
+        }
+        boolean matched = false;
+        for (String answer : in_answers) {
+            if (text.equals(answer)) {
+                matched = true;
+                break;
+            }
+        }
+        return matched && in_result.GetMinConfidence() >= mMinConfidence;
+    }
+
+    /**
+     * @param in_agreeCount 지금까지 정답으로 인정된 모델 수
+     * @return 나머지 모델을 실행하지 않아도 되면 true
+     */
+    public boolean IsSettled(int in_agreeCount) {
+        return mEnabled && in_agreeCount >= mRequiredAgreement;
+    }
+
+    /**
+     * 단어 하나의 결과를 통계에 더한다.
+     * @param in_runCount 실제로 실행한 모델 수
+     */
+    public synchronized void Record(int in_runCount) {
+        mWordCount++;
+        mModelRuns += in_runCount;
+        if (in_runCount > 0 && in_runCount < mModelCount) {
+            mEarlyExitCount++;
+            mSavedRuns += mModelCount - in_runCount;
+            mSettledAfter[in_runCount - 1]++;
+        }
+    }
+
+    public synchronized long GetWordCount() {
+        return mWordCount;
+    }
+
+    public synchronized long GetEarlyExitCount() {
+        return mEarlyExitCount;
+    }
+
+    /**
+     * @return 모델 in_runCount 개만 실행하고 결정된 단어 수
+     */
+    public synchronized long GetSettledAfter(int in_runCount) {
+        return mSettledAfter[in_runCount - 1];
+    }
+
+    public synchronized long GetModelRuns() {
+        return mModelRuns;
+    }
+
+    public synchronized long GetSavedRuns() {
+        return mSavedRuns;
+    }
+
+    /**
+     * @return 조기 종료된 단어의 비율 (0~1)
+     */
+    public synchronized float GetEarlyExitRate() {
+        return mWordCount > 0 ? (float) mEarlyExitCount / mWordCount : 0.f;
+    }
+
+    /**
+     * @return 모든 모델을 실행하는 경우 대비 실행하지 않은 모델의 비율 (0~1)
+     */
+    public synchronized float GetSavedRate() {
+        return mWordCount > 0 ? (float) mSavedRuns / (mWordCount * mModelCount) : 0.f;
+    }
+
+    public synchronized void ResetStats() {
+        mWordCount = 0;
+        mEarlyExitCount = 0;
+        mModelRuns = 0;
+        mSavedRuns = 0;
+        for (int i = 0; i < mSettledAfter.length; i++) {
+            mSettledAfter[i] = 0;
+        }
+    }
+
+    /**
+     * 로그용 통계 문자열.
+     */
+    public synchronized String GetReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("words= ").append(mWordCount)
+                .append(", early exit= ").append(mEarlyExitCount)
+                .append(" (").append(Math.round(GetEarlyExitRate() * 100.f)).append("%)")
+                .append(", model runs= ").append(mModelRuns)
+                .append(", saved= ").append(mSavedRuns)
+                .append(" (").append(Math.round(GetSavedRate() * 100.f)).append("%)");
+        for (int i = 0; i < mModelCount - 1; i++) {
+            builder.append(", after ").append(i + 1).append("= ").append(mSettledAfter[i]);
+        }
+        return builder.toString();
+    }
+}
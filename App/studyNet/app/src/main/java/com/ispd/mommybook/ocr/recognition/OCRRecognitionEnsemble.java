@@ -0,0 +1,153 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 집단채점용 다중 모델 실행기
+ *
+ * 한 단어(또는 한 배치)에 대한 모델별 인식을 코어 수만큼의 고정된 쓰레드풀에서 동시에 실행하고,
+ * 결과는 모델 순서대로 돌려준다.
+ * 모델 하나의 forward 는 직렬화되므로(ModelHandle) 작업 하나가 서로 다른 모델 하나를 사용하도록 나눠서 넘겨야 함.
+ * 전체 앙상블에 제한시간을 두어 느린 모델 하나 때문에 페이지 채점이 멈추지 않도록 한다.
+ * 제한시간을 넘긴 작업은 취소(interrupt)하고, 대기열이 가득 차면 작업을 실행하지 않고 실패로 처리함.
+ * 실패한 작업은 로그 대신 수를 세어두고 호출하는 쪽에서 GetTimeoutCount() 등으로 확인함. (Android 의존성 없음)
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionEnsemble {
+    /**
+     * 앙상블 하나의 기본 제한시간
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    /**
+     * 쓰레드 하나당 대기열에 쌓을 수 있는 작업 수
+     */
+    private static final int QUEUE_PER_THREAD = 2;
+
+    private final ThreadPoolExecutor mExecutor;
+    private volatile long mTimeoutMs = DEFAULT_TIMEOUT_MS;
+
+    private final AtomicLong mRejectedCount = new AtomicLong(0);
+    private final AtomicLong mTimeoutCount = new AtomicLong(0);
+    private final AtomicLong mFailedCount = new AtomicLong(0);
+    private volatile Throwable mLastFailure = null;
+
+    public OCRRecognitionEnsemble(int in_maxThreads) {
+        int threads = Math.max(1, Math.min(in_maxThreads, Runtime.getRuntime().availableProcessors()));
+        mExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "OCRRecognitionEnsemble-" + mCount.getAndIncrement());
+                    }
+                });
+    }
+
+    public void SetTimeout(long in_timeoutMs) {
+        mTimeoutMs = in_timeoutMs;
+    }
+
+    /**
+     * 모델별 인식 작업을 동시에 실행하고 끝날 때까지 기다린다.
+     * @param in_tasks 모델 순서대로의 인식 작업
+     * @return in_tasks 와 같은 순서의 결과. 제한시간을 넘기거나 실패한 작업의 결과는 null.
+     */
+    public <T> List<T> Run(List<Callable<T>> in_tasks) {
+        List<Future<T>> futures = new ArrayList<>(in_tasks.size());
+        for (int i = 0; i < in_tasks.size(); i++) {
+            try {
+                futures.add(mExecutor.submit(in_tasks.get(i)));
+            } catch (RejectedExecutionException e) {
+                // 이전 페이지의 작업이 아직 끝나지 않아 대기열이 가득 찬 경우
+                mRejectedCount.incrementAndGet();
+                futures.add(null);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mTimeoutMs);
+        List<T> results = new ArrayList<>(in_tasks.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<T> future = futures.get(i);
+            T result = null;
+            if (future == null) {
+                results.add(null);
+                continue;
+            }
+            try {
+                long remain = Math.max(0, deadline - System.nanoTime());
+                result = future.get(remain, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                mTimeoutCount.incrementAndGet();
+                future.cancel(true);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | CancellationException e) {
+                mFailedCount.incrementAndGet();
+                mLastFailure = e.getCause() != null ? e.getCause() : e;
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    public int GetThreadCount() {
+        return mExecutor.getCorePoolSize();
+    }
+
+    /**
+     * 대기열이 가득 차서 실행하지 않은 작업 수
+     */
+    public long GetRejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * 제한시간을 넘겨 취소한 작업 수
+     */
+    public long GetTimeoutCount() {
+        return mTimeoutCount.get();
+    }
+
+    /**
+     * 실행 중 예외가 발생한 작업 수
+     */
+    public long GetFailedCount() {
+        return mFailedCount.get();
+    }
+
+    /**
+     * @return 마지막으로 실패한 작업의 예외. 없으면 null
+     */
+    public Throwable GetLastFailure() {
+        return mLastFailure;
+    }
+
+    /**
+     * @return 실행중이거나 대기중인 작업 수
+     */
+    public int GetPendingCount() {
+        return mExecutor.getActiveCount() + mExecutor.getQueue().size();
+    }
+
+    public void Shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
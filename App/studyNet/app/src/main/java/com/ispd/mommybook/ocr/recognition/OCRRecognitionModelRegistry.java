@@ -0,0 +1,274 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import android.content.Context;
+
+import com.ispd.mommybook.utils.UtilsFile;
+import com.ispd.mommybook.utils.UtilsLogger;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 문자인식 TorchScript 모델 저장소
+ *
+ * 모델 이름(OCRRecognition.getModelName()의 결과)을 키로 .pt 모듈을 프로세스 전체에서 한 번만 로드하고,
+ * 여러 인식기가 같은 모듈을 공유하도록 한다.
+ * 사용중이지 않은 모듈은 메모리 예산을 넘으면 가장 오래 사용하지 않은 것부터 해제한다.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionModelRegistry {
+    private static final UtilsLogger LOGGER = new UtilsLogger();
+
+    /**
+     * 기본 메모리 예산. 모델 파일 크기의 합으로 계산함.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024L * 1024L;
+
+    // warm-up 용 입력 크기 : OCRRecognitionReady 에서 만드는 32x100 단어 이미지와 같음.
+    private static final int WARMUP_HEIGHT = 32;
+    private static final int WARMUP_WIDTH = 100;
+    private static final int WARMUP_TEXT_LENGTH = 25 + 1;
+
+    private static OCRRecognitionModelRegistry sInstance = null;
+
+    private final Context mContext;
+
+    /**
+     * access-order LinkedHashMap : 맨 앞의 항목이 가장 오래 사용하지 않은 모델임.
+     */
+    private final LinkedHashMap<String, ModelHandle> mModels =
+            new LinkedHashMap<String, ModelHandle>(8, 0.75f, true);
+
+    private long mMemoryBudget = DEFAULT_MEMORY_BUDGET;
+    private long mLoadedBytes = 0;
+    private boolean mWarmUpEnabled = true;
+
+    /**
+     * 로드된 모듈 하나와 참조 카운트.
+     * forward 는 모듈 단위로 직렬화해서 여러 인식 쓰레드가 같은 모듈을 써도 안전하게 한다.
+     * forward 를 기다리는 중에 interrupt 되면(앙상블 제한시간 초과 등) 기다리지 않고 취소됨.
+     */
+    public static class ModelHandle {
+        private final String mModelName;
+        private final long mByteSize;
+        private final ReentrantLock mLock = new ReentrantLock();
+        private Module mModule;
+        private int mRefCount = 0;
+
+        private ModelHandle(String modelName, Module module, long byteSize) {
+            mModelName = modelName;
+            mModule = module;
+            mByteSize = byteSize;
+        }
+
+        public String GetModelName() {
+            return mModelName;
+        }
+
+        /**
+         * @throws CancellationException 다른 쓰레드의 forward 를 기다리는 중에 interrupt 된 경우
+         */
+        public IValue Forward(IValue... inputs) {
+            try {
+                mLock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("SallyRecog forward cancelled : " + mModelName);
+            }
+            try {
+                if (mModule == null) {
+                    throw new IllegalStateException("Model is already destroyed : " + mModelName);
+                }
+                return mModule.forward(inputs);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        private void destroy() {
+            mLock.lock();
+            try {
+                if (mModule != null) {
+                    mModule.destroy();
+                    mModule = null;
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    private OCRRecognitionModelRegistry(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static synchronized OCRRecognitionModelRegistry GetInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new OCRRecognitionModelRegistry(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 모델 파일 크기 합의 상한을 지정한다. 넘는 경우 사용중이지 않은 모델부터 해제함.
+     * @param bytes
+     */
+    public synchronized void SetMemoryBudget(long bytes) {
+        mMemoryBudget = bytes;
+        evictIfNeeded();
+    }
+
+    public synchronized void SetWarmUpEnabled(boolean enabled) {
+        mWarmUpEnabled = enabled;
+    }
+
+    /**
+     * 모델을 미리 로드해 둔다. 첫 단어 인식시 로딩 시간이 포함되지 않도록 하기 위함.
+     * @param modelNames null 인 항목은 무시함.
+     */
+    public void Preload(String[] modelNames) {
+        for (String name : modelNames) {
+            if (name == null) {
+                continue;
+            }
+            ModelHandle handle = Acquire(name);
+            if (handle != null) {
+                Release(handle);
+            }
+        }
+    }
+
+    /**
+     * 모델을 가져온다. 로드되어 있지 않으면 로드함.
+     * 사용이 끝나면 반드시 Release() 를 호출해야 함.
+     * @param modelName asset 에 있는 .pt 파일 이름
+     * @return 로드 실패시 null
+     */
+    public ModelHandle Acquire(String modelName) {
+        synchronized (this) {
+            ModelHandle handle = mModels.get(modelName);
+            if (handle != null) {
+                handle.mRefCount++;
+                return handle;
+            }
+        }
+
+        // 모델 로딩은 오래 걸리므로 lock 밖에서 진행함.
+        ModelHandle loaded = loadModel(modelName);
+        if (loaded == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            ModelHandle handle = mModels.get(modelName);
+            if (handle != null) {
+                // 다른 쓰레드가 먼저 로드한 경우 그 모듈을 사용하고 방금 로드한 것은 해제함.
+                loaded.destroy();
+            } else {
+                handle = loaded;
+                mModels.put(modelName, handle);
+                mLoadedBytes += handle.mByteSize;
+            }
+            handle.mRefCount++;
+            evictIfNeeded();
+            return handle;
+        }
+    }
+
+    public synchronized void Release(ModelHandle handle) {
+        if (handle == null) {
+            return;
+        }
+        if (handle.mRefCount > 0) {
+            handle.mRefCount--;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * 사용중이지 않은 모든 모델을 해제한다.
+     */
+    public synchronized void Clear() {
+        Iterator<Map.Entry<String, ModelHandle>> it = mModels.entrySet().iterator();
+        while (it.hasNext()) {
+            ModelHandle handle = it.next().getValue();
+            if (handle.mRefCount == 0) {
+                it.remove();
+                mLoadedBytes -= handle.mByteSize;
+                handle.destroy();
+            }
+        }
+    }
+
+    public synchronized long GetLoadedBytes() {
+        return mLoadedBytes;
+    }
+
+    public synchronized int GetLoadedModelCount() {
+        return mModels.size();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, ModelHandle>> it = mModels.entrySet().iterator();
+        while (mLoadedBytes > mMemoryBudget && it.hasNext()) {
+            ModelHandle handle = it.next().getValue();
+            if (handle.mRefCount > 0) {
+                continue;
+            }
+            LOGGER.d("SallyRecog evict model : " + handle.mModelName);
+            it.remove();
+            mLoadedBytes -= handle.mByteSize;
+            handle.destroy();
+        }
+    }
+
+    private ModelHandle loadModel(String modelName) {
+        try {
+            long start = System.currentTimeMillis();
+            String path = UtilsFile.GetAssetFilePath(mContext, modelName);
+            Module module = Module.load(path);
+            long end = System.currentTimeMillis();
+            LOGGER.d("SallyRecog Module.load(" + modelName + ") Time : " + (end - start) + "msec");
+
+            ModelHandle handle = new ModelHandle(modelName, module, new File(path).length());
+            boolean warmUp;
+            synchronized (this) {
+                warmUp = mWarmUpEnabled;
+            }
+            if (warmUp) {
+                warmUp(handle);
+            }
+            return handle;
+        } catch (IOException e) {
+            LOGGER.e(e, "SallyRecog Model load fail : " + modelName);
+            return null;
+        }
+    }
+
+    /**
+     * 빈 입력으로 forward 를 한 번 실행해서 첫 인식의 지연을 없앤다.
+     */
+    private void warmUp(ModelHandle handle) {
+        long start = System.currentTimeMillis();
+        final Tensor inputTensor = Tensor.fromBlob(
+                new float[WARMUP_HEIGHT * WARMUP_WIDTH],
+                new long[]{1, 1, WARMUP_HEIGHT, WARMUP_WIDTH});
+        final Tensor textTensor = Tensor.fromBlob(
+                new long[WARMUP_TEXT_LENGTH],
+                new long[]{1, WARMUP_TEXT_LENGTH});
+        handle.Forward(IValue.from(inputTensor), IValue.from(textTensor));
+        long end = System.currentTimeMillis();
+        LOGGER.d("SallyRecog warm-up(" + handle.mModelName + ") Time : " + (end - start) + "msec");
+    }
+}
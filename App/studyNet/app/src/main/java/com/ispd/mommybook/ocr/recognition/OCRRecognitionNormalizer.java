@@ -0,0 +1,45 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 흑백 단어 이미지 픽셀을 인식 모델 입력값으로 정규화한다.
+ *
+ * 기존에는 Bitmap 으로 바꾼 후 TensorImageUtils.bitmapToFloatBuffer() 로 3 channel 을 채우고
+ * 그 중 첫번째 channel 만 사용했음. 흑백 이미지는 R=G=B 이므로 첫번째 channel 의 값은
+ * (gray / 255.0f - mean) / std 와 같고, 같은 float 연산으로 0~255 값을 미리 계산해 둔 테이블을 사용하므로
+ * 기존 결과와 bit 단위로 같다.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public class OCRRecognitionNormalizer {
+    private final float[] mTable = new float[256];
+    private float[] mValues = new float[0];
+
+    /**
+     * @param in_mean 정규화 평균 (TensorImageUtils.TORCHVISION_NORM_MEAN_RGB[0])
+     * @param in_std 정규화 표준편차 (TensorImageUtils.TORCHVISION_NORM_STD_RGB[0])
+     */
+    public OCRRecognitionNormalizer(float in_mean, float in_std) {
+        for (int i = 0; i < 256; i++) {
+            mTable[i] = (i / 255.0f - in_mean) / in_std;
+        }
+    }
+
+    /**
+     * 픽셀을 정규화해서 out 의 현재 위치부터 채운다.
+     * @param in_pixels 8bit 흑백 픽셀
+     * @param in_length 픽셀 수
+     * @param out 입력 버퍼. in_length 만큼 position 이 증가함.
+     */
+    public void Normalize(byte[] in_pixels, int in_length, FloatBuffer out) {
+        if (mValues.length < in_length) {
+            mValues = new float[in_length];
+        }
+        for (int i = 0; i < in_length; i++) {
+            mValues[i] = mTable[in_pixels[i] & 0xff];
+        }
+        out.put(mValues, 0, in_length);
+    }
+}
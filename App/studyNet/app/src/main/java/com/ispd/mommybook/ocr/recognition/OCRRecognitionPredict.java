@@ -1,31 +1,59 @@
 package com.ispd.mommybook.ocr.recognition;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 
-import com.ispd.mommybook.utils.UtilsFile;
 import com.ispd.mommybook.utils.UtilsLogger;
 
 import org.opencv.core.Mat;
 import org.pytorch.IValue;
-import org.pytorch.Module;
 import org.pytorch.Tensor;
 import org.pytorch.torchvision.TensorImageUtils;
 
-import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.List;
 
-import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2450;
-import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2497;
-import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2445;
 
 public class OCRRecognitionPredict {
     private static final UtilsLogger LOGGER = new UtilsLogger();
-    Module mModule = null;
+    private OCRRecognitionModelRegistry mModelRegistry;
+    private OCRRecognitionModelRegistry.ModelHandle mModel = null;
     private int mSerialNum = -1;
     private OCRRecognitionReady mOCRRecognitionReady;
     private int mDictIndex = -1;
+    private OCRRecognitionCTCDecoder mDecoder;
+    private OCRRecognitionAnswerScorer mAnswerScorer = null;
+    private String mModelName;
+    private OCRRecognitionCache mCache = null;
+
+    // 인식 입력 크기 : OCRRecognitionReady 에서 32x100 으로 맞춰서 넘겨줌.
+    public static final int WORD_HEIGHT = OCRRecognitionReady.WORD_HEIGHT;
+    public static final int WORD_WIDTH = OCRRecognitionReady.WORD_WIDTH;
+    private static final int WORD_LENGTH = WORD_HEIGHT * WORD_WIDTH;
+    private static final int TEXT_LENGTH = 25 + 1;
+
+    // 한 번의 forward 에 넣을 최대 단어 수. 메모리 사용량을 제한하기 위함.
+    public static final int MAX_BATCH_SIZE = 16;
+    private static volatile int sBatchSize = 8;
+
+    // 입력 버퍼 : Tensor.fromBlob() 은 버퍼 크기와 shape 가 같아야 하므로 배치 크기별로 만들어서
+    //            인식 쓰레드마다 재사용함. [n] 은 n 개 단어용 버퍼.
+    private static final ThreadLocal<FloatBuffer[]> sInputBuffers = new ThreadLocal<FloatBuffer[]>() {
+        @Override
+        protected FloatBuffer[] initialValue() {
+            return new FloatBuffer[MAX_BATCH_SIZE + 1];
+        }
+    };
+    private static final ThreadLocal<OCRRecognitionNormalizer> sNormalizer = new ThreadLocal<OCRRecognitionNormalizer>() {
+        @Override
+        protected OCRRecognitionNormalizer initialValue() {
+            return new OCRRecognitionNormalizer(TensorImageUtils.TORCHVISION_NORM_MEAN_RGB[0],
+                    TensorImageUtils.TORCHVISION_NORM_STD_RGB[0]);
+        }
+    };
+
+    // 정답 기반 CTC 채점 사용 여부
+    private static volatile boolean sAnswerScoring = false;
 
 //    static {
 //        System.loadLibrary("opencv_java4");
@@ -35,66 +63,209 @@ public class OCRRecognitionPredict {
     //dictIndex 0 : 2450 개 char, 1 : 2498 개 char
     public OCRRecognitionPredict(Context in_context, int in_serialNum, String in_model, int dictIndex) {
         mSerialNum = in_serialNum;
+        mModelName = in_model;
         mDictIndex = dictIndex;
-        mOCRRecognitionReady = new OCRRecognitionReady(in_serialNum);
+        mDecoder = OCRRecognitionCTCDecoder.Create(dictIndex);
+        mOCRRecognitionReady = new OCRRecognitionReady(in_serialNum, sNormalizer.get());
         loadModel(in_context, in_model);
     }
 
     //for Prediction
+    // 모델은 OCRRecognitionModelRegistry 에서 한 번만 로드하고 공유해서 사용함.
     private void loadModel(Context in_context, String in_model) {
-        try {
-            LOGGER.d("SallyRecog Try Model load. serialNum = " + mSerialNum );
-            // loading serialized torchscript module from packaged into app android asset model.pt,
-            long start = System.currentTimeMillis();
-            mModule = Module.load(UtilsFile.GetAssetFilePath(in_context, in_model));
-            long end = System.currentTimeMillis();
-            LOGGER.d("SallyRecog Module.load End Time (SerialNo=" + mSerialNum + ") : " + (end - start) + "msec");
+        long start = System.currentTimeMillis();
+        mModelRegistry = OCRRecognitionModelRegistry.GetInstance(in_context);
+        mModel = mModelRegistry.Acquire(in_model);
+        long end = System.currentTimeMillis();
+        LOGGER.d("SallyRecog Model acquire Time (SerialNo=" + mSerialNum + ") : " + (end - start) + "msec");
 
-            LOGGER.d("SallyRecog Model load success. serialNum = " + mSerialNum);
-        } catch (IOException e) {
-            LOGGER.e("SallyRecog Model load fail. serialNum = " + mSerialNum, e);
+        if (mModel == null) {
+            LOGGER.e("SallyRecog Model load fail. serialNum = " + mSerialNum);
         }
     }
 
     public String PredictWord(Mat in_imageMat) {
-        Bitmap predictionInputBmp = mOCRRecognitionReady.ReadyWordDataMatSingle(in_imageMat);
-        String predictionResult = predict(predictionInputBmp);
-        return predictionResult;
+        if (mModel == null) {
+            return "";
+        }
+        try {
+            FloatBuffer inputBuffer = getInputBuffer(1);
+            mOCRRecognitionReady.ReadyWordDataToBuffer(in_imageMat, inputBuffer);
+            inputBuffer.rewind();
+            String predictionResult = predict(inputBuffer);
+            return predictionResult;
+        } finally {
+            releaseModel();
+        }
     }
 
-    //for Prediction
-    private String predict(Bitmap in_wordBmp) {
-        LOGGER.d("SallyRecog predictWord() in_wordBmp =" + in_wordBmp.getWidth() + ", " + in_wordBmp.getHeight());
-        int wordBmpLength = in_wordBmp.getWidth() * in_wordBmp.getHeight();
-        // float_buffer에 이미지 픽셀을 복사
-        // bitmapToFloatBuffer()에서 정규화도 되는듯함.
-        // 픽셀단위가 아닌 R,G,B 각각 덩어리로 저장됨.
-        final FloatBuffer float_buffer = Tensor.allocateFloatBuffer(3 * wordBmpLength);
-        TensorImageUtils.bitmapToFloatBuffer(in_wordBmp, 0, 0, in_wordBmp.getWidth(),
-                in_wordBmp.getHeight(),
-                TensorImageUtils.TORCHVISION_NORM_MEAN_RGB,
-                TensorImageUtils.TORCHVISION_NORM_STD_RGB,
-                float_buffer, 0);
-
-        //float_buffer의 세개 channel중 한 channel만 다시 float_buffer2에 복사함.
-        final FloatBuffer float_buffer2 = Tensor.allocateFloatBuffer(wordBmpLength);
-
-        final float[] dst = new float[float_buffer2.capacity()];
-        float_buffer.get(dst, 0, wordBmpLength);
-        float_buffer2.put(dst, 0, wordBmpLength);
+    /**
+     * 배치 크기를 지정한다. 메모리 사용량을 제한하기 위해 MAX_BATCH_SIZE 를 넘을 수 없음.
+     * @param batchSize
+     */
+    public static void SetBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            batchSize = 1;
+        }
+        else if (batchSize > MAX_BATCH_SIZE) {
+            batchSize = MAX_BATCH_SIZE;
+        }
+        sBatchSize = batchSize;
+    }
+
+    public static int GetBatchSize() {
+        return sBatchSize;
+    }
+
+    /**
+     * 인식 결과 캐시를 지정한다. 캐시에 있는 단어는 forward 없이 저장된 결과를 사용함.
+     * @param in_cache null 이면 캐시를 사용하지 않음.
+     */
+    public void SetCache(OCRRecognitionCache in_cache) {
+        mCache = in_cache;
+    }
+
+    /**
+     * 현재 쓰레드에서 재사용하는 n 개 단어용 입력 버퍼를 리턴한다. position 은 0 임.
+     */
+    private static FloatBuffer getInputBuffer(int n) {
+        FloatBuffer[] buffers = sInputBuffers.get();
+        if (buffers[n] == null) {
+            buffers[n] = Tensor.allocateFloatBuffer(n * WORD_LENGTH);
+        }
+        buffers[n].clear();
+        return buffers[n];
+    }
+
+    /**
+     * 정답 기반 CTC 채점 사용 여부를 지정한다.
+     * 사용하는 경우 PredictWords() 에 정답 후보가 주어진 단어는 정답의 CTC 확률로 먼저 판단하고,
+     * 정답으로 판단되면 자유 디코딩 없이 해당 정답 후보를 결과로 돌려줌.
+     * @param enabled
+     */
+    public static void SetAnswerScoring(boolean enabled) {
+        sAnswerScoring = enabled;
+    }
+
+    public static boolean IsAnswerScoring() {
+        return sAnswerScoring;
+    }
+
+    /**
+     * 여러 단어 이미지를 [N,1,32,100] 텐서로 묶어서 한 번의 forward 로 인식한다.
+     * 배치 크기보다 많은 경우엔 배치 크기 단위로 나눠서 실행함.
+     * @param in_imageMats 단어 이미지들
+     * @param in_serialNums 각 단어 이미지의 시리얼넘버 (디버그 파일 이름에 사용)
+     * @return in_imageMats 와 같은 순서의 인식 결과 (문자열, 글자별 신뢰도, 배치 forward 시간, 모델 이름)
+     */
+    public OCRRecognitionResult.ModelResult[] PredictWords(List<Mat> in_imageMats, int[] in_serialNums) {
+        return PredictWords(in_imageMats, in_serialNums, null);
+    }
+
+    /**
+     * PredictWords() 와 같지만 단어별 정답 후보가 있으면 정답 기반 CTC 채점을 먼저 수행한다.
+     * @param in_candidates 단어별 정답 및 허용되는 변형들. null 이거나 항목이 null 이면 자유 디코딩만 함.
+     */
+    public OCRRecognitionResult.ModelResult[] PredictWords(List<Mat> in_imageMats, int[] in_serialNums,
+                                                           String[][] in_candidates) {
+        int count = in_imageMats.size();
+        OCRRecognitionResult.ModelResult[] results = new OCRRecognitionResult.ModelResult[count];
+        Arrays.fill(results, OCRRecognitionResult.ModelResult.Empty(mModelName));
+        if (mModel == null) {
+            return results;
+        }
+        try {
+            predictWords(in_imageMats, in_serialNums, in_candidates, results);
+        } finally {
+            // 예외가 나도 참조 카운트가 남지 않도록 항상 반납함.
+            releaseModel();
+        }
+        return results;
+    }
+
+    private void predictWords(List<Mat> in_imageMats, int[] in_serialNums, String[][] in_candidates,
+                              OCRRecognitionResult.ModelResult[] results) {
+        int count = in_imageMats.size();
+
+        // 각 단어 이미지를 32x100 흑백으로 준비하고, 캐시에 결과가 있는 단어는 인식에서 제외함.
+        byte[][] pixels = new byte[count][];
+        long[][] fingerprints = new long[count][];
+        String[] cacheExtras = new String[count];
+        int[] missed = new int[count];
+        int missedCount = 0;
+        for (int i = 0; i < count; i++) {
+            mOCRRecognitionReady.SetSerialNum(in_serialNums[i]);
+            byte[] wordPixels = mOCRRecognitionReady.ReadyWordPixels(in_imageMats.get(i));
+            if (mCache != null) {
+                fingerprints[i] = OCRRecognitionCache.Fingerprint(wordPixels, WORD_WIDTH, WORD_HEIGHT);
+                cacheExtras[i] = makeCacheExtra(in_candidates != null ? in_candidates[i] : null);
+                OCRRecognitionResult.ModelResult cached =
+                        mCache.GetResult(mModelName, fingerprints[i], cacheExtras[i]);
+                if (cached != null) {
+                    LOGGER.d("SallyRecog cache hit (serial= " + in_serialNums[i] + ") : " + cached);
+                    results[i] = cached;
+                    continue;
+                }
+            }
+            pixels[i] = wordPixels.clone();
+            missed[missedCount++] = i;
+        }
+
+        int batchSize = sBatchSize;
+
+        for (int begin = 0; begin < missedCount; begin += batchSize) {
+            int n = Math.min(batchSize, missedCount - begin);
+
+            // 정규화한 값을 배치 버퍼에 차례로 바로 씀.
+            final FloatBuffer batchBuffer = getInputBuffer(n);
+            for (int k = 0; k < n; k++) {
+                mOCRRecognitionReady.NormalizeWordPixels(pixels[missed[begin + k]], batchBuffer);
+            }
+            batchBuffer.rewind();
+
+            final Tensor inputTensor = Tensor.fromBlob(batchBuffer,
+                    new long[]{n, 1, WORD_HEIGHT, WORD_WIDTH});
+            final Tensor textForPredTensor = Tensor.fromBlob(new long[n * TEXT_LENGTH],
+                    new long[]{n, TEXT_LENGTH});
+
+            long start = System.currentTimeMillis();
+            final Tensor outputTensor = mModel.Forward(IValue.from(inputTensor), IValue.from(textForPredTensor)).toTensor();
+            long end = System.currentTimeMillis();
+            LOGGER.d("SallyRecog Batch Recognition Time (N=" + n + ") : " + (end - start) + "msec");
+
+            // 출력 : [N, rows, columns]. 각 단어의 CTC 출력을 잘라서 디코딩함.
+            final float[] scores = outputTensor.getDataAsFloatArray();
+            final long shape[] = outputTensor.shape();
+            final int rows = (int) shape[1];
+            final int columns = (int) shape[2];
+            for (int k = 0; k < n; k++) {
+                int index = missed[begin + k];
+                String[] candidates = in_candidates != null ? in_candidates[index] : null;
+                String matched = matchAnswer(scores, k * rows * columns, rows, columns, candidates);
+                results[index] = matched != null ?
+                        makeMatchedResult(matched, end - start) :
+                        decodeModelResult(scores, k * rows * columns, rows, columns, end - start);
+                if (mCache != null) {
+                    mCache.PutResult(mModelName, fingerprints[index], cacheExtras[index], results[index]);
+                }
+            }
+        }
+        if (mCache != null) {
+            LOGGER.d("SallyRecog cache hit= " + mCache.GetHitCount() + ", miss= " + mCache.GetMissCount());
+        }
+    }
 
+    //for Prediction
+    private String predict(FloatBuffer in_inputBuffer) {
         // channel 한 개 버퍼를 Tensor 형태로 변환함.
         final Tensor inputTensor = Tensor.fromBlob(
-                float_buffer2,
-                new long[]{1, 1,
-                        in_wordBmp.getHeight(),
-                        in_wordBmp.getWidth()
-                });
+                in_inputBuffer,
+                new long[]{1, 1, WORD_HEIGHT, WORD_WIDTH});
 
         // make input tensor filled with 0
         int batch_size = 1;  //batch_size 는 1(입력이미지 개수)임. bitmap의 height가 아님.
-        final long[] textForPred = new long[]{batch_size, 25 + 1};
-        long[] longs = new long[batch_size * (25 + 1)];
+        final long[] textForPred = new long[]{batch_size, TEXT_LENGTH};
+        long[] longs = new long[batch_size * TEXT_LENGTH];
         Arrays.fill(longs, (long) 0);
         // 첫번째 인자는 실제 넣을 값이고, 두번째 인자는 빈 버퍼임.
         final Tensor textForPredTensor = Tensor.fromBlob(longs, textForPred);
@@ -102,7 +273,7 @@ public class OCRRecognitionPredict {
         //for debug
         long start = System.currentTimeMillis();
         // run the model
-        final Tensor outputTensor = mModule.forward(IValue.from(inputTensor), IValue.from(textForPredTensor)).toTensor(); //속도
+        final Tensor outputTensor = mModel.Forward(IValue.from(inputTensor), IValue.from(textForPredTensor)).toTensor(); //속도
         // for debug : model run 끝나는 시점 계산
         long end = System.currentTimeMillis();
         LOGGER.d("SallyRecog Recognition Time (SerialNo=" + mSerialNum + ") : " + (end - start) + "msec");
@@ -114,50 +285,84 @@ public class OCRRecognitionPredict {
         // decode result
         final int rows = (int) shape[1];
         final int columns = (int) shape[2];
-        float maxValue;
-        float currValue;
-        int maxIdx;
-        int arrIndex[] = new int[rows];
-
-        for (int row = 0; row < rows; row++) {
-            maxValue = -Float.MAX_VALUE;
-            maxIdx = -1;
-            for (int col = 0; col < columns; col++) {
-                currValue = scores[row * columns + col];
-                if (currValue > maxValue) {
-                    maxValue = currValue;
-                    maxIdx = col;
-                }
-            }
-            arrIndex[row] = maxIdx;
-        }
-
-        // CTC converter 의 내용을 자바로 구현함.
-        String predict = "";
-        for (int i = 0; i < arrIndex.length; i++) {
-            if (arrIndex[i] != 0) { //결과값 중 0이거나 바로 이전 값과 같은 값은 제외
-                if ((i == 0) || (i > 0 && !(arrIndex[i - 1] == arrIndex[i]))) {
-                    // 아래 코드에서 ArrayIndexOutOfBoundsException 에러가 뜬다면
-                    // char_dict의 정의가 제대로 되어 있는지 봐야함.
-                    // 미리 정의한 char_dict에서 가져온 글자를 하나씩 붙여서 문자열을 완성한다.
-                    if(mDictIndex == CHAR_DICTIONARY_2497) {
-                        predict = predict + OCRRecognitionCharDB.char_dict2497[arrIndex[i] - 1];
-                    }
-                    else if(mDictIndex == CHAR_DICTIONARY_2445) {
-                        predict = predict + OCRRecognitionCharDB.char_dict2445[arrIndex[i] - 1];
-                    }
-                    else if(mDictIndex == CHAR_DICTIONARY_2450) {
-                        predict = predict + OCRRecognitionCharDB.char_dict2450[arrIndex[i] - 1];
-                    }
-                }
-            }
-        }
+        String predict = decodeResult(scores, 0, rows, columns);
         LOGGER.d("Prediction Result = " + predict);
 
-        mModule.destroy();
-        mModule = null;
-
         return predict;
     }
 
+    /**
+     * 모델은 해제하지 않고 저장소에 반납함.
+     */
+    private void releaseModel() {
+        if (mModel != null) {
+            mModelRegistry.Release(mModel);
+            mModel = null;
+        }
+    }
+
+    /**
+     * 정답 기반 채점을 하는 경우엔 결과가 정답 후보에 따라 달라지므로 캐시 키에 포함함.
+     */
+    private static String makeCacheExtra(String[] candidates) {
+        if (candidates == null || candidates.length == 0) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String candidate : candidates) {
+            builder.append(candidate).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 정답 후보 중 CTC 확률이 기준을 넘는 후보를 찾는다.
+     * @return 정답으로 판단된 후보. 없으면 null
+     */
+    private String matchAnswer(float[] scores, int offset, int rows, int columns, String[] candidates) {
+        if (candidates == null || candidates.length == 0) {
+            return null;
+        }
+        if (mAnswerScorer == null) {
+            mAnswerScorer = OCRRecognitionAnswerScorer.Create(mDictIndex);
+        }
+        int matched = mAnswerScorer.Match(scores, offset, rows, columns, candidates);
+        LOGGER.d("SallyRecog Answer scoring : logRatio = " + mAnswerScorer.GetLastLogRatio()
+                + ", matched = " + (matched != -1 ? candidates[matched] : "none"));
+        return matched != -1 ? candidates[matched] : null;
+    }
+
+    /**
+     * 정답 기반 채점으로 정답 후보가 선택된 경우의 결과.
+     * 글자별 신뢰도는 후보 전체의 CTC 확률을 글자 수로 나눈 기하평균 exp(logP / 글자수) 를 모든 글자에 사용함.
+     */
+    private OCRRecognitionResult.ModelResult makeMatchedResult(String in_matched, long in_elapsedMs) {
+        float[] confidences = new float[in_matched.length()];
+        if (confidences.length > 0) {
+            Arrays.fill(confidences,
+                    (float) Math.exp(mAnswerScorer.GetLastLogProbability() / confidences.length));
+        }
+        return new OCRRecognitionResult.ModelResult(mModelName, in_matched, confidences, in_elapsedMs, false);
+    }
+
+    /**
+     * 한 단어의 CTC 출력을 디코딩해서 글자별 신뢰도와 함께 돌려준다.
+     */
+    private OCRRecognitionResult.ModelResult decodeModelResult(float[] scores, int offset, int rows, int columns,
+                                                               long in_elapsedMs) {
+        mDecoder.Decode(scores, offset, rows, columns);
+        return new OCRRecognitionResult.ModelResult(mModelName, mDecoder.GetText(), mDecoder.GetConfidences(),
+                in_elapsedMs, false);
+    }
+
+    /**
+     * 한 단어의 CTC 출력(rows x columns)을 문자열로 변환한다.
+     * @param scores 모델 출력
+     * @param offset 해당 단어 출력의 시작 위치
+     */
+    private String decodeResult(float[] scores, int offset, int rows, int columns) {
+        mDecoder.Decode(scores, offset, rows, columns);
+        return mDecoder.GetText();
+    }
+
 }
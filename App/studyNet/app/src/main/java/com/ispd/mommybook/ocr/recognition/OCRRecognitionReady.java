@@ -1,61 +1,96 @@
 package com.ispd.mommybook.ocr.recognition;
 
-import android.graphics.Bitmap;
-
+import com.ispd.mommybook.utils.UtilsDebugSink;
 import com.ispd.mommybook.utils.UtilsLogger;
 
-import org.opencv.android.Utils;
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
-import static org.opencv.imgcodecs.Imgcodecs.imwrite;
+import java.nio.FloatBuffer;
+
 import static org.opencv.imgproc.Imgproc.INTER_AREA;
 import static org.opencv.imgproc.Imgproc.cvtColor;
 
 public class OCRRecognitionReady {
     private static final UtilsLogger LOGGER = new UtilsLogger();
+    public static final int WORD_HEIGHT = 32;
+    public static final int WORD_WIDTH = 100;
+
     private int mSerialNum = -1;
+    private final OCRRecognitionNormalizer mNormalizer;
+    private final byte[] mPixels = new byte[WORD_HEIGHT * WORD_WIDTH];
+
+    /**
+     * @param in_serialNum 디버그 파일 이름에 사용하는 시리얼넘버
+     * @param in_normalizer 픽셀 정규화 (여러 단어에 재사용함)
+     */
+    public OCRRecognitionReady(int in_serialNum, OCRRecognitionNormalizer in_normalizer) {
+        mSerialNum = in_serialNum;
+        mNormalizer = in_normalizer;
+    }
 
-    
-    public OCRRecognitionReady(int in_serialNum) {
+    public void SetSerialNum(int in_serialNum) {
         mSerialNum = in_serialNum;
     }
+
+    /**
+     * 단어 이미지를 32x100 흑백으로 만들어서 정규화한 값을 입력 버퍼에 바로 쓴다.
+     * Bitmap 을 거치지 않으므로 단어당 Bitmap 생성과 3 channel 버퍼 복사가 없음.
+     * @param in_imageMat : word image (that is not camera input)
+     * @param out 입력 버퍼. 현재 위치부터 32x100 개의 값을 채우고 position 이 증가함.
+     */
+    public void ReadyWordDataToBuffer(Mat in_imageMat, FloatBuffer out) {
+        byte[] pixels = ReadyWordPixels(in_imageMat);
+        mNormalizer.Normalize(pixels, WORD_HEIGHT * WORD_WIDTH, out);
+    }
+
     /**
-     *
+     * 단어 이미지를 32x100 흑백으로 만들어서 픽셀값을 리턴한다.
      * @param in_imageMat : word image (that is not camera input)
-     * @return Bitmap : resized word image
+     * @return 32x100 흑백 픽셀 (row-major). 내부 버퍼이므로 다음 호출시 덮어써짐.
      */
-    public Bitmap ReadyWordDataMatSingle(Mat in_imageMat) {
-        LOGGER.d("SallyRecog readyWordDataMatSingle() ");
+    public byte[] ReadyWordPixels(Mat in_imageMat) {
+        LOGGER.d("SallyRecog ReadyWordPixels() ");
         long startTime = System.currentTimeMillis();
 
-        Bitmap resizedBmp;
         // 인식정확도 향상을 위해, 단어이미지를 리사이즈함.
-        resizedBmp = resizeForPredictionInput(in_imageMat);
+        Mat wordMat = resizeForPredictionInput(in_imageMat);
+        wordMat.get(0, 0, mPixels);
+        wordMat.release();
+
         long endTime = System.currentTimeMillis();
         LOGGER.d("SallyRecog ReadyData Time : "+(endTime-startTime));
-        return resizedBmp;
+        return mPixels;
+    }
+
+    /**
+     * ReadyWordPixels() 로 만든 픽셀을 정규화해서 입력 버퍼에 쓴다.
+     * @param in_pixels 32x100 흑백 픽셀
+     * @param out 입력 버퍼. 32x100 만큼 position 이 증가함.
+     */
+    public void NormalizeWordPixels(byte[] in_pixels, FloatBuffer out) {
+        mNormalizer.Normalize(in_pixels, WORD_HEIGHT * WORD_WIDTH, out);
     }
 
     /**
      * 인식 정확도를 높히기 위해, 입력된 단어 이미지를 resize한다.
      * @param in_imgMat 전체이미지(카메라입력)에서 crop된 단어이미지
-     * @return
+     * @return 32x100 흑백(CV_8UC1) 이미지. 호출한 쪽에서 release 해야 함.
      */
-    private Bitmap resizeForPredictionInput(Mat in_imgMat) {
+    private Mat resizeForPredictionInput(Mat in_imgMat) {
         LOGGER.d("SallyRecog OCRRecognitionWordDataReady Class : resizeForPredictionInput() ");
         Mat mat1 = in_imgMat.clone();
 
         // 리사이즈를 위해 사이즈 계산:
         //      width,height을 100,32로 고정시 두글자 한글 단어들이 거의 인식이 안됨.
         //      위아래로 눌린 형태일때 인식이 어려워짐.
-        int resizeW = (32 * mat1.cols() / mat1.rows());
-        int resizeH = 32;
-        if (resizeW > 100) {
-            resizeW = 100;
+        int resizeW = (WORD_HEIGHT * mat1.cols() / mat1.rows());
+        int resizeH = WORD_HEIGHT;
+        if (resizeW > WORD_WIDTH) {
+            resizeW = WORD_WIDTH;
         }
 
         // 이미지를 축소하는 경우에는 INTER_AREA, 확대하는 경우에는 INTER_CUBIC+INTER_LINEAR를 사용하는
@@ -63,7 +98,7 @@ public class OCRRecognitionReady {
         Imgproc.resize(mat1, mat1, new Size(resizeW, resizeH), 0, 0, INTER_AREA);
         //cvtColor(mat1, mat1, Imgproc.COLOR_RGB2Luv);  //어떻게 변환하는가에 따라 인식 결과가 많이 달라짐.
         cvtColor(mat1, mat1, Imgproc.COLOR_RGBA2GRAY);  //어떻게 변환하는가에 따라 인식 결과가 많이 달라짐.
-        imwrite("/sdcard/studyNet/DEBUG/preproc_a"+ mSerialNum +".jpg", mat1);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.RECOGNITION, "/sdcard/studyNet/DEBUG/preproc_a"+ mSerialNum +".jpg", mat1);
         // 기타 전처리 루틴 : 엣지 강화, 대비 조정 등
         //bilateral
         Mat dstmat = mat1.clone();
@@ -77,32 +112,26 @@ public class OCRRecognitionReady {
 //        Imgproc.adaptiveThreshold(dstmat, dstmat, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 21, 10); //이값은 부등호가 끊기는 문제있음.
 //        Imgproc.adaptiveThreshold(mat1, dstmat, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 11, 7);
 
-        imwrite("/sdcard/studyNet/DEBUG/preproc_c"+ mSerialNum +".jpg", dstmat);
+        UtilsDebugSink.SaveMat(UtilsDebugSink.Category.RECOGNITION, "/sdcard/studyNet/DEBUG/preproc_c"+ mSerialNum +".jpg", dstmat);
 
-        Bitmap resizedBmp;
-        if (resizeW < 100) {
+        Mat resizedMat;
+        if (resizeW < WORD_WIDTH) {
             //리사이즈 후 width가 100보다 작은 경우 악당->악당당, 있든->있든든 으로 인식되는 현상 해결됨
-            Mat mat2 = new Mat();
+            resizedMat = new Mat();
 
-            Core.copyMakeBorder(dstmat, mat2, 0, 0, 0, 100 - resizeW,
+            Core.copyMakeBorder(dstmat, resizedMat, 0, 0, 0, WORD_WIDTH - resizeW,
                     Core.BORDER_REPLICATE);
-            resizedBmp = Bitmap.createBitmap(mat2.width(), mat2.height(),
-                    Bitmap.Config.ARGB_8888);
-            Utils.matToBitmap(mat2, resizedBmp);
-            imwrite("/sdcard/studyNet/DEBUG/resizedmat1_"+ mSerialNum +".jpg", mat2);
-
-            mat2.release();
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.RECOGNITION, "/sdcard/studyNet/DEBUG/resizedmat1_"+ mSerialNum +".jpg", resizedMat);
+            dstmat.release();
 
         } else {
-            resizedBmp = Bitmap.createBitmap(resizeW, resizeH, Bitmap.Config.ARGB_8888);
-            Utils.matToBitmap(dstmat, resizedBmp);
-            imwrite("/sdcard/studyNet/DEBUG/resizedmat2_"+ mSerialNum +".jpg", dstmat);
+            resizedMat = dstmat;
+            UtilsDebugSink.SaveMat(UtilsDebugSink.Category.RECOGNITION, "/sdcard/studyNet/DEBUG/resizedmat2_"+ mSerialNum +".jpg", dstmat);
 
         }
         mat1.release();
-        dstmat.release();
 
-        return resizedBmp;
+        return resizedMat;
     }
 
 }
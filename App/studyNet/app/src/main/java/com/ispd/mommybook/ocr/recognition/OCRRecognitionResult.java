@@ -0,0 +1,254 @@
+package com.ispd.mommybook.ocr.recognition;
+
+/**
+ * 단어 하나의 인식 결과
+ *
+ * 단일채점은 모델 결과 한 개, 집단채점은 모델 결과 세 개를 가진다.
+ * 모델 결과마다 인식 문자열, 글자별 신뢰도, 인식 시간, 모델 이름을 가지며
+ * OCRRecognition -> OCRManager -> 각 과목 클래스 -> AIScoreFunctions 까지 그대로 전달되므로
+ * 중간에 문자열로 이어 붙이거나 다시 나눌 필요가 없다.
+ *
+ * 생성 후 바뀌지 않으므로(배열은 복사해서 보관) 여러 쓰레드에서 공유해도 됨.
+ *
+ * @author ISPD-Sally
+ * @version 1.0
+ */
+public final class OCRRecognitionResult {
+
+    /**
+     * 모델 하나의 인식 결과
+     */
+    public static final class ModelResult {
+        private static final float[] NO_CONFIDENCES = new float[0];
+
+        private final String mModelName;
+        private final String mText;
+        private final float[] mConfidences;
+        private final long mElapsedMs;
+        private final boolean mFromCache;
+
+        /**
+         * @param in_modelName 모델 이름
+         * @param in_text 인식 문자열. null 이면 빈 문자열.
+         * @param in_confidences 글자별 신뢰도 (0~1). 앞에서부터 in_text 의 길이만큼 사용함. 없으면 null
+         * @param in_elapsedMs 인식 시간 (배치로 인식한 경우 배치 전체의 forward 시간)
+         * @param in_fromCache 인식 결과 캐시에서 가져온 결과인지의 여부
+         */
+        public ModelResult(String in_modelName, String in_text, float[] in_confidences, long in_elapsedMs,
+                           boolean in_fromCache) {
+            mModelName = in_modelName;
+            mText = in_text != null ? in_text : "";
+            if (in_confidences == null) {
+                mConfidences = NO_CONFIDENCES;
+            }
+            else {
+                mConfidences = new float[Math.min(mText.length(), in_confidences.length)];
+                System.arraycopy(in_confidences, 0, mConfidences, 0, mConfidences.length);
+            }
+            mElapsedMs = in_elapsedMs;
+            mFromCache = in_fromCache;
+        }
+
+        /**
+         * 결과가 없는 모델 (제한시간 초과 등).
+         */
+        public static ModelResult Empty(String in_modelName) {
+            return new ModelResult(in_modelName, "", null, 0, false);
+        }
+
+        /**
+         * 캐시에서 가져온 결과로 표시한 사본. 인식 시간은 0.
+         */
+        public ModelResult FromCache() {
+            return new ModelResult(mModelName, mText, mConfidences, 0, true);
+        }
+
+        public String GetModelName() {
+            return mModelName;
+        }
+
+        public String GetText() {
+            return mText;
+        }
+
+        public boolean HasConfidences() {
+            return mConfidences.length > 0;
+        }
+
+        /**
+         * @return in_index 번째 글자의 신뢰도. 신뢰도가 없으면 NaN
+         */
+        public float GetConfidence(int in_index) {
+            return in_index < mConfidences.length ? mConfidences[in_index] : Float.NaN;
+        }
+
+        /**
+         * @return 글자별 신뢰도의 평균. 신뢰도가 없으면 NaN
+         */
+        public float GetMeanConfidence() {
+            if (mConfidences.length == 0) {
+                return Float.NaN;
+            }
+            float sum = 0.f;
+            for (float confidence : mConfidences) {
+                sum += confidence;
+            }
+            return sum / mConfidences.length;
+        }
+
+        /**
+         * @return 글자별 신뢰도의 최소값. 신뢰도가 없으면 NaN
+         */
+        public float GetMinConfidence() {
+            if (mConfidences.length == 0) {
+                return Float.NaN;
+            }
+            float min = 1.f;
+            for (float confidence : mConfidences) {
+                min = Math.min(min, confidence);
+            }
+            return min;
+        }
+
+        public long GetElapsedMs() {
+            return mElapsedMs;
+        }
+
+        public boolean IsFromCache() {
+            return mFromCache;
+        }
+
+        @Override
+        public String toString() {
+            return mText;
+        }
+    }
+
+    private final int mSerialNumber;
+    private final boolean mMultiModel;
+    private final ModelResult[] mModels;
+    private final int mPlannedCount;
+
+    /**
+     * @param in_serialNumber 인식 데이터의 시리얼넘버 (DB 인덱스)
+     * @param in_multiModel 집단채점 결과인지의 여부
+     * @param in_models 모델 순서대로의 결과
+     */
+    public OCRRecognitionResult(int in_serialNumber, boolean in_multiModel, ModelResult... in_models) {
+        this(in_serialNumber, in_multiModel, in_models.length, in_models);
+    }
+
+    /**
+     * 조기 종료된 집단채점 결과. 실행한 모델의 결과만 가지고 있음.
+     * @param in_plannedCount 집단채점에 사용하는 모델 수
+     * @param in_models 실제로 실행한 모델의 결과 (모델 순서대로)
+     */
+    public OCRRecognitionResult(int in_serialNumber, boolean in_multiModel, int in_plannedCount,
+                                ModelResult... in_models) {
+        mSerialNumber = in_serialNumber;
+        mMultiModel = in_multiModel;
+        mModels = in_models.clone();
+        mPlannedCount = Math.max(in_plannedCount, in_models.length);
+    }
+
+    public int GetSerialNumber() {
+        return mSerialNumber;
+    }
+
+    public boolean IsMultiModel() {
+        return mMultiModel;
+    }
+
+    /**
+     * @return 결과가 있는 모델 수 (실제로 실행한 모델 수)
+     */
+    public int GetModelCount() {
+        return mModels.length;
+    }
+
+    /**
+     * @return 집단채점에 사용하는 모델 수. 조기 종료된 경우 GetModelCount() 보다 큼.
+     */
+    public int GetPlannedCount() {
+        return mPlannedCount;
+    }
+
+    public boolean IsEarlyExit() {
+        return mModels.length < mPlannedCount;
+    }
+
+    public ModelResult GetModel(int in_index) {
+        return mModels[in_index];
+    }
+
+    /**
+     * @return in_index 번째 모델의 인식 문자열
+     */
+    public String GetText(int in_index) {
+        return mModels[in_index].GetText();
+    }
+
+    /**
+     * 신뢰도 가중 투표. 같은 문자열을 낸 모델들의 평균 신뢰도 합이 가장 큰 문자열을 고른다.
+     * 신뢰도가 없는 모델은 1 표로 계산하고, 빈 문자열은 투표에서 제외함.
+     * @return 고른 문자열을 처음 낸 모델의 index. 모든 결과가 비어 있으면 -1
+     */
+    public int GetVotedIndex() {
+        int best = -1;
+        float bestWeight = 0.f;
+        for (int i = 0; i < mModels.length; i++) {
+            String text = mModels[i].GetText();
+            if (text.isEmpty()) {
+                continue;
+            }
+            boolean counted = false;
+            for (int j = 0; j < i; j++) {
+                if (mModels[j].GetText().equals(text)) {
+                    counted = true;
+                    break;
+                }
+            }
+            if (counted) {
+                continue;
+            }
+            float weight = 0.f;
+            for (int j = i; j < mModels.length; j++) {
+                if (mModels[j].GetText().equals(text)) {
+                    weight += weightOf(mModels[j]);
+                }
+            }
+            if (best == -1 || weight > bestWeight) {
+                best = i;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return GetVotedIndex() 의 문자열. 모든 결과가 비어 있으면 빈 문자열
+     */
+    public String GetVotedText() {
+        int index = GetVotedIndex();
+        return index != -1 ? mModels[index].GetText() : "";
+    }
+
+    private static float weightOf(ModelResult in_model) {
+        return in_model.HasConfidences() ? in_model.GetMeanConfidence() : 1.f;
+    }
+
+    /**
+     * 로그용. 모델 결과를 " | " 로 이어서 보여줌.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mModels.length; i++) {
+            if (i > 0) {
+                builder.append(" | ");
+            }
+            builder.append(mModels[i].GetText());
+        }
+        return builder.toString();
+    }
+}
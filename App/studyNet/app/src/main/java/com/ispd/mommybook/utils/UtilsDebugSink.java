@@ -0,0 +1,289 @@
+package com.ispd.mommybook.utils;
+
+import android.graphics.Bitmap;
+import android.os.Environment;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.EnumMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 디버그 이미지 저장기
+ *
+ * 채점/인식 경로에서 바로 imwrite, SaveBitmap 을 호출하면 JPEG/PNG 인코딩과 파일 쓰기 시간이
+ * 채점 시간에 그대로 포함된다. 이 클래스는 이미지 사본을 크기가 제한된 큐에 넣기만 하고,
+ * 인코딩과 저장은 별도의 쓰레드에서 한다.
+ *
+ * - 카테고리별 저장 비율(sampling rate)을 지정할 수 있음. 1 이면 모두, 0.1 이면 10장 중 1장 저장.
+ * - 큐가 가득 차면 가장 오래된 항목을 버림. (채점 쓰레드는 절대 기다리지 않음)
+ * - SetEnabled(false) 로 실행중에 모든 저장을 끌 수 있음. 이 경우 사본도 만들지 않음.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public class UtilsDebugSink {
+    private static final UtilsLogger LOGGER = new UtilsLogger();
+
+    /**
+     * 디버그 이미지 카테고리
+     */
+    public enum Category {
+        RECOGNITION,    // OCRRecognitionReady 단어 전처리
+        DETECTION,      // OCRDetection 입력
+        ALIGNMENT,      // AIScoreManager 정렬 결과
+        SCORING,        // AIScoreKorean, AIScoreMath 채점 영역
+        SUBTRACTION,    // ImageProcessSubtraction
+        CLASSIFIER      // ImageClassifierManager crop
+    }
+
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    // UtilsFile.SaveBitmap() 과 같은 저장 위치
+    private static final String BITMAP_ROOT =
+            Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + "tensorflow";
+
+    private static volatile boolean sEnabled = true;
+    private static final EnumMap<Category, Float> sSamplingRates = new EnumMap<>(Category.class);
+    private static final EnumMap<Category, Float> sSamplingCredits = new EnumMap<>(Category.class);
+    private static final LinkedBlockingDeque<Artifact> sQueue = new LinkedBlockingDeque<>();
+    private static volatile int sQueueSize = DEFAULT_QUEUE_SIZE;
+    private static Thread sWriterThread = null;
+
+    private static final AtomicLong sWrittenCount = new AtomicLong(0);
+    private static final AtomicLong sDroppedCount = new AtomicLong(0);
+    private static final AtomicLong sSkippedCount = new AtomicLong(0);
+
+    static {
+        for (Category category : Category.values()) {
+            sSamplingRates.put(category, 1.f);
+            sSamplingCredits.put(category, 0.f);
+        }
+    }
+
+    /**
+     * 큐에 들어가는 이미지 사본 하나
+     */
+    private static abstract class Artifact {
+        final String mPath;
+
+        Artifact(String path) {
+            mPath = path;
+        }
+
+        abstract void write();
+
+        abstract void discard();
+    }
+
+    private static class MatArtifact extends Artifact {
+        private final Mat mMat;
+
+        MatArtifact(String path, Mat mat) {
+            super(path);
+            mMat = mat;
+        }
+
+        @Override
+        void write() {
+            Imgcodecs.imwrite(mPath, mMat);
+            mMat.release();
+        }
+
+        @Override
+        void discard() {
+            mMat.release();
+        }
+    }
+
+    private static class BitmapArtifact extends Artifact {
+        private final Bitmap mBitmap;
+
+        BitmapArtifact(String path, Bitmap bitmap) {
+            super(path);
+            mBitmap = bitmap;
+        }
+
+        @Override
+        void write() {
+            File file = new File(mPath);
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                LOGGER.d("Make dir failed");
+            }
+            try {
+                final FileOutputStream out = new FileOutputStream(file);
+                mBitmap.compress(Bitmap.CompressFormat.PNG, 99, out);
+                out.flush();
+                out.close();
+            } catch (final Exception e) {
+                LOGGER.e(e, "Exception!");
+            }
+            mBitmap.recycle();
+        }
+
+        @Override
+        void discard() {
+            mBitmap.recycle();
+        }
+    }
+
+    /**
+     * 디버그 이미지 저장을 켜거나 끈다. 끄는 경우 큐에 남아있는 항목도 버림.
+     * @param in_enabled
+     */
+    public static void SetEnabled(boolean in_enabled) {
+        sEnabled = in_enabled;
+        if (!in_enabled) {
+            Artifact artifact;
+            while ((artifact = sQueue.pollFirst()) != null) {
+                artifact.discard();
+                sDroppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    public static boolean IsEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 카테고리별 저장 비율을 지정한다.
+     * @param in_category
+     * @param in_rate 0 ~ 1. 0 이면 저장하지 않음.
+     */
+    public static void SetSamplingRate(Category in_category, float in_rate) {
+        synchronized (sSamplingRates) {
+            sSamplingRates.put(in_category, Math.max(0.f, Math.min(1.f, in_rate)));
+            sSamplingCredits.put(in_category, 0.f);
+        }
+    }
+
+    /**
+     * 큐 크기를 지정한다. 넘는 경우 가장 오래된 항목부터 버림.
+     * @param in_size
+     */
+    public static void SetQueueSize(int in_size) {
+        sQueueSize = Math.max(1, in_size);
+    }
+
+    /**
+     * Mat 을 imwrite 로 저장한다. 호출 즉시 사본을 만들므로 호출 후 원본을 수정하거나 release 해도 됨.
+     * @param in_category
+     * @param in_path 저장할 파일의 전체 경로 (확장자로 포맷이 결정됨)
+     * @param in_mat
+     */
+    public static void SaveMat(Category in_category, String in_path, Mat in_mat) {
+        if (!shouldSave(in_category) || in_mat == null || in_mat.empty()) {
+            return;
+        }
+        enqueue(new MatArtifact(in_path, in_mat.clone()));
+    }
+
+    /**
+     * Bitmap 을 UtilsFile.SaveBitmap() 과 같은 위치(/sdcard/tensorflow)에 PNG 로 저장한다.
+     * @param in_category
+     * @param in_fileName 파일 이름
+     * @param in_bitmap
+     */
+    public static void SaveBitmap(Category in_category, String in_fileName, Bitmap in_bitmap) {
+        if (!shouldSave(in_category) || in_bitmap == null || in_bitmap.isRecycled()) {
+            return;
+        }
+        Bitmap copy = in_bitmap.copy(in_bitmap.getConfig(), false);
+        if (copy == null) {
+            return;
+        }
+        enqueue(new BitmapArtifact(BITMAP_ROOT + File.separator + in_fileName, copy));
+    }
+
+    public static long GetWrittenCount() {
+        return sWrittenCount.get();
+    }
+
+    /**
+     * 큐가 가득 차거나 저장을 꺼서 버려진 이미지 수
+     */
+    public static long GetDroppedCount() {
+        return sDroppedCount.get();
+    }
+
+    /**
+     * 저장 비율에 의해 건너뛴 이미지 수
+     */
+    public static long GetSkippedCount() {
+        return sSkippedCount.get();
+    }
+
+    public static int GetPendingCount() {
+        return sQueue.size();
+    }
+
+    private static boolean shouldSave(Category in_category) {
+        if (!sEnabled) {
+            return false;
+        }
+        synchronized (sSamplingRates) {
+            // 비율만큼 credit 을 쌓아서 1 이 넘을 때마다 한 장씩 저장함.
+            float credit = sSamplingCredits.get(in_category) + sSamplingRates.get(in_category);
+            if (credit < 1.f) {
+                sSamplingCredits.put(in_category, credit);
+                sSkippedCount.incrementAndGet();
+                return false;
+            }
+            sSamplingCredits.put(in_category, credit - 1.f);
+            return true;
+        }
+    }
+
+    private static void enqueue(Artifact in_artifact) {
+        startWriterIfNeeded();
+        sQueue.offerLast(in_artifact);
+        // drop-oldest : 큐 크기를 넘으면 가장 오래된 항목부터 버림.
+        while (sQueue.size() > sQueueSize) {
+            Artifact oldest = sQueue.pollFirst();
+            if (oldest == null) {
+                break;
+            }
+            oldest.discard();
+            sDroppedCount.incrementAndGet();
+        }
+    }
+
+    private static synchronized void startWriterIfNeeded() {
+        if (sWriterThread != null) {
+            return;
+        }
+        sWriterThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "UtilsDebugSink");
+        sWriterThread.setPriority(Thread.MIN_PRIORITY);
+        sWriterThread.setDaemon(true);
+        sWriterThread.start();
+    }
+
+    private static void writerLoop() {
+        while (true) {
+            Artifact artifact;
+            try {
+                artifact = sQueue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!sEnabled) {
+                artifact.discard();
+                sDroppedCount.incrementAndGet();
+                continue;
+            }
+            artifact.write();
+            sWrittenCount.incrementAndGet();
+        }
+    }
+}
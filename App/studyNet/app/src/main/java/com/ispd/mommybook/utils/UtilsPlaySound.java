@@ -3,6 +3,7 @@ package com.ispd.mommybook.utils;
 import android.content.Context;
 import android.media.MediaPlayer;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
 
 public class UtilsPlaySound {
@@ -13,6 +14,20 @@ public class UtilsPlaySound {
     public UtilsPlaySound() {
     }
     public void DoPlaySound(String fileName, boolean[] inRunning) {
+        doPlaySound("/sdcard/studyNet/sound/"+fileName+".mp3", null, 0, 0, inRunning);
+    }
+
+    /**
+     * 파일의 일부(콘텐츠 팩의 음원 항목)를 재생한다.
+     * @param fd 팩 파일
+     * @param offset 음원의 시작 위치
+     * @param length 음원의 길이
+     */
+    public void DoPlaySound(FileDescriptor fd, long offset, long length, boolean[] inRunning) {
+        doPlaySound(null, fd, offset, length, inRunning);
+    }
+
+    private void doPlaySound(String path, FileDescriptor fd, long offset, long length, boolean[] inRunning) {
         //mediaPlayer = MediaPlayer.create(context, soundData);
         if(mIsSoundPlaying == false) {
             mIsSoundPlaying = true;
@@ -27,7 +42,12 @@ public class UtilsPlaySound {
                 }
             });
         try {
-            mediaPlayer.setDataSource("/sdcard/studyNet/sound/"+fileName+".mp3");
+            if (fd != null) {
+                mediaPlayer.setDataSource(fd, offset, length);
+            }
+            else {
+                mediaPlayer.setDataSource(path);
+            }
             mediaPlayer.prepare();
 
             inRunning[0] = true;
@@ -0,0 +1,231 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.DataBase;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 정답지 파일의 읽기/쓰기, (책, 페이지) 인덱스가 기존 선형 검색과 같은지 확인한다.
+ * 기존 선형 검색과의 조회 시간 비교는 -Pbenchmark 일 때만 실행함. (UtilsBenchmark)
+ */
+public class AIScoreAnswerKeyTest {
+
+    /**
+     * 테스트 리소스의 정답지 파일(assets/aiscore/answer_key.bin 의 복사본)을 읽는다.
+     */
+    static AIScoreAnswerKey LoadAsset() throws IOException {
+        return AIScoreAnswerKey.Read(new ByteArrayInputStream(readAsset()));
+    }
+
+    static byte[] readAsset() throws IOException {
+        InputStream is = AIScoreAnswerKeyTest.class.getResourceAsStream("/" + AIScoreAnswerKey.ASSET_PATH);
+        assertNotNull(AIScoreAnswerKey.ASSET_PATH, is);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        is.close();
+        return bytes.toByteArray();
+    }
+
+    private static AIScoreAnswerKey sample() {
+        List<DataBase> korean = Arrays.asList(
+                new DataBase(3, AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD, AIScoreReferenceDB.TextLanguage.KOREAN,
+                        "우리는", AIScoreReferenceDB.Sticker.NONE, -1, AIScoreReferenceDB.Score.SCORE, 0.1f, 0.2f, 0.3f, 0.4f),
+                new DataBase(1, AIScoreReferenceDB.Method.IMAGE_SUBTRACT, "/sdcard/a.png",
+                        AIScoreReferenceDB.ImageSubtractLocation.LEFT, AIScoreReferenceDB.Sticker.STICKER, 2,
+                        AIScoreReferenceDB.Score.NONE, 0.5f, 0.5f, 0.1f, 0.1f),
+                new DataBase(3, AIScoreReferenceDB.Method.IMAGE_CLASSIFICATION, AIScoreReferenceDB.Sticker.NONE, -1,
+                        "cat", AIScoreReferenceDB.Score.SCORE, 0.f, 0.f, 1.f, 1.f));
+        List<DataBase> english = Arrays.asList(
+                new DataBase(0, AIScoreReferenceDB.Method.IMAGE_SOUND, "big", AIScoreReferenceDB.Sticker.NONE, -1,
+                        0.574f, 0.186f, 0.175f, 0.179f));
+        List<List<DataBase>> books = new ArrayList<>();
+        books.add(korean);
+        books.add(new ArrayList<DataBase>());
+        books.add(english);
+        return new AIScoreAnswerKey(new String[]{"korean", "math", "english"}, books);
+    }
+
+    @Test
+    public void index_groupsPagesInFileOrder() {
+        AIScoreAnswerKey answerKey = sample();
+        assertEquals(4, answerKey.GetEntryCount());
+        assertEquals(2, answerKey.GetBookIndex("english"));
+        assertEquals(-1, answerKey.GetBookIndex("science"));
+
+        List<DataBase> page3 = answerKey.GetPage(0, 3);
+        assertEquals(2, page3.size());
+        assertEquals("우리는", page3.get(0).mAnswerText);
+        assertEquals("cat", page3.get(1).mCorrectName);
+        // 매번 같은 리스트
+        assertSame(page3, answerKey.GetPage(0, 3));
+
+        assertTrue(answerKey.GetPage(0, 2).isEmpty());
+        assertTrue(answerKey.GetPage(0, 99).isEmpty());
+        assertTrue(answerKey.GetPage(0, -1).isEmpty());
+        assertTrue(answerKey.GetPage(1, 0).isEmpty());
+        assertTrue(answerKey.GetPage(7, 0).isEmpty());
+        assertEquals(1, answerKey.GetBook(0).get(1).mIndex);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void index_isUnmodifiable() {
+        sample().GetPage(0, 3).clear();
+    }
+
+    @Test
+    public void file_roundTrip() throws IOException {
+        AIScoreAnswerKey answerKey = sample();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        answerKey.Write(bytes);
+        AIScoreAnswerKey read = AIScoreAnswerKey.Read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(answerKey.GetBookCount(), read.GetBookCount());
+        for (int book = 0; book < answerKey.GetBookCount(); book++) {
+            assertEquals(answerKey.GetBookName(book), read.GetBookName(book));
+            List<DataBase> expected = answerKey.GetBook(book);
+            List<DataBase> actual = read.GetBook(book);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameEntry(expected.get(i), actual.get(i));
+            }
+        }
+        // 읽은 항목의 채점 상태는 초기값
+        DataBase entry = read.GetPage(0, 3).get(0);
+        assertEquals(0, entry.mDoGrading);
+        assertEquals("none", entry.mSaveAnswer);
+        assertNull(read.GetPage(2, 0).get(0).mScore);
+    }
+
+    @Test(expected = IOException.class)
+    public void file_rejectsOtherData() throws IOException {
+        AIScoreAnswerKey.Read(new ByteArrayInputStream("result.txt".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void asset_rewritesToSameBytes() throws IOException {
+        byte[] asset = readAsset();
+        AIScoreAnswerKey answerKey = AIScoreAnswerKey.Read(new ByteArrayInputStream(asset));
+        assertEquals(3, answerKey.GetBookCount());
+        assertEquals(0, answerKey.GetBookIndex("korean"));
+        assertEquals(1, answerKey.GetBookIndex("math"));
+        assertEquals(2, answerKey.GetBookIndex("english"));
+        assertTrue(answerKey.GetEntryCount() > 100);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        answerKey.Write(bytes);
+        assertArrayEquals(asset, bytes.toByteArray());
+    }
+
+    /**
+     * 기존 GetAIScoreMethod() 의 선형 검색과 같은 결과인지 확인한다.
+     */
+    @Test
+    public void index_matchesLegacyScan() throws IOException {
+        AIScoreAnswerKey answerKey = LoadAsset();
+        int maxPage = 0;
+        for (int book = 0; book < answerKey.GetBookCount(); book++) {
+            maxPage = Math.max(maxPage, answerKey.GetPageCount(book));
+        }
+        for (int book = 0; book < answerKey.GetBookCount(); book++) {
+            for (int page = 0; page <= maxPage; page++) {
+                assertEquals(legacyScan(answerKey.GetBook(book), page), answerKey.GetPage(book, page));
+            }
+        }
+    }
+
+    // 기존 GetAIScoreMethod() 의 검색
+    private static List<DataBase> legacyScan(List<DataBase> in_book, int in_page) {
+        List<DataBase> resultList = new ArrayList<DataBase>();
+        for (int i = 0; i < in_book.size(); i++) {
+            if (in_book.get(i).mIndex == in_page) {
+                resultList.add(in_book.get(i));
+            }
+        }
+        return resultList;
+    }
+
+    private static void assertSameEntry(DataBase in_expected, DataBase in_actual) {
+        assertEquals(in_expected.mIndex, in_actual.mIndex);
+        assertEquals(in_expected.mMethod, in_actual.mMethod);
+        assertEquals(in_expected.mTextLanguage, in_actual.mTextLanguage);
+        assertEquals(in_expected.mAnswerText, in_actual.mAnswerText);
+        assertEquals(in_expected.mImagePath, in_actual.mImagePath);
+        assertEquals(in_expected.mImageSubtractLocation, in_actual.mImageSubtractLocation);
+        assertEquals(in_expected.mCorrectName, in_actual.mCorrectName);
+        assertEquals(in_expected.mPlayPath, in_actual.mPlayPath);
+        assertEquals(in_expected.mSticker, in_actual.mSticker);
+        assertEquals(in_expected.mStickerFileNumber, in_actual.mStickerFileNumber);
+        assertEquals(in_expected.mScore, in_actual.mScore);
+        assertEquals(in_expected.mX, in_actual.mX, 0.f);
+        assertEquals(in_expected.mY, in_actual.mY, 0.f);
+        assertEquals(in_expected.mW, in_actual.mW, 0.f);
+        assertEquals(in_expected.mH, in_actual.mH, 0.f);
+    }
+
+    /**
+     * 정답지 파일 읽기와 (책, 페이지) 조회 시간을 기존 선형 검색과 비교해서 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstLegacyScan() throws IOException {
+        UtilsBenchmark.AssumeEnabled();
+        byte[] asset = readAsset();
+        AIScoreAnswerKey answerKey = AIScoreAnswerKey.Read(new ByteArrayInputStream(asset));
+        int maxPage = 0;
+        for (int book = 0; book < answerKey.GetBookCount(); book++) {
+            maxPage = Math.max(maxPage, answerKey.GetPageCount(book));
+        }
+
+        long sink = 0;
+        double readNs = 0;
+        double legacyNs = 0;
+        double indexNs = 0;
+        int rounds = 2000;
+        // 첫 번째는 JIT warm-up
+        for (int r = 0; r < 2; r++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < rounds / 10; k++) {
+                sink += AIScoreAnswerKey.Read(new ByteArrayInputStream(asset)).GetEntryCount();
+            }
+            readNs = (System.nanoTime() - start) / (double) (rounds / 10);
+
+            start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                for (int book = 0; book < answerKey.GetBookCount(); book++) {
+                    for (int page = 0; page <= maxPage; page++) {
+                        sink += legacyScan(answerKey.GetBook(book), page).size();
+                    }
+                }
+            }
+            legacyNs = (System.nanoTime() - start) / (double) (rounds * answerKey.GetBookCount() * (maxPage + 1));
+
+            start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                for (int book = 0; book < answerKey.GetBookCount(); book++) {
+                    for (int page = 0; page <= maxPage; page++) {
+                        sink += answerKey.GetPage(book, page).size();
+                    }
+                }
+            }
+            indexNs = (System.nanoTime() - start) / (double) (rounds * answerKey.GetBookCount() * (maxPage + 1));
+        }
+        System.out.println("AIScoreAnswerKey entries : " + answerKey.GetEntryCount() + ", file : " + asset.length
+                + " bytes, read : " + String.format("%.0f", readNs / 1000.0) + "us"
+                + ", ns/lookup legacy scan : " + String.format("%.0f", legacyNs)
+                + ", index : " + String.format("%.0f", indexNs) + " (" + sink + ")");
+    }
+}
@@ -0,0 +1,176 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.DataBase;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.ImageSubtractLocation;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Method;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Score;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.Sticker;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.TextLanguage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 정답지 원본(src/main/aiscore/answer_key.txt)과 정답지 파일(answer_key.bin) 사이의 변환 도구
+ *
+ * 원본 형식 (UTF-8)
+ *  # 로 시작하는 줄과 빈 줄은 무시함.
+ *  [책 이름] 줄 다음에 그 책의 항목을 한 줄씩 적음. 책과 항목의 순서가 정답지 파일의 순서가 됨.
+ *  항목 : 페이지, 채점방법, 언어, 정답, 이미지경로, 동그라미위치, 분류정답, 재생경로, 스티커, 스티커파일번호,
+ *         채점여부, x, y, w, h 를 탭으로 구분. 값이 없으면 -
+ *
+ * 사용법 : AIScoreAnswerKeyTool <원본.txt> <출력.bin>...
+ *  app 폴더에서 ./gradlew generateAnswerKey 로 assets 와 테스트 리소스의 정답지 파일을 함께 다시 만듦.
+ *  원본에서 만든 파일이 커밋된 정답지 파일과 같은지는 AIScoreAnswerKeyToolTest 에서 확인함.
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public final class AIScoreAnswerKeyTool {
+    public static final String SOURCE_PATH = "src/main/aiscore/answer_key.txt";
+
+    private static final String NONE = "-";
+    private static final String SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 15;
+
+    private AIScoreAnswerKeyTool() {
+    }
+
+    public static void main(String[] in_args) throws IOException {
+        if (in_args.length < 2) {
+            System.err.println("usage : AIScoreAnswerKeyTool <answer_key.txt> <answer_key.bin>...");
+            System.exit(1);
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(in_args[0]), "UTF-8");
+        AIScoreAnswerKey answerKey;
+        try {
+            answerKey = ReadText(reader);
+        } finally {
+            reader.close();
+        }
+        for (int i = 1; i < in_args.length; i++) {
+            OutputStream os = new FileOutputStream(new File(in_args[i]));
+            try {
+                answerKey.Write(os);
+            } finally {
+                os.close();
+            }
+        }
+    }
+
+    /**
+     * 정답지 원본을 읽는다. 리더는 닫지 않음.
+     * @throws IOException 줄의 형식이 맞지 않는 경우 포함 (줄 번호를 메시지에 넣음)
+     */
+    public static AIScoreAnswerKey ReadText(Reader in_reader) throws IOException {
+        BufferedReader reader = new BufferedReader(in_reader);
+        List<String> bookNames = new ArrayList<>();
+        List<List<DataBase>> books = new ArrayList<>();
+        List<DataBase> entries = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                bookNames.add(line.substring(1, line.length() - 1));
+                entries = new ArrayList<>();
+                books.add(entries);
+                continue;
+            }
+            if (entries == null) {
+                throw new IOException("line " + lineNumber + " : entry before book name");
+            }
+            try {
+                entries.add(parseEntry(line));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + " : " + e.getMessage());
+            }
+        }
+        return new AIScoreAnswerKey(bookNames.toArray(new String[0]), books);
+    }
+
+    /**
+     * 정답지를 원본 형식으로 쓴다. ReadText() 로 다시 읽으면 같은 정답지가 됨. 라이터는 닫지 않음.
+     */
+    public static void WriteText(AIScoreAnswerKey in_answerKey, Writer in_writer) {
+        PrintWriter writer = new PrintWriter(in_writer);
+        writer.println("# 정답지 원본. 고친 뒤에는 ./gradlew generateAnswerKey 로 answer_key.bin 을 다시 만들 것.");
+        writer.println("# 책 안의 항목 순서는 채점 결과 파일의 줄 순서이므로 항목은 끝에만 추가함.");
+        writer.println("# 페이지\t채점방법\t언어\t정답\t이미지경로\t동그라미위치\t분류정답\t재생경로"
+                + "\t스티커\t스티커파일번호\t채점여부\tx\ty\tw\th");
+        for (int book = 0; book < in_answerKey.GetBookCount(); book++) {
+            writer.println();
+            writer.println("[" + in_answerKey.GetBookName(book) + "]");
+            for (DataBase entry : in_answerKey.GetBook(book)) {
+                writer.println(formatEntry(entry));
+            }
+        }
+        writer.flush();
+    }
+
+    private static String formatEntry(DataBase in_entry) {
+        return in_entry.mIndex
+                + SEPARATOR + format(in_entry.mMethod)
+                + SEPARATOR + format(in_entry.mTextLanguage)
+                + SEPARATOR + format(in_entry.mAnswerText)
+                + SEPARATOR + format(in_entry.mImagePath)
+                + SEPARATOR + format(in_entry.mImageSubtractLocation)
+                + SEPARATOR + format(in_entry.mCorrectName)
+                + SEPARATOR + format(in_entry.mPlayPath)
+                + SEPARATOR + format(in_entry.mSticker)
+                + SEPARATOR + in_entry.mStickerFileNumber
+                + SEPARATOR + format(in_entry.mScore)
+                // Float.toString 은 다시 읽으면 같은 float 이 됨.
+                + SEPARATOR + in_entry.mX
+                + SEPARATOR + in_entry.mY
+                + SEPARATOR + in_entry.mW
+                + SEPARATOR + in_entry.mH;
+    }
+
+    private static DataBase parseEntry(String in_line) {
+        String[] fields = in_line.split(SEPARATOR, -1);
+        if (fields.length != FIELD_COUNT) {
+            throw new IllegalArgumentException("expected " + FIELD_COUNT + " fields : " + fields.length);
+        }
+        return new DataBase(Integer.parseInt(fields[0]),
+                parseEnum(fields[1], Method.class),
+                parseEnum(fields[2], TextLanguage.class),
+                parseString(fields[3]),
+                parseString(fields[4]),
+                parseEnum(fields[5], ImageSubtractLocation.class),
+                parseString(fields[6]),
+                parseString(fields[7]),
+                parseEnum(fields[8], Sticker.class),
+                Integer.parseInt(fields[9]),
+                parseEnum(fields[10], Score.class),
+                Float.parseFloat(fields[11]),
+                Float.parseFloat(fields[12]),
+                Float.parseFloat(fields[13]),
+                Float.parseFloat(fields[14]));
+    }
+
+    private static String format(Object in_value) {
+        return in_value == null ? NONE : in_value.toString();
+    }
+
+    private static String parseString(String in_field) {
+        return NONE.equals(in_field) ? null : in_field;
+    }
+
+    private static <T extends Enum<T>> T parseEnum(String in_field, Class<T> in_type) {
+        return NONE.equals(in_field) ? null : Enum.valueOf(in_type, in_field);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ispd.mommybook.aiscore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * 정답지 원본에서 만든 파일이 assets 와 테스트 리소스의 정답지 파일과 같은지,
+ * 원본 형식의 읽기/쓰기와 잘못된 줄 처리를 확인한다. (app 폴더에서 실행, Gradle 단위 테스트의 기본 작업 폴더)
+ */
+public class AIScoreAnswerKeyToolTest {
+
+    private static AIScoreAnswerKey readSource() throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(AIScoreAnswerKeyTool.SOURCE_PATH), "UTF-8");
+        try {
+            return AIScoreAnswerKeyTool.ReadText(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static byte[] readFile(String in_path) throws IOException {
+        InputStream is = new FileInputStream(new File(in_path));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        is.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void source_generatesCommittedAnswerKey() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        readSource().Write(bytes);
+        assertArrayEquals(readFile("src/main/assets/" + AIScoreAnswerKey.ASSET_PATH), bytes.toByteArray());
+        assertArrayEquals(AIScoreAnswerKeyTest.readAsset(), bytes.toByteArray());
+    }
+
+    @Test
+    public void text_roundTrip() throws IOException {
+        AIScoreAnswerKey source = readSource();
+        StringWriter text = new StringWriter();
+        AIScoreAnswerKeyTool.WriteText(source, text);
+        AIScoreAnswerKey read = AIScoreAnswerKeyTool.ReadText(new StringReader(text.toString()));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        source.Write(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        read.Write(actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void text_rejectsInvalidLines() {
+        String[] invalid = {
+                "1\tIMAGE_SOUND\t-\t-\t-\t-\t-\tbig\tNONE\t-1\t-\t0.5\t0.5\t0.1\t0.1",
+                "[korean]\n1\tIMAGE_SOUND\t-\t-\t-\t-\t-\tbig\tNONE\t-1\t-\t0.5\t0.5\t0.1",
+                "[korean]\n1\tIMAGE_SOUNDS\t-\t-\t-\t-\t-\tbig\tNONE\t-1\t-\t0.5\t0.5\t0.1\t0.1",
+                "[korean]\none\tIMAGE_SOUND\t-\t-\t-\t-\t-\tbig\tNONE\t-1\t-\t0.5\t0.5\t0.1\t0.1",
+        };
+        for (String text : invalid) {
+            try {
+                AIScoreAnswerKeyTool.ReadText(new StringReader(text));
+                fail(text);
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+import com.ispd.mommybook.aiscore.AIScoreReferenceDB.DataBase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 콘텐츠 팩의 목차 검색, 정답지/manifest 읽기, 잘못된 파일(잘린 목차, 파일 밖의 이름 위치) 처리,
+ * 팩 목록이 설치된 책이 많아도 표지를 찾은 책의 팩만 여는지 확인한다.
+ * 책 수에 따른 시작/검색 시간 측정은 -Pbenchmark 일 때만 실행함. (UtilsBenchmark)
+ */
+public class AIScoreContentPackTest {
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("packs", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(mDir);
+    }
+
+    private static void deleteAll(File in_file) {
+        File[] children = in_file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        in_file.delete();
+    }
+
+    private static AIScoreAnswerKey answerKey(String in_bookName) {
+        List<DataBase> entries = Arrays.asList(
+                new DataBase(1, AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD, AIScoreReferenceDB.TextLanguage.KOREAN,
+                        "우리는", AIScoreReferenceDB.Sticker.NONE, -1, AIScoreReferenceDB.Score.SCORE, 0.1f, 0.2f, 0.3f, 0.4f),
+                new DataBase(2, AIScoreReferenceDB.Method.IMAGE_SOUND, "big", AIScoreReferenceDB.Sticker.NONE, -1,
+                        0.5f, 0.5f, 0.1f, 0.1f));
+        List<List<DataBase>> books = new ArrayList<>();
+        books.add(entries);
+        return new AIScoreAnswerKey(new String[]{in_bookName}, books);
+    }
+
+    private File writePack(String in_bookName) throws IOException {
+        File file = new File(mDir, in_bookName + AIScoreContentPack.EXTENSION);
+        new AIScoreContentPack.Builder(in_bookName)
+                .SetPageCount(3)
+                .SetAnswerKey(answerKey(in_bookName))
+                .Add("overlay/1.png", new byte[]{1, 2, 3})
+                .Add("compare/1-1.png", new byte[]{4, 5})
+                .Add("sticker/1-1.png", new byte[0])
+                .Add(AIScoreContentPack.SOUND_DIR + "big.mp3", new byte[]{6, 7, 8, 9})
+                .Write(file);
+        return file;
+    }
+
+    @Test
+    public void pack_findsEntriesWithoutCopy() throws IOException {
+        AIScoreContentPack pack = AIScoreContentPack.Open(writePack("math"));
+        assertEquals(6, pack.GetEntryCount());
+        assertEquals("math", pack.GetBookName());
+        assertEquals(3, pack.GetPageCount());
+
+        assertArrayEquals(new byte[]{4, 5}, pack.Read("compare/1-1.png"));
+        assertArrayEquals(new byte[0], pack.Read("sticker/1-1.png"));
+        assertNull(pack.Find("compare/1-2.png"));
+        assertNull(pack.Find(""));
+        assertNull(pack.Find("zzz"));
+
+        ByteBuffer sound = pack.GetData(AIScoreContentPack.SOUND_DIR + "big.mp3");
+        assertTrue(sound.isReadOnly());
+        assertEquals(4, sound.remaining());
+        assertEquals(6, sound.get(0));
+        // 팩 파일 안의 위치 (MediaPlayer 에 그대로 넘김)
+        AIScoreContentPack.Entry entry = pack.Find(AIScoreContentPack.SOUND_DIR + "big.mp3");
+        RandomAccessFile file = new RandomAccessFile(pack.GetFile(), "r");
+        file.seek(entry.mOffset);
+        assertEquals(6, file.read());
+        file.close();
+
+        assertEquals("compare/3-1.png", pack.ToEntryName(AIScoreReferenceDB.RESULT_ROOT + "math/compare/3-1.png"));
+        assertNull(pack.ToEntryName(AIScoreReferenceDB.RESULT_ROOT + "korean/compare/3-1.png"));
+
+        AIScoreAnswerKey answerKey = pack.GetAnswerKey();
+        assertSame(answerKey, pack.GetAnswerKey());
+        assertEquals("우리는", answerKey.GetPage(0, 1).get(0).mAnswerText);
+        assertEquals("big", answerKey.GetPage(0, 2).get(0).mPlayPath);
+        pack.Close();
+    }
+
+    @Test
+    public void pack_rejectsInvalidFiles() throws IOException {
+        File notPack = new File(mDir, "result.pack");
+        FileOutputStream os = new FileOutputStream(notPack);
+        os.write("1 1 none 0\n1 0 none 0\n1 1 none 1\n".getBytes("UTF-8"));
+        os.close();
+        try {
+            AIScoreContentPack.Open(notPack);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        // 목차가 잘린 팩
+        File truncated = writePack("english");
+        RandomAccessFile file = new RandomAccessFile(truncated, "rw");
+        file.setLength(30);
+        file.close();
+        try {
+            AIScoreContentPack.Open(truncated);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        // 목차의 이름 위치가 파일 밖을 가리키는 팩
+        int[][] invalidNames = {{Integer.MAX_VALUE, 4}, {0, Integer.MAX_VALUE}, {-1, 4}, {0, -1}};
+        for (int[] name : invalidNames) {
+            File corrupt = writePack("korean");
+            file = new RandomAccessFile(corrupt, "rw");
+            file.seek(16);
+            file.seek(file.readLong());
+            file.writeInt(name[0]);
+            file.writeInt(name[1]);
+            file.close();
+            try {
+                AIScoreContentPack.Open(corrupt);
+                fail(name[0] + ", " + name[1]);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void referenceDB_usesPackOnlyForItsCover() throws IOException {
+        List<List<DataBase>> books = new ArrayList<>();
+        books.add(new ArrayList<DataBase>());
+        books.add(Arrays.asList(new DataBase(1, AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD,
+                AIScoreReferenceDB.TextLanguage.NUMBER, "7", AIScoreReferenceDB.Sticker.NONE, -1,
+                AIScoreReferenceDB.Score.SCORE, 0.f, 0.f, 0.1f, 0.1f)));
+        AIScoreReferenceDB db = new AIScoreReferenceDB(new AIScoreAnswerKey(new String[]{"korean", "math"}, books));
+        File results = new File(mDir, "DB");
+        db.OpenResults(results);
+        assertEquals("7", db.GetAIScoreMethod(1, 1).get(0).mAnswerText);
+
+        AIScoreContentPack pack = AIScoreContentPack.Open(writePack("math"));
+        db.UseContentPack(1, pack);
+        assertSame(pack, db.GetContentPack(1));
+        assertNull(db.GetContentPack(0));
+        DataBase packEntry = db.GetAIScoreMethod(1, 1).get(0);
+        assertEquals("우리는", packEntry.mAnswerText);
+        assertTrue(db.GetAIScoreMethod(0, 1).isEmpty());
+
+        // 팩의 채점 결과는 팩 저널에 저장됨.
+        packEntry.mDoGrading = 1;
+        packEntry.mIsCorrect = 1;
+        db.WriteAIScoreResult("math");
+        assertEquals(1, db.GetResultJournal("math").Get(0).mIsCorrect);
+        assertTrue(new File(results, "math/result/pack.journal").exists());
+
+        // 팩을 사용하지 않으면 내장 정답지로 돌아감.
+        db.UseContentPack(1, null);
+        assertEquals("7", db.GetAIScoreMethod(1, 1).get(0).mAnswerText);
+        assertNull(db.GetResultJournal("math").Get(0));
+
+        // 다시 열면 저장한 결과가 적용됨.
+        AIScoreContentPack reopened = AIScoreContentPack.Open(pack.GetFile());
+        db.UseContentPack(1, reopened);
+        assertEquals(1, db.GetAIScoreMethod(1, 1).get(0).mIsCorrect);
+        db.UseContentPack(1, null);
+        pack.Close();
+        reopened.Close();
+    }
+
+    /**
+     * 설치된 책이 많아도 시작할 때는 이름만 읽고, 표지를 찾은 책의 팩만 연다.
+     */
+    @Test
+    public void store_opensOnlyDetectedBook() throws IOException {
+        int bookCount = 300;
+        File template = writePack("template");
+        byte[] bytes = new byte[(int) template.length()];
+        RandomAccessFile input = new RandomAccessFile(template, "r");
+        input.readFully(bytes);
+        input.close();
+        template.delete();
+        for (int i = 0; i < bookCount; i++) {
+            FileOutputStream os = new FileOutputStream(new File(mDir, "book" + i + AIScoreContentPack.EXTENSION));
+            os.write(bytes);
+            os.close();
+        }
+        new File(mDir, "readme.txt").createNewFile();
+
+        AIScoreContentPackStore store = new AIScoreContentPackStore(mDir);
+        assertEquals(bookCount, store.Scan());
+        assertEquals(0, store.GetOpenCount());
+        assertNull(store.Open("science"));
+
+        AIScoreContentPack pack = store.Open("book7");
+        assertNotNull(pack);
+        assertSame(pack, store.Open("book7"));
+        assertEquals(1, store.GetOpenCount());
+
+        assertNotNull(pack.Find("compare/1-1.png"));
+
+        assertNotSame(pack, store.Open("book8"));
+        assertEquals(2, store.GetOpenCount());
+        store.Close();
+        assertNull(store.GetOpenPack());
+    }
+
+    /**
+     * 설치된 책 수에 따른 팩 목록 시작 시간, 팩 하나를 여는 시간, 목차 검색 시간을 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_storeScanAndFind() throws IOException {
+        UtilsBenchmark.AssumeEnabled();
+        int bookCount = 300;
+        File template = writePack("template");
+        byte[] bytes = new byte[(int) template.length()];
+        RandomAccessFile input = new RandomAccessFile(template, "r");
+        input.readFully(bytes);
+        input.close();
+        template.delete();
+        for (int i = 0; i < bookCount; i++) {
+            FileOutputStream os = new FileOutputStream(new File(mDir, "book" + i + AIScoreContentPack.EXTENSION));
+            os.write(bytes);
+            os.close();
+        }
+
+        AIScoreContentPackStore store = new AIScoreContentPackStore(mDir);
+        long start = System.nanoTime();
+        assertEquals(bookCount, store.Scan());
+        double scanMs = (System.nanoTime() - start) / 1000000.0;
+
+        start = System.nanoTime();
+        AIScoreContentPack pack = store.Open("book7");
+        double openUs = (System.nanoTime() - start) / 1000.0;
+
+        start = System.nanoTime();
+        int found = 0;
+        for (int k = 0; k < 10000; k++) {
+            found += pack.Find("compare/1-1.png") != null ? 1 : 0;
+        }
+        double findNs = (System.nanoTime() - start) / 10000.0;
+        assertEquals(10000, found);
+        store.Close();
+
+        System.out.println("AIScoreContentPackStore books : " + bookCount
+                + ", scan : " + String.format("%.2f", scanMs) + "ms"
+                + ", open one pack : " + String.format("%.0f", openUs) + "us"
+                + ", find : " + String.format("%.0f", findNs) + "ns");
+    }
+}
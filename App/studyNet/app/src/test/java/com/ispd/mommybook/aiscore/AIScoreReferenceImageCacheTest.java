@@ -0,0 +1,118 @@
+package com.ispd.mommybook.aiscore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 기준 이미지 캐시의 미리 읽기, hit/miss, 현재 페이지를 제외한 LRU 삭제와 통계를 확인한다.
+ * 이미지는 byte[] 로 대신하고 loader 가 읽은 횟수를 센다.
+ */
+public class AIScoreReferenceImageCacheTest {
+    private static final AIScoreReferenceImageCache.Variant GRAY = AIScoreReferenceImageCache.Variant.GRAY;
+    private static final AIScoreReferenceImageCache.Variant CROP = AIScoreReferenceImageCache.Variant.CENTER_CROP;
+
+    private static class FakeLoader implements AIScoreReferenceImageCache.Loader<byte[]> {
+        final List<String> mLoaded = new ArrayList<>();
+        final List<byte[]> mReleased = new ArrayList<>();
+
+        @Override
+        public byte[] Load(String in_path, AIScoreReferenceImageCache.Variant in_variant) {
+            if (in_path.startsWith("missing")) {
+                return null;
+            }
+            mLoaded.add(in_variant + ":" + in_path);
+            return new byte[100];
+        }
+
+        @Override
+        public long GetBytes(byte[] in_image) {
+            return in_image.length;
+        }
+
+        @Override
+        public void Release(byte[] in_image) {
+            mReleased.add(in_image);
+        }
+    }
+
+    @Test
+    public void preload_servesScoringFromMemory() {
+        FakeLoader loader = new FakeLoader();
+        AIScoreReferenceImageCache<byte[]> cache = new AIScoreReferenceImageCache<>(loader, 1000);
+        cache.BeginPage(1, 3);
+        assertTrue(cache.Preload("3-1.png", CROP));
+        assertTrue(cache.Preload("3-2.png", CROP));
+        // 이미 있으면 다시 읽지 않음
+        assertTrue(cache.Preload("3-1.png", CROP));
+
+        byte[] first = cache.Get("3-1.png", CROP);
+        assertSame(first, cache.Get("3-1.png", CROP));
+        assertNotNull(cache.Get("3-2.png", CROP));
+
+        assertEquals(2, loader.mLoaded.size());
+        assertEquals(2, cache.GetPreloadCount());
+        assertEquals(3, cache.GetHitCount());
+        assertEquals(0, cache.GetMissCount());
+        assertEquals(200, cache.GetBytes());
+
+        // 같은 파일이라도 변환이 다르면 따로 저장함
+        assertNotNull(cache.Get("3-1.png", GRAY));
+        assertEquals(1, cache.GetMissCount());
+        assertEquals(3, cache.GetSize());
+    }
+
+    @Test
+    public void eviction_keepsCurrentPage() {
+        FakeLoader loader = new FakeLoader();
+        AIScoreReferenceImageCache<byte[]> cache = new AIScoreReferenceImageCache<>(loader, 300);
+        cache.BeginPage(1, 3);
+        cache.Preload("3-1.png", CROP);
+        cache.Preload("3-2.png", CROP);
+
+        cache.BeginPage(1, 4);
+        cache.Preload("4-1.png", CROP);
+        // 크기를 넘으면 이전 페이지의 가장 오래 사용하지 않은 이미지부터 지움
+        cache.Preload("4-2.png", CROP);
+        assertEquals(1, cache.GetEvictCount());
+        assertFalse(cache.Contains("3-1.png", CROP));
+        assertTrue(cache.Contains("3-2.png", CROP));
+        assertEquals(1, loader.mReleased.size());
+
+        // 현재 페이지의 이미지만으로 크기를 넘어도 현재 페이지 이미지는 지우지 않음
+        cache.Preload("4-3.png", CROP);
+        cache.Preload("4-4.png", CROP);
+        assertEquals(4, cache.GetSize());
+        assertFalse(cache.Contains("3-2.png", CROP));
+        assertTrue(cache.GetBytes() > 300);
+
+        // 다시 3페이지로 돌아가면 4페이지 이미지들이 지워질 수 있음
+        cache.BeginPage(1, 3);
+        assertNotNull(cache.Get("3-1.png", CROP));
+        assertEquals(300, cache.GetBytes());
+        assertTrue(cache.Contains("3-1.png", CROP));
+
+        cache.Clear();
+        assertEquals(0, cache.GetBytes());
+        assertEquals(7, loader.mReleased.size());
+    }
+
+    @Test
+    public void loadFailure_returnsNullAndIsRetried() {
+        FakeLoader loader = new FakeLoader();
+        AIScoreReferenceImageCache<byte[]> cache = new AIScoreReferenceImageCache<>(loader, 1000);
+        cache.BeginPage(0, 1);
+        assertFalse(cache.Preload("missing.png", GRAY));
+        assertNull(cache.Get("missing.png", GRAY));
+        assertEquals(2, cache.GetLoadFailCount());
+        assertEquals(0, cache.GetSize());
+        assertTrue(cache.GetReport().contains("fail= 2"));
+
+        cache.ResetStats();
+        assertEquals(0, cache.GetLoadFailCount());
+        assertEquals(0, cache.GetMissCount());
+    }
+}
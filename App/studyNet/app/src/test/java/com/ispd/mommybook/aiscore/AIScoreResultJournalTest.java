@@ -0,0 +1,286 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 채점 결과 저널의 복원, 손상된 끝부분 처리, 항목 수가 바뀐 저널 처리, 압축, 이전 결과 파일 형식의 가져오기/내보내기와 항목별 저장 크기를 확인한다.
+ * 기존 방식(전체 다시 쓰기)과의 저장 시간 비교는 -Pbenchmark 일 때만 실행함. (UtilsBenchmark)
+ */
+public class AIScoreResultJournalTest {
+    private static final String MULTI = "MULTI//우리는//100//우리도//66//우리는//100//88";
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("journal", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(mDir);
+    }
+
+    private static void deleteAll(File in_file) {
+        File[] children = in_file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        in_file.delete();
+    }
+
+    private AIScoreResultJournal open(int in_itemCount) throws IOException {
+        AIScoreResultJournal journal = new AIScoreResultJournal(new File(mDir, "result.journal"), in_itemCount);
+        journal.Open();
+        return journal;
+    }
+
+    @Test
+    public void reopen_restoresLastResults() throws IOException {
+        AIScoreResultJournal journal = open(10);
+        assertTrue(journal.Append(0, 1, 1, -1, null));
+        assertTrue(journal.Append(3, 1, 0, 88, MULTI));
+        assertTrue(journal.Append(0, 1, -1, -1, null));
+        // 같은 결과는 추가하지 않음.
+        assertFalse(journal.Append(3, 1, 0, 88, MULTI));
+        journal.Flush();
+        assertEquals(1, journal.GetSyncCount());
+        journal.Close();
+
+        AIScoreResultJournal reopened = open(10);
+        assertEquals(-1, reopened.Get(0).mIsCorrect);
+        AIScoreResultJournal.Record multi = reopened.Get(3);
+        assertEquals(88, multi.mScore);
+        assertEquals(MULTI, multi.mSaveAnswer);
+        assertTrue(multi.mTimestamp > 0);
+        assertNull(reopened.Get(1));
+        assertEquals(0, reopened.GetDiscardedBytes());
+        assertEquals(0, reopened.GetFile().length() % AIScoreResultJournal.RECORD_SIZE);
+    }
+
+    @Test
+    public void tornWrite_keepsLastCompleteRecord() throws IOException {
+        AIScoreResultJournal journal = open(10);
+        journal.Append(2, 1, 1, -1, null);
+        journal.Flush();
+        long committed = journal.GetFile().length();
+        journal.Append(2, 1, 0, 66, MULTI);
+        journal.Flush();
+        journal.Close();
+
+        // 마지막 ITEM 레코드가 중간에 잘린 경우 : 앞의 문자열 조각들도 버림.
+        RandomAccessFile file = new RandomAccessFile(journal.GetFile(), "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        AIScoreResultJournal reopened = open(10);
+        assertEquals(1, reopened.Get(2).mIsCorrect);
+        assertNull(reopened.Get(2).mSaveAnswer);
+        assertEquals(committed, reopened.GetFile().length());
+        assertTrue(reopened.GetDiscardedBytes() > 0);
+
+        // 잘라낸 뒤에 이어서 추가할 수 있음.
+        reopened.Append(2, 1, 0, 66, MULTI);
+        reopened.Flush();
+        reopened.Close();
+        assertEquals(MULTI, open(10).Get(2).mSaveAnswer);
+    }
+
+    @Test
+    public void itemCountChanged_startsNewJournal() throws IOException {
+        AIScoreResultJournal journal = open(10);
+        journal.Append(2, 1, 1, -1, null);
+        journal.Close();
+
+        // 정답지의 항목 수가 바뀌면 저장된 항목 id 가 다른 항목을 가리키므로 사용하지 않음.
+        AIScoreResultJournal reopened = open(12);
+        assertNull(reopened.Get(2));
+        assertTrue(reopened.GetDiscardedBytes() > 0);
+        assertEquals(AIScoreResultJournal.RECORD_SIZE, reopened.GetFile().length());
+        reopened.Append(11, 1, 1, -1, null);
+        reopened.Close();
+        assertEquals(1, open(12).Get(11).mIsCorrect);
+    }
+
+    @Test
+    public void corruptedText_rejectsItem() throws IOException {
+        AIScoreResultJournal journal = open(10);
+        journal.Append(5, 1, 1, 100, "SINGLE//우리는");
+        journal.Flush();
+        long committed = journal.GetFile().length();
+        journal.Append(5, 1, 0, 88, MULTI);
+        journal.Flush();
+        journal.Close();
+
+        // 두 번째 결과의 첫 문자열 조각의 한 글자를 바꿈.
+        RandomAccessFile file = new RandomAccessFile(journal.GetFile(), "rw");
+        file.seek(committed + 5);
+        file.write('x');
+        file.close();
+
+        AIScoreResultJournal reopened = open(10);
+        assertEquals("SINGLE//우리는", reopened.Get(5).mSaveAnswer);
+        assertEquals(committed, reopened.GetFile().length());
+    }
+
+    @Test
+    public void compaction_keepsOnlyLastResults() throws IOException {
+        AIScoreResultJournal journal = open(4);
+        for (int i = 0; i < AIScoreResultJournal.COMPACT_MIN_RECORDS; i++) {
+            journal.Append(i % 4, 1, (i / 4) % 2, -1, null);
+            journal.Flush();
+        }
+        assertEquals(1, journal.GetCompactCount());
+        assertTrue(journal.GetRecordCount() < AIScoreResultJournal.COMPACT_MIN_RECORDS);
+        journal.Close();
+
+        // 압축 도중에 죽어서 남은 임시 파일은 무시함.
+        new FileOutputStream(new File(mDir, "result.journal.tmp")).close();
+        AIScoreResultJournal reopened = open(4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(journal.Get(i).mIsCorrect, reopened.Get(i).mIsCorrect);
+        }
+        assertEquals(5 * AIScoreResultJournal.RECORD_SIZE, reopened.GetFile().length());
+        assertFalse(new File(mDir, "result.journal.tmp").exists());
+    }
+
+    @Test
+    public void referenceDB_importsLegacyResultOnce() throws IOException {
+        List<AIScoreReferenceDB.DataBase> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            entries.add(new AIScoreReferenceDB.DataBase(1, AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD,
+                    AIScoreReferenceDB.TextLanguage.KOREAN, "우리는", AIScoreReferenceDB.Sticker.NONE, -1,
+                    AIScoreReferenceDB.Score.SCORE, 0.f, 0.f, 0.1f, 0.1f));
+        }
+        List<List<AIScoreReferenceDB.DataBase>> books = new ArrayList<>();
+        books.add(entries);
+        AIScoreAnswerKey answerKey = new AIScoreAnswerKey(new String[]{"korean"}, books);
+
+        File legacy = new File(mDir, "korean/result/result.txt");
+        legacy.getParentFile().mkdirs();
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(legacy), "UTF-8"));
+        writer.write("1 1 " + MULTI + " 0\n1 0 none 0\n1 1 SINGLE//우리는 1\n");
+        writer.close();
+
+        AIScoreReferenceDB db = new AIScoreReferenceDB(answerKey);
+        db.OpenResults(mDir);
+        AIScoreReferenceDB.DataBase first = answerKey.GetBook(0).get(0);
+        assertEquals(1, first.mDoGrading);
+        assertEquals(88, first.mTextScoring.GetAverageScore());
+        assertEquals("none", answerKey.GetBook(0).get(1).mSaveAnswer);
+        assertEquals(1, answerKey.GetBook(0).get(2).mIsCorrect);
+
+        // 채점 결과를 바꾸면 바뀐 항목만 추가됨.
+        AIScoreResultJournal journal = db.GetResultJournal("korean");
+        long appended = journal.GetAppendCount();
+        answerKey.GetBook(0).get(1).mDoGrading = 1;
+        answerKey.GetBook(0).get(1).mIsCorrect = 2;
+        db.WriteAIScoreResult("korean");
+        assertEquals(appended + 1, journal.GetAppendCount());
+
+        // 다른 기기로 보내는 결과는 저널에서 이전 결과 파일의 형식으로 만듦.
+        assertEquals("1 1 " + MULTI + " 0\n1 1 none 2\n1 1 SINGLE//우리는 1\n", db.GetAIScoreResultText("korean"));
+        assertEquals("", db.GetAIScoreResultText("science"));
+        journal.Close();
+
+        // 이전 결과 파일은 다시 가져오지 않음.
+        legacy.delete();
+        AIScoreAnswerKey reloaded = new AIScoreAnswerKey(new String[]{"korean"}, copyOf(entries));
+        new AIScoreReferenceDB(reloaded).OpenResults(mDir);
+        assertEquals(2, reloaded.GetBook(0).get(1).mIsCorrect);
+        assertEquals(MULTI, reloaded.GetBook(0).get(0).mSaveAnswer);
+    }
+
+    private static List<List<AIScoreReferenceDB.DataBase>> copyOf(List<AIScoreReferenceDB.DataBase> in_entries) {
+        List<AIScoreReferenceDB.DataBase> copy = new ArrayList<>();
+        for (AIScoreReferenceDB.DataBase entry : in_entries) {
+            copy.add(new AIScoreReferenceDB.DataBase(entry.mIndex, entry.mMethod, entry.mTextLanguage,
+                    entry.mAnswerText, entry.mSticker, entry.mStickerFileNumber, entry.mScore,
+                    entry.mX, entry.mY, entry.mW, entry.mH));
+        }
+        List<List<AIScoreReferenceDB.DataBase>> books = new ArrayList<>();
+        books.add(copy);
+        return books;
+    }
+
+    /**
+     * 항목 하나를 채점했을 때 책의 크기와 관계없이 레코드 하나만 덧붙인다.
+     */
+    @Test
+    public void append_writesOneRecordPerItem() throws IOException {
+        int rounds = 200;
+        for (int itemCount : new int[]{50, 2000}) {
+            AIScoreResultJournal journal = open(itemCount);
+            long before = journal.GetFile().length();
+            for (int k = 0; k < rounds; k++) {
+                journal.Append(k % itemCount, 1, (k / itemCount) % 2, -1, null);
+                journal.Flush();
+            }
+            assertEquals((long) AIScoreResultJournal.RECORD_SIZE * rounds, journal.GetFile().length() - before);
+            journal.Close();
+            journal.GetFile().delete();
+        }
+    }
+
+    /**
+     * 항목 하나를 채점했을 때 저장 시간을 책의 크기별로 기존 방식(result.txt 전체 다시 쓰기)과 비교해서 출력한다.
+     * (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstFullRewrite() throws IOException {
+        UtilsBenchmark.AssumeEnabled();
+        int rounds = 200;
+        for (int itemCount : new int[]{50, 2000}) {
+            AIScoreResultJournal journal = open(itemCount);
+            long before = journal.GetFile().length();
+            long start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                journal.Append(k % itemCount, 1, (k / itemCount) % 2, -1, null);
+                journal.Flush();
+            }
+            double journalUs = (System.nanoTime() - start) / 1000.0 / rounds;
+            long bytesPerItem = (journal.GetFile().length() - before) / rounds;
+            journal.Close();
+            journal.GetFile().delete();
+
+            File legacy = new File(mDir, "result.txt");
+            start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                FileOutputStream output = new FileOutputStream(legacy);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
+                for (int i = 0; i < itemCount; i++) {
+                    writer.write(i + " 1 none " + (k % 2));
+                    writer.newLine();
+                }
+                writer.flush();
+                output.getFD().sync();
+                writer.close();
+            }
+            double legacyUs = (System.nanoTime() - start) / 1000.0 / rounds;
+            long legacyBytes = legacy.length();
+
+            System.out.println("AIScoreResultJournal items : " + itemCount
+                    + ", us/item journal : " + String.format("%.0f", journalUs) + " (" + bytesPerItem + " bytes)"
+                    + ", full rewrite : " + String.format("%.0f", legacyUs) + " (" + legacyBytes + " bytes)");
+        }
+    }
+}
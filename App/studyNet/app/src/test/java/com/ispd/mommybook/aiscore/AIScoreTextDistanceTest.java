@@ -0,0 +1,239 @@
+package com.ispd.mommybook.aiscore;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * AIScoreTextDistance 의 편집 거리를 전체 DP 표와 비교하고, 기존 calcTextScore() 와 점수를 비교한다.
+ * Similarity() 가 호출마다 메모리를 할당하지 않는지도 확인함. 속도 비교는 -Pbenchmark 일 때만 실행함. (UtilsBenchmark)
+ */
+public class AIScoreTextDistanceTest {
+    private static final String ALPHABET = "abcdeㄱ가각갔갓나다우리는";
+
+    @Test
+    public void distance_matchesFullTable() {
+        AIScoreTextDistance distance = new AIScoreTextDistance();
+        Random random = new Random(17);
+        for (int t = 0; t < 3000; t++) {
+            // 64 글자 경계와 그보다 긴 경우(DP)도 포함함.
+            int maxLength = t % 10 == 0 ? 150 : 70;
+            String a = randomText(random, random.nextInt(maxLength));
+            String b = randomText(random, random.nextInt(maxLength));
+            assertEquals(a + " / " + b, fullTable(a, b), distance.Distance(a, b));
+        }
+        String word64 = randomText(random, 64);
+        assertEquals(fullTable(word64, word64 + "x"), distance.Distance(word64, word64 + "x"));
+        assertEquals(fullTable(word64, "y" + word64), distance.Distance("y" + word64, word64));
+    }
+
+    @Test
+    public void distance_knownValues() {
+        AIScoreTextDistance distance = new AIScoreTextDistance();
+        assertEquals(0, distance.Distance("", ""));
+        assertEquals(3, distance.Distance("abc", ""));
+        assertEquals(3, distance.Distance("kitten", "sitting"));
+        assertEquals(1, distance.Distance("우리는", "우는"));
+        assertEquals(1, distance.Distance("갔다", "갓다"));
+    }
+
+    @Test
+    public void jamoMode_givesPartialCreditForStrokes() {
+        AIScoreTextDistance distance = new AIScoreTextDistance();
+        distance.SetJamoMode(true);
+        // 갔 = ㄱ ㅏ ㅆ, 갓 = ㄱ ㅏ ㅅ : 종성 하나만 다름.
+        assertEquals(1, distance.Distance("갔", "갓"));
+        // 가 = ㄱ ㅏ, 각 = ㄱ ㅏ ㄱ : 종성 추가. 초성 ㄱ 과 종성 ㄱ 은 다른 자모임.
+        assertEquals(1, distance.Distance("가", "각"));
+        assertEquals(2, distance.Distance("가", "ㄱ"));
+        // 한글이 아닌 글자는 그대로 비교.
+        assertEquals(1, distance.Distance("abc", "abd"));
+
+        // 갔다 : ㄱ ㅏ ㅆ ㄷ ㅏ (5 자모) 중 하나만 틀림 -> 80, 글자 단위는 50
+        assertEquals(80, distance.Similarity("갔다", "갓다"));
+        distance.SetJamoMode(false);
+        assertEquals(50, distance.Similarity("갔다", "갓다"));
+    }
+
+    @Test
+    public void similarity_compatibleWithLegacyScore() {
+        AIScoreTextDistance distance = new AIScoreTextDistance();
+        // 같은 길이에서 치환만 있는 경우는 기존 점수와 같음.
+        String[][] substitutions = {{"apple", "apple"}, {"apple", "apqle"}, {"우리는", "우리도"}, {"abc", "xyz"}};
+        for (String[] pair : substitutions) {
+            assertEquals(legacyScore(pair[0], pair[1]), distance.Similarity(pair[0], pair[1]));
+        }
+        assertEquals(100, distance.Similarity("apple", "apple"));
+        assertEquals(0, distance.Similarity("", "abc"));
+
+        // 글자가 빠진 경우 : 기존에는 뒤의 글자가 모두 밀려서 틀림.
+        assertEquals(33, legacyScore("우리는", "우는"));
+        assertEquals(66, distance.Similarity("우리는", "우는"));
+        // 글자가 더 들어간 경우 : 기존에는 뒤의 글자가 밀려서 틀림.
+        assertEquals(40, legacyScore("apple", "aapple"));
+        assertEquals(80, distance.Similarity("apple", "aapple"));
+        // 기존에는 정답 뒤에 더 쓴 글자를 무시해서 100 이 나왔음. 이제 정답과 같을 때만 100.
+        assertEquals(100, legacyScore("app", "apple"));
+        assertEquals(33, distance.Similarity("app", "apple"));
+        // 점수는 0 아래로 내려가지 않음.
+        assertEquals(0, distance.Similarity("ab", "xyzuvw"));
+    }
+
+    @Test
+    public void similarity_doesNotAllocatePerCall() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        Random random = new Random(3);
+        int count = 2000;
+        String[] references = new String[count];
+        String[] answers = new String[count];
+        for (int i = 0; i < count; i++) {
+            references[i] = randomText(random, 2 + random.nextInt(10));
+            answers[i] = mutate(random, references[i]);
+        }
+        AIScoreTextDistance jamo = new AIScoreTextDistance();
+        jamo.SetJamoMode(true);
+        // 첫 번째는 JIT warm-up
+        long perCall = 0;
+        for (int r = 0; r < 2; r++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < count; i++) {
+                jamo.Similarity(references[i], answers[i]);
+            }
+            perCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / count;
+        }
+        assertTrue("allocated " + perCall + " bytes per call", perCall < 16);
+    }
+
+    /**
+     * 기존 AIScoreFunctions.calcTextScore() (로그 제외). 글자 단위 1:1 비교.
+     * 기존 코드는 split("") 의 첫 요소가 빈 문자열이라고 가정하므로 JVM 8 이상에서도 같게 동작하도록 앞에 한 글자를 붙임.
+     */
+    private static int legacyScore(String reference, String answer) {
+        String[] arrayAnswer = ("\u0000" + answer).split("");
+        String[] arrayRefer = ("\u0000" + reference).split("");
+        int answerLen = arrayAnswer.length - 1;
+        int referLen = arrayRefer.length - 1;
+
+        int correctSpellingsCnt = referLen;
+        int loopCnt = Math.min(referLen, answerLen);
+        for (int i = 1; i <= loopCnt; i++) {
+            if (!(arrayRefer[i].equals(arrayAnswer[i]))) {
+                correctSpellingsCnt--;
+            }
+        }
+        if (referLen > answerLen) {
+            correctSpellingsCnt -= (referLen - answerLen);
+        }
+        return (int) ((float) correctSpellingsCnt / referLen * 100.f);
+    }
+
+    private static int fullTable(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1, d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+
+    private static String mutate(Random random, String text) {
+        StringBuilder builder = new StringBuilder(text);
+        int edits = random.nextInt(3);
+        for (int e = 0; e < edits && builder.length() > 0; e++) {
+            int position = random.nextInt(builder.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.deleteCharAt(position);
+                    break;
+                case 1:
+                    builder.insert(position, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    break;
+                default:
+                    builder.setCharAt(position, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 기존 calcTextScore() 와 Similarity() (글자 단위, 자모 단위) 의 호출당 시간을 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstLegacyScore() {
+        UtilsBenchmark.AssumeEnabled();
+        Random random = new Random(3);
+        int count = 2000;
+        String[] references = new String[count];
+        String[] answers = new String[count];
+        for (int i = 0; i < count; i++) {
+            references[i] = randomText(random, 2 + random.nextInt(10));
+            answers[i] = mutate(random, references[i]);
+        }
+        AIScoreTextDistance distance = new AIScoreTextDistance();
+        AIScoreTextDistance jamo = new AIScoreTextDistance();
+        jamo.SetJamoMode(true);
+
+        long sink = 0;
+        double legacyNs = 0;
+        double myersNs = 0;
+        double jamoNs = 0;
+        int rounds = 50;
+        // 첫 번째는 JIT warm-up
+        for (int r = 0; r < 2; r++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                for (int i = 0; i < count; i++) {
+                    sink += legacyScore(references[i], answers[i]);
+                }
+            }
+            legacyNs = (System.nanoTime() - start) / (double) (rounds * count);
+
+            start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                for (int i = 0; i < count; i++) {
+                    sink += distance.Similarity(references[i], answers[i]);
+                }
+            }
+            myersNs = (System.nanoTime() - start) / (double) (rounds * count);
+
+            start = System.nanoTime();
+            for (int k = 0; k < rounds; k++) {
+                for (int i = 0; i < count; i++) {
+                    sink += jamo.Similarity(references[i], answers[i]);
+                }
+            }
+            jamoNs = (System.nanoTime() - start) / (double) (rounds * count);
+        }
+        System.out.println("AIScoreTextDistance ns/call legacy split : " + String.format("%.0f", legacyNs)
+                + ", myers : " + String.format("%.0f", myersNs)
+                + ", myers jamo : " + String.format("%.0f", jamoNs) + " (" + sink + ")");
+    }
+}
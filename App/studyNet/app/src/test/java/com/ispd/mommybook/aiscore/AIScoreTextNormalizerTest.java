@@ -0,0 +1,157 @@
+package com.ispd.mommybook.aiscore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * AIScoreTextNormalizer 의 결과를 기존 DoTextScoring() 의 변환 코드와 비교한다.
+ * 정답지 파일의 모든 문자 인식 정답과, 정답에 인식 오류 글자를 붙인 문자열을 사용함.
+ */
+public class AIScoreTextNormalizerTest {
+    private static final int MAX_PAGE = 40;
+    // 인식 결과에 섞여 나오는 글자 (정규식 특수문자 제외 : 기존 코드에서 예외가 발생하거나 문자열 전체가 지워짐)
+    private static final String[] NOISE = {"i", "1", "s", "Z", "\"", "!", ",", "-", ":", "@", " ", "ㄱ"};
+
+    @Test
+    public void golden_allReferenceAnswers() throws Exception {
+        AIScoreAnswerKey answerKey = AIScoreAnswerKeyTest.LoadAsset();
+        int checked = 0;
+        for (int cover = 0; cover < 3; cover++) {
+            for (int page = 0; page <= MAX_PAGE; page++) {
+                for (AIScoreReferenceDB.DataBase entry : answerKey.GetPage(cover, page)) {
+                    if (entry.mMethod != AIScoreReferenceDB.Method.TEXT_RECOGNITION_WORD
+                            && entry.mMethod != AIScoreReferenceDB.Method.TEXT_RECOGNITION_SENTENCE) {
+                        continue;
+                    }
+                    AIScoreTextNormalizer normalizer = AIScoreTextNormalizer.Create(entry.mTextLanguage);
+                    String answer = entry.mAnswerText;
+                    assertEquals(answer, legacyAnswerKey(entry.mTextLanguage, answer),
+                            normalizer.NormalizeAnswerKey(answer));
+
+                    for (String recognized : recognizedVariants(answer)) {
+                        assertEquals(recognized + " (" + entry.mSticker + ")",
+                                legacyRecognized(entry.mTextLanguage, entry.mSticker, recognized),
+                                normalizer.NormalizeRecognized(recognized, entry.mSticker));
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 500);
+    }
+
+    @Test
+    public void unchangedText_returnsSameInstance() {
+        AIScoreTextNormalizer korean = AIScoreTextNormalizer.Create(AIScoreReferenceDB.TextLanguage.KOREAN);
+        String text = "우리는";
+        assertSame(text, korean.NormalizeRecognized(text, AIScoreReferenceDB.Sticker.STICKER));
+        assertSame(text, korean.NormalizeRecognized(text, AIScoreReferenceDB.Sticker.NONE));
+        assertSame(text, korean.NormalizeAnswerKey(text));
+
+        AIScoreTextNormalizer english = AIScoreTextNormalizer.Create(AIScoreReferenceDB.TextLanguage.ENGLISH);
+        String key = "thank";
+        assertSame(key, english.NormalizeAnswerKey(key));
+        assertEquals("yourewelcome.", english.NormalizeAnswerKey("You're welcome."));
+    }
+
+    @Test
+    public void removesEveryUnwantedCharacter() {
+        AIScoreTextNormalizer korean = AIScoreTextNormalizer.Create(AIScoreReferenceDB.TextLanguage.KOREAN);
+        // 기존 코드는 지운 글자 바로 뒤의 글자를 건너뜀.
+        assertEquals("2귀여워서", legacyRecognized(AIScoreReferenceDB.TextLanguage.KOREAN,
+                AIScoreReferenceDB.Sticker.NONE, "12귀여워서"));
+        assertEquals("귀여워서", korean.NormalizeRecognized("12귀여워서", AIScoreReferenceDB.Sticker.NONE));
+        assertEquals("우리는", korean.NormalizeRecognized("ab우리는", AIScoreReferenceDB.Sticker.STICKER));
+
+        // 기존 코드는 '.' 을 정규식으로 해석해서 문자열 전체를 지움.
+        assertEquals("", legacyRecognized(AIScoreReferenceDB.TextLanguage.KOREAN,
+                AIScoreReferenceDB.Sticker.NONE, "우리는."));
+        assertEquals("우리는", korean.NormalizeRecognized("우리는.", AIScoreReferenceDB.Sticker.NONE));
+
+        // 기존 코드는 '(' '?' 등에서 예외가 발생함.
+        try {
+            legacyRecognized(AIScoreReferenceDB.TextLanguage.KOREAN, AIScoreReferenceDB.Sticker.NONE, "(우리는?");
+            fail();
+        } catch (RuntimeException expected) {
+            // PatternSyntaxException
+        }
+        assertEquals("우리는", korean.NormalizeRecognized("(우리는?", AIScoreReferenceDB.Sticker.NONE));
+
+        // 스티커 모드에서 숫자나 부호가 있으면 지우지 않음.
+        assertEquals("3시50분", korean.NormalizeRecognized("3시50분", AIScoreReferenceDB.Sticker.STICKER));
+    }
+
+    private static List<String> recognizedVariants(String answer) {
+        List<String> variants = new ArrayList<>();
+        variants.add(answer);
+        variants.add(answer.toUpperCase());
+        for (String noise : NOISE) {
+            variants.add(noise + answer);
+            variants.add(answer + noise);
+            if (answer.length() > 1) {
+                variants.add(answer.substring(0, 1) + noise + answer.substring(1));
+            }
+        }
+        // 집단 채점 : 구분자로 이어진 결과
+        variants.add(answer + "//" + "i" + answer + "//" + answer + "s");
+        return variants;
+    }
+
+    /**
+     * 기존 DoTextScoring() 의 정답 변환.
+     */
+    private static String legacyAnswerKey(AIScoreReferenceDB.TextLanguage language, String realAnswerKey) {
+        String convertedAnswerKey = realAnswerKey;
+        if (language == AIScoreReferenceDB.TextLanguage.ENGLISH) {
+            convertedAnswerKey = realAnswerKey.toLowerCase();
+            convertedAnswerKey = convertedAnswerKey.replaceAll(" ", "");
+            convertedAnswerKey = convertedAnswerKey.replaceAll("'", "");
+        }
+        return convertedAnswerKey;
+    }
+
+    /**
+     * 기존 DoTextScoring() 의 인식 결과 변환.
+     */
+    private static String legacyRecognized(AIScoreReferenceDB.TextLanguage language,
+                                           AIScoreReferenceDB.Sticker sticker, String in_recognizedText) {
+        if (language != AIScoreReferenceDB.TextLanguage.KOREAN) {
+            return in_recognizedText;
+        }
+        if (sticker == AIScoreReferenceDB.Sticker.STICKER) {
+            if (!legacyHasNumbers(in_recognizedText)) {
+                for (int i = 0; i < in_recognizedText.length(); i++) {
+                    if ((48 <= in_recognizedText.charAt(i) && in_recognizedText.charAt(i) <= 57) ||
+                            (65 <= in_recognizedText.charAt(i) && in_recognizedText.charAt(i) <= 90) ||
+                            (97 <= in_recognizedText.charAt(i) && in_recognizedText.charAt(i) <= 122)) {
+                        String compared = String.valueOf(in_recognizedText.charAt(i));
+                        in_recognizedText = in_recognizedText.replaceAll(compared, "");
+                    }
+                }
+            }
+        }
+        else if (sticker == AIScoreReferenceDB.Sticker.NONE) {
+            for (int i = 0; i < in_recognizedText.length(); i++) {
+                if ((33 <= in_recognizedText.charAt(i) && in_recognizedText.charAt(i) <= 46) ||
+                        (48 <= in_recognizedText.charAt(i) && in_recognizedText.charAt(i) <= 64)) {
+                    String compared = String.valueOf(in_recognizedText.charAt(i));
+                    in_recognizedText = in_recognizedText.replaceAll(compared, "");
+                }
+            }
+        }
+        return in_recognizedText;
+    }
+
+    private static boolean legacyHasNumbers(String in_string) {
+        for (int i = 0; i < in_string.length(); i++) {
+            if ((33 <= in_string.charAt(i) && in_string.charAt(i) <= 64)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
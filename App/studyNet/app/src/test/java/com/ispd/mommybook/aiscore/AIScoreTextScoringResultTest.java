@@ -0,0 +1,57 @@
+package com.ispd.mommybook.aiscore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 채점 결과 파일에 기록하는 문자열이 기존 DoTextScoring() 의 형태와 같은지, 다시 읽을 수 있는지 확인한다.
+ */
+public class AIScoreTextScoringResultTest {
+
+    @Test
+    public void saveAnswer_matchesLegacyFormat() {
+        AIScoreTextScoringResult multi = new AIScoreTextScoringResult(null, true,
+                new String[]{"apple", "appte", "apple"}, new int[]{100, 80, 100});
+        assertEquals(93, multi.GetAverageScore());
+        assertEquals("MULTI//apple//100//appte//80//apple//100//93", multi.ToSaveAnswer());
+
+        AIScoreTextScoringResult single = new AIScoreTextScoringResult(null, false,
+                new String[]{"우리는"}, new int[]{100});
+        assertEquals("SINGLE//우리는", single.ToSaveAnswer());
+        assertEquals(100, single.GetAverageScore());
+    }
+
+    @Test
+    public void parse_roundTrip() {
+        String saved = "MULTI//apple//100//appte//80//abble//60//80";
+        AIScoreTextScoringResult parsed = AIScoreTextScoringResult.Parse(saved);
+        assertNotNull(parsed);
+        assertTrue(parsed.IsMultiModel());
+        assertNull(parsed.GetRecognition());
+        assertEquals("appte", parsed.GetText(1));
+        assertEquals(60, parsed.GetScore(2));
+        assertEquals(saved, parsed.ToSaveAnswer());
+
+        // 인식이 안된 경우 기존 코드가 저장하던 형태
+        AIScoreTextScoringResult nan = AIScoreTextScoringResult.Parse("MULTI//NAN//0//NAN//0//NAN//0//0");
+        assertNotNull(nan);
+        assertEquals(0, nan.GetAverageScore());
+
+        // 조기 종료된 집단채점은 실행한 모델의 결과만 있음.
+        AIScoreTextScoringResult early = AIScoreTextScoringResult.Parse("MULTI//apple//100//100");
+        assertNotNull(early);
+        assertEquals(1, early.GetModelCount());
+        assertEquals(100, early.GetAverageScore());
+        assertEquals("MULTI//apple//100//100", early.ToSaveAnswer());
+    }
+
+    @Test
+    public void parse_rejectsOtherAnswers() {
+        assertNull(AIScoreTextScoringResult.Parse(null));
+        assertNull(AIScoreTextScoringResult.Parse("none"));
+        assertNull(AIScoreTextScoringResult.Parse("SINGLE//우리는"));
+        assertNull(AIScoreTextScoringResult.Parse("MULTI//a//1"));
+        assertNull(AIScoreTextScoringResult.Parse("MULTI//a//x//b//1//c//1//1"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.ispd.mommybook.ocr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRJobScheduler 의 결과 전달, idle 상태의 wake-up 횟수, 완료 수와 종료 동작을 가짜 인식기로 확인한다.
+ */
+public class OCRJobSchedulerTest {
+    private OCRJobScheduler mScheduler;
+
+    /**
+     * 가짜 인식기 : 단어 하나당 일정 시간 걸리는 것처럼 동작하고 인식한 단어 수를 리턴함.
+     */
+    private static Callable<Integer> fakePageJob(final int words, final long msPerWord) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep(words * msPerWord);
+                return words;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        mScheduler = new OCRJobScheduler("OCRJobSchedulerTest", 1);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.Stop();
+    }
+
+    @Test
+    public void submit_returnsResultThroughFutureAndCallback() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Integer> callbackResult = new AtomicReference<>();
+
+        Future<Integer> future = mScheduler.Submit(fakePageJob(20, 0),
+                new OCRJobScheduler.JobCallback<Integer>() {
+                    @Override
+                    public void onJobDone(Integer result, Throwable error) {
+                        callbackResult.set(result);
+                        latch.countDown();
+                    }
+                });
+
+        assertEquals(Integer.valueOf(20), future.get(1, TimeUnit.SECONDS));
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(20), callbackResult.get());
+    }
+
+    @Test
+    public void idleWorker_doesNotWakeUp() throws Exception {
+        Thread.sleep(300);
+        assertEquals(0, mScheduler.GetWakeUpCount());
+
+        mScheduler.Submit(fakePageJob(1, 0), null).get(1, TimeUnit.SECONDS);
+        Thread.sleep(300);
+        // 기존 33ms polling 이라면 300ms 동안 약 9번 깨어났을 것임.
+        assertEquals(1, mScheduler.GetWakeUpCount());
+    }
+
+    @Test
+    public void doneCount_isUpdatedBeforeFutureCompletes() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(mScheduler.Submit(fakePageJob(1, 0), null));
+        }
+        for (Future<Integer> f : futures) {
+            f.get(1, TimeUnit.SECONDS);
+        }
+        assertEquals(50, mScheduler.GetDoneCount());
+        assertEquals(50, mScheduler.GetWakeUpCount());
+    }
+
+    @Test
+    public void stop_cancelsPendingJobsAndRejectsNewOnes() throws Exception {
+        Future<Integer> running = mScheduler.Submit(fakePageJob(1, 100), null);
+        Future<Integer> pending = mScheduler.Submit(fakePageJob(1, 0), null);
+        Thread.sleep(20);
+
+        mScheduler.Stop();
+
+        assertTrue(pending.isCancelled());
+        // 실행중인 작업은 interrupt 되지 않고 끝까지 실행됨.
+        assertEquals(Integer.valueOf(1), running.get(0, TimeUnit.SECONDS));
+        assertEquals(1, mScheduler.GetDoneCount());
+        try {
+            mScheduler.Submit(fakePageJob(1, 0), null);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.ispd.mommybook.ocr.detection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDetectionGeometryDecoder 가 기존 Mat 기반 decode() 와 같은 후보를 만드는지 확인한다.
+ */
+public class OCRDetectionGeometryDecoderTest {
+    private static final int OUT_SIZE = 104;
+    private static final float SCORE_THRESH = 0.6f;
+
+    /**
+     * 기존 OCRDetectionDecodeResult.decode() 와 같은 구현.
+     * Mat 의 scores.row(y).get(0, x), geometry.submat(k * H, ...).row(y).get(0, x) 접근을 배열 index 로 옮김.
+     * 후보마다 {cx, cy, w, h, angle, score} 를 돌려줌.
+     */
+    private static List<double[]> legacyDecode(float[] scores, float[] geometry, int W, int H, float scoreThresh) {
+        List<double[]> detections = new ArrayList<>();
+        for (int y = 0; y < H; ++y) {
+            for (int x = 0; x < W; ++x) {
+                double score = scores[y * W + x];
+                if (score >= scoreThresh) {
+                    double offsetX = x * 4.0;
+                    double offsetY = y * 4.0;
+                    double angle = geometry[(4 * H + y) * W + x];
+                    double cosA = Math.cos(angle);
+                    double sinA = Math.sin(angle);
+                    double x0 = geometry[(y) * W + x];
+                    double x1 = geometry[(H + y) * W + x];
+                    double x2 = geometry[(2 * H + y) * W + x];
+                    double x3 = geometry[(3 * H + y) * W + x];
+
+                    double h = x0 + x2;
+                    double w = x1 + x3;
+                    double[] offset = {offsetX + cosA * x1 + sinA * x2, offsetY - sinA * x1 + cosA * x2};
+                    double[] p1 = {-1 * sinA * h + offset[0], -1 * cosA * h + offset[1]};
+                    double[] p3 = {-1 * cosA * w + offset[0], sinA * w + offset[1]};
+                    detections.add(new double[]{0.5 * (p1[0] + p3[0]), 0.5 * (p1[1] + p3[1]), w, h,
+                            -1 * angle * 180 / Math.PI, (float) score});
+                }
+            }
+        }
+        return detections;
+    }
+
+    /**
+     * 글자줄 몇 개가 있는 페이지처럼 만든 score/geometry map.
+     * 글자줄 안쪽은 score 가 높고, 각 위치에서 글자줄 경계까지의 거리와 작은 기울기를 geometry 로 가짐.
+     */
+    private static void makeMaps(Random random, int W, int H, float[] scores, float[] geometry) {
+        int plane = W * H;
+        for (int i = 0; i < plane; i++) {
+            scores[i] = random.nextFloat() * 0.5f;
+            for (int k = 0; k < 5; k++) {
+                geometry[k * plane + i] = random.nextFloat();
+            }
+        }
+        int lines = 3 + random.nextInt(6);
+        for (int l = 0; l < lines; l++) {
+            int x0 = random.nextInt(W / 2);
+            int y0 = random.nextInt(H - 6);
+            int x1 = Math.min(W, x0 + 5 + random.nextInt(W / 2));
+            int y1 = Math.min(H, y0 + 2 + random.nextInt(5));
+            float angle = (random.nextFloat() - 0.5f) * 0.2f;
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int i = y * W + x;
+                    scores[i] = 0.55f + random.nextFloat() * 0.45f;
+                    geometry[i] = (y - y0) * 4.f + random.nextFloat();
+                    geometry[plane + i] = (x1 - x) * 4.f + random.nextFloat();
+                    geometry[2 * plane + i] = (y1 - y) * 4.f + random.nextFloat();
+                    geometry[3 * plane + i] = (x - x0) * 4.f + random.nextFloat();
+                    geometry[4 * plane + i] = angle;
+                }
+            }
+        }
+    }
+
+    private static void assertSame(List<double[]> expected, OCRDetectionGeometryDecoder decoder, int count) {
+        assertEquals(expected.size(), count);
+        for (int i = 0; i < count; i++) {
+            double[] e = expected.get(i);
+            assertEquals(e[0], decoder.GetCenterX()[i], 0.0);
+            assertEquals(e[1], decoder.GetCenterY()[i], 0.0);
+            assertEquals(e[2], decoder.GetWidth()[i], 0.0);
+            assertEquals(e[3], decoder.GetHeight()[i], 0.0);
+            assertEquals(e[4], decoder.GetAngle()[i], 0.0);
+            assertEquals(e[5], decoder.GetScores()[i], 0.0);
+        }
+    }
+
+    @Test
+    public void decode_sameAsLegacy() {
+        Random random = new Random(416);
+        float[] scores = new float[OUT_SIZE * OUT_SIZE];
+        float[] geometry = new float[5 * OUT_SIZE * OUT_SIZE];
+        OCRDetectionGeometryDecoder decoder = new OCRDetectionGeometryDecoder(OUT_SIZE * OUT_SIZE);
+        for (int iter = 0; iter < 20; iter++) {
+            makeMaps(random, OUT_SIZE, OUT_SIZE, scores, geometry);
+            List<double[]> expected = legacyDecode(scores, geometry, OUT_SIZE, OUT_SIZE, SCORE_THRESH);
+            int count = decoder.Decode(scores, geometry, OUT_SIZE, OUT_SIZE, SCORE_THRESH);
+            assertTrue(count > 0);
+            assertSame(expected, decoder, count);
+        }
+    }
+
+    @Test
+    public void decode_thresholdIsInclusiveAndBuffersGrow() {
+        int W = 20;
+        int H = 10;
+        float[] scores = new float[W * H];
+        float[] geometry = new float[5 * W * H];
+        scores[3 * W + 7] = SCORE_THRESH;
+        scores[3 * W + 8] = Math.nextDown(SCORE_THRESH);
+        geometry[4 * W * H + 3 * W + 7] = 0.1f;
+
+        // 처음 용량이 모자라도 map 크기만큼 늘어남.
+        OCRDetectionGeometryDecoder decoder = new OCRDetectionGeometryDecoder(1);
+        int count = decoder.Decode(scores, geometry, W, H, SCORE_THRESH);
+        assertEquals(1, count);
+        assertSame(legacyDecode(scores, geometry, W, H, SCORE_THRESH), decoder, count);
+
+        java.util.Arrays.fill(scores, 0.f);
+        assertEquals(0, decoder.Decode(scores, geometry, W, H, SCORE_THRESH));
+        assertEquals(0, decoder.GetCount());
+    }
+}
@@ -0,0 +1,52 @@
+package com.ispd.mommybook.ocr.detection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDetectionLetterbox 의 배치와 좌표 변환을 확인한다.
+ */
+public class OCRDetectionLetterboxTest {
+    private static final int INPUT_SIZE = 416;
+
+    @Test
+    public void compute_longSideFitsInput() {
+        OCRDetectionLetterbox landscape = OCRDetectionLetterbox.Compute(1600, 1200, INPUT_SIZE);
+        assertEquals(416.f / 1600.f, landscape.GetScale(), 0.f);
+        assertEquals(416, landscape.GetWidth());
+        assertEquals(312, landscape.GetHeight());
+        assertEquals(0, landscape.GetOffsetX());
+        assertEquals(0, landscape.GetOffsetY());
+
+        OCRDetectionLetterbox portrait = OCRDetectionLetterbox.Compute(300, 1300, INPUT_SIZE);
+        assertEquals(INPUT_SIZE, portrait.GetHeight());
+        assertEquals(96, portrait.GetWidth());
+
+        // 입력보다 작은 원본은 확대됨.
+        OCRDetectionLetterbox small = OCRDetectionLetterbox.Compute(208, 104, INPUT_SIZE);
+        assertEquals(2.f, small.GetScale(), 0.f);
+        assertEquals(416, small.GetWidth());
+        assertEquals(208, small.GetHeight());
+
+        // 아주 가는 원본도 최소 1 픽셀은 차지함.
+        OCRDetectionLetterbox thin = OCRDetectionLetterbox.Compute(5000, 2, INPUT_SIZE);
+        assertEquals(1, thin.GetHeight());
+    }
+
+    @Test
+    public void mapping_roundTrips() {
+        OCRDetectionLetterbox letterbox = OCRDetectionLetterbox.Compute(1280, 720, INPUT_SIZE);
+        double[] points = {0, 0, 640, 360, 1279, 719};
+        for (int i = 0; i < points.length; i += 2) {
+            double ix = letterbox.ToInputX(points[i]);
+            double iy = letterbox.ToInputY(points[i + 1]);
+            assertTrue(ix >= 0 && ix <= INPUT_SIZE);
+            assertTrue(iy >= 0 && iy <= letterbox.GetHeight());
+            assertEquals(points[i], letterbox.ToSourceX(ix), 1e-3);
+            assertEquals(points[i + 1], letterbox.ToSourceY(iy), 1e-3);
+        }
+        // 모델 입력의 오른쪽 아래 끝은 원본의 긴 변 끝에 해당함.
+        assertEquals(1280, letterbox.ToSourceX(INPUT_SIZE), 1e-3);
+    }
+}
@@ -0,0 +1,184 @@
+package com.ispd.mommybook.ocr.detection;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDetectionNMS 의 IoU, 병합, grid NMS 를 검증한다. 후보 수에 따른 속도 측정은 -Pbenchmark 일 때만 실행함.
+ */
+public class OCRDetectionNMSTest {
+    private static final float NMS_THRESH = 0.1f;
+
+    private static class Boxes {
+        double[] cx, cy, w, h, angle;
+        float[] score;
+        int count;
+
+        Boxes(int n) {
+            cx = new double[n];
+            cy = new double[n];
+            w = new double[n];
+            h = new double[n];
+            angle = new double[n];
+            score = new float[n];
+            count = n;
+        }
+    }
+
+    /**
+     * 페이지 크기를 후보 수에 맞춰 늘려서 후보 밀도를 비슷하게 유지한 합성 후보.
+     * 글자줄 크기의 박스가 서로 조금씩 겹치도록 흩어 놓는다.
+     */
+    private static Boxes makeBoxes(Random random, int n) {
+        Boxes boxes = new Boxes(n);
+        double page = 416.0 * Math.sqrt(n / 100.0);
+        for (int i = 0; i < n; i++) {
+            boxes.cx[i] = random.nextDouble() * page;
+            boxes.cy[i] = random.nextDouble() * page;
+            boxes.w[i] = 20 + random.nextDouble() * 60;
+            boxes.h[i] = 8 + random.nextDouble() * 16;
+            boxes.angle[i] = (random.nextDouble() - 0.5) * 20;
+            boxes.score[i] = 0.6f + random.nextFloat() * 0.4f;
+        }
+        return boxes;
+    }
+
+    /**
+     * grid 없이 모든 쌍을 비교하는 NMS. OCRDetectionNMS 와 같은 순서(score 내림차순, 같으면 index 큰 쪽)를 사용함.
+     */
+    private static List<Integer> bruteForceNMS(Boxes b, float thresh) {
+        Integer[] order = new Integer[b.count];
+        for (int i = 0; i < b.count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> {
+            int c = Float.compare(b.score[y], b.score[x]);
+            return c != 0 ? c : Integer.compare(y, x);
+        });
+        List<Integer> kept = new ArrayList<>();
+        for (int i : order) {
+            boolean suppressed = false;
+            for (int j : kept) {
+                double iou = OCRDetectionNMS.IoU(b.cx[i], b.cy[i], b.w[i], b.h[i], b.angle[i],
+                        b.cx[j], b.cy[j], b.w[j], b.h[j], b.angle[j]);
+                if (iou > thresh) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(i);
+            }
+        }
+        return kept;
+    }
+
+    @Test
+    public void iou_knownValues() {
+        assertEquals(1.0, OCRDetectionNMS.IoU(10, 10, 20, 10, 0, 10, 10, 20, 10, 0), 1e-9);
+        // 가로로 절반 겹침 : 교집합 100, 합집합 300
+        assertEquals(1.0 / 3.0, OCRDetectionNMS.IoU(10, 10, 20, 10, 0, 20, 10, 20, 10, 0), 1e-9);
+        assertEquals(0.0, OCRDetectionNMS.IoU(0, 0, 10, 10, 0, 100, 100, 10, 10, 0), 0.0);
+        // 정사각형과 45도 회전한 같은 정사각형 : 교집합은 정팔각형 (넓이 2(sqrt(2)-1) a^2)
+        double octagon = 2 * (Math.sqrt(2) - 1) * 100;
+        assertEquals(octagon / (200 - octagon),
+                OCRDetectionNMS.IoU(0, 0, 10, 10, 0, 0, 0, 10, 10, 45), 1e-9);
+        // 90도 회전하면 가로, 세로가 바뀐 박스와 같음.
+        assertEquals(1.0, OCRDetectionNMS.IoU(5, 5, 30, 10, 90, 5, 5, 10, 30, 0), 1e-9);
+    }
+
+    @Test
+    public void merge_combinesNeighbouringRowCandidates() {
+        // 같은 글자줄에서 나온 후보 3개 (서로 크게 겹침) + 떨어진 후보 1개
+        Boxes b = new Boxes(4);
+        double[][] rows = {
+                {50, 20, 60, 12, 0, 0.9},
+                {52, 20, 60, 12, 0, 0.7},
+                {54, 21, 60, 12, 0, 0.8},
+                {200, 100, 40, 10, 0, 0.95}};
+        for (int i = 0; i < 4; i++) {
+            b.cx[i] = rows[i][0];
+            b.cy[i] = rows[i][1];
+            b.w[i] = rows[i][2];
+            b.h[i] = rows[i][3];
+            b.angle[i] = rows[i][4];
+            b.score[i] = (float) rows[i][5];
+        }
+        OCRDetectionNMS nms = new OCRDetectionNMS();
+        int kept = nms.Run(b.cx, b.cy, b.w, b.h, b.angle, b.score, b.count, NMS_THRESH);
+        assertEquals(2, nms.GetMergedCount());
+        assertEquals(2, kept);
+        // 병합된 박스는 score 합(2.4)이 가장 크므로 먼저 나옴.
+        assertEquals(0.9f + 0.7f + 0.8f, nms.GetScores()[0], 1e-6);
+        assertEquals((50 * 0.9 + 52 * 0.7 + 54 * 0.8) / 2.4, nms.GetCenterX()[0], 1e-6);
+        assertEquals((20 * 0.9 + 20 * 0.7 + 21 * 0.8) / 2.4, nms.GetCenterY()[0], 1e-6);
+        assertEquals(200, nms.GetCenterX()[1], 0.0);
+
+        nms.SetMergeThreshold(0.f);
+        assertEquals(4, nms.Run(b.cx, b.cy, b.w, b.h, b.angle, b.score, b.count, 0.99f));
+    }
+
+    @Test
+    public void nms_sameAsBruteForce() {
+        Random random = new Random(7);
+        OCRDetectionNMS nms = new OCRDetectionNMS();
+        nms.SetMergeThreshold(0.f);
+        for (int n : new int[]{10, 100, 1000}) {
+            for (int iter = 0; iter < 3; iter++) {
+                Boxes b = makeBoxes(random, n);
+                List<Integer> expected = bruteForceNMS(b, NMS_THRESH);
+                int kept = nms.Run(b.cx, b.cy, b.w, b.h, b.angle, b.score, b.count, NMS_THRESH);
+                assertEquals(expected.size(), kept);
+                for (int k = 0; k < kept; k++) {
+                    int i = expected.get(k);
+                    assertEquals(b.cx[i], nms.GetCenterX()[k], 0.0);
+                    assertEquals(b.cy[i], nms.GetCenterY()[k], 0.0);
+                    assertEquals(b.score[i], nms.GetScores()[k], 0.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * 후보 수에 따른 grid NMS 와 전체 비교(brute force) NMS 의 시간을 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstBruteForce() {
+        UtilsBenchmark.AssumeEnabled();
+        Random random = new Random(99);
+        OCRDetectionNMS nms = new OCRDetectionNMS();
+        nms.SetMergeThreshold(0.f);
+        for (int n : new int[]{100, 1000, 10000}) {
+            Boxes b = makeBoxes(random, n);
+            for (int w = 0; w < 5; w++) {
+                nms.Run(b.cx, b.cy, b.w, b.h, b.angle, b.score, b.count, NMS_THRESH);
+            }
+            int runs = n >= 10000 ? 10 : 50;
+            long start = System.nanoTime();
+            int kept = 0;
+            for (int r = 0; r < runs; r++) {
+                kept = nms.Run(b.cx, b.cy, b.w, b.h, b.angle, b.score, b.count, NMS_THRESH);
+            }
+            long gridUs = (System.nanoTime() - start) / runs / 1000;
+
+            long bruteUs = -1;
+            if (n <= 1000) {
+                start = System.nanoTime();
+                for (int r = 0; r < 5; r++) {
+                    bruteForceNMS(b, NMS_THRESH);
+                }
+                bruteUs = (System.nanoTime() - start) / 5 / 1000;
+            }
+            System.out.println("OCRDetectionNMS boxes : " + n + ", kept : " + kept
+                    + ", grid : " + gridUs + "us, brute force : " + (bruteUs >= 0 ? bruteUs + "us" : "-"));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ispd.mommybook.ocr.detection;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * OCRDetectionOutputBuffers 가 기존 중첩 배열 방식과 같은 후보를 만들고, 호출마다 메모리를 할당하지 않는지 확인한다.
+ */
+public class OCRDetectionOutputBuffersTest {
+    private static final int OUT_SIZE = 104;
+    private static final float SCORE_THRESH = 0.6f;
+
+    private static float[][][][] makeScore(Random random) {
+        float[][][][] score = new float[1][OUT_SIZE][OUT_SIZE][1];
+        for (int i = 0; i < OUT_SIZE; i++) {
+            for (int j = 0; j < OUT_SIZE; j++) {
+                score[0][i][j][0] = random.nextFloat() < 0.1f ? 0.6f + random.nextFloat() * 0.4f : random.nextFloat() * 0.5f;
+            }
+        }
+        return score;
+    }
+
+    private static float[][][][] makeGeometry(Random random) {
+        float[][][][] geometry = new float[1][OUT_SIZE][OUT_SIZE][5];
+        for (int i = 0; i < OUT_SIZE; i++) {
+            for (int j = 0; j < OUT_SIZE; j++) {
+                for (int k = 0; k < 4; k++) {
+                    geometry[0][i][j][k] = random.nextFloat() * 40.f;
+                }
+                geometry[0][i][j][4] = (random.nextFloat() - 0.5f) * 0.3f;
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * TFLite 가 출력 ByteBuffer 에 쓰는 것처럼 NHWC 순서로 채운다.
+     */
+    private static void writeOutputs(OCRDetectionOutputBuffers buffers, float[][][][] score, float[][][][] geometry) {
+        ByteBuffer scoreBuffer = buffers.getScoreBuffer();
+        ByteBuffer geometryBuffer = buffers.getGeometryBuffer();
+        int s = 0;
+        int g = 0;
+        for (int i = 0; i < OUT_SIZE; i++) {
+            for (int j = 0; j < OUT_SIZE; j++) {
+                scoreBuffer.putFloat(s, score[0][i][j][0]);
+                s += 4;
+                for (int k = 0; k < 5; k++) {
+                    geometryBuffer.putFloat(g, geometry[0][i][j][k]);
+                    g += 4;
+                }
+            }
+        }
+    }
+
+    /**
+     * 기존 OCRDetectionInference 의 중첩 배열 -> flat float[] 복사.
+     */
+    private static void legacyFlatten(float[][][][] score, float[][][][] geometry, float[] scoreFloat, float[] geoFloat) {
+        int indexCount = 0;
+        for (int i = 0; i < OUT_SIZE; i++) {
+            for (int j = 0; j < OUT_SIZE; j++) {
+                scoreFloat[indexCount] = score[0][i][j][0];
+                indexCount++;
+            }
+        }
+        indexCount = 0;
+        for (int k = 0; k < 5; k++) {
+            for (int i = 0; i < OUT_SIZE; i++) {
+                for (int j = 0; j < OUT_SIZE; j++) {
+                    geoFloat[indexCount] = geometry[0][i][j][k];
+                    indexCount++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readOutputs_sameCandidatesAsNestedArrays() {
+        Random random = new Random(13);
+        OCRDetectionOutputBuffers buffers = new OCRDetectionOutputBuffers(OUT_SIZE);
+        OCRDetectionGeometryDecoder decoder = new OCRDetectionGeometryDecoder(OUT_SIZE * OUT_SIZE);
+        OCRDetectionGeometryDecoder legacy = new OCRDetectionGeometryDecoder(OUT_SIZE * OUT_SIZE);
+        float[] scoreFloat = new float[OUT_SIZE * OUT_SIZE];
+        float[] geoFloat = new float[OUT_SIZE * OUT_SIZE * 5];
+
+        for (int iter = 0; iter < 5; iter++) {
+            float[][][][] score = makeScore(random);
+            float[][][][] geometry = makeGeometry(random);
+
+            buffers.Rewind();
+            writeOutputs(buffers, score, geometry);
+            buffers.ReadOutputs();
+            int count = decoder.DecodeInterleaved(buffers.GetScores(), buffers.GetGeometry(),
+                    OUT_SIZE, OUT_SIZE, SCORE_THRESH);
+
+            legacyFlatten(score, geometry, scoreFloat, geoFloat);
+            int expected = legacy.Decode(scoreFloat, geoFloat, OUT_SIZE, OUT_SIZE, SCORE_THRESH);
+
+            assertTrue(count > 0);
+            assertEquals(expected, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(legacy.GetCenterX()[i], decoder.GetCenterX()[i], 0.0);
+                assertEquals(legacy.GetCenterY()[i], decoder.GetCenterY()[i], 0.0);
+                assertEquals(legacy.GetWidth()[i], decoder.GetWidth()[i], 0.0);
+                assertEquals(legacy.GetHeight()[i], decoder.GetHeight()[i], 0.0);
+                assertEquals(legacy.GetAngle()[i], decoder.GetAngle()[i], 0.0);
+                assertEquals(legacy.GetScores()[i], decoder.GetScores()[i], 0.0);
+            }
+        }
+        assertSame(buffers.GetOutputMap(), buffers.GetOutputMap());
+    }
+
+    @Test
+    public void readOutputs_doesNotAllocatePerCall() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            // 할당량을 셀 수 없는 VM 에서는 건너뜀.
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        Random random = new Random(5);
+        float[][][][] score = makeScore(random);
+        float[][][][] geometry = makeGeometry(random);
+        OCRDetectionOutputBuffers buffers = new OCRDetectionOutputBuffers(OUT_SIZE);
+        OCRDetectionGeometryDecoder decoder = new OCRDetectionGeometryDecoder(OUT_SIZE * OUT_SIZE);
+
+        int calls = 200;
+        for (int r = 0; r < 2; r++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < calls; i++) {
+                buffers.Rewind();
+                writeOutputs(buffers, score, geometry);
+                assertNotNull(buffers.GetOutputMap());
+                buffers.ReadOutputs();
+                decoder.DecodeInterleaved(buffers.GetScores(), buffers.GetGeometry(), OUT_SIZE, OUT_SIZE, SCORE_THRESH);
+            }
+            long perCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / calls;
+
+            // 첫 번째는 JIT warm-up
+            if (r == 1) {
+                assertTrue("allocated " + perCall + " bytes per call", perCall < 64);
+            }
+        }
+    }
+
+    /**
+     * 호출마다 새 출력 배열을 할당하던 기존 방식과 호출당 할당량을 비교해서 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstNestedArrays() {
+        UtilsBenchmark.AssumeEnabled();
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        Random random = new Random(5);
+        float[][][][] score = makeScore(random);
+        float[][][][] geometry = makeGeometry(random);
+        OCRDetectionOutputBuffers buffers = new OCRDetectionOutputBuffers(OUT_SIZE);
+
+        int calls = 200;
+        long perCall = 0;
+        long legacyPerCall = 0;
+        // 첫 번째는 JIT warm-up
+        for (int r = 0; r < 2; r++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < calls; i++) {
+                buffers.Rewind();
+                writeOutputs(buffers, score, geometry);
+                buffers.ReadOutputs();
+            }
+            perCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / calls;
+
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < calls; i++) {
+                float[][][][] outputScore = new float[1][OUT_SIZE][OUT_SIZE][1];
+                float[][][][] outputGeometry = new float[1][OUT_SIZE][OUT_SIZE][5];
+                assertNotNull(outputScore);
+                assertNotNull(outputGeometry);
+            }
+            legacyPerCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / calls;
+        }
+        System.out.println("OCRDetectionOutputBuffers allocated bytes per call : " + perCall
+                + ", nested output arrays : " + legacyPerCall);
+    }
+}
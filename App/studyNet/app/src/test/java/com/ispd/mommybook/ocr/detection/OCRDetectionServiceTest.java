@@ -0,0 +1,185 @@
+package com.ispd.mommybook.ocr.detection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDetectionService 의 latest-frame-wins 동작, 페이지 변경시 취소와 실패한 작업 처리를 가짜 detection 작업으로 확인한다.
+ */
+public class OCRDetectionServiceTest {
+    private OCRDetectionService mService;
+    private final List<Integer> mRunFrames = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mDiscardCount = new AtomicInteger(0);
+
+    /**
+     * 실행되면 frame 번호를 기록하는 가짜 작업. gate 가 있으면 열릴 때까지 기다림.
+     */
+    private OCRDetectionService.Job fakeJob(final int frame, final CountDownLatch started,
+                                            final CountDownLatch gate, final AtomicBoolean cancelledAtEnd) {
+        return new OCRDetectionService.Job() {
+            @Override
+            public void Run(OCRDetectionService.CancelToken in_token) {
+                if (started != null) {
+                    started.countDown();
+                }
+                if (gate != null) {
+                    try {
+                        gate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (cancelledAtEnd != null) {
+                    cancelledAtEnd.set(in_token.IsCancelled());
+                }
+                mRunFrames.add(frame);
+            }
+
+            @Override
+            public void Discard() {
+                mDiscardCount.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * 등록된 요청이 모두 처리(완료, 교체 또는 취소)될 때까지 기다린다.
+     */
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mService.GetDoneCount() + mService.GetCancelledCount() + mService.GetReplacedCount()
+                < mService.GetAcceptedCount() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mService = new OCRDetectionService("OCRDetectionServiceTest");
+    }
+
+    @After
+    public void tearDown() {
+        mService.Stop();
+    }
+
+    @Test
+    public void submit_latestFrameReplacesPending() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        mService.Submit(0, 1, fakeJob(0, started, gate, null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 처리중에 들어온 프레임은 대기 슬롯 하나를 차례로 덮어씀.
+        for (int frame = 1; frame <= 5; frame++) {
+            assertNotNull(mService.Submit(0, 1, fakeJob(frame, null, null, null)));
+        }
+        assertTrue(mService.HasPending());
+        gate.countDown();
+        waitUntilIdle();
+
+        assertEquals(2, mRunFrames.size());
+        assertEquals(0, (int) mRunFrames.get(0));
+        assertEquals(5, (int) mRunFrames.get(1));
+        assertEquals(6, mService.GetAcceptedCount());
+        assertEquals(4, mService.GetReplacedCount());
+        assertEquals(0, mService.GetCancelledCount());
+        assertEquals(2, mService.GetDoneCount());
+        assertEquals(4, mDiscardCount.get());
+    }
+
+    @Test
+    public void setPage_cancelsPendingAndRunning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicBoolean cancelledAtEnd = new AtomicBoolean(false);
+        OCRDetectionService.CancelToken running = mService.Submit(0, 1, fakeJob(0, started, gate, cancelledAtEnd));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        OCRDetectionService.CancelToken pending = mService.Submit(0, 1, fakeJob(1, null, null, null));
+        assertFalse(running.IsCancelled());
+
+        // 같은 페이지는 아무것도 취소하지 않음.
+        mService.SetPage(0, 1);
+        assertFalse(pending.IsCancelled());
+
+        mService.SetPage(0, 2);
+        assertTrue(running.IsCancelled());
+        assertTrue(pending.IsCancelled());
+        assertFalse(mService.HasPending());
+        gate.countDown();
+        waitUntilIdle();
+
+        assertTrue(cancelledAtEnd.get());
+        assertEquals(1, mRunFrames.size());
+        assertEquals(2, mService.GetCancelledCount());
+        assertEquals(0, mService.GetDoneCount());
+        assertEquals(1, mDiscardCount.get());
+
+        // 새 페이지의 요청은 정상 처리됨.
+        OCRDetectionService.CancelToken next = mService.Submit(0, 2, fakeJob(2, null, null, null));
+        waitUntilIdle();
+        assertFalse(next.IsCancelled());
+        assertEquals(2, (int) mRunFrames.get(1));
+        assertEquals(1, mService.GetDoneCount());
+    }
+
+    @Test
+    public void submit_otherPageCancelsOldWorkAndStopDiscards() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        OCRDetectionService.CancelToken old = mService.Submit(3, 7, fakeJob(0, started, gate, null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        mService.Submit(3, 8, fakeJob(1, null, null, null));
+        assertTrue(old.IsCancelled());
+
+        // token 을 직접 취소할 수도 있음.
+        OCRDetectionService.CancelToken token = mService.Submit(3, 8, fakeJob(2, null, null, null));
+        token.Cancel();
+        gate.countDown();
+        waitUntilIdle();
+        assertEquals(1, mRunFrames.size());
+
+        mService.Stop();
+        assertTrue(mService.IsStopped());
+        assertNull(mService.Submit(3, 8, fakeJob(3, null, null, null)));
+        assertEquals(3, mDiscardCount.get());
+    }
+
+    @Test
+    public void failedJob_isCountedAndNextJobRuns() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("detector");
+        mService.Submit(1, 1, new OCRDetectionService.Job() {
+            @Override
+            public void Run(OCRDetectionService.CancelToken in_token) {
+                throw failure;
+            }
+
+            @Override
+            public void Discard() {
+                mDiscardCount.incrementAndGet();
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mService.GetFailedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, mService.GetFailedCount());
+        assertSame(failure, mService.GetLastFailure());
+
+        // 작업 쓰레드는 계속 동작함.
+        mService.Submit(1, 1, fakeJob(5, null, null, null));
+        waitUntilIdle();
+        assertEquals(1, mRunFrames.size());
+        assertEquals(5, (int) mRunFrames.get(0));
+    }
+}
@@ -0,0 +1,149 @@
+package com.ispd.mommybook.ocr.detection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRDetectionTilePlan 의 여백, 합치기, 배율 선택, 배치와 좌표 변환을 확인한다.
+ */
+public class OCRDetectionTilePlanTest {
+    private static final int INPUT_SIZE = 416;
+
+    @Test
+    public void create_addsMarginAndClips() {
+        // 가운데 영역은 10% 여백(20), 모서리 영역은 최소 여백 후 이미지 경계에서 잘림.
+        int[] rects = {500, 400, 200, 50, 0, 0, 30, 30};
+        OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 2, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(2, plan.GetPlacementCount());
+
+        int center = plan.GetSourceX(0) == 480 ? 0 : 1;
+        assertEquals(480, plan.GetSourceX(center));
+        assertEquals(380, plan.GetSourceY(center));
+        assertEquals(240, plan.GetSourceWidth(center));
+        assertEquals(90, plan.GetSourceHeight(center));
+
+        int corner = 1 - center;
+        assertEquals(0, plan.GetSourceX(corner));
+        assertEquals(0, plan.GetSourceY(corner));
+        assertEquals(30 + OCRDetectionTilePlan.MIN_MARGIN, plan.GetSourceWidth(corner));
+        assertEquals(30 + OCRDetectionTilePlan.MIN_MARGIN, plan.GetSourceHeight(corner));
+
+        // 이미지 밖의 영역은 버림.
+        OCRDetectionTilePlan outside = OCRDetectionTilePlan.Create(1600, 1200, new int[]{2000, 2000, 10, 10},
+                INPUT_SIZE, 2, 1.f, OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(0, outside.GetPlacementCount());
+        assertEquals(0, outside.GetTileCount());
+    }
+
+    @Test
+    public void create_mergesOverlaps() {
+        // 앞의 두 영역은 여백이 겹쳐서 하나가 되고, 세 번째는 떨어져 있음.
+        int[] rects = {100, 100, 100, 40, 205, 100, 100, 40, 800, 800, 100, 40};
+        OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 2, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(2, plan.GetPlacementCount());
+        boolean foundMerged = false;
+        for (int i = 0; i < plan.GetPlacementCount(); i++) {
+            if (plan.GetSourceX(i) == 90) {
+                foundMerged = true;
+                assertEquals(90, plan.GetSourceY(i));
+                assertEquals(315 - 90, plan.GetSourceWidth(i));
+                assertEquals(60, plan.GetSourceHeight(i));
+            }
+        }
+        assertTrue(foundMerged);
+    }
+
+    @Test
+    public void create_keepsFullScaleWhenRegionsFit() {
+        int[] rects = {100, 100, 150, 50, 900, 300, 150, 50, 300, 900, 150, 50};
+        OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 1, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(1, plan.GetTileCount());
+        assertEquals(1.f, plan.GetScale(), 0.f);
+        assertNoOverlap(plan);
+    }
+
+    @Test
+    public void create_shrinksToFitMaxTiles() {
+        // 1 배율로는 tile 하나에 들어가지 않는 영역들 : 배율을 줄여서 maxTiles 안에 맞춤.
+        int[] rects = new int[12 * 4];
+        for (int i = 0; i < 12; i++) {
+            rects[i * 4] = 100 + (i % 3) * 500;
+            rects[i * 4 + 1] = 50 + (i / 3) * 280;
+            rects[i * 4 + 2] = 300;
+            rects[i * 4 + 3] = 120;
+        }
+        float fullFrameScale = INPUT_SIZE / 1600.f;
+
+        OCRDetectionTilePlan one = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 1, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(1, one.GetTileCount());
+        assertTrue(one.GetScale() < 1.f);
+        assertTrue(one.GetScale() >= fullFrameScale);
+        assertNoOverlap(one);
+
+        OCRDetectionTilePlan two = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 2, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertTrue(two.GetTileCount() <= 2);
+        assertTrue(two.GetScale() > one.GetScale());
+        assertNoOverlap(two);
+    }
+
+    @Test
+    public void mapping_roundTrips() {
+        int[] rects = {100, 100, 150, 50, 900, 300, 200, 80};
+        OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 1, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        for (int i = 0; i < plan.GetPlacementCount(); i++) {
+            double tx = plan.GetTileX(i) + plan.GetTileWidth(i) * 0.5;
+            double ty = plan.GetTileY(i) + plan.GetTileHeight(i) * 0.5;
+            assertEquals(i, plan.FindPlacement(plan.GetTile(i), tx, ty));
+            assertEquals(plan.GetSourceX(i) + plan.GetSourceWidth(i) * 0.5, plan.ToSourceX(i, tx), 1e-9);
+            assertEquals(plan.GetSourceY(i) + plan.GetSourceHeight(i) * 0.5, plan.ToSourceY(i, ty), 1e-9);
+        }
+        // 배치 사이 간격과 빈 공간은 어느 영역에도 속하지 않음.
+        assertEquals(-1, plan.FindPlacement(0, INPUT_SIZE - 1, INPUT_SIZE - 1));
+    }
+
+    @Test
+    public void create_fitsTypicalPageInOneModelInput() {
+        // 정렬된 페이지(1600x1200)에 답 칸 8개 : tile 하나(모델 입력 한 장)에 페이지 전체보다 큰 배율로 들어감.
+        int[] rects = new int[8 * 4];
+        for (int i = 0; i < 8; i++) {
+            rects[i * 4] = 200 + (i % 2) * 700;
+            rects[i * 4 + 1] = 150 + (i / 2) * 250;
+            rects[i * 4 + 2] = 180;
+            rects[i * 4 + 3] = 70;
+        }
+        OCRDetectionTilePlan plan = OCRDetectionTilePlan.Create(1600, 1200, rects, INPUT_SIZE, 1, 1.f,
+                OCRDetectionTilePlan.DEFAULT_MARGIN_RATIO);
+        assertEquals(1, plan.GetTileCount());
+        // 모델 작업량은 페이지 전체 detection 과 같음.
+        assertEquals((long) INPUT_SIZE * INPUT_SIZE, plan.GetModelPixels());
+        assertTrue(plan.GetSourcePixels() < plan.GetFramePixels());
+        // 전체 페이지 letterbox (416/1600) 보다 큰 배율로 들어감.
+        assertTrue(plan.GetScale() > 2.f * INPUT_SIZE / 1600.f);
+        assertNoOverlap(plan);
+    }
+
+    private static void assertNoOverlap(OCRDetectionTilePlan plan) {
+        for (int i = 0; i < plan.GetPlacementCount(); i++) {
+            assertTrue(plan.GetTile(i) < plan.GetTileCount());
+            assertTrue(plan.GetTileX(i) + plan.GetTileWidth(i) <= INPUT_SIZE);
+            assertTrue(plan.GetTileY(i) + plan.GetTileHeight(i) <= INPUT_SIZE);
+            for (int j = i + 1; j < plan.GetPlacementCount(); j++) {
+                if (plan.GetTile(i) != plan.GetTile(j)) {
+                    continue;
+                }
+                boolean separate = plan.GetTileX(i) + plan.GetTileWidth(i) <= plan.GetTileX(j)
+                        || plan.GetTileX(j) + plan.GetTileWidth(j) <= plan.GetTileX(i)
+                        || plan.GetTileY(i) + plan.GetTileHeight(i) <= plan.GetTileY(j)
+                        || plan.GetTileY(j) + plan.GetTileHeight(j) <= plan.GetTileY(i);
+                assertTrue(separate);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionAnswerScorer 를 작은 dictionary 와 합성 logits 로 검증한다.
+ */
+public class OCRRecognitionAnswerScorerTest {
+    private static final char[] DICT = {'a', 'b', 'c'};
+    private static final int COLUMNS = DICT.length + 1;
+
+    /**
+     * time step 마다 지정한 class 에 높은 값을 주는 logits.
+     */
+    private static float[] makeLogits(int[] path, float peak) {
+        float[] scores = new float[path.length * COLUMNS];
+        for (int r = 0; r < path.length; r++) {
+            scores[r * COLUMNS + path[r]] = peak;
+        }
+        return scores;
+    }
+
+    /**
+     * 모든 alignment 를 나열해서 구한 CTC 확률. forward 결과와 비교하기 위함.
+     */
+    private static double bruteForce(float[] scores, int rows, int[] labels) {
+        double total = 0.0;
+        int[] path = new int[rows];
+        int paths = (int) Math.pow(COLUMNS, rows);
+        for (int p = 0; p < paths; p++) {
+            int v = p;
+            for (int r = 0; r < rows; r++) {
+                path[r] = v % COLUMNS;
+                v /= COLUMNS;
+            }
+            // collapse
+            int[] collapsed = new int[rows];
+            int length = 0;
+            for (int r = 0; r < rows; r++) {
+                if (path[r] != 0 && (r == 0 || path[r - 1] != path[r])) {
+                    collapsed[length++] = path[r];
+                }
+            }
+            if (length != labels.length) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; i < length; i++) {
+                same &= collapsed[i] == labels[i];
+            }
+            if (!same) {
+                continue;
+            }
+            double prob = 1.0;
+            for (int r = 0; r < rows; r++) {
+                double sum = 0.0;
+                for (int c = 0; c < COLUMNS; c++) {
+                    sum += Math.exp(scores[r * COLUMNS + c]);
+                }
+                prob *= Math.exp(scores[r * COLUMNS + path[r]]) / sum;
+            }
+            total += prob;
+        }
+        return Math.log(total);
+    }
+
+    @Test
+    public void logProbability_matchesBruteForce() {
+        java.util.Random random = new java.util.Random(42);
+        OCRRecognitionAnswerScorer scorer = new OCRRecognitionAnswerScorer(DICT);
+        int rows = 5;
+        String[] texts = {"a", "ab", "aa", "abc", "cb"};
+        for (int iter = 0; iter < 10; iter++) {
+            float[] scores = new float[rows * COLUMNS];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = random.nextFloat() * 6.f - 3.f;
+            }
+            for (String text : texts) {
+                int[] labels = scorer.Encode(text);
+                double expected = bruteForce(scores, rows, labels);
+                double actual = scorer.LogProbability(scores, 0, rows, COLUMNS, labels);
+                assertEquals(text, expected, actual, 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void match_acceptsAnswerAndRejectsOther() {
+        OCRRecognitionAnswerScorer scorer = new OCRRecognitionAnswerScorer(DICT);
+        // "a a blank b b blank" -> "ab"
+        float[] scores = makeLogits(new int[]{1, 1, 0, 2, 2, 0}, 8.f);
+
+        assertEquals(0, scorer.Match(scores, 0, 6, COLUMNS, new String[]{"ab"}));
+        assertTrue(scorer.GetLastLogRatio() >= 0.0);
+        assertEquals(1, scorer.Match(scores, 0, 6, COLUMNS, new String[]{"cb", "a b"}));
+        assertEquals(-1, scorer.Match(scores, 0, 6, COLUMNS, new String[]{"ac", "abc"}));
+        // dictionary 에 없는 글자는 후보에서 제외됨.
+        assertEquals(-1, scorer.Match(scores, 0, 6, COLUMNS, new String[]{"xy"}));
+    }
+
+    @Test
+    public void unknownDictionary_matchesNothing() {
+        OCRRecognitionAnswerScorer scorer = OCRRecognitionAnswerScorer.Create(-1);
+        float[] scores = makeLogits(new int[]{1, 1, 0, 2, 2, 0}, 8.f);
+        assertEquals(-1, scorer.Match(scores, 0, 6, COLUMNS, new String[]{"ab"}));
+    }
+
+    @Test
+    public void match_repeatedCharacterNeedsBlank() {
+        OCRRecognitionAnswerScorer scorer = new OCRRecognitionAnswerScorer(DICT);
+        // blank 없이 이어진 a 는 한 글자이므로 "aa" 는 정답이 아님.
+        float[] scores = makeLogits(new int[]{1, 1, 1, 1}, 10.f);
+        assertEquals(0, scorer.Match(scores, 0, 4, COLUMNS, new String[]{"a"}));
+        assertEquals(-1, scorer.Match(scores, 0, 4, COLUMNS, new String[]{"aa"}));
+
+        // time step 이 글자 수보다 모자라면 확률은 0 임.
+        assertEquals(Double.NEGATIVE_INFINITY,
+                scorer.LogProbability(scores, 0, 1, COLUMNS, scorer.Encode("ab")), 0.0);
+    }
+
+    @Test
+    public void match_thresholdAllowsAmbiguousFrame() {
+        OCRRecognitionAnswerScorer scorer = new OCRRecognitionAnswerScorer(DICT);
+        // 가운데 frame 에서 b 와 c 가 비슷하게 나오는 경우 : greedy 는 "abc" 와 "acc" 사이에서 흔들림.
+        float[] scores = makeLogits(new int[]{1, 0, 2, 0, 3}, 8.f);
+        scores[2 * COLUMNS + 3] = 7.5f;
+
+        assertEquals(0, scorer.Match(scores, 0, 5, COLUMNS, new String[]{"acc"}));
+        scorer.SetThreshold(0.0);
+        assertEquals(-1, scorer.Match(scores, 0, 5, COLUMNS, new String[]{"acc"}));
+        assertEquals(0, scorer.Match(scores, 0, 5, COLUMNS, new String[]{"abc"}));
+    }
+}
@@ -0,0 +1,160 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import com.ispd.mommybook.utils.UtilsBenchmark;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2445;
+import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2450;
+import static com.ispd.mommybook.ocr.recognition.OCRRecognitionCharDB.CHAR_DICTIONARY_2497;
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionCTCDecoder 가 합성한 모델 출력에서 기존 문자열 연결 방식의 decoder 와 같은 결과를 내는지 확인한다.
+ * 두 방식의 속도 비교는 -Pbenchmark 일 때만 실행함. (UtilsBenchmark)
+ */
+public class OCRRecognitionCTCDecoderTest {
+    private static final int ROWS = 26;
+    private static final int BATCH = 8;
+
+    /**
+     * 기존 OCRRecognitionPredict.decodeResult() 와 같은 구현.
+     */
+    private static String legacyDecode(char[] dict, float[] scores, int offset, int rows, int columns) {
+        int[] maxIdx = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            float maxValue = -Float.MAX_VALUE;
+            for (int j = 0; j < columns; j++) {
+                float value = scores[offset + i * columns + j];
+                if (value > maxValue) {
+                    maxValue = value;
+                    maxIdx[i] = j;
+                }
+            }
+        }
+
+        String result = "";
+        for (int i = 0; i < rows; i++) {
+            if (maxIdx[i] != 0 && (i == 0 || maxIdx[i - 1] != maxIdx[i])) {
+                result = result + dict[maxIdx[i] - 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 단어 batch 개의 합성 logits. 일부 구간은 같은 글자가 반복되고 blank 가 섞이도록 만든다.
+     */
+    private static float[] makeLogits(Random random, int batch, int rows, int columns) {
+        float[] scores = new float[batch * rows * columns];
+        for (int b = 0; b < batch; b++) {
+            int label = 0;
+            for (int r = 0; r < rows; r++) {
+                int base = (b * rows + r) * columns;
+                for (int c = 0; c < columns; c++) {
+                    scores[base + c] = random.nextFloat() * 4.f - 2.f;
+                }
+                int p = random.nextInt(10);
+                if (p < 3) {
+                    label = 0;
+                } else if (p < 7) {
+                    label = 1 + random.nextInt(columns - 1);
+                }
+                scores[base + label] += 10.f;
+            }
+        }
+        return scores;
+    }
+
+    @Test
+    public void decode_sameAsLegacy() {
+        Random random = new Random(1234);
+        int[] dictIndexes = {CHAR_DICTIONARY_2497, CHAR_DICTIONARY_2445, CHAR_DICTIONARY_2450};
+        for (int dictIndex : dictIndexes) {
+            char[] dict = OCRRecognitionCharDB.GetDictionary(dictIndex);
+            int columns = dict.length + 1;
+            OCRRecognitionCTCDecoder decoder = OCRRecognitionCTCDecoder.Create(dictIndex);
+
+            for (int iter = 0; iter < 20; iter++) {
+                float[] scores = makeLogits(random, BATCH, ROWS, columns);
+                for (int b = 0; b < BATCH; b++) {
+                    int offset = b * ROWS * columns;
+                    String expected = legacyDecode(dict, scores, offset, ROWS, columns);
+                    int length = decoder.Decode(scores, offset, ROWS, columns);
+                    assertEquals(expected.length(), length);
+                    assertEquals(expected, decoder.GetText());
+                    for (int i = 0; i < length; i++) {
+                        assertTrue(decoder.GetConfidences()[i] > 0.f);
+                        assertTrue(decoder.GetConfidences()[i] <= 1.f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decode_collapsesRepeatsAndBlanks() {
+        char[] dict = {'a', 'b'};
+        OCRRecognitionCTCDecoder decoder = new OCRRecognitionCTCDecoder(dict);
+        // a a blank a b b blank
+        int[] labels = {1, 1, 0, 1, 2, 2, 0};
+        float[] scores = new float[labels.length * 3];
+        for (int r = 0; r < labels.length; r++) {
+            scores[r * 3 + labels[r]] = 5.f;
+        }
+        assertEquals(3, decoder.Decode(scores, 0, labels.length, 3));
+        assertEquals("aab", decoder.GetText());
+
+        assertEquals(0, decoder.Decode(new float[3 * 4], 0, 4, 3));
+        assertEquals("", decoder.GetText());
+        assertEquals(0.f, decoder.GetMinConfidence(), 0.f);
+    }
+
+    @Test
+    public void unknownDictionary_decodesEmpty() {
+        OCRRecognitionCTCDecoder decoder = OCRRecognitionCTCDecoder.Create(-1);
+        float[] scores = new float[4 * 3];
+        scores[1] = 5.f;
+        assertEquals(0, decoder.Decode(scores, 0, 4, 3));
+        assertEquals("", decoder.GetText());
+        assertEquals(0.f, decoder.GetMinConfidence(), 0.f);
+    }
+
+    /**
+     * 합성한 모델 출력으로 기존 decoder 와 OCRRecognitionCTCDecoder 의 단어당 시간을 출력한다. (-Pbenchmark 일 때만)
+     */
+    @Test
+    public void benchmark_againstLegacy() {
+        UtilsBenchmark.AssumeEnabled();
+        Random random = new Random(5678);
+        char[] dict = OCRRecognitionCharDB.GetDictionary(CHAR_DICTIONARY_2497);
+        int columns = dict.length + 1;
+        float[] scores = makeLogits(random, BATCH, ROWS, columns);
+        OCRRecognitionCTCDecoder decoder = new OCRRecognitionCTCDecoder(dict);
+
+        int iterations = 2000;
+        long checksum = 0;
+        // warm-up
+        for (int i = 0; i < iterations; i++) {
+            checksum += legacyDecode(dict, scores, (i % BATCH) * ROWS * columns, ROWS, columns).length();
+            checksum += decoder.Decode(scores, (i % BATCH) * ROWS * columns, ROWS, columns);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += legacyDecode(dict, scores, (i % BATCH) * ROWS * columns, ROWS, columns).length();
+        }
+        long legacyNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += decoder.Decode(scores, (i % BATCH) * ROWS * columns, ROWS, columns);
+        }
+        long decoderNs = System.nanoTime() - start;
+
+        System.out.println("OCRRecognitionCTCDecoder legacy = " + (legacyNs / iterations)
+                + "ns/word, decoder = " + (decoderNs / iterations) + "ns/word (" + checksum + ")");
+    }
+}
@@ -0,0 +1,109 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionCache 의 hash 안정성과 크기/시간 제한을 확인한다.
+ */
+public class OCRRecognitionCacheTest {
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 32;
+    private static final String MODEL = "hw0630_none-vgg-bilstm-ctc-kor_hw.pt";
+
+    /**
+     * 흰 배경에 세로 획 몇 개를 그린 가짜 단어 이미지
+     */
+    private static byte[] makeWord(int[] strokeX) {
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        Arrays.fill(pixels, (byte) 230);
+        for (int x0 : strokeX) {
+            for (int y = 4; y < 28; y++) {
+                for (int x = x0; x < x0 + 3; x++) {
+                    pixels[y * WIDTH + x] = (byte) 20;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static byte[] addNoise(byte[] pixels, Random random, int amplitude) {
+        byte[] noisy = pixels.clone();
+        for (int i = 0; i < noisy.length; i++) {
+            int v = (noisy[i] & 0xff) + random.nextInt(2 * amplitude + 1) - amplitude;
+            noisy[i] = (byte) Math.max(0, Math.min(255, v));
+        }
+        return noisy;
+    }
+
+    @Test
+    public void fingerprint_stableUnderNoiseAndChangesWithContent() {
+        Random random = new Random(3);
+        byte[] word = makeWord(new int[]{10, 30, 50});
+        long[] fingerprint = OCRRecognitionCache.Fingerprint(word, WIDTH, HEIGHT);
+        // 25x8 블럭, 가로 이웃 비교 2 x 24x8 = 384 bit
+        assertEquals(6, fingerprint.length);
+
+        for (int i = 0; i < 10; i++) {
+            long[] noisy = OCRRecognitionCache.Fingerprint(addNoise(word, random, 3), WIDTH, HEIGHT);
+            assertTrue(Arrays.equals(fingerprint, noisy));
+        }
+
+        long[] other = OCRRecognitionCache.Fingerprint(makeWord(new int[]{10, 30, 70}), WIDTH, HEIGHT);
+        assertFalse(Arrays.equals(fingerprint, other));
+    }
+
+    @Test
+    public void getPut_countsHitsAndMisses() {
+        OCRRecognitionCache cache = new OCRRecognitionCache();
+        long[] fingerprint = OCRRecognitionCache.Fingerprint(makeWord(new int[]{10, 40}), WIDTH, HEIGHT);
+
+        assertNull(cache.Get(MODEL, fingerprint, null));
+        cache.Put(MODEL, fingerprint, null, "우리");
+        assertEquals("우리", cache.Get(MODEL, fingerprint.clone(), null));
+        // 모델이나 추가 조건이 다르면 다른 항목임.
+        assertNull(cache.Get("other.pt", fingerprint, null));
+        assertNull(cache.Get(MODEL, fingerprint, "우리\n"));
+
+        assertEquals(1, cache.GetHitCount());
+        assertEquals(3, cache.GetMissCount());
+
+        cache.Clear();
+        assertNull(cache.Get(MODEL, fingerprint, null));
+        assertEquals(0, cache.GetSize());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        OCRRecognitionCache cache = new OCRRecognitionCache();
+        cache.SetMaxEntries(2);
+        long[] a = {1L};
+        long[] b = {2L};
+        long[] c = {3L};
+        cache.Put(MODEL, a, null, "a");
+        cache.Put(MODEL, b, null, "b");
+        assertEquals("a", cache.Get(MODEL, a, null));
+        cache.Put(MODEL, c, null, "c");
+
+        assertEquals(2, cache.GetSize());
+        assertEquals("a", cache.Get(MODEL, a, null));
+        assertNull(cache.Get(MODEL, b, null));
+        assertEquals("c", cache.Get(MODEL, c, null));
+    }
+
+    @Test
+    public void get_expiresOldEntries() throws InterruptedException {
+        OCRRecognitionCache cache = new OCRRecognitionCache();
+        cache.SetMaxAge(20);
+        long[] a = {1L};
+        cache.Put(MODEL, a, null, "a");
+        assertEquals("a", cache.Get(MODEL, a, null));
+        Thread.sleep(40);
+        assertNull(cache.Get(MODEL, a, null));
+        assertEquals(0, cache.GetSize());
+    }
+}
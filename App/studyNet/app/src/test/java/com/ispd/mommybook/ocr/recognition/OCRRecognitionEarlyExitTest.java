@@ -0,0 +1,112 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionEarlyExit 의 판단 기준과 조기 종료 통계를 확인한다.
+ */
+public class OCRRecognitionEarlyExitTest {
+    private static final String[] ANSWER = {"우리는"};
+
+    private static OCRRecognitionResult.ModelResult model(String text, float confidence) {
+        float[] confidences = new float[text.length()];
+        Arrays.fill(confidences, confidence);
+        return new OCRRecognitionResult.ModelResult("m", text, confidences, 10, false);
+    }
+
+    @Test
+    public void accepts_requiresAnswerAndConfidence() {
+        OCRRecognitionEarlyExit policy = new OCRRecognitionEarlyExit(3);
+        assertTrue(policy.Accepts(model("우리는", 0.95f), ANSWER));
+        assertFalse(policy.Accepts(model("우리는", 0.8f), ANSWER));
+        assertFalse(policy.Accepts(model("우리도", 0.99f), ANSWER));
+        // 글자 하나라도 신뢰도가 낮으면 인정하지 않음.
+        OCRRecognitionResult.ModelResult weak = new OCRRecognitionResult.ModelResult("m", "우리는",
+                new float[]{0.99f, 0.5f, 0.99f}, 10, false);
+        assertFalse(policy.Accepts(weak, ANSWER));
+        // 신뢰도가 없거나 정답이 없으면 인정하지 않음.
+        assertFalse(policy.Accepts(new OCRRecognitionResult.ModelResult("m", "우리는", null, 0, true), ANSWER));
+        assertFalse(policy.Accepts(model("우리는", 0.99f), null));
+        assertFalse(policy.Accepts(OCRRecognitionResult.ModelResult.Empty("m"), new String[]{""}));
+
+        policy.SetMinConfidence(0.7f);
+        assertTrue(policy.Accepts(model("우리는", 0.8f), ANSWER));
+    }
+
+    @Test
+    public void settled_followsAgreementAndEnabled() {
+        OCRRecognitionEarlyExit policy = new OCRRecognitionEarlyExit(3);
+        // 기본값은 모든 모델의 합의 : 조기 종료하지 않음.
+        assertEquals(3, policy.GetRequiredAgreement());
+        assertFalse(policy.CanExitEarly());
+        assertFalse(policy.IsSettled(2));
+        assertTrue(policy.IsSettled(3));
+        policy.SetRequiredAgreement(1);
+        assertTrue(policy.CanExitEarly());
+        assertTrue(policy.IsSettled(1));
+        policy.SetRequiredAgreement(2);
+        assertFalse(policy.IsSettled(1));
+        assertTrue(policy.IsSettled(2));
+        policy.SetRequiredAgreement(10);
+        assertEquals(3, policy.GetRequiredAgreement());
+        policy.SetRequiredAgreement(1);
+        policy.SetEnabled(false);
+        assertFalse(policy.CanExitEarly());
+        assertFalse(policy.IsSettled(3));
+    }
+
+    @Test
+    public void stats_reportEarlyExitAndSavedRuns() {
+        OCRRecognitionEarlyExit policy = new OCRRecognitionEarlyExit(3);
+        policy.Record(1);
+        policy.Record(1);
+        policy.Record(2);
+        policy.Record(3);
+        assertEquals(4, policy.GetWordCount());
+        assertEquals(3, policy.GetEarlyExitCount());
+        assertEquals(2, policy.GetSettledAfter(1));
+        assertEquals(1, policy.GetSettledAfter(2));
+        assertEquals(7, policy.GetModelRuns());
+        assertEquals(5, policy.GetSavedRuns());
+        assertEquals(0.75f, policy.GetEarlyExitRate(), 1e-6f);
+        assertEquals(5.f / 12.f, policy.GetSavedRate(), 1e-6f);
+
+        policy.ResetStats();
+        assertEquals(0, policy.GetWordCount());
+        assertEquals(0.f, policy.GetSavedRate(), 0.f);
+    }
+
+    /**
+     * 합의 수를 낮춰 모델을 하나씩 실행하는 경우의 모델 실행 수. 정답을 맞게 쓴 단어가 많을수록 많이 줄어듦.
+     */
+    @Test
+    public void simulation_savedRunsOnTypicalPage() {
+        OCRRecognitionEarlyExit policy = new OCRRecognitionEarlyExit(3);
+        policy.SetRequiredAgreement(1);
+        Random random = new Random(11);
+        for (int word = 0; word < 1000; word++) {
+            boolean written = random.nextFloat() < 0.8f;
+            int runCount = 0;
+            int agree = 0;
+            for (int modelIndex = 0; modelIndex < 3; modelIndex++) {
+                runCount++;
+                float confidence = 0.75f + 0.25f * random.nextFloat();
+                String text = written && random.nextFloat() < 0.9f ? "우리는" : "우리도";
+                if (policy.Accepts(model(text, confidence), ANSWER)) {
+                    agree++;
+                }
+                if (policy.IsSettled(agree)) {
+                    break;
+                }
+            }
+            policy.Record(runCount);
+        }
+        assertTrue(policy.GetSavedRate() > 0.2f);
+        assertTrue(policy.GetModelRuns() < 3000);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionEnsemble 의 동시 실행, 제한시간 초과 작업의 취소, 대기열 크기 제한과 실패 수를 확인한다.
+ */
+public class OCRRecognitionEnsembleTest {
+
+    @Test
+    public void run_executesTasksConcurrentlyInOrder() {
+        final int parties = Math.min(3, Runtime.getRuntime().availableProcessors());
+        final CyclicBarrier barrier = new CyclicBarrier(parties);
+        OCRRecognitionEnsemble ensemble = new OCRRecognitionEnsemble(parties);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < parties; i++) {
+            final int index = i;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    // 모든 작업이 동시에 실행되어야 barrier 를 통과함.
+                    barrier.await(2, TimeUnit.SECONDS);
+                    return index;
+                }
+            });
+        }
+        List<Integer> results = ensemble.Run(tasks);
+        ensemble.Shutdown();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < parties; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, results);
+    }
+
+    @Test
+    public void timeout_cancelsRunningTask() throws InterruptedException {
+        OCRRecognitionEnsemble ensemble = new OCRRecognitionEnsemble(1);
+        ensemble.SetTimeout(50);
+        final CountDownLatch never = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        List<Callable<String>> tasks = new ArrayList<>();
+        tasks.add(new Callable<String>() {
+            @Override
+            public String call() {
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            }
+        });
+        assertEquals(Arrays.asList((String) null), ensemble.Run(tasks));
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(1, ensemble.GetTimeoutCount());
+
+        // 취소된 작업이 쓰레드를 비워주므로 다음 앙상블은 정상적으로 실행됨.
+        ensemble.SetTimeout(OCRRecognitionEnsemble.DEFAULT_TIMEOUT_MS);
+        tasks.clear();
+        tasks.add(new Callable<String>() {
+            @Override
+            public String call() {
+                return "next";
+            }
+        });
+        assertEquals(Arrays.asList("next"), ensemble.Run(tasks));
+        ensemble.Shutdown();
+    }
+
+    @Test
+    public void stuckTask_boundsQueueAndSkipsCancelledWork() throws InterruptedException {
+        OCRRecognitionEnsemble ensemble = new OCRRecognitionEnsemble(1);
+        ensemble.SetTimeout(20);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger(0);
+        Callable<String> stuck = new Callable<String>() {
+            @Override
+            public String call() {
+                executed.incrementAndGet();
+                // native forward 처럼 interrupt 에 반응하지 않는 작업
+                boolean done = false;
+                while (!done) {
+                    try {
+                        done = release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // 무시
+                    }
+                }
+                return "stuck";
+            }
+        };
+
+        for (int page = 0; page < 10; page++) {
+            List<Callable<String>> tasks = new ArrayList<>();
+            tasks.add(stuck);
+            assertEquals(Arrays.asList((String) null), ensemble.Run(tasks));
+        }
+        // 실행중 1개 + 대기열(쓰레드당 2개) 을 넘게 쌓이지 않음.
+        assertTrue(ensemble.GetPendingCount() <= 3);
+        assertTrue(ensemble.GetRejectedCount() > 0);
+
+        release.countDown();
+        ensemble.Shutdown();
+        // 제한시간을 넘겨 취소된 대기 작업은 실행되지 않음.
+        assertEquals(1, executed.get());
+    }
+
+    @Test
+    public void failedTask_isCountedWithCause() {
+        OCRRecognitionEnsemble ensemble = new OCRRecognitionEnsemble(1);
+        final IllegalStateException failure = new IllegalStateException("model");
+        List<Callable<String>> tasks = new ArrayList<>();
+        tasks.add(new Callable<String>() {
+            @Override
+            public String call() {
+                throw failure;
+            }
+        });
+        assertEquals(Arrays.asList((String) null), ensemble.Run(tasks));
+        assertEquals(1, ensemble.GetFailedCount());
+        assertSame(failure, ensemble.GetLastFailure());
+        ensemble.Shutdown();
+    }
+}
@@ -0,0 +1,81 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionNormalizer 가 기존 Bitmap 경로(matToBitmap + bitmapToFloatBuffer 의 첫번째 channel)와
+ * bit 단위로 같은 값을 만드는지 확인한다.
+ */
+public class OCRRecognitionNormalizerTest {
+    // TensorImageUtils.TORCHVISION_NORM_MEAN_RGB / TORCHVISION_NORM_STD_RGB
+    private static final float[] MEAN_RGB = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD_RGB = {0.229f, 0.224f, 0.225f};
+    private static final int LENGTH = 32 * 100;
+
+    /**
+     * 기존 경로 : 흑백 Mat -> ARGB_8888 Bitmap (R=G=B=gray) -> 3 channel 정규화 -> 첫번째 channel 복사
+     */
+    private static float[] legacyPath(byte[] gray) {
+        int[] argb = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            int g = gray[i] & 0xff;
+            argb[i] = 0xff000000 | (g << 16) | (g << 8) | g;
+        }
+        float[] rgb = new float[3 * LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            int c = argb[i];
+            rgb[i] = (((c >> 16) & 0xff) / 255.0f - MEAN_RGB[0]) / STD_RGB[0];
+            rgb[LENGTH + i] = (((c >> 8) & 0xff) / 255.0f - MEAN_RGB[1]) / STD_RGB[1];
+            rgb[2 * LENGTH + i] = ((c & 0xff) / 255.0f - MEAN_RGB[2]) / STD_RGB[2];
+        }
+        float[] channel = new float[LENGTH];
+        System.arraycopy(rgb, 0, channel, 0, LENGTH);
+        return channel;
+    }
+
+    private static FloatBuffer allocateDirect(int length) {
+        return ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Test
+    public void normalize_bitExactWithBitmapPath() {
+        Random random = new Random(7);
+        OCRRecognitionNormalizer normalizer = new OCRRecognitionNormalizer(MEAN_RGB[0], STD_RGB[0]);
+        byte[] gray = new byte[LENGTH];
+        // 모든 픽셀값이 나오도록 0~255 를 먼저 채우고 나머지는 랜덤
+        for (int i = 0; i < LENGTH; i++) {
+            gray[i] = (byte) (i < 256 ? i : random.nextInt(256));
+        }
+
+        FloatBuffer buffer = allocateDirect(LENGTH);
+        normalizer.Normalize(gray, LENGTH, buffer);
+        assertEquals(LENGTH, buffer.position());
+
+        float[] expected = legacyPath(gray);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(Float.floatToIntBits(expected[i]), Float.floatToIntBits(buffer.get(i)));
+        }
+    }
+
+    @Test
+    public void normalize_appendsWordsInBatchBuffer() {
+        OCRRecognitionNormalizer normalizer = new OCRRecognitionNormalizer(MEAN_RGB[0], STD_RGB[0]);
+        byte[] black = new byte[LENGTH];
+        byte[] white = new byte[LENGTH];
+        java.util.Arrays.fill(white, (byte) 255);
+
+        FloatBuffer buffer = allocateDirect(2 * LENGTH);
+        normalizer.Normalize(black, LENGTH, buffer);
+        normalizer.Normalize(white, LENGTH, buffer);
+        assertEquals(2 * LENGTH, buffer.position());
+        assertEquals((0.f - MEAN_RGB[0]) / STD_RGB[0], buffer.get(LENGTH - 1), 0.f);
+        assertEquals((1.f - MEAN_RGB[0]) / STD_RGB[0], buffer.get(LENGTH), 0.f);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ispd.mommybook.ocr.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * OCRRecognitionResult 의 불변성, 신뢰도 계산, 신뢰도 가중 투표를 확인한다.
+ */
+public class OCRRecognitionResultTest {
+
+    private static OCRRecognitionResult.ModelResult model(String text, float... confidences) {
+        return new OCRRecognitionResult.ModelResult("m", text, confidences.length > 0 ? confidences : null, 5, false);
+    }
+
+    @Test
+    public void modelResult_copiesConfidences() {
+        float[] confidences = {0.9f, 0.5f, 0.7f, 0.1f};
+        OCRRecognitionResult.ModelResult result =
+                new OCRRecognitionResult.ModelResult("m", "우리는", confidences, 12, false);
+        confidences[0] = 0.f;
+        // 글자 수만큼만 사용함.
+        assertEquals(0.9f, result.GetConfidence(0), 1e-6f);
+        assertTrue(Float.isNaN(result.GetConfidence(3)));
+        assertEquals(0.5f, result.GetMinConfidence(), 1e-6f);
+        assertEquals(0.7f, result.GetMeanConfidence(), 1e-6f);
+        assertEquals(12, result.GetElapsedMs());
+        assertFalse(result.IsFromCache());
+
+        OCRRecognitionResult.ModelResult cached = result.FromCache();
+        assertTrue(cached.IsFromCache());
+        assertEquals(0, cached.GetElapsedMs());
+        assertEquals(0.7f, cached.GetMeanConfidence(), 1e-6f);
+    }
+
+    @Test
+    public void emptyModel() {
+        OCRRecognitionResult.ModelResult empty = OCRRecognitionResult.ModelResult.Empty("m");
+        assertEquals("", empty.GetText());
+        assertFalse(empty.HasConfidences());
+        assertTrue(Float.isNaN(empty.GetMeanConfidence()));
+        assertEquals("", new OCRRecognitionResult.ModelResult("m", null, null, 0, false).GetText());
+    }
+
+    @Test
+    public void result_copiesModels() {
+        OCRRecognitionResult.ModelResult[] models = {model("a"), model("b"), model("c")};
+        OCRRecognitionResult result = new OCRRecognitionResult(7, true, models);
+        models[0] = model("x");
+        assertEquals(7, result.GetSerialNumber());
+        assertTrue(result.IsMultiModel());
+        assertEquals(3, result.GetModelCount());
+        assertEquals("a", result.GetText(0));
+        assertEquals("a | b | c", result.toString());
+        assertFalse(result.IsEarlyExit());
+
+        // 조기 종료 : 실행한 모델의 결과만 가짐.
+        OCRRecognitionResult early = new OCRRecognitionResult(7, true, 3, model("a"));
+        assertEquals(1, early.GetModelCount());
+        assertEquals(3, early.GetPlannedCount());
+        assertTrue(early.IsEarlyExit());
+        assertEquals("a", early.toString());
+    }
+
+    @Test
+    public void voting_prefersAgreementWeightedByConfidence() {
+        // 두 모델이 같은 결과 : 신뢰도 합이 더 큼.
+        OCRRecognitionResult agree = new OCRRecognitionResult(0, true,
+                model("우리는", 0.6f, 0.6f, 0.6f), model("우리도", 0.9f, 0.9f, 0.9f), model("우리는", 0.5f, 0.5f, 0.5f));
+        assertEquals(0, agree.GetVotedIndex());
+        assertEquals("우리는", agree.GetVotedText());
+
+        // 모두 다르면 신뢰도가 가장 높은 결과.
+        OCRRecognitionResult differ = new OCRRecognitionResult(0, true,
+                model("apple", 0.4f), model("appte", 0.95f), model("abble", 0.3f));
+        assertEquals(1, differ.GetVotedIndex());
+
+        // 빈 결과(제한시간 초과 등)는 제외함.
+        OCRRecognitionResult timeout = new OCRRecognitionResult(0, true,
+                OCRRecognitionResult.ModelResult.Empty("m"), model("cat"), OCRRecognitionResult.ModelResult.Empty("m"));
+        assertEquals(1, timeout.GetVotedIndex());
+
+        OCRRecognitionResult none = new OCRRecognitionResult(0, true,
+                OCRRecognitionResult.ModelResult.Empty("m"), OCRRecognitionResult.ModelResult.Empty("m"));
+        assertEquals(-1, none.GetVotedIndex());
+        assertEquals("", none.GetVotedText());
+    }
+}
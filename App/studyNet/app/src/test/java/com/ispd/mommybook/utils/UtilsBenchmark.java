@@ -0,0 +1,27 @@
+package com.ispd.mommybook.utils;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 속도 비교 테스트(benchmark_*)의 실행 여부
+ *
+ * 측정 시간은 기기와 부하에 따라 달라서 통과/실패를 판단할 수 없으므로 기본 테스트에서는 건너뛴다.
+ * app 폴더에서 ./gradlew testDebugUnitTest -Pbenchmark 로 실행하면 이전 방식과의 비교 결과를 출력함.
+ * (build.gradle 의 testOptions 에서 system property 로 넘김)
+ *
+ * @author Daniel
+ * @version 1.0
+ */
+public final class UtilsBenchmark {
+    public static final String PROPERTY = "benchmark";
+
+    private UtilsBenchmark() {
+    }
+
+    /**
+     * 속도 비교를 실행하지 않으면 테스트를 건너뛴다. (assumption 실패로 처리되어 skip 됨)
+     */
+    public static void AssumeEnabled() {
+        assumeTrue("benchmark is disabled (-P" + PROPERTY + ")", Boolean.getBoolean(PROPERTY));
+    }
+}